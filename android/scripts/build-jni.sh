@@ -16,7 +16,8 @@ echo "${ANDROID_NDK:?}"
 ARCH_LIST=$(android_get_arch_list)
 TOOLCHAIN_DIR=$(android_get_build_tools_dir)
 JNI_MD_DIR="darwin"
-JNI_LIBS=(bc-libwally-address-jni bc-libwally-bip32-jni bc-libwally-bip39-jni bc-libwally-crypto-jni bc-libwally-core-jni bc-libwally-script-jni bc-libwally-tx-jni bc-libwally-psbt-jni)
+JNI_LIB=bc-libwally-jni
+JNI_SRCS=(jni-utils bc-libwally-address-jni bc-libwally-bip32-jni bc-libwally-bip39-jni bc-libwally-crypto-jni bc-libwally-core-jni bc-libwally-script-jni bc-libwally-tx-jni bc-libwally-psbt-jni)
 LIBWALY_CORE_FILE=libwallycore.so
 BUILD_LOG_DIR="log"
 BUILD_LOG="$BUILD_LOG_DIR/$(date +%s)-build-jni-log.txt"
@@ -39,14 +40,18 @@ build_jni() {
   SRC_ROOT_DIR=$ROOT_DIR/java/src/main
   WALLY_ROOT_DIR=$ROOT_DIR/deps/libwally-core
 
+  SRC_FILES=()
+  for SRC in "${JNI_SRCS[@]}"; do
+    SRC_FILES+=("$SRC_ROOT_DIR/jniLibs/${SRC}.c")
+  done
+
   echo "Building $LIB_NAME..."
   $CC -I"$JAVA_HOME/include" \
     -I"$JAVA_HOME/include/$JNI_MD_DIR" \
     -I"$WALLY_ROOT_DIR/include" \
     -I"$WALLY_ROOT_DIR/src" \
     -shared -fPIC \
-    "$SRC_ROOT_DIR/jniLibs/${LIB}.c" \
-    "$SRC_ROOT_DIR/jniLibs/jni-utils.c" \
+    "${SRC_FILES[@]}" \
     "$WALLY_ROOT_DIR/src/ccan/ccan/base64/base64.c" \
     -o \
     "$OUT_DIR/$LIB_NAME" \
@@ -68,9 +73,7 @@ build_jni() {
     OUT_DIR=app/src/main/jniLibs/$ARCH
     mkdir -p "$OUT_DIR"
 
-    for LIB in "${JNI_LIBS[@]}"; do
-      build_jni "$ARCH" "$LIB" "$OUT_DIR"
-    done
+    build_jni "$ARCH" "$JNI_LIB" "$OUT_DIR"
 
   done
 
@@ -15,7 +15,8 @@ echo "${CC:?}"
 OUT_DIR=src/main/libs
 LIBWALLY_CORE_FILE=libwallycore.so
 JNI_MD_DIR="linux"
-JNI_LIBS=(bc-libwally-address-jni bc-libwally-bip32-jni bc-libwally-bip39-jni bc-libwally-crypto-jni bc-libwally-core-jni bc-libwally-script-jni bc-libwally-tx-jni bc-libwally-psbt-jni)
+JNI_LIB=bc-libwally-jni
+JNI_SRCS=(jni-utils bc-libwally-address-jni bc-libwally-bip32-jni bc-libwally-bip39-jni bc-libwally-crypto-jni bc-libwally-core-jni bc-libwally-script-jni bc-libwally-tx-jni bc-libwally-psbt-jni)
 BUILD_LOG_DIR="log"
 BUILD_LOG="$BUILD_LOG_DIR/$(date +%s)-build-jni-log.txt"
 if [[ -n $1 ]]; then
@@ -37,6 +38,11 @@ build_jni() {
   SRC_ROOT_DIR=src/main
   WALLY_ROOT_DIR=$ROOT_DIR/deps/libwally-core
 
+  SRC_FILES=()
+  for SRC in "${JNI_SRCS[@]}"; do
+    SRC_FILES+=("$SRC_ROOT_DIR/jniLibs/${SRC}.c")
+  done
+
   echo "Building $LIB_NAME..."
 
   $CC -I"$JAVA_HOME/include" \
@@ -45,8 +51,7 @@ build_jni() {
     -I"$WALLY_ROOT_DIR/src" \
     -L$OUT_DIR \
     -shared -fPIC \
-    "$SRC_ROOT_DIR/jniLibs/${LIB}.c" \
-    "$SRC_ROOT_DIR/jniLibs/jni-utils.c" \
+    "${SRC_FILES[@]}" \
     "$WALLY_ROOT_DIR/src/ccan/ccan/base64/base64.c" \
     -o \
     "$OUT_DIR/$LIB_NAME" \
@@ -61,8 +66,6 @@ build_jni() {
   touch "$BUILD_LOG"
 
   mkdir -p "$OUT_DIR"
-  for LIB in "${JNI_LIBS[@]}"; do
-    build_jni "$LIB"
-  done
+  build_jni "$JNI_LIB"
 
 ) | tee -a "${BUILD_LOG}"
@@ -0,0 +1,13 @@
+package com.bc.libwally;
+
+public interface JniCallListener {
+
+    // `bytesIn`/`bytesOut` count array data copied from/to the JVM by the marshalling layer and
+    // `nativeAllocated` the bytes it allocated on the native heap during the call.
+    void onCall(String module,
+                String method,
+                long nanos,
+                long bytesIn,
+                long bytesOut,
+                long nativeAllocated);
+}
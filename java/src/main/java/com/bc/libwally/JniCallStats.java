@@ -0,0 +1,92 @@
+package com.bc.libwally;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class JniCallStats {
+
+    public static final int HISTOGRAM_BUCKETS = 64;
+
+    private final String name;
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    private final AtomicLong bytesIn = new AtomicLong();
+
+    private final AtomicLong bytesOut = new AtomicLong();
+
+    private final AtomicLong nativeAllocated = new AtomicLong();
+
+    // bucket `i` counts the calls that took [2^i, 2^(i+1)) nanoseconds
+    private final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+    JniCallStats(String name) {
+        this.name = name;
+    }
+
+    void record(long nanos, long in, long out, long allocated) {
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        bytesIn.addAndGet(in);
+        bytesOut.addAndGet(out);
+        nativeAllocated.addAndGet(allocated);
+        histogram.incrementAndGet(bucketOf(nanos));
+
+        long max;
+        do {
+            max = maxNanos.get();
+        } while (nanos > max && !maxNanos.compareAndSet(max, nanos));
+    }
+
+    static int bucketOf(long nanos) {
+        return nanos <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    public long getNativeAllocated() {
+        return nativeAllocated.get();
+    }
+
+    public long[] getHistogram() {
+        long[] buckets = new long[HISTOGRAM_BUCKETS];
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            buckets[i] = histogram.get(i);
+        }
+        return buckets;
+    }
+
+    @Override
+    public String toString() {
+        long calls = getCount();
+        return name + "{count=" + calls + ", avgNanos=" + (calls == 0 ? 0 : getTotalNanos() / calls) +
+               ", maxNanos=" + getMaxNanos() + ", bytesIn=" + getBytesIn() + ", bytesOut=" +
+               getBytesOut() + ", nativeAllocated=" + getNativeAllocated() + "}";
+    }
+}
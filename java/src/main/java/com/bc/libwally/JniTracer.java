@@ -0,0 +1,124 @@
+package com.bc.libwally;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Opt-in instrumentation of every JNI crossing. While disabled a traced call costs a single
+// volatile read; while enabled each call additionally reads the native thread-local counters.
+public final class JniTracer {
+
+    private static final long DISABLED = Long.MIN_VALUE;
+
+    private static final List<Source> SOURCES = new CopyOnWriteArrayList<>();
+
+    private static final List<JniCallListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private static final ThreadLocal<long[]> SCRATCH = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[3];
+        }
+    };
+
+    private static volatile boolean enabled;
+
+    private JniTracer() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        JniTracer.enabled = enabled;
+    }
+
+    public static void addListener(JniCallListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(JniCallListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    // keyed by `<module>.<method>`
+    public static Map<String, JniCallStats> getStats() {
+        Map<String, JniCallStats> stats = new TreeMap<>();
+        for (Source source : SOURCES) {
+            for (JniCallStats s : source.stats.values()) {
+                stats.put(s.getName(), s);
+            }
+        }
+        return Collections.unmodifiableMap(stats);
+    }
+
+    public static void reset() {
+        for (Source source : SOURCES) {
+            source.stats.clear();
+        }
+    }
+
+    // Blocks allocated on the native heap by the marshalling layer or libwally and not freed yet,
+    // for the whole process and whether or not tracing is enabled. A batch of calls that does not
+    // leak leaves it unchanged.
+    public static long getOutstandingAllocations() {
+        return Native.jni_outstanding_allocations();
+    }
+
+    public abstract static class Source {
+
+        private final String module;
+
+        private final ConcurrentHashMap<String, JniCallStats> stats = new ConcurrentHashMap<>();
+
+        protected Source(String module) {
+            this.module = module;
+            SOURCES.add(this);
+        }
+
+        // reads and resets the native counters of the current thread as
+        // [bytesIn, bytesOut, nativeAllocated]
+        protected abstract void readStats(long[] stats);
+
+        public final long enter() {
+            if (!enabled)
+                return DISABLED;
+            readStats(SCRATCH.get());
+            return System.nanoTime();
+        }
+
+        public final void exit(String method, long start) {
+            if (start == DISABLED)
+                return;
+            long nanos = System.nanoTime() - start;
+            long[] counters = SCRATCH.get();
+            readStats(counters);
+
+            JniCallStats s = stats.get(method);
+            if (s == null) {
+                JniCallStats created = new JniCallStats(module + "." + method);
+                s = stats.putIfAbsent(method, created);
+                if (s == null)
+                    s = created;
+            }
+            s.record(nanos, counters[0], counters[1], counters[2]);
+
+            for (JniCallListener listener : LISTENERS) {
+                listener.onCall(module, method, nanos, counters[0], counters[1], counters[2]);
+            }
+        }
+    }
+
+    private static final class Native {
+
+        static {
+            NativeLoader.load();
+        }
+
+        static native long jni_outstanding_allocations();
+    }
+}
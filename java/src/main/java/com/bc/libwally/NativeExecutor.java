@@ -0,0 +1,146 @@
+package com.bc.libwally;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Fixed pool of platform threads for long running native work such as signing, so callers on
+// virtual threads do not pin their carrier for the duration of a JNI call. At most
+// `queueCapacity` tasks wait for a thread, further submissions fail fast with a
+// `RejectedExecutionException` instead of queueing without bound.
+public final class NativeExecutor {
+
+    private static volatile NativeExecutor defaultExecutor;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Semaphore permits;
+
+    private final int queueCapacity;
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicInteger maxQueued = new AtomicInteger();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public NativeExecutor(int threads, int queueCapacity) {
+        if (threads <= 0 || queueCapacity < 0)
+            throw new IllegalArgumentException("Invalid executor size");
+
+        this.queueCapacity = queueCapacity;
+        this.permits = new Semaphore(threads + queueCapacity);
+        this.executor = new ThreadPoolExecutor(threads,
+                                               threads,
+                                               0L,
+                                               TimeUnit.MILLISECONDS,
+                                               new LinkedBlockingQueue<Runnable>(),
+                                               new NativeThreadFactory());
+    }
+
+    // shared by the `*Async` methods that do not take an executor, sized to the processor count
+    public static NativeExecutor getDefault() {
+        NativeExecutor executor = defaultExecutor;
+        if (executor != null)
+            return executor;
+
+        synchronized (NativeExecutor.class) {
+            if (defaultExecutor == null) {
+                int threads = Runtime.getRuntime().availableProcessors();
+                defaultExecutor = new NativeExecutor(threads, threads * 64);
+            }
+            return defaultExecutor;
+        }
+    }
+
+    public <T> CompletableFuture<T> supplyAsync(final Supplier<T> supplier) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        if (!permits.tryAcquire()) {
+            rejected.incrementAndGet();
+            future.completeExceptionally(new RejectedExecutionException("Native executor is full"));
+            return future;
+        }
+
+        int depth = queued.incrementAndGet();
+        int max;
+        do {
+            max = maxQueued.get();
+        } while (depth > max && !maxQueued.compareAndSet(max, depth));
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    queued.decrementAndGet();
+                    try {
+                        if (!future.isDone())
+                            future.complete(supplier.get());
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    } finally {
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            permits.release();
+            rejected.incrementAndGet();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    // tasks accepted but not yet running
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueued.get();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static final class NativeThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger POOL = new AtomicInteger();
+
+        private final int pool = POOL.incrementAndGet();
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            String name = "bc-libwally-native-" + pool + "-" + count.incrementAndGet();
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
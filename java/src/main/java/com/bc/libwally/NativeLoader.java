@@ -0,0 +1,142 @@
+package com.bc.libwally;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+
+// Loads the combined `bc-libwally-jni` library exactly once. The library is looked up on
+// `java.library.path` first and otherwise extracted from the jar, where it is expected under
+// `/native/<os>-<arch>/` together with the libwallycore library it links against.
+public final class NativeLoader {
+
+    public static final String LIBRARY_NAME = "bc-libwally-jni";
+
+    // directory the bundled libraries are extracted to, defaults to `java.io.tmpdir`
+    public static final String CACHE_DIR_PROPERTY = "com.bc.libwally.native.cacheDir";
+
+    private static final String WALLY_CORE_LIBRARY_NAME = "wallycore";
+
+    private static final String[] NATIVE_CLASSES = new String[]{
+            "com.bc.libwally.JniTracer$Native",
+            "com.bc.libwally.address.AddressJni$Native",
+            "com.bc.libwally.bip32.Bip32Jni$Native",
+            "com.bc.libwally.bip39.Bip39Jni$Native",
+            "com.bc.libwally.core.CoreJni$Native",
+            "com.bc.libwally.crypto.CryptoJni$Native",
+            "com.bc.libwally.psbt.PsbtJni$Native",
+            "com.bc.libwally.script.ScriptJni$Native",
+            "com.bc.libwally.tx.TxJni$Native"};
+
+    private static volatile boolean loaded;
+
+    private NativeLoader() {
+    }
+
+    public static void load() {
+        if (loaded)
+            return;
+
+        synchronized (NativeLoader.class) {
+            if (loaded)
+                return;
+
+            try {
+                System.loadLibrary(LIBRARY_NAME);
+            } catch (UnsatisfiedLinkError e) {
+                if (!loadBundled())
+                    throw e;
+            }
+            loaded = true;
+        }
+    }
+
+    public static boolean isLoaded() {
+        return loaded;
+    }
+
+    // Loads the library and initializes the natives of every *Jni class up front, so the first
+    // real call does not pay for loading or for populating the JNI_OnLoad class cache.
+    public static void warmUp() {
+        load();
+        ClassLoader classLoader = NativeLoader.class.getClassLoader();
+        for (String className : NATIVE_CLASSES) {
+            try {
+                Class.forName(className, true, classLoader);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static boolean loadBundled() {
+        String resourceDir = "/native/" + getPlatform() + "/";
+        String jniLibrary = System.mapLibraryName(LIBRARY_NAME);
+        if (NativeLoader.class.getResource(resourceDir + jniLibrary) == null)
+            return false;
+
+        try {
+            File dir = getCacheDir();
+            String wallyCoreLibrary = System.mapLibraryName(WALLY_CORE_LIBRARY_NAME);
+            if (NativeLoader.class.getResource(resourceDir + wallyCoreLibrary) != null)
+                System.load(extract(resourceDir + wallyCoreLibrary, dir).getAbsolutePath());
+            System.load(extract(resourceDir + jniLibrary, dir).getAbsolutePath());
+            return true;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not extract native library", e);
+        }
+    }
+
+    private static File getCacheDir() throws IOException {
+        String path = System.getProperty(CACHE_DIR_PROPERTY);
+        File dir = path != null
+                   ? new File(path)
+                   : new File(System.getProperty("java.io.tmpdir"), "bc-libwally-jni");
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Could not create " + dir);
+        return dir;
+    }
+
+    private static File extract(String resource, File dir) throws IOException {
+        File target = new File(dir, resource.substring(resource.lastIndexOf('/') + 1));
+        File tmp = File.createTempFile(target.getName(), ".tmp", dir);
+        try (InputStream in = NativeLoader.class.getResourceAsStream(resource);
+             OutputStream out = new FileOutputStream(tmp)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+
+        // replaced with a rename rather than written in place, which could corrupt a copy that
+        // another process has already mapped
+        if (!tmp.renameTo(target)) {
+            if (!target.delete() || !tmp.renameTo(target)) {
+                tmp.delete();
+                if (!target.isFile())
+                    throw new IOException("Could not write " + target);
+            }
+        }
+        return target;
+    }
+
+    private static String getPlatform() {
+        String os = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+        if (os.contains("mac") || os.contains("darwin"))
+            os = "darwin";
+        else if (os.contains("win"))
+            os = "windows";
+        else
+            os = "linux";
+
+        String arch = System.getProperty("os.arch").toLowerCase(Locale.ROOT);
+        if (arch.equals("amd64") || arch.equals("x86_64"))
+            arch = "x86_64";
+        else if (arch.equals("aarch64") || arch.equals("arm64"))
+            arch = "aarch64";
+        return os + "-" + arch;
+    }
+}
@@ -1,5 +1,7 @@
 package com.bc.libwally;
 
+// Holds a native handle until closed. The handles wrapped so far point to static libwally data
+// and own nothing, so closing only drops the handle and fails further use fast.
 public abstract class NativeWrapper implements AutoCloseable {
 
     protected JniObject ptrObj;
@@ -12,6 +14,11 @@ public abstract class NativeWrapper implements AutoCloseable {
         return ptrObj == null;
     }
 
+    @Override
+    public synchronized void close() {
+        ptrObj = null;
+    }
+
     public static class JniObject {
 
         private final transient long ptr;
@@ -24,4 +31,4 @@ public abstract class NativeWrapper implements AutoCloseable {
             return ptr;
         }
     }
-}
\ No newline at end of file
+}
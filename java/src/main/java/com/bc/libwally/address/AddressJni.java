@@ -1,34 +1,124 @@
 package com.bc.libwally.address;
 
+import com.bc.libwally.JniTracer;
+import com.bc.libwally.NativeLoader;
 import com.bc.libwally.bip32.WallyHDKey;
 
 class AddressJni {
 
-    static {
-        System.loadLibrary("bc-libwally-address-jni");
+    private static final JniTracer.Source SOURCE = new JniTracer.Source("AddressJni") {
+        @Override
+        protected void readStats(long[] stats) {
+            Native.jni_stats(stats);
+        }
+    };
+
+    static int wally_addr_segwit_to_bytes(String addr,
+                                          String addrFamily,
+                                          byte[] output,
+                                          int[] written) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_addr_segwit_to_bytes(addr, addrFamily, output, written);
+        } finally {
+            SOURCE.exit("wally_addr_segwit_to_bytes", start);
+        }
     }
 
-    static native int wally_addr_segwit_to_bytes(String addr,
-                                                 String addrFamily,
-                                                 byte[] output,
-                                                 int[] written);
+    static int wally_address_to_scriptpubkey(String addr,
+                                             long network,
+                                             byte[] output,
+                                             int[] written) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_address_to_scriptpubkey(addr, network, output, written);
+        } finally {
+            SOURCE.exit("wally_address_to_scriptpubkey", start);
+        }
+    }
 
-    static native int wally_address_to_scriptpubkey(String addr,
-                                                    long network,
-                                                    byte[] output,
-                                                    int[] written);
+    static String wally_bip32_key_to_address(WallyHDKey key, long flags, long version) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_bip32_key_to_address(key, flags, version);
+        } finally {
+            SOURCE.exit("wally_bip32_key_to_address", start);
+        }
+    }
 
-    static native String wally_bip32_key_to_address(WallyHDKey key, long flags, long version);
+    static String wally_bip32_key_to_addr_segwit(WallyHDKey key, String addrFamily) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_bip32_key_to_addr_segwit(key, addrFamily);
+        } finally {
+            SOURCE.exit("wally_bip32_key_to_addr_segwit", start);
+        }
+    }
 
-    static native String wally_bip32_key_to_addr_segwit(WallyHDKey key, String addrFamily);
+    static String wally_scriptpubkey_to_address(byte[] scriptPubKey, long network) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_scriptpubkey_to_address(scriptPubKey, network);
+        } finally {
+            SOURCE.exit("wally_scriptpubkey_to_address", start);
+        }
+    }
 
+    static String wally_addr_segwit_from_bytes(byte[] bytes, String addrFamily) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_addr_segwit_from_bytes(bytes, addrFamily);
+        } finally {
+            SOURCE.exit("wally_addr_segwit_from_bytes", start);
+        }
+    }
+
+    static int wally_wif_to_bytes(byte[] wif, long prefix, long flags, byte[] output) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_wif_to_bytes(wif, prefix, flags, output);
+        } finally {
+            SOURCE.exit("wally_wif_to_bytes", start);
+        }
+    }
 
-    static native String wally_scriptpubkey_to_address(byte[] scriptPubKey, long network);
+    static String wally_wif_from_bytes(byte[] privKey, long prefix, long flags) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_wif_from_bytes(privKey, prefix, flags);
+        } finally {
+            SOURCE.exit("wally_wif_from_bytes", start);
+        }
+    }
 
-    static native String wally_addr_segwit_from_bytes(byte[] bytes, String addrFamily);
+    private static final class Native {
 
-    static native int wally_wif_to_bytes(byte[] wif, long prefix, long flags, byte[] output);
+        static {
+            NativeLoader.load();
+        }
 
-    static native String wally_wif_from_bytes(byte[] privKey, long prefix, long flags);
+        static native int wally_addr_segwit_to_bytes(String addr,
+                                                     String addrFamily,
+                                                     byte[] output,
+                                                     int[] written);
 
+        static native int wally_address_to_scriptpubkey(String addr,
+                                                        long network,
+                                                        byte[] output,
+                                                        int[] written);
+
+        static native String wally_bip32_key_to_address(WallyHDKey key, long flags, long version);
+
+        static native String wally_bip32_key_to_addr_segwit(WallyHDKey key, String addrFamily);
+
+        static native String wally_scriptpubkey_to_address(byte[] scriptPubKey, long network);
+
+        static native String wally_addr_segwit_from_bytes(byte[] bytes, String addrFamily);
+
+        static native int wally_wif_to_bytes(byte[] wif, long prefix, long flags, byte[] output);
+
+        static native String wally_wif_from_bytes(byte[] privKey, long prefix, long flags);
+
+        static native void jni_stats(long[] stats);
+    }
 }
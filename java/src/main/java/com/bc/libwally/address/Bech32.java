@@ -0,0 +1,105 @@
+package com.bc.libwally.address;
+
+import com.bc.libwally.Network;
+
+// Java implementation of the BIP173/BIP350 segwit address encoding, for callers producing many
+// addresses where a JNI call per address would dominate.
+public final class Bech32 {
+
+    private static final char[] CHARSET = "qpzry9x8gf2tvdw0s3jn54khce6mua7l".toCharArray();
+
+    private static final int[] GENERATOR = new int[]{0x3b6a57b2,
+                                                     0x26508e6d,
+                                                     0x1ea119fa,
+                                                     0x3d4233dd,
+                                                     0x2a1462b3};
+
+    private static final int BECH32_CONST = 1;
+
+    private static final int BECH32M_CONST = 0x2bc830a3;
+
+    private Bech32() {
+    }
+
+    public static String encodeSegwitAddress(Network network, byte[] witnessProgram) {
+        return encodeSegwitAddress(network, witnessProgram, 0, witnessProgram.length);
+    }
+
+    // `witnessProgram` is a full `<version> <push> <program>` script as returned by
+    // `ScriptPubKey.getWitnessProgram()`, read from `len` bytes at `offset`
+    public static String encodeSegwitAddress(Network network,
+                                             byte[] witnessProgram,
+                                             int offset,
+                                             int len) {
+        if (len < 4 || len > 42 || witnessProgram[offset + 1] != len - 2)
+            throw new AddressException("Invalid witness program");
+
+        int opcode = witnessProgram[offset] & 0xff;
+        int version;
+        if (opcode == 0)
+            version = 0;
+        else if (opcode >= 0x51 && opcode <= 0x60)
+            version = opcode - 0x50;
+        else
+            throw new AddressException("Invalid witness version");
+
+        String hrp = network == Network.MAINNET ? "bc" : "tb";
+        int programLen = len - 2;
+        int dataLen = 1 + (programLen * 8 + 4) / 5;
+        char[] out = new char[hrp.length() + 1 + dataLen + 6];
+
+        int checksum = 1;
+        for (int i = 0; i < hrp.length(); i++) {
+            checksum = polymodStep(checksum, hrp.charAt(i) >> 5);
+        }
+        checksum = polymodStep(checksum, 0);
+        int pos = 0;
+        for (int i = 0; i < hrp.length(); i++) {
+            char c = hrp.charAt(i);
+            checksum = polymodStep(checksum, c & 31);
+            out[pos++] = c;
+        }
+        out[pos++] = '1';
+
+        checksum = polymodStep(checksum, version);
+        out[pos++] = CHARSET[version];
+
+        // regroup the program from 8 to 5 bits per value
+        int acc = 0;
+        int bits = 0;
+        for (int i = offset + 2; i < offset + len; i++) {
+            acc = (acc << 8) | (witnessProgram[i] & 0xff);
+            bits += 8;
+            while (bits >= 5) {
+                bits -= 5;
+                int value = (acc >> bits) & 31;
+                checksum = polymodStep(checksum, value);
+                out[pos++] = CHARSET[value];
+            }
+        }
+        if (bits > 0) {
+            int value = (acc << (5 - bits)) & 31;
+            checksum = polymodStep(checksum, value);
+            out[pos++] = CHARSET[value];
+        }
+
+        for (int i = 0; i < 6; i++) {
+            checksum = polymodStep(checksum, 0);
+        }
+        checksum ^= version == 0 ? BECH32_CONST : BECH32M_CONST;
+        for (int i = 0; i < 6; i++) {
+            out[pos++] = CHARSET[(checksum >>> (5 * (5 - i))) & 31];
+        }
+        return new String(out);
+    }
+
+    private static int polymodStep(int checksum, int value) {
+        int top = checksum >>> 25;
+        checksum = ((checksum & 0x1ffffff) << 5) ^ value;
+        for (int i = 0; i < 5; i++) {
+            if (((top >>> i) & 1) != 0)
+                checksum ^= GENERATOR[i];
+        }
+        return checksum;
+    }
+}
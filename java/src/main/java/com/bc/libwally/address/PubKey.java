@@ -3,7 +3,6 @@ package com.bc.libwally.address;
 import com.bc.libwally.Network;
 
 import java.util.Arrays;
-import java.util.Objects;
 
 import static com.bc.libwally.core.Core.hex2Bytes;
 import static com.bc.libwally.crypto.CryptoConstants.EC_PUBLIC_KEY_LEN;
@@ -11,20 +10,49 @@ import static com.bc.libwally.crypto.CryptoConstants.EC_PUBLIC_KEY_UNCOMPRESSED_
 
 public class PubKey {
 
-    private final boolean compressed;
+    private final byte prefix;
 
-    private final byte[] data;
+    // x coordinate as big-endian words
+    private final long x0;
+
+    private final long x1;
+
+    private final long x2;
+
+    private final long x3;
+
+    // y coordinate as big-endian words, only present for uncompressed keys
+    private final long[] y;
 
     private final Network network;
 
-    public PubKey(byte[] data, Network network, boolean compressed) {
-        if (data.length != (compressed ? EC_PUBLIC_KEY_LEN : EC_PUBLIC_KEY_UNCOMPRESSED_LEN)) {
+    private final int hash;
+
+    public PubKey(byte[] data, int offset, Network network, boolean compressed) {
+        int len = compressed ? EC_PUBLIC_KEY_LEN : EC_PUBLIC_KEY_UNCOMPRESSED_LEN;
+        if (data == null || offset < 0 || data.length - offset < len) {
             throw new AddressException("Invalid data");
         }
 
-        this.data = data;
-        this.compressed = compressed;
+        this.prefix = data[offset];
+        this.x0 = readLong(data, offset + 1);
+        this.x1 = readLong(data, offset + 9);
+        this.x2 = readLong(data, offset + 17);
+        this.x3 = readLong(data, offset + 25);
+        if (compressed) {
+            this.y = null;
+        } else {
+            this.y = new long[]{readLong(data, offset + 33),
+                                readLong(data, offset + 41),
+                                readLong(data, offset + 49),
+                                readLong(data, offset + 57)};
+        }
         this.network = network;
+        this.hash = computeHash();
+    }
+
+    public PubKey(byte[] data, Network network, boolean compressed) {
+        this(checkLength(data, compressed), 0, network, compressed);
     }
 
     public PubKey(byte[] data, Network network) {
@@ -35,16 +63,73 @@ public class PubKey {
         this(hex2Bytes(hex), network);
     }
 
+    private static byte[] checkLength(byte[] data, boolean compressed) {
+        if (data == null ||
+            data.length != (compressed ? EC_PUBLIC_KEY_LEN : EC_PUBLIC_KEY_UNCOMPRESSED_LEN)) {
+            throw new AddressException("Invalid data");
+        }
+        return data;
+    }
+
+    private static long readLong(byte[] src, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (src[offset + i] & 0xffL);
+        }
+        return value;
+    }
+
+    private static void writeLong(long value, byte[] dst, int offset) {
+        for (int i = 7; i >= 0; i--) {
+            dst[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private int computeHash() {
+        int result = 31 * prefix + (network != null ? network.hashCode() : 0);
+        result = 31 * result + (int) (x0 ^ (x0 >>> 32));
+        result = 31 * result + (int) (x1 ^ (x1 >>> 32));
+        result = 31 * result + (int) (x2 ^ (x2 >>> 32));
+        result = 31 * result + (int) (x3 ^ (x3 >>> 32));
+        result = 31 * result + Arrays.hashCode(y);
+        return result;
+    }
+
     public Network getNetwork() {
         return network;
     }
 
+    public int getLength() {
+        return y == null ? EC_PUBLIC_KEY_LEN : EC_PUBLIC_KEY_UNCOMPRESSED_LEN;
+    }
+
+    /**
+     * Writes the serialized key into {@code dst} at {@code offset} and returns the number of
+     * bytes written.
+     */
+    public int writeTo(byte[] dst, int offset) {
+        dst[offset] = prefix;
+        writeLong(x0, dst, offset + 1);
+        writeLong(x1, dst, offset + 9);
+        writeLong(x2, dst, offset + 17);
+        writeLong(x3, dst, offset + 25);
+        if (y != null) {
+            for (int i = 0; i < y.length; i++) {
+                writeLong(y[i], dst, offset + 33 + i * 8);
+            }
+        }
+        return getLength();
+    }
+
     public byte[] getData() {
+        byte[] data = new byte[getLength()];
+        writeTo(data, 0);
         return data;
     }
 
     public boolean isCompressed() {
-        return compressed;
+        return y == null;
     }
 
     @Override
@@ -54,15 +139,18 @@ public class PubKey {
         if (o == null || getClass() != o.getClass())
             return false;
         PubKey pubKey = (PubKey) o;
-        return compressed == pubKey.compressed &&
-               Arrays.equals(data, pubKey.data) &&
+        return hash == pubKey.hash &&
+               prefix == pubKey.prefix &&
+               x0 == pubKey.x0 &&
+               x1 == pubKey.x1 &&
+               x2 == pubKey.x2 &&
+               x3 == pubKey.x3 &&
+               Arrays.equals(y, pubKey.y) &&
                network == pubKey.network;
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(compressed, network);
-        result = 31 * result + Arrays.hashCode(data);
-        return result;
+        return hash;
     }
 }
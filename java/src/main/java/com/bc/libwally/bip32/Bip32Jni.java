@@ -1,20 +1,95 @@
 package com.bc.libwally.bip32;
 
+import com.bc.libwally.JniTracer;
+import com.bc.libwally.NativeLoader;
+
 class Bip32Jni {
-    static {
-        System.loadLibrary("bc-libwally-bip32-jni");
+
+    private static final JniTracer.Source SOURCE = new JniTracer.Source("Bip32Jni") {
+        @Override
+        protected void readStats(long[] stats) {
+            Native.jni_stats(stats);
+        }
+    };
+
+    static WallyHDKey bip32_key_from_base58_alloc(String base58) {
+        long start = SOURCE.enter();
+        try {
+            return Native.bip32_key_from_base58_alloc(base58);
+        } finally {
+            SOURCE.exit("bip32_key_from_base58_alloc", start);
+        }
     }
 
-    static native WallyHDKey bip32_key_from_base58_alloc(String base58);
+    static WallyHDKey bip32_key_from_seed_alloc(byte[] seed, long version, long flags) {
+        long start = SOURCE.enter();
+        try {
+            return Native.bip32_key_from_seed_alloc(seed, version, flags);
+        } finally {
+            SOURCE.exit("bip32_key_from_seed_alloc", start);
+        }
+    }
 
-    static native WallyHDKey bip32_key_from_seed_alloc(byte[] seed, long version, long flags);
+    static String bip32_key_to_base58(WallyHDKey key, long flags) {
+        long start = SOURCE.enter();
+        try {
+            return Native.bip32_key_to_base58(key, flags);
+        } finally {
+            SOURCE.exit("bip32_key_to_base58", start);
+        }
+    }
 
-    static native String bip32_key_to_base58(WallyHDKey key, long flags);
+    static byte[] bip32_key_get_fingerprint(WallyHDKey key) {
+        long start = SOURCE.enter();
+        try {
+            return Native.bip32_key_get_fingerprint(key);
+        } finally {
+            SOURCE.exit("bip32_key_get_fingerprint", start);
+        }
+    }
+
+    static WallyHDKey bip32_key_from_parent_path_alloc(WallyHDKey key,
+                                                       long[] childPath,
+                                                       long flags) {
+        long start = SOURCE.enter();
+        try {
+            return Native.bip32_key_from_parent_path_alloc(key, childPath, flags);
+        } finally {
+            SOURCE.exit("bip32_key_from_parent_path_alloc", start);
+        }
+    }
 
-    static native byte[] bip32_key_get_fingerprint(WallyHDKey key);
+    static byte[] bip32_key_get_child_pub_keys(WallyHDKey key, long startIndex, int count) {
+        long start = SOURCE.enter();
+        try {
+            return Native.bip32_key_get_child_pub_keys(key, startIndex, count);
+        } finally {
+            SOURCE.exit("bip32_key_get_child_pub_keys", start);
+        }
+    }
 
-    static native WallyHDKey bip32_key_from_parent_path_alloc(WallyHDKey key,
-                                                              long[] childPath,
-                                                              long flags);
+    private static final class Native {
 
+        static {
+            NativeLoader.load();
+        }
+
+        static native WallyHDKey bip32_key_from_base58_alloc(String base58);
+
+        static native WallyHDKey bip32_key_from_seed_alloc(byte[] seed, long version, long flags);
+
+        static native String bip32_key_to_base58(WallyHDKey key, long flags);
+
+        static native byte[] bip32_key_get_fingerprint(WallyHDKey key);
+
+        static native WallyHDKey bip32_key_from_parent_path_alloc(WallyHDKey key,
+                                                                  long[] childPath,
+                                                                  long flags);
+
+        static native byte[] bip32_key_get_child_pub_keys(WallyHDKey key,
+                                                          long startIndex,
+                                                          int count);
+
+        static native void jni_stats(long[] stats);
+    }
 }
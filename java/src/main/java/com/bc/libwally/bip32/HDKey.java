@@ -18,6 +18,7 @@ import static com.bc.libwally.bip32.Bip32Error.HARDENED_DERIVATION_WITHOUT_PRIV_
 import static com.bc.libwally.bip32.Bip32Jni.bip32_key_from_base58_alloc;
 import static com.bc.libwally.bip32.Bip32Jni.bip32_key_from_parent_path_alloc;
 import static com.bc.libwally.bip32.Bip32Jni.bip32_key_from_seed_alloc;
+import static com.bc.libwally.bip32.Bip32Jni.bip32_key_get_child_pub_keys;
 import static com.bc.libwally.bip32.Bip32Jni.bip32_key_get_fingerprint;
 import static com.bc.libwally.bip32.Bip32Jni.bip32_key_to_base58;
 
@@ -93,7 +94,7 @@ public class HDKey {
     }
 
     public PubKey getPubKey() {
-        return new PubKey(rawKey.getPubKey(), getNetwork(), true);
+        return new PubKey(rawKey.getData(), WallyHDKey.PUB_KEY_OFFSET, getNetwork(), true);
     }
 
     public Key getPrivKey() {
@@ -131,6 +132,12 @@ public class HDKey {
         return new HDKey(key, this.masterFingerprint);
     }
 
+    // Public keys of the `count` unhardened children starting at `startIndex`, packed as
+    // `EC_PUBLIC_KEY_LEN` byte compressed keys and derived in a single JNI call.
+    public byte[] getChildPubKeys(long startIndex, int count) {
+        return bip32_key_get_child_pub_keys(rawKey, startIndex, count);
+    }
+
     public byte[] getMasterFingerprint() {
         return masterFingerprint;
     }
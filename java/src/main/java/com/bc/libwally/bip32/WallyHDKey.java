@@ -1,86 +1,91 @@
 package com.bc.libwally.bip32;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static com.bc.libwally.ArrayUtils.slice;
+
+// Mirrors the memory layout of native `struct ext_key` in a single buffer so that it can be
+// marshalled with one array copy. The pad fields keep the C struct free of implicit padding.
 public class WallyHDKey {
 
-    private final byte[] chainCode;
+    static final int CHAIN_CODE_OFFSET = 0;
+
+    static final int PARENT160_OFFSET = 32;
+
+    static final int DEPTH_OFFSET = 52;
 
-    private final byte[] parent160;
+    static final int PAD1_OFFSET = 53;
 
-    private final short depth;
+    static final int PRIV_KEY_OFFSET = 63;
 
-    private final byte[] pad1;
+    static final int CHILD_NUM_OFFSET = 96;
 
-    private final byte[] privKey;
+    static final int HASH160_OFFSET = 100;
 
-    private final long childNum;
+    static final int VERSION_OFFSET = 120;
 
-    private final byte[] hash160;
+    static final int PAD2_OFFSET = 124;
 
-    private final long version;
+    static final int PUB_KEY_OFFSET = 127;
 
-    private final byte[] pad2;
+    static final int EXT_KEY_LEN = 160;
 
-    private final byte[] pubKey;
+    private final byte[] data;
+
+    WallyHDKey(byte[] data) {
+        if (data == null || data.length != EXT_KEY_LEN)
+            throw new Bip32Exception("Invalid ext_key data");
+        this.data = data;
+    }
+
+    // native `uint32_t` fields are laid out in the platform byte order
+    private long getUInt32(int offset) {
+        return ByteBuffer.wrap(data, offset, 4).order(ByteOrder.nativeOrder()).getInt() &
+               4294967295L;
+    }
 
-    WallyHDKey(byte[] chainCode,
-               byte[] parent160,
-               short depth,
-               byte[] pad1,
-               byte[] privKey,
-               long childNum,
-               byte[] hash160,
-               long version,
-               byte[] pad2,
-               byte[] pubKey) {
-        this.chainCode = chainCode;
-        this.parent160 = parent160;
-        this.depth = depth;
-        this.pad1 = pad1;
-        this.privKey = privKey;
-        this.childNum = childNum;
-        this.hash160 = hash160;
-        this.version = version;
-        this.pad2 = pad2;
-        this.pubKey = pubKey;
+    byte[] getData() {
+        return data;
     }
 
     public byte[] getChainCode() {
-        return chainCode;
+        return slice(data, CHAIN_CODE_OFFSET, PARENT160_OFFSET);
     }
 
     public byte[] getParent160() {
-        return parent160;
+        return slice(data, PARENT160_OFFSET, DEPTH_OFFSET);
     }
 
     public short getDepth() {
-        return depth;
+        return (short) (data[DEPTH_OFFSET] & 0xff);
     }
 
     public byte[] getPad1() {
-        return pad1;
+        return slice(data, PAD1_OFFSET, PRIV_KEY_OFFSET);
     }
 
     public byte[] getPrivKey() {
-        return privKey;
+        return slice(data, PRIV_KEY_OFFSET, CHILD_NUM_OFFSET);
     }
 
     public long getChildNum() {
-        return childNum;
+        return getUInt32(CHILD_NUM_OFFSET);
     }
 
     public byte[] getHash160() {
-        return hash160;
+        return slice(data, HASH160_OFFSET, VERSION_OFFSET);
     }
 
     public long getVersion() {
-        return version;
+        return getUInt32(VERSION_OFFSET);
     }
 
     public byte[] getPad2() {
-        return pad2;
+        return slice(data, PAD2_OFFSET, PUB_KEY_OFFSET);
     }
 
     public byte[] getPubKey() {
-        return pubKey;
+        return slice(data, PUB_KEY_OFFSET, EXT_KEY_LEN);
     }
 }
@@ -1,29 +1,102 @@
 package com.bc.libwally.bip39;
 
+import com.bc.libwally.JniTracer;
+import com.bc.libwally.NativeLoader;
 import com.bc.libwally.NativeWrapper;
 
 class Bip39Jni {
 
-    static {
-        System.loadLibrary("bc-libwally-bip39-jni");
+    private static final JniTracer.Source SOURCE = new JniTracer.Source("Bip39Jni") {
+        @Override
+        protected void readStats(long[] stats) {
+            Native.jni_stats(stats);
+        }
+    };
+
+    static NativeWrapper.JniObject bip39_get_wordlist(String lang) {
+        long start = SOURCE.enter();
+        try {
+            return Native.bip39_get_wordlist(lang);
+        } finally {
+            SOURCE.exit("bip39_get_wordlist", start);
+        }
+    }
+
+    static String bip39_get_word(NativeWrapper.JniObject words, int index) {
+        long start = SOURCE.enter();
+        try {
+            return Native.bip39_get_word(words, index);
+        } finally {
+            SOURCE.exit("bip39_get_word", start);
+        }
+    }
+
+    static String bip39_mnemonic_from_bytes(NativeWrapper.JniObject words, byte[] bytes) {
+        long start = SOURCE.enter();
+        try {
+            return Native.bip39_mnemonic_from_bytes(words, bytes);
+        } finally {
+            SOURCE.exit("bip39_mnemonic_from_bytes", start);
+        }
+    }
+
+    static int bip39_mnemonic_to_bytes(NativeWrapper.JniObject words,
+                                       String mnemonic,
+                                       byte[] output,
+                                       int[] written) {
+        long start = SOURCE.enter();
+        try {
+            return Native.bip39_mnemonic_to_bytes(words, mnemonic, output, written);
+        } finally {
+            SOURCE.exit("bip39_mnemonic_to_bytes", start);
+        }
     }
 
-    static native NativeWrapper.JniObject bip39_get_wordlist(String lang);
+    static int bip39_mnemonic_to_seed(String mnemonic,
+                                      String passphrase,
+                                      byte[] output,
+                                      int[] written) {
+        long start = SOURCE.enter();
+        try {
+            return Native.bip39_mnemonic_to_seed(mnemonic, passphrase, output, written);
+        } finally {
+            SOURCE.exit("bip39_mnemonic_to_seed", start);
+        }
+    }
+
+    static int bip39_mnemonic_validate(NativeWrapper.JniObject words, String mnemonic) {
+        long start = SOURCE.enter();
+        try {
+            return Native.bip39_mnemonic_validate(words, mnemonic);
+        } finally {
+            SOURCE.exit("bip39_mnemonic_validate", start);
+        }
+    }
+
+    private static final class Native {
 
-    static native String bip39_get_word(NativeWrapper.JniObject words, int index);
+        static {
+            NativeLoader.load();
+        }
 
-    static native String bip39_mnemonic_from_bytes(NativeWrapper.JniObject words, byte[] bytes);
+        static native NativeWrapper.JniObject bip39_get_wordlist(String lang);
 
-    static native int bip39_mnemonic_to_bytes(NativeWrapper.JniObject words,
-                                              String mnemonic,
-                                              byte[] output,
-                                              int[] written);
+        static native String bip39_get_word(NativeWrapper.JniObject words, int index);
 
-    static native int bip39_mnemonic_to_seed(String mnemonic,
-                                             String passphrase,
-                                             byte[] output,
-                                             int[] written);
+        static native String bip39_mnemonic_from_bytes(NativeWrapper.JniObject words, byte[] bytes);
 
-    static native int bip39_mnemonic_validate(NativeWrapper.JniObject words, String mnemonic);
+        static native int bip39_mnemonic_to_bytes(NativeWrapper.JniObject words,
+                                                  String mnemonic,
+                                                  byte[] output,
+                                                  int[] written);
 
+        static native int bip39_mnemonic_to_seed(String mnemonic,
+                                                 String passphrase,
+                                                 byte[] output,
+                                                 int[] written);
+
+        static native int bip39_mnemonic_validate(NativeWrapper.JniObject words, String mnemonic);
+
+        static native void jni_stats(long[] stats);
+    }
 }
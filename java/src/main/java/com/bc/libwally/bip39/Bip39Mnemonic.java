@@ -1,7 +1,6 @@
 package com.bc.libwally.bip39;
 
 import com.bc.libwally.ArrayUtils;
-import com.bc.libwally.NativeWrapper;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -10,9 +9,6 @@ import java.util.List;
 import static com.bc.libwally.ArrayUtils.joinToString;
 import static com.bc.libwally.WallyConstant.WALLY_OK;
 import static com.bc.libwally.bip39.Bip39Constant.BIP39_SEED_LEN_512;
-import static com.bc.libwally.bip39.Bip39Constant.BIP39_WORDLIST_LEN;
-import static com.bc.libwally.bip39.Bip39Jni.bip39_get_word;
-import static com.bc.libwally.bip39.Bip39Jni.bip39_get_wordlist;
 import static com.bc.libwally.bip39.Bip39Jni.bip39_mnemonic_from_bytes;
 import static com.bc.libwally.bip39.Bip39Jni.bip39_mnemonic_to_bytes;
 import static com.bc.libwally.bip39.Bip39Jni.bip39_mnemonic_to_seed;
@@ -45,14 +41,9 @@ public class Bip39Mnemonic {
     }
 
     public static String[] getBip39Words() {
-        String[] words = new String[BIP39_WORDLIST_LEN];
-        NativeWrapper.JniObject ptrObj = null;
-        ptrObj = bip39_get_wordlist(null);
-        for (int i = 0; i < BIP39_WORDLIST_LEN; i++) {
-            String word = bip39_get_word(ptrObj, i);
-            words[i] = word;
+        try (Bip39WordList wordList = new Bip39WordList(null)) {
+            return wordList.getWords();
         }
-        return words;
     }
 
     public static boolean isValid(String[] words) {
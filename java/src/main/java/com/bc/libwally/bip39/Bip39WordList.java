@@ -0,0 +1,29 @@
+package com.bc.libwally.bip39;
+
+import com.bc.libwally.NativeWrapper;
+
+import static com.bc.libwally.bip39.Bip39Constant.BIP39_WORDLIST_LEN;
+import static com.bc.libwally.bip39.Bip39Jni.bip39_get_word;
+import static com.bc.libwally.bip39.Bip39Jni.bip39_get_wordlist;
+
+// Word lists are static in libwally, so the handle owns nothing and needs no releaser.
+class Bip39WordList extends NativeWrapper {
+
+    Bip39WordList(String lang) {
+        super(bip39_get_wordlist(lang));
+    }
+
+    String getWord(int index) {
+        if (isClosed())
+            throw new Bip39Exception("Word list is closed");
+        return bip39_get_word(ptrObj, index);
+    }
+
+    String[] getWords() {
+        String[] words = new String[BIP39_WORDLIST_LEN];
+        for (int i = 0; i < BIP39_WORDLIST_LEN; i++) {
+            words[i] = getWord(i);
+        }
+        return words;
+    }
+}
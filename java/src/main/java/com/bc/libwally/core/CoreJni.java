@@ -1,23 +1,92 @@
 package com.bc.libwally.core;
 
+import com.bc.libwally.JniTracer;
+import com.bc.libwally.NativeLoader;
+
 class CoreJni {
 
-    static {
-        System.loadLibrary("bc-libwally-core-jni");
+    private static final JniTracer.Source SOURCE = new JniTracer.Source("CoreJni") {
+        @Override
+        protected void readStats(long[] stats) {
+            Native.jni_stats(stats);
+        }
+    };
+
+    static String wally_hex_from_bytes(byte[] bytes) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_hex_from_bytes(bytes);
+        } finally {
+            SOURCE.exit("wally_hex_from_bytes", start);
+        }
+    }
+
+    static int wally_hex_to_bytes(String hex, byte[] output, int[] written) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_hex_to_bytes(hex, output, written);
+        } finally {
+            SOURCE.exit("wally_hex_to_bytes", start);
+        }
+    }
+
+    static String wally_base58_from_bytes(byte[] bytes, long flags) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_base58_from_bytes(bytes, flags);
+        } finally {
+            SOURCE.exit("wally_base58_from_bytes", start);
+        }
+    }
+
+    static int wally_base58_to_bytes(String base58, long flags, byte[] output, int[] written) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_base58_to_bytes(base58, flags, output, written);
+        } finally {
+            SOURCE.exit("wally_base58_to_bytes", start);
+        }
     }
 
-    static native String wally_hex_from_bytes(byte[] bytes);
+    static String wally_base64_from_bytes(byte[] bytes) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_base64_from_bytes(bytes);
+        } finally {
+            SOURCE.exit("wally_base64_from_bytes", start);
+        }
+    }
+
+    static byte[] wally_base64_to_bytes(String base64) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_base64_to_bytes(base64);
+        } finally {
+            SOURCE.exit("wally_base64_to_bytes", start);
+        }
+    }
+
+    private static final class Native {
 
-    static native int wally_hex_to_bytes(String hex, byte[] output, int[] written);
+        static {
+            NativeLoader.load();
+        }
 
-    static native String wally_base58_from_bytes(byte[] bytes, long flags);
+        static native String wally_hex_from_bytes(byte[] bytes);
 
-    static native int wally_base58_to_bytes(String base58,
-                                            long flags,
-                                            byte[] output,
-                                            int[] written);
+        static native int wally_hex_to_bytes(String hex, byte[] output, int[] written);
 
-    static native String wally_base64_from_bytes(byte[] bytes);
+        static native String wally_base58_from_bytes(byte[] bytes, long flags);
 
-    static native byte[] wally_base64_to_bytes(String base64);
+        static native int wally_base58_to_bytes(String base58,
+                                                long flags,
+                                                byte[] output,
+                                                int[] written);
+
+        static native String wally_base64_from_bytes(byte[] bytes);
+
+        static native byte[] wally_base64_to_bytes(String base64);
+
+        static native void jni_stats(long[] stats);
+    }
 }
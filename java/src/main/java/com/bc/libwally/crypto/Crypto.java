@@ -16,16 +16,33 @@ import static com.bc.libwally.crypto.CryptoJni.wally_ec_sig_from_bytes;
 import static com.bc.libwally.crypto.CryptoJni.wally_ec_sig_normalize;
 import static com.bc.libwally.crypto.CryptoJni.wally_ec_sig_to_der;
 import static com.bc.libwally.crypto.CryptoJni.wally_ec_sig_verify;
+import static com.bc.libwally.crypto.CryptoJni.wally_ec_sig_verify_batch;
 import static com.bc.libwally.crypto.CryptoJni.wally_hash160;
+import static com.bc.libwally.crypto.CryptoJni.wally_hash160_batch;
 
 public class Crypto {
 
+    // scratch for DER encoding, whose length is only known after the native call
+    private static final ThreadLocal<byte[]> DER_SCRATCH = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[EC_SIGNATURE_DER_MAX_LEN];
+        }
+    };
+
     public static byte[] ecPubKeyFromPrvKey(byte[] prvKey) {
         byte[] output = new byte[EC_PUBLIC_KEY_LEN];
-        if (wally_ec_public_key_from_private_key(prvKey, output) != WALLY_OK) {
+        ecPubKeyFromPrvKey(prvKey, output, 0);
+        return output;
+    }
+
+    // The `output, offset` variants below write into a caller owned array and return the number
+    // of bytes written, so hot loops can reuse their buffers.
+    public static int ecPubKeyFromPrvKey(byte[] prvKey, byte[] output, int offset) {
+        if (wally_ec_public_key_from_private_key(prvKey, output, offset) != WALLY_OK) {
             throw new CryptoException("wally_ec_public_key_from_private_key error");
         }
-        return output;
+        return EC_PUBLIC_KEY_LEN;
     }
 
     public static byte[] ecPubKeyDecompress(byte[] pubKey) {
@@ -38,9 +55,26 @@ public class Crypto {
 
     public static byte[] hash160(byte[] bytes) {
         byte[] output = new byte[HASH160_LEN];
-        if (wally_hash160(bytes, output) != WALLY_OK) {
+        hash160(bytes, output, 0);
+        return output;
+    }
+
+    public static int hash160(byte[] bytes, byte[] output, int offset) {
+        if (wally_hash160(bytes, output, offset) != WALLY_OK) {
             throw new CryptoException("wally_hash160 error");
         }
+        return HASH160_LEN;
+    }
+
+    // hashes `itemLen` byte items packed back to back, returning the packed hashes
+    public static byte[] hash160Batch(byte[] items, int itemLen) {
+        if (itemLen <= 0 || items.length % itemLen != 0)
+            throw new CryptoException("Invalid itemLen");
+
+        byte[] output = new byte[items.length / itemLen * HASH160_LEN];
+        if (wally_hash160_batch(items, itemLen, output) != WALLY_OK) {
+            throw new CryptoException("wally_hash160_batch error");
+        }
         return output;
     }
 
@@ -53,34 +87,55 @@ public class Crypto {
                         ? EC_SIGNATURE_RECOVERABLE_LEN
                         : EC_SIGNATURE_LEN;
         byte[] output = new byte[outputLen];
-        if (wally_ec_sig_from_bytes(privKey, message, flags, output) != WALLY_OK) {
+        ecSigFromBytes(privKey, message, flags, output, 0);
+        return output;
+    }
+
+    public static int ecSigFromBytes(byte[] privKey,
+                                     byte[] message,
+                                     long flags,
+                                     byte[] output,
+                                     int offset) {
+        if (wally_ec_sig_from_bytes(privKey, message, flags, output, offset) != WALLY_OK) {
             throw new CryptoException("wally_ec_sig_from_bytes error");
         }
-
-        return output;
+        return flags == EC_FLAG_RECOVERABLE ? EC_SIGNATURE_RECOVERABLE_LEN : EC_SIGNATURE_LEN;
     }
 
     public static boolean ecSigVerify(byte[] pubKey, byte[] message, long flags, byte[] sig) {
         return wally_ec_sig_verify(pubKey, message, flags, sig) == WALLY_OK;
     }
 
+    // verifies packed compact signatures over packed 32 byte messages in one call, returning the
+    // index of the first signature that fails or -1 if all of them verify
+    public static int ecSigVerifyBatch(byte[] pubKeys, byte[] messages, long flags, byte[] sigs) {
+        return wally_ec_sig_verify_batch(pubKeys, messages, flags, sigs);
+    }
+
     public static byte[] ecSigNormalize(byte[] sig) {
         byte[] output = new byte[EC_SIGNATURE_LEN];
-        if (wally_ec_sig_normalize(sig, output) != WALLY_OK) {
+        ecSigNormalize(sig, output, 0);
+        return output;
+    }
+
+    public static int ecSigNormalize(byte[] sig, byte[] output, int offset) {
+        if (wally_ec_sig_normalize(sig, output, offset) != WALLY_OK) {
             throw new CryptoException("wally_ec_sig_normalize error");
         }
-
-        return output;
+        return EC_SIGNATURE_LEN;
     }
 
     public static byte[] ecSig2Der(byte[] sig) {
-        int[] written = new int[1];
-        byte[] output = new byte[EC_SIGNATURE_DER_MAX_LEN];
-        if (wally_ec_sig_to_der(sig, output, written) != WALLY_OK) {
+        byte[] scratch = DER_SCRATCH.get();
+        return slice(scratch, 0, ecSig2Der(sig, scratch, 0));
+    }
+
+    // the encoding is at most EC_SIGNATURE_DER_MAX_LEN bytes long
+    public static int ecSig2Der(byte[] sig, byte[] output, int offset) {
+        int written = wally_ec_sig_to_der(sig, output, offset);
+        if (written < 0) {
             throw new CryptoException("wally_ec_sig_to_der error");
         }
-        return slice(output, 0, written[0]);
+        return written;
     }
-
-
 }
@@ -28,6 +28,8 @@ public class CryptoConstants {
 
     public static final int EC_FLAGS_ALL = (0x1 | 0x2 | 0x4 | 0x8);
 
+    public static final int WALLY_SECP_RANDOMIZE_LEN = 32;
+
     public static final int BITCOIN_MESSAGE_MAX_LEN = 64 * 1024 - 64;
 
     public static final int BITCOIN_MESSAGE_FLAG_HASH = 1;
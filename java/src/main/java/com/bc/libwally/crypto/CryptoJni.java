@@ -1,27 +1,168 @@
 package com.bc.libwally.crypto;
 
+import com.bc.libwally.JniTracer;
+import com.bc.libwally.NativeLoader;
+
 class CryptoJni {
 
-    static {
-        System.loadLibrary("bc-libwally-crypto-jni");
+    private static final JniTracer.Source SOURCE = new JniTracer.Source("CryptoJni") {
+        @Override
+        protected void readStats(long[] stats) {
+            Native.jni_stats(stats);
+        }
+    };
+
+    static int wally_ec_public_key_from_private_key(byte[] privKey, byte[] output, int offset) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_ec_public_key_from_private_key(privKey, output, offset);
+        } finally {
+            SOURCE.exit("wally_ec_public_key_from_private_key", start);
+        }
+    }
+
+    static int wally_ec_public_key_decompress(byte[] pubKey, byte[] output) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_ec_public_key_decompress(pubKey, output);
+        } finally {
+            SOURCE.exit("wally_ec_public_key_decompress", start);
+        }
+    }
+
+    static int wally_hash160(byte[] bytes, byte[] output, int offset) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_hash160(bytes, output, offset);
+        } finally {
+            SOURCE.exit("wally_hash160", start);
+        }
+    }
+
+    static int wally_hash160_batch(byte[] bytes, int itemLen, byte[] output) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_hash160_batch(bytes, itemLen, output);
+        } finally {
+            SOURCE.exit("wally_hash160_batch", start);
+        }
+    }
+
+    static int wally_ec_private_key_verify(byte[] privKey) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_ec_private_key_verify(privKey);
+        } finally {
+            SOURCE.exit("wally_ec_private_key_verify", start);
+        }
+    }
+
+    static int wally_ec_sig_from_bytes(byte[] privKey,
+                                       byte[] message,
+                                       long flags,
+                                       byte[] output,
+                                       int offset) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_ec_sig_from_bytes(privKey, message, flags, output, offset);
+        } finally {
+            SOURCE.exit("wally_ec_sig_from_bytes", start);
+        }
+    }
+
+    static int wally_ec_sig_verify(byte[] pubKey, byte[] message, long flags, byte[] sig) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_ec_sig_verify(pubKey, message, flags, sig);
+        } finally {
+            SOURCE.exit("wally_ec_sig_verify", start);
+        }
+    }
+
+    static int wally_ec_sig_verify_batch(byte[] pubKeys, byte[] messages, long flags, byte[] sigs) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_ec_sig_verify_batch(pubKeys, messages, flags, sigs);
+        } finally {
+            SOURCE.exit("wally_ec_sig_verify_batch", start);
+        }
     }
 
-    static native int wally_ec_public_key_from_private_key(byte[] privKey, byte[] output);
+    static int wally_ec_sig_normalize(byte[] sig, byte[] output, int offset) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_ec_sig_normalize(sig, output, offset);
+        } finally {
+            SOURCE.exit("wally_ec_sig_normalize", start);
+        }
+    }
+
+    static int wally_ec_sig_to_der(byte[] sig, byte[] output, int offset) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_ec_sig_to_der(sig, output, offset);
+        } finally {
+            SOURCE.exit("wally_ec_sig_to_der", start);
+        }
+    }
+
+    static int wally_secp_context_init() {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_secp_context_init();
+        } finally {
+            SOURCE.exit("wally_secp_context_init", start);
+        }
+    }
+
+    static int wally_secp_randomize(byte[] bytes) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_secp_randomize(bytes);
+        } finally {
+            SOURCE.exit("wally_secp_randomize", start);
+        }
+    }
+
+    private static final class Native {
 
-    static native int wally_ec_public_key_decompress(byte[] pubKey, byte[] output);
+        static {
+            NativeLoader.load();
+        }
 
-    static native int wally_hash160(byte[] bytes, byte[] output);
+        static native int wally_ec_public_key_from_private_key(byte[] privKey,
+                                                               byte[] output,
+                                                               int offset);
 
-    static native int wally_ec_private_key_verify(byte[] privKey);
+        static native int wally_ec_public_key_decompress(byte[] pubKey, byte[] output);
 
-    static native int wally_ec_sig_from_bytes(byte[] privKey,
-                                              byte[] message,
-                                              long flags,
-                                              byte[] output);
+        static native int wally_hash160(byte[] bytes, byte[] output, int offset);
 
-    static native int wally_ec_sig_verify(byte[] pubKey, byte[] message, long flags, byte[] sig);
+        static native int wally_hash160_batch(byte[] bytes, int itemLen, byte[] output);
 
-    static native int wally_ec_sig_normalize(byte[] sig, byte[] output);
+        static native int wally_ec_private_key_verify(byte[] privKey);
 
-    static native int wally_ec_sig_to_der(byte[] sig, byte[] output, int[] written);
+        static native int wally_ec_sig_from_bytes(byte[] privKey,
+                                                  byte[] message,
+                                                  long flags,
+                                                  byte[] output,
+                                                  int offset);
+
+        static native int wally_ec_sig_verify(byte[] pubKey, byte[] message, long flags, byte[] sig);
+
+        static native int wally_ec_sig_verify_batch(byte[] pubKeys,
+                                                    byte[] messages,
+                                                    long flags,
+                                                    byte[] sigs);
+
+        static native int wally_ec_sig_normalize(byte[] sig, byte[] output, int offset);
+
+        static native int wally_ec_sig_to_der(byte[] sig, byte[] output, int offset);
+
+        static native int wally_secp_context_init();
+
+        static native int wally_secp_randomize(byte[] bytes);
+
+        static native void jni_stats(long[] stats);
+    }
 }
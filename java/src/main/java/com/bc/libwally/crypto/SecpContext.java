@@ -0,0 +1,62 @@
+package com.bc.libwally.crypto;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import static com.bc.libwally.WallyConstant.WALLY_OK;
+import static com.bc.libwally.crypto.CryptoConstants.WALLY_SECP_RANDOMIZE_LEN;
+import static com.bc.libwally.crypto.CryptoJni.wally_secp_context_init;
+import static com.bc.libwally.crypto.CryptoJni.wally_secp_randomize;
+
+// libwally keeps one secp256k1 context for the whole process and creates it on the first EC
+// call, so that call pays for building the context. `warmUp` moves the cost to startup. Signing
+// and verification only read the shared context and do not contend on it across threads.
+// Randomizing is the one write and libwally does not lock around it: the caller of
+// `warmUp(SecureRandom)` must make sure no other thread is inside an EC call meanwhile, e.g. by
+// calling it at startup before any signing or key derivation threads run. The context is
+// randomized once, later calls report that they left it untouched.
+public final class SecpContext {
+
+    private static volatile boolean initialized;
+
+    private static volatile boolean randomized;
+
+    private SecpContext() {
+    }
+
+    public static synchronized void warmUp() {
+        if (initialized)
+            return;
+        if (wally_secp_context_init() != WALLY_OK) {
+            throw new CryptoException("wally_secp_context_init error");
+        }
+        initialized = true;
+    }
+
+    // warms up and blinds the context with fresh randomness, false if it already was blinded
+    public static synchronized boolean warmUp(SecureRandom random) {
+        if (randomized)
+            return false;
+        warmUp();
+
+        byte[] seed = new byte[WALLY_SECP_RANDOMIZE_LEN];
+        random.nextBytes(seed);
+        try {
+            if (wally_secp_randomize(seed) != WALLY_OK) {
+                throw new CryptoException("wally_secp_randomize error");
+            }
+        } finally {
+            Arrays.fill(seed, (byte) 0);
+        }
+        randomized = true;
+        return true;
+    }
+
+    public static boolean isInitialized() {
+        return initialized;
+    }
+
+    public static boolean isRandomized() {
+        return randomized;
+    }
+}
@@ -0,0 +1,399 @@
+package com.bc.libwally.descriptor;
+
+import com.bc.libwally.script.ScriptPubKey;
+import com.bc.libwally.script.WitnessMultisigBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.bc.libwally.crypto.Crypto.hash160Batch;
+import static com.bc.libwally.crypto.CryptoConstants.EC_PUBLIC_KEY_LEN;
+import static com.bc.libwally.crypto.CryptoConstants.HASH160_LEN;
+import static com.bc.libwally.script.ScriptConstant.OP_0;
+import static com.bc.libwally.script.ScriptConstant.OP_CHECKSIG;
+import static com.bc.libwally.script.ScriptConstant.OP_DUP;
+import static com.bc.libwally.script.ScriptConstant.OP_EQUAL;
+import static com.bc.libwally.script.ScriptConstant.OP_EQUALVERIFY;
+import static com.bc.libwally.script.ScriptConstant.OP_HASH160;
+import static com.bc.libwally.script.ScriptConstant.WALLY_SCRIPTPUBKEY_P2WPKH_LEN;
+import static com.bc.libwally.script.ScriptConstant.WALLY_SCRIPTPUBKEY_P2WSH_LEN;
+
+// Output descriptor of the form `pkh(KEY)`, `wpkh(KEY)`, `sh(wpkh(KEY))`, `wsh(multi(k,KEY,...))`
+// or `wsh(sortedmulti(k,KEY,...))`. Ranged descriptors are expanded with one JNI call per key to
+// derive the child keys and one to hash them, the scripts themselves are assembled in Java.
+// The most recently expanded scripts are cached per index, up to `CACHE_SIZE` of them.
+public final class Descriptor {
+
+    public enum Type {
+        PKH,
+        WPKH,
+        SH_WPKH,
+        WSH_MULTI,
+        WSH_SORTED_MULTI
+    }
+
+    private static final String INPUT_CHARSET = "0123456789()[],'/*abcdefgh@:$%{}" +
+                                                "IJKLMNOPQRSTUVWXYZ&+-.;<=>?!^_|~" +
+                                                "ijklmnopqrstuvwxyzABCDEFGH`#\"\\ ";
+
+    private static final String CHECKSUM_CHARSET = "qpzry9x8gf2tvdw0s3jn54khce6mua7l";
+
+    private static final long[] GENERATOR = new long[]{0xf5dee51989L,
+                                                       0xa9fdca3312L,
+                                                       0x1bab10e32dL,
+                                                       0x3706b1677aL,
+                                                       0x644d626ffdL};
+
+    private static final int CHECKSUM_LEN = 8;
+
+    private static final int CACHE_SIZE = 1024;
+
+    private final String descriptor;
+
+    private final Type type;
+
+    private final int threshold;
+
+    private final DescriptorKey[] keys;
+
+    // least recently used first, guarded by itself
+    private final Map<Long, ScriptPubKey> cache =
+            new LinkedHashMap<Long, ScriptPubKey>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, ScriptPubKey> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    private Descriptor(String descriptor, Type type, int threshold, DescriptorKey[] keys) {
+        this.descriptor = descriptor;
+        this.type = type;
+        this.threshold = threshold;
+        this.keys = keys;
+    }
+
+    // A trailing `#checksum` is verified if present.
+    public static Descriptor parse(String descriptor) {
+        String body = descriptor.trim();
+        int hash = body.indexOf('#');
+        if (hash >= 0) {
+            String checksum = body.substring(hash + 1);
+            body = body.substring(0, hash);
+            if (!checksum.equals(checksum(body)))
+                throw new DescriptorException("Invalid checksum");
+        }
+
+        String inner;
+        if ((inner = unwrap(body, "pkh")) != null)
+            return new Descriptor(body, Type.PKH, 1, parseKey(inner));
+        if ((inner = unwrap(body, "wpkh")) != null)
+            return new Descriptor(body, Type.WPKH, 1, parseKey(inner));
+
+        if ((inner = unwrap(body, "sh")) != null) {
+            String wpkh = unwrap(inner, "wpkh");
+            if (wpkh == null)
+                throw new DescriptorException("Unsupported descriptor: " + descriptor);
+            return new Descriptor(body, Type.SH_WPKH, 1, parseKey(wpkh));
+        }
+
+        if ((inner = unwrap(body, "wsh")) != null) {
+            Type type = Type.WSH_SORTED_MULTI;
+            String multi = unwrap(inner, "sortedmulti");
+            if (multi == null) {
+                type = Type.WSH_MULTI;
+                multi = unwrap(inner, "multi");
+            }
+            if (multi == null)
+                throw new DescriptorException("Unsupported descriptor: " + descriptor);
+
+            int comma = multi.indexOf(',');
+            if (comma < 0)
+                throw new DescriptorException("Invalid multi: " + descriptor);
+            int threshold;
+            try {
+                threshold = Integer.parseInt(multi.substring(0, comma));
+            } catch (NumberFormatException e) {
+                throw new DescriptorException("Invalid threshold: " + descriptor);
+            }
+            DescriptorKey[] keys = parseKeys(multi.substring(comma + 1));
+            if (keys.length > 16 || threshold < 1 || threshold > keys.length)
+                throw new DescriptorException("Invalid threshold: " + descriptor);
+            return new Descriptor(body, type, threshold, keys);
+        }
+
+        throw new DescriptorException("Unsupported descriptor: " + descriptor);
+    }
+
+    private static String unwrap(String expression, String function) {
+        if (!expression.startsWith(function + "(") || !expression.endsWith(")"))
+            return null;
+        return expression.substring(function.length() + 1, expression.length() - 1);
+    }
+
+    private static DescriptorKey[] parseKey(String expression) {
+        if (expression.indexOf(',') >= 0)
+            throw new DescriptorException("Expected a single key: " + expression);
+        return new DescriptorKey[]{DescriptorKey.parse(expression)};
+    }
+
+    private static DescriptorKey[] parseKeys(String expressions) {
+        String[] parts = expressions.split(",", -1);
+        DescriptorKey[] keys = new DescriptorKey[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            keys[i] = DescriptorKey.parse(parts[i]);
+        }
+        return keys;
+    }
+
+    // BIP380 descriptor checksum
+    static String checksum(String descriptor) {
+        long checksum = 1;
+        int groups = 0;
+        int groupCount = 0;
+        for (int i = 0; i < descriptor.length(); i++) {
+            int value = INPUT_CHARSET.indexOf(descriptor.charAt(i));
+            if (value < 0)
+                throw new DescriptorException("Invalid character in descriptor");
+            checksum = polymodStep(checksum, value & 31);
+            groups = groups * 3 + (value >> 5);
+            if (++groupCount == 3) {
+                checksum = polymodStep(checksum, groups);
+                groups = 0;
+                groupCount = 0;
+            }
+        }
+        if (groupCount > 0)
+            checksum = polymodStep(checksum, groups);
+        for (int i = 0; i < CHECKSUM_LEN; i++) {
+            checksum = polymodStep(checksum, 0);
+        }
+        checksum ^= 1;
+
+        char[] chars = new char[CHECKSUM_LEN];
+        for (int i = 0; i < CHECKSUM_LEN; i++) {
+            chars[i] = CHECKSUM_CHARSET.charAt((int) (checksum >>> (5 * (7 - i))) & 31);
+        }
+        return new String(chars);
+    }
+
+    private static long polymodStep(long checksum, int value) {
+        long top = checksum >>> 35;
+        checksum = ((checksum & 0x7ffffffffL) << 5) ^ value;
+        for (int i = 0; i < 5; i++) {
+            if (((top >>> i) & 1) != 0)
+                checksum ^= GENERATOR[i];
+        }
+        return checksum;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public boolean isRange() {
+        for (DescriptorKey key : keys) {
+            if (key.isRange())
+                return true;
+        }
+        return false;
+    }
+
+    public String getChecksum() {
+        return checksum(descriptor);
+    }
+
+    public ScriptPubKey getScriptPubKey(long index) {
+        return expand(index, 1)[0];
+    }
+
+    public ScriptPubKey[] expand(long startIndex, int count) {
+        return expand(startIndex, count, null, 0);
+    }
+
+    // With an executor the range is split into chunks of `chunkSize` indexes which are expanded
+    // concurrently. The index is ignored for descriptors without a range.
+    public ScriptPubKey[] expand(long startIndex,
+                                 int count,
+                                 ExecutorService executor,
+                                 int chunkSize) {
+        if (startIndex < 0 || count < 0)
+            throw new DescriptorException("Invalid range");
+
+        boolean range = isRange();
+        ScriptPubKey[] scripts = new ScriptPubKey[count];
+        boolean cached = count <= CACHE_SIZE;
+        synchronized (cache) {
+            for (int i = 0; i < count && cached; i++) {
+                scripts[i] = cache.get(range ? startIndex + i : 0);
+                cached = scripts[i] != null;
+            }
+        }
+        if (cached)
+            return scripts;
+
+        if (!range) {
+            Arrays.fill(scripts, derive(0, 1)[0]);
+        } else if (executor == null || chunkSize <= 0 || count <= chunkSize) {
+            scripts = derive(startIndex, count);
+        } else {
+            scripts = deriveConcurrently(startIndex, count, executor, chunkSize);
+        }
+
+        // only the tail of a larger range would survive in the cache
+        synchronized (cache) {
+            for (int i = Math.max(0, count - CACHE_SIZE); i < count; i++) {
+                cache.put(range ? startIndex + i : 0, scripts[i]);
+            }
+        }
+        return scripts;
+    }
+
+    public void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private ScriptPubKey[] deriveConcurrently(long startIndex,
+                                              int count,
+                                              ExecutorService executor,
+                                              int chunkSize) {
+        List<Future<ScriptPubKey[]>> chunks = new ArrayList<>();
+        for (int from = 0; from < count; from += chunkSize) {
+            final long chunkStart = startIndex + from;
+            final int chunkCount = Math.min(chunkSize, count - from);
+            chunks.add(executor.submit(new Callable<ScriptPubKey[]>() {
+                @Override
+                public ScriptPubKey[] call() {
+                    return derive(chunkStart, chunkCount);
+                }
+            }));
+        }
+
+        ScriptPubKey[] scripts = new ScriptPubKey[count];
+        int index = 0;
+        try {
+            for (Future<ScriptPubKey[]> chunk : chunks) {
+                ScriptPubKey[] chunkScripts = chunk.get();
+                System.arraycopy(chunkScripts, 0, scripts, index, chunkScripts.length);
+                index += chunkScripts.length;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DescriptorException("Interrupted while expanding");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new DescriptorException(String.valueOf(e.getCause()));
+        } finally {
+            for (Future<ScriptPubKey[]> chunk : chunks) {
+                chunk.cancel(false);
+            }
+        }
+        return scripts;
+    }
+
+    // bypasses the cache, for callers that walk a range once
+    ScriptPubKey[] derive(long startIndex, int count) {
+        byte[][] pubKeys = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            pubKeys[i] = keys[i].getPubKeys(startIndex, count);
+        }
+
+        switch (type) {
+            case PKH: {
+                byte[] hashes = hash160Batch(pubKeys[0], EC_PUBLIC_KEY_LEN);
+                ScriptPubKey[] scripts = new ScriptPubKey[count];
+                for (int i = 0; i < count; i++) {
+                    // OP_DUP OP_HASH160 <hash> OP_EQUALVERIFY OP_CHECKSIG
+                    byte[] script = new byte[25];
+                    script[0] = OP_DUP;
+                    script[1] = (byte) OP_HASH160;
+                    script[2] = HASH160_LEN;
+                    System.arraycopy(hashes, i * HASH160_LEN, script, 3, HASH160_LEN);
+                    script[23] = (byte) OP_EQUALVERIFY;
+                    script[24] = (byte) OP_CHECKSIG;
+                    scripts[i] = new ScriptPubKey(script);
+                }
+                return scripts;
+            }
+            case WPKH:
+            case SH_WPKH: {
+                byte[] hashes = hash160Batch(pubKeys[0], EC_PUBLIC_KEY_LEN);
+                byte[] programs = new byte[count * WALLY_SCRIPTPUBKEY_P2WPKH_LEN];
+                for (int i = 0; i < count; i++) {
+                    int offset = i * WALLY_SCRIPTPUBKEY_P2WPKH_LEN;
+                    programs[offset] = OP_0;
+                    programs[offset + 1] = HASH160_LEN;
+                    System.arraycopy(hashes, i * HASH160_LEN, programs, offset + 2, HASH160_LEN);
+                }
+                if (type == Type.WPKH)
+                    return split(programs, WALLY_SCRIPTPUBKEY_P2WPKH_LEN, count);
+
+                byte[] redeemHashes = hash160Batch(programs, WALLY_SCRIPTPUBKEY_P2WPKH_LEN);
+                ScriptPubKey[] scripts = new ScriptPubKey[count];
+                for (int i = 0; i < count; i++) {
+                    // OP_HASH160 <hash> OP_EQUAL
+                    byte[] script = new byte[23];
+                    script[0] = (byte) OP_HASH160;
+                    script[1] = HASH160_LEN;
+                    System.arraycopy(redeemHashes, i * HASH160_LEN, script, 2, HASH160_LEN);
+                    script[22] = (byte) OP_EQUAL;
+                    scripts[i] = new ScriptPubKey(script);
+                }
+                return scripts;
+            }
+            default:
+                return deriveMultisig(pubKeys, count);
+        }
+    }
+
+    private ScriptPubKey[] deriveMultisig(byte[][] pubKeys, int count) {
+        WitnessMultisigBuilder builder = new WitnessMultisigBuilder(keys.length,
+                                                                    threshold,
+                                                                    type == Type.WSH_SORTED_MULTI);
+        byte[] witnessScript = new byte[builder.getScriptLength()];
+        ScriptPubKey[] scripts = new ScriptPubKey[count];
+        for (int i = 0; i < count; i++) {
+            builder.writeScript(pubKeys, i * EC_PUBLIC_KEY_LEN, witnessScript, 0);
+            byte[] script = new byte[WALLY_SCRIPTPUBKEY_P2WSH_LEN];
+            builder.writeProgram(witnessScript, 0, script, 0);
+            scripts[i] = new ScriptPubKey(script);
+        }
+        return scripts;
+    }
+
+    private static ScriptPubKey[] split(byte[] packed, int len, int count) {
+        ScriptPubKey[] scripts = new ScriptPubKey[count];
+        for (int i = 0; i < count; i++) {
+            scripts[i] = new ScriptPubKey(Arrays.copyOfRange(packed, i * len, (i + 1) * len));
+        }
+        return scripts;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        return descriptor.equals(((Descriptor) o).descriptor);
+    }
+
+    @Override
+    public int hashCode() {
+        return descriptor.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return descriptor + "#" + getChecksum();
+    }
+}
@@ -0,0 +1,7 @@
+package com.bc.libwally.descriptor;
+
+public class DescriptorException extends IllegalStateException {
+    DescriptorException(String message) {
+        super(message);
+    }
+}
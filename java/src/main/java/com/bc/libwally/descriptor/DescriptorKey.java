@@ -0,0 +1,117 @@
+package com.bc.libwally.descriptor;
+
+import com.bc.libwally.bip32.Bip32Path;
+import com.bc.libwally.bip32.HDKey;
+
+import static com.bc.libwally.bip32.Bip32Constant.BIP32_INITIAL_HARDENED_CHILD;
+import static com.bc.libwally.core.Core.hex2Bytes;
+import static com.bc.libwally.crypto.CryptoConstants.EC_PUBLIC_KEY_LEN;
+
+// A `KEY` expression: an optional `[fingerprint/path]` origin followed by a compressed hex public
+// key or an extended key with optional derivation steps and a trailing unhardened `*`.
+final class DescriptorKey {
+
+    // null for fixed keys
+    private final HDKey hdKey;
+
+    private final byte[] pubKey;
+
+    private final boolean wildcard;
+
+    private DescriptorKey(HDKey hdKey, byte[] pubKey, boolean wildcard) {
+        this.hdKey = hdKey;
+        this.pubKey = pubKey;
+        this.wildcard = wildcard;
+    }
+
+    static DescriptorKey parse(String expression) {
+        // the origin only documents where the key came from, it does not affect the scripts
+        String key = expression;
+        if (key.startsWith("[")) {
+            int end = key.indexOf(']');
+            if (end < 0)
+                throw new DescriptorException("Invalid key origin: " + expression);
+            key = key.substring(end + 1);
+        }
+
+        String[] parts = key.split("/", -1);
+        if (parts[0].length() == EC_PUBLIC_KEY_LEN * 2 && isHex(parts[0])) {
+            if (parts.length > 1)
+                throw new DescriptorException("Derivation from a non extended key: " + expression);
+            byte[] pubKey = hex2Bytes(parts[0]);
+            if (pubKey[0] != 0x02 && pubKey[0] != 0x03)
+                throw new DescriptorException("Invalid public key: " + expression);
+            return new DescriptorKey(null, pubKey, false);
+        }
+
+        HDKey hdKey;
+        try {
+            hdKey = new HDKey(parts[0]);
+        } catch (IllegalStateException e) {
+            throw new DescriptorException("Invalid key: " + expression);
+        }
+
+        boolean wildcard = false;
+        int steps = parts.length - 1;
+        String last = parts[parts.length - 1];
+        if (steps > 0 && last.startsWith("*")) {
+            if (!last.equals("*"))
+                throw new DescriptorException("Unsupported wildcard: " + expression);
+            wildcard = true;
+            steps--;
+        }
+
+        if (steps > 0) {
+            long[] path = new long[steps];
+            for (int i = 0; i < steps; i++) {
+                path[i] = parseStep(parts[i + 1], expression);
+            }
+            try {
+                hdKey = hdKey.derive(new Bip32Path(path, true));
+            } catch (IllegalStateException e) {
+                throw new DescriptorException("Invalid derivation: " + expression);
+            }
+        }
+
+        byte[] pubKey = wildcard ? null : hdKey.getPubKey().getData();
+        return new DescriptorKey(hdKey, pubKey, wildcard);
+    }
+
+    private static long parseStep(String step, String expression) {
+        boolean hardened = step.endsWith("'") || step.endsWith("h");
+        String digits = hardened ? step.substring(0, step.length() - 1) : step;
+        long index;
+        try {
+            index = Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            throw new DescriptorException("Invalid derivation step: " + expression);
+        }
+        if (index < 0 || index >= BIP32_INITIAL_HARDENED_CHILD || digits.startsWith("+"))
+            throw new DescriptorException("Invalid derivation step: " + expression);
+        return hardened ? index + BIP32_INITIAL_HARDENED_CHILD : index;
+    }
+
+    private static boolean isHex(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.digit(s.charAt(i), 16) < 0)
+                return false;
+        }
+        return true;
+    }
+
+    boolean isRange() {
+        return wildcard;
+    }
+
+    // the compressed public keys for `count` indexes starting at `startIndex`, packed back to back
+    byte[] getPubKeys(long startIndex, int count) {
+        if (wildcard)
+            return hdKey.getChildPubKeys(startIndex, count);
+
+        byte[] pubKeys = new byte[count * EC_PUBLIC_KEY_LEN];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(pubKey, 0, pubKeys, i * EC_PUBLIC_KEY_LEN, EC_PUBLIC_KEY_LEN);
+        }
+        return pubKeys;
+    }
+}
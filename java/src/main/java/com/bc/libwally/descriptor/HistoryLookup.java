@@ -0,0 +1,10 @@
+package com.bc.libwally.descriptor;
+
+import com.bc.libwally.script.ScriptPubKey;
+
+public interface HistoryLookup {
+
+    // Whether each of `scripts` has ever received funds, in the same order. Called concurrently
+    // from the sync executor with one chunk of a chain at a time.
+    boolean[] hasHistory(ScriptPubKey[] scripts);
+}
@@ -0,0 +1,70 @@
+package com.bc.libwally.descriptor;
+
+import com.bc.libwally.script.ScriptPubKey;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+// Maps the scriptPubKeys of expanded descriptor ranges back to the descriptor and index that
+// produced them, answering "is this script mine" with a single hash lookup. Lookups may run
+// concurrently with `add`.
+public final class ScriptIndex {
+
+    private final ConcurrentHashMap<ScriptPubKey, Match> scripts = new ConcurrentHashMap<>();
+
+    public void add(Descriptor descriptor, long startIndex, int count) {
+        add(descriptor, startIndex, count, null, 0);
+    }
+
+    public void add(Descriptor descriptor,
+                    long startIndex,
+                    int count,
+                    ExecutorService executor,
+                    int chunkSize) {
+        ScriptPubKey[] expanded = descriptor.expand(startIndex, count, executor, chunkSize);
+        boolean range = descriptor.isRange();
+        for (int i = 0; i < expanded.length; i++) {
+            scripts.putIfAbsent(expanded[i], new Match(descriptor, range ? startIndex + i : 0));
+        }
+    }
+
+    public Match lookup(ScriptPubKey scriptPubKey) {
+        return scripts.get(scriptPubKey);
+    }
+
+    public Match lookup(byte[] scriptPubKey) {
+        return lookup(new ScriptPubKey(scriptPubKey));
+    }
+
+    public boolean isMine(ScriptPubKey scriptPubKey) {
+        return scripts.containsKey(scriptPubKey);
+    }
+
+    public boolean isMine(byte[] scriptPubKey) {
+        return isMine(new ScriptPubKey(scriptPubKey));
+    }
+
+    public int size() {
+        return scripts.size();
+    }
+
+    public static final class Match {
+
+        private final Descriptor descriptor;
+
+        private final long index;
+
+        private Match(Descriptor descriptor, long index) {
+            this.descriptor = descriptor;
+            this.index = index;
+        }
+
+        public Descriptor getDescriptor() {
+            return descriptor;
+        }
+
+        public long getIndex() {
+            return index;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.bc.libwally.descriptor;
+
+import com.bc.libwally.script.ScriptPubKey;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Gap limit sync of one or more descriptor chains, typically the receive and change chains of a
+// wallet. Chunks of every chain are derived and checked against a `HistoryLookup` concurrently
+// on the executor, as long as they lie within the gap window of their chain. The window advances
+// whenever a chunk reports a used index, so a chain is done once `gapLimit` consecutive indexes
+// after its last used one were found unused.
+public final class WalletSync {
+
+    private final HistoryLookup lookup;
+
+    private final ExecutorService executor;
+
+    private final int gapLimit;
+
+    private final int chunkSize;
+
+    private final int maxInFlight;
+
+    public WalletSync(HistoryLookup lookup,
+                      ExecutorService executor,
+                      int gapLimit,
+                      int chunkSize,
+                      int maxInFlight) {
+        if (gapLimit <= 0 || chunkSize <= 0 || maxInFlight <= 0)
+            throw new DescriptorException("Invalid sync parameters");
+        this.lookup = lookup;
+        this.executor = executor;
+        this.gapLimit = gapLimit;
+        this.chunkSize = chunkSize;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public Result sync(Descriptor... chains) {
+        return sync(new Result(), chains);
+    }
+
+    // `result` may be polled from another thread while the sync runs to report progress
+    public Result sync(Result result, Descriptor... chains) {
+        Chain[] states = new Chain[chains.length];
+        for (int i = 0; i < chains.length; i++) {
+            if (!chains[i].isRange())
+                throw new DescriptorException("Descriptor has no range: " + chains[i]);
+            states[i] = new Chain(chains[i]);
+            result.lastUsed.put(chains[i], -1L);
+        }
+
+        CompletionService<Chunk> completion = new ExecutorCompletionService<>(executor);
+        int inFlight = 0;
+        long start = System.nanoTime();
+        result.startNanos = start;
+        result.elapsedNanos = 0;
+        try {
+            while (true) {
+                // hand out chunks round robin so all chains advance together
+                boolean submitted = true;
+                while (submitted && inFlight < maxInFlight) {
+                    submitted = false;
+                    for (Chain chain : states) {
+                        long windowEnd = chain.lastUsed + gapLimit + 1;
+                        if (inFlight >= maxInFlight || chain.next >= windowEnd)
+                            continue;
+                        int count = (int) Math.min(chunkSize, windowEnd - chain.next);
+                        completion.submit(new ChunkTask(chain, chain.next, count, result));
+                        chain.next += count;
+                        inFlight++;
+                        submitted = true;
+                    }
+                }
+                if (inFlight == 0)
+                    break;
+
+                Future<Chunk> done = completion.take();
+                inFlight--;
+                Chunk chunk = done.get();
+                for (int i = 0; i < chunk.used.length; i++) {
+                    if (!chunk.used[i])
+                        continue;
+                    result.usedCount.incrementAndGet();
+                    chunk.chain.lastUsed = Math.max(chunk.chain.lastUsed, chunk.startIndex + i);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DescriptorException("Interrupted while syncing");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new DescriptorException(String.valueOf(e.getCause()));
+        } finally {
+            // wait for whatever is still running after a failure so it does not outlive the call
+            for (; inFlight > 0; inFlight--) {
+                try {
+                    completion.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        result.elapsedNanos = System.nanoTime() - start;
+        for (Chain chain : states) {
+            result.lastUsed.put(chain.descriptor, chain.lastUsed);
+        }
+        return result;
+    }
+
+    private static final class Chain {
+
+        private final Descriptor descriptor;
+
+        // only touched by the thread running `sync`
+        private long next;
+
+        private long lastUsed = -1;
+
+        private Chain(Descriptor descriptor) {
+            this.descriptor = descriptor;
+        }
+    }
+
+    private static final class Chunk {
+
+        private final Chain chain;
+
+        private final long startIndex;
+
+        private final boolean[] used;
+
+        private Chunk(Chain chain, long startIndex, boolean[] used) {
+            this.chain = chain;
+            this.startIndex = startIndex;
+            this.used = used;
+        }
+    }
+
+    private final class ChunkTask implements Callable<Chunk> {
+
+        private final Chain chain;
+
+        private final long startIndex;
+
+        private final int count;
+
+        private final Result result;
+
+        private ChunkTask(Chain chain, long startIndex, int count, Result result) {
+            this.chain = chain;
+            this.startIndex = startIndex;
+            this.count = count;
+            this.result = result;
+        }
+
+        @Override
+        public Chunk call() {
+            long start = System.nanoTime();
+            // each index is visited once, caching would only hold on to the scripts
+            ScriptPubKey[] scripts = chain.descriptor.derive(startIndex, count);
+            long derived = System.nanoTime();
+            result.derivedCount.addAndGet(count);
+            result.deriveNanos.addAndGet(derived - start);
+
+            boolean[] used = lookup.hasHistory(scripts);
+            if (used == null || used.length != count)
+                throw new DescriptorException("Invalid history lookup result");
+            result.checkedCount.addAndGet(count);
+            result.lookupNanos.addAndGet(System.nanoTime() - derived);
+            return new Chunk(chain, startIndex, used);
+        }
+    }
+
+    public static final class Result {
+
+        private final AtomicLong derivedCount = new AtomicLong();
+
+        private final AtomicLong checkedCount = new AtomicLong();
+
+        private final AtomicLong usedCount = new AtomicLong();
+
+        private final AtomicLong deriveNanos = new AtomicLong();
+
+        private final AtomicLong lookupNanos = new AtomicLong();
+
+        private final Map<Descriptor, Long> lastUsed = new ConcurrentHashMap<>();
+
+        private volatile long startNanos;
+
+        private volatile long elapsedNanos;
+
+        public Result() {
+        }
+
+        public long getDerivedCount() {
+            return derivedCount.get();
+        }
+
+        public long getCheckedCount() {
+            return checkedCount.get();
+        }
+
+        public long getUsedCount() {
+            return usedCount.get();
+        }
+
+        // summed over all worker threads
+        public long getDeriveNanos() {
+            return deriveNanos.get();
+        }
+
+        // summed over all worker threads
+        public long getLookupNanos() {
+            return lookupNanos.get();
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        // -1 if no index of the chain was used
+        public long getLastUsedIndex(Descriptor chain) {
+            Long index = lastUsed.get(chain);
+            if (index == null)
+                throw new DescriptorException("Unknown chain: " + chain);
+            return index;
+        }
+
+        // live while the sync runs, final once it returned
+        public double getCheckedPerSecond() {
+            long elapsed = elapsedNanos;
+            if (elapsed == 0 && startNanos != 0)
+                elapsed = System.nanoTime() - startNanos;
+            return elapsed <= 0 ? 0 : getCheckedCount() * 1e9 / elapsed;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.bc.libwally.psbt;
+
+import com.bc.libwally.address.PubKey;
+import com.bc.libwally.bip32.Bip32Exception;
+import com.bc.libwally.bip32.Bip32Path;
+import com.bc.libwally.bip32.HDKey;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Child keys derived from a set of HD keys, so checks that visit the same key path from several
+// inputs and outputs derive it once. Failed derivations are cached as null. Not thread safe, meant
+// to live for a single call.
+final class DerivationCache {
+
+    private final Map<HDKey, Map<Bip32Path, Child>> keys = new IdentityHashMap<>();
+
+    HDKey deriveKey(HDKey key, Bip32Path path) {
+        Child child = derive(key, path);
+        return child == null ? null : child.key;
+    }
+
+    PubKey derivePubKey(HDKey key, Bip32Path path) {
+        Child child = derive(key, path);
+        return child == null ? null : child.pubKey;
+    }
+
+    boolean matches(HDKey key, KeyOrigin origin, PubKey pubKey) {
+        return pubKey.equals(derivePubKey(key, origin.getPath()));
+    }
+
+    private Child derive(HDKey key, Bip32Path path) {
+        Map<Bip32Path, Child> derived = keys.get(key);
+        if (derived == null) {
+            derived = new HashMap<>();
+            keys.put(key, derived);
+        }
+
+        if (derived.containsKey(path))
+            return derived.get(path);
+
+        Child child;
+        try {
+            HDKey childKey = key.derive(path);
+            child = new Child(childKey, childKey.getPubKey());
+        } catch (Bip32Exception ignore) {
+            child = null;
+        }
+        derived.put(path, child);
+        return child;
+    }
+
+    private static final class Child {
+
+        private final HDKey key;
+
+        private final PubKey pubKey;
+
+        private Child(HDKey key, PubKey pubKey) {
+            this.key = key;
+            this.pubKey = pubKey;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.bc.libwally.psbt;
+
+import com.bc.libwally.tx.Transaction;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static com.bc.libwally.ArrayUtils.reversed;
+import static com.bc.libwally.core.Core.bytes2Hex;
+
+// Broadcastable result of `Psbt.finalizedTransaction()`: the serialized transaction with its
+// witnesses and its txid, without the per input and output objects of `Transaction`.
+public final class FinalTransaction {
+
+    private final byte[] bytes;
+
+    private final byte[] txid;
+
+    FinalTransaction(byte[] bytes, byte[] txid) {
+        this.bytes = bytes;
+        this.txid = txid;
+    }
+
+    public byte[] getBytes() {
+        return bytes.clone();
+    }
+
+    public int getLength() {
+        return bytes.length;
+    }
+
+    // in internal byte order, like `Transaction.getHash()`
+    public byte[] getTxid() {
+        return txid.clone();
+    }
+
+    // in the reversed byte order used by explorers and RPCs
+    public String getTxidHex() {
+        return bytes2Hex(reversed(txid));
+    }
+
+    public String getDescription() {
+        return bytes2Hex(bytes);
+    }
+
+    public int writeTo(OutputStream out) throws IOException {
+        out.write(bytes);
+        return bytes.length;
+    }
+
+    public Transaction toTransaction() {
+        return new Transaction(getDescription());
+    }
+}
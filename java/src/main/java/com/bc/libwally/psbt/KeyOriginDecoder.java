@@ -0,0 +1,112 @@
+package com.bc.libwally.psbt;
+
+import com.bc.libwally.address.PubKey;
+import com.bc.libwally.bip32.Bip32Path;
+import com.bc.libwally.Network;
+import com.bc.libwally.psbt.raw.WallyMap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.bc.libwally.bip32.Bip32Constant.BIP32_KEY_FINGERPRINT_LEN;
+
+// Decodes psbt keypath maps, reading fingerprints and little endian path components in place.
+// One decoder is used for all inputs and outputs of a psbt, so the fingerprints and paths they
+// have in common are decoded once and shared between their `KeyOrigin`s.
+final class KeyOriginDecoder {
+
+    private final Network network;
+
+    private final Map<Integer, byte[]> fingerprints = new HashMap<>();
+
+    private final Map<PathBytes, Bip32Path> paths = new HashMap<>();
+
+    KeyOriginDecoder(Network network) {
+        this.network = network;
+    }
+
+    Map<PubKey, KeyOrigin> decode(WallyMap keyPaths) {
+        int size = keyPaths.size();
+        PubKey[] pubKeys = new PubKey[size];
+        KeyOrigin[] origins = new KeyOrigin[size];
+        for (int i = 0; i < size; i++) {
+            WallyMap.WallyMapItem item = keyPaths.getItems()[i];
+            pubKeys[i] = new PubKey(item.getKey(), network);
+            origins[i] = new KeyOrigin(fingerprint(item.getValue()), path(item.getValue()));
+        }
+        return new OriginMap(pubKeys, origins);
+    }
+
+    private byte[] fingerprint(byte[] value) {
+        if (value.length < BIP32_KEY_FINGERPRINT_LEN)
+            throw new PsbtException("Invalid key origin");
+
+        int key = (int) readUint32(value, 0);
+        byte[] fingerprint = fingerprints.get(key);
+        if (fingerprint == null) {
+            fingerprint = new byte[BIP32_KEY_FINGERPRINT_LEN];
+            System.arraycopy(value, 0, fingerprint, 0, BIP32_KEY_FINGERPRINT_LEN);
+            fingerprints.put(key, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    private Bip32Path path(byte[] value) {
+        PathBytes key = new PathBytes(value);
+        Bip32Path path = paths.get(key);
+        if (path == null) {
+            long[] components = new long[(value.length - BIP32_KEY_FINGERPRINT_LEN) / 4];
+            for (int i = 0; i < components.length; i++) {
+                components[i] = readUint32(value, BIP32_KEY_FINGERPRINT_LEN + i * 4);
+            }
+            path = new Bip32Path(components, false);
+            paths.put(key, path);
+        }
+        return path;
+    }
+
+    private static long readUint32(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xffL) |
+               (bytes[offset + 1] & 0xffL) << 8 |
+               (bytes[offset + 2] & 0xffL) << 16 |
+               (bytes[offset + 3] & 0xffL) << 24;
+    }
+
+    // the path part of a keypath value, compared without copying it out
+    private static final class PathBytes {
+
+        private final byte[] value;
+
+        private final int hash;
+
+        private PathBytes(byte[] value) {
+            this.value = value;
+            int hash = 1;
+            for (int i = BIP32_KEY_FINGERPRINT_LEN; i < value.length; i++) {
+                hash = 31 * hash + value[i];
+            }
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof PathBytes))
+                return false;
+            byte[] other = ((PathBytes) o).value;
+            if (other.length != value.length)
+                return false;
+            for (int i = BIP32_KEY_FINGERPRINT_LEN; i < value.length; i++) {
+                if (value[i] != other[i])
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.bc.libwally.psbt;
+
+import com.bc.libwally.address.PubKey;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// Read only map over parallel key and origin arrays, in psbt order. Origin maps hold a handful
+// of entries, so a linear scan beats hashing and saves the per entry nodes of a `HashMap`.
+final class OriginMap extends AbstractMap<PubKey, KeyOrigin> {
+
+    private final PubKey[] pubKeys;
+
+    private final KeyOrigin[] origins;
+
+    OriginMap(PubKey[] pubKeys, KeyOrigin[] origins) {
+        this.pubKeys = pubKeys;
+        this.origins = origins;
+    }
+
+    private int indexOf(Object key) {
+        for (int i = 0; i < pubKeys.length; i++) {
+            if (pubKeys[i].equals(key))
+                return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return pubKeys.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public KeyOrigin get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : origins[index];
+    }
+
+    @Override
+    public Set<Map.Entry<PubKey, KeyOrigin>> entrySet() {
+        return new AbstractSet<Map.Entry<PubKey, KeyOrigin>>() {
+            @Override
+            public int size() {
+                return pubKeys.length;
+            }
+
+            @Override
+            public Iterator<Map.Entry<PubKey, KeyOrigin>> iterator() {
+                return new Iterator<Map.Entry<PubKey, KeyOrigin>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < pubKeys.length;
+                    }
+
+                    @Override
+                    public Map.Entry<PubKey, KeyOrigin> next() {
+                        if (next >= pubKeys.length)
+                            throw new NoSuchElementException();
+                        int i = next++;
+                        return new SimpleImmutableEntry<>(pubKeys[i], origins[i]);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+}
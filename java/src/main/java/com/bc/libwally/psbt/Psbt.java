@@ -2,27 +2,37 @@ package com.bc.libwally.psbt;
 
 import com.bc.libwally.address.Key;
 import com.bc.libwally.address.PubKey;
-import com.bc.libwally.bip32.Bip32Exception;
 import com.bc.libwally.bip32.HDKey;
+import com.bc.libwally.NativeExecutor;
 import com.bc.libwally.Network;
 import com.bc.libwally.psbt.raw.WallyPsbt;
+import com.bc.libwally.psbt.raw.WallyPsbtInput;
 import com.bc.libwally.tx.Transaction;
 import com.bc.libwally.tx.raw.WallyTx;
+import com.bc.libwally.tx.raw.WallyTxOutput;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
-import static com.bc.libwally.ArrayUtils.slice;
-import static com.bc.libwally.WallyConstant.WALLY_OK;
-import static com.bc.libwally.psbt.PsbtJni.wally_psbt_clone_alloc;
+import static com.bc.libwally.core.Core.bytes2Base64;
+import static com.bc.libwally.crypto.CryptoConstants.SHA256_LEN;
+import static com.bc.libwally.psbt.PsbtJni.wally_psbt_combine;
 import static com.bc.libwally.psbt.PsbtJni.wally_psbt_extract;
-import static com.bc.libwally.psbt.PsbtJni.wally_psbt_finalize;
+import static com.bc.libwally.psbt.PsbtJni.wally_psbt_finalize_extract;
+import static com.bc.libwally.psbt.PsbtJni.wally_psbt_finalize_inputs;
 import static com.bc.libwally.psbt.PsbtJni.wally_psbt_from_base64;
 import static com.bc.libwally.psbt.PsbtJni.wally_psbt_from_bytes;
-import static com.bc.libwally.psbt.PsbtJni.wally_psbt_get_length;
 import static com.bc.libwally.psbt.PsbtJni.wally_psbt_is_finalized;
-import static com.bc.libwally.psbt.PsbtJni.wally_psbt_sign;
-import static com.bc.libwally.psbt.PsbtJni.wally_psbt_to_base64;
+import static com.bc.libwally.psbt.PsbtJni.wally_psbt_sign_finalize_inputs;
+import static com.bc.libwally.psbt.PsbtJni.wally_psbt_sign_inputs;
 import static com.bc.libwally.psbt.PsbtJni.wally_psbt_to_bytes;
 
 public class Psbt {
@@ -35,12 +45,26 @@ public class Psbt {
 
     private final WallyPsbt rawPsbt;
 
+    private volatile byte[] data;
+
+    private volatile String description;
+
     public Psbt(String base64, Network network) {
         this(wally_psbt_from_base64(base64), network);
     }
 
     public Psbt(byte[] data, Network network) {
-        this(wally_psbt_from_bytes(data), network);
+        this(wally_psbt_from_bytes(data, 0, data.length), network);
+    }
+
+    // accepts binary or base64 input and consumes the remaining bytes of `buffer`
+    public Psbt(ByteBuffer buffer, Network network) {
+        this(PsbtReader.read(buffer), network);
+    }
+
+    // accepts binary or base64 input and reads `in` to its end without closing it
+    public Psbt(InputStream in, Network network) throws IOException {
+        this(PsbtReader.read(in), network);
     }
 
     private Psbt(WallyPsbt rawPsbt, Network network) {
@@ -51,9 +75,13 @@ public class Psbt {
         this.network = network;
         this.rawPsbt = rawPsbt;
 
+        KeyOriginDecoder decoder = new KeyOriginDecoder(network);
         PsbtInput[] inputs = new PsbtInput[rawPsbt.getInputsAllocLength()];
         for (int i = 0; i < inputs.length; i++) {
-            inputs[i] = new PsbtInput(rawPsbt.getInputs()[i], network);
+            inputs[i] = new PsbtInput(rawPsbt.getInputs()[i],
+                                      rawPsbt.getTx().getInputs()[i],
+                                      network,
+                                      decoder);
         }
         this.inputs = inputs;
 
@@ -61,24 +89,74 @@ public class Psbt {
         for (int i = 0; i < outputs.length; i++) {
             outputs[i] = new PsbtOutput(rawPsbt.getOutputs()[i],
                                         rawPsbt.getTx().getOutputs()[i],
-                                        network);
+                                        network,
+                                        decoder);
         }
         this.outputs = outputs;
     }
 
-    public byte[] getData() {
-        int len = wally_psbt_get_length(rawPsbt, 0);
-        byte[] data = new byte[len];
-        int[] written = new int[1];
-        if (wally_psbt_to_bytes(rawPsbt, 0, data, written) != WALLY_OK) {
-            throw new PsbtException("wally_psbt_to_bytes error");
+    // Next version of `base` after an operation that changed the non null `changedInputs`.
+    // Everything else, native data and Java wrappers alike, is shared with `base`.
+    private Psbt(Psbt base, WallyPsbtInput[] changedInputs) {
+        this.network = base.network;
+        this.rawPsbt = base.rawPsbt.withInputs(changedInputs);
+        this.outputs = base.outputs;
+
+        KeyOriginDecoder decoder = new KeyOriginDecoder(network);
+        PsbtInput[] inputs = base.inputs.clone();
+        for (int i = 0; i < changedInputs.length; i++) {
+            if (changedInputs[i] != null)
+                inputs[i] = new PsbtInput(changedInputs[i],
+                                          rawPsbt.getTx().getInputs()[i],
+                                          network,
+                                          decoder);
+        }
+        this.inputs = inputs;
+    }
+
+    private Psbt withInputs(WallyPsbtInput[] changedInputs) {
+        for (WallyPsbtInput input : changedInputs) {
+            if (input != null)
+                return new Psbt(this, changedInputs);
         }
+        return this;
+    }
 
-        return slice(data, written[0]);
+    public byte[] getData() {
+        return serialized().clone();
     }
 
     public String getDescription() {
-        return wally_psbt_to_base64(rawPsbt, 0);
+        String description = this.description;
+        if (description == null) {
+            description = bytes2Base64(serialized());
+            this.description = description;
+        }
+        return description;
+    }
+
+    public int writeTo(OutputStream out) throws IOException {
+        byte[] data = serialized();
+        out.write(data);
+        return data.length;
+    }
+
+    public int writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(serialized());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return buffer.capacity();
+    }
+
+    // the raw psbt is never modified once wrapped, so it is serialized at most once
+    private byte[] serialized() {
+        byte[] data = this.data;
+        if (data == null) {
+            data = wally_psbt_to_bytes(rawPsbt, 0);
+            this.data = data;
+        }
+        return data;
     }
 
     public boolean isComplete() {
@@ -92,15 +170,16 @@ public class Psbt {
         return new Transaction(rawPsbt.getTx());
     }
 
+    // null unless the amount of every input is known from its witness or non witness utxo
     public Long getFee() {
-        Long valueOut = getTransaction().getTotalOut();
-        if (valueOut == null) {
-            throw new PsbtException("PSBT tx total out is NULL");
+        long valueOut = 0;
+        for (WallyTxOutput output : rawPsbt.getTx().getOutputs()) {
+            valueOut += output.getSatoshi();
         }
 
-        Long tally = 0L;
+        long tally = 0;
         for (PsbtInput input : inputs) {
-            if (input.isSegwit() && input.getAmount() == null) {
+            if (input.getAmount() == null) {
                 return null;
             }
 
@@ -114,6 +193,21 @@ public class Psbt {
         return tally - valueOut;
     }
 
+    // Virtual size of the transaction once all inputs are finalized, assuming worst case
+    // signatures. Null if an input is of an unsupported type or lacks its utxo or scripts.
+    public Integer getEstimatedVsize() {
+        return VsizeEstimator.estimate(rawPsbt);
+    }
+
+    public Float getEstimatedFeeRate() {
+        Long fee = getFee();
+        Integer vsize = getEstimatedVsize();
+        if (fee == null || vsize == null)
+            return null;
+
+        return (float) fee / (float) vsize;
+    }
+
     public Transaction getTransactionFinal() {
         try {
             WallyTx tx = wally_psbt_extract(rawPsbt);
@@ -123,44 +217,107 @@ public class Psbt {
         }
     }
 
+    // Finalizes and extracts in a single native call without building the finalized psbt or a
+    // `Transaction`. Throws if any input can not be finalized.
+    public FinalTransaction finalizedTransaction() {
+        byte[] txid = new byte[SHA256_LEN];
+        byte[] bytes = wally_psbt_finalize_extract(rawPsbt, txid);
+        return new FinalTransaction(bytes, txid);
+    }
+
     public Psbt signed(Key privKey) {
         if (privKey.getNetwork() != network) {
             throw new PsbtException("Invalid key network");
         }
-        WallyPsbt clonedPsbt = psbtNativeClone();
-        return new Psbt(wally_psbt_sign(clonedPsbt, privKey.getData(), 0), network);
+        return withInputs(wally_psbt_sign_inputs(rawPsbt, privKey.getData(), 0));
     }
 
     public Psbt signed(HDKey hdKey) {
         if (hdKey.getNetwork() != network) {
             throw new PsbtException("Invalid key network");
         }
-        Psbt psbt = this;
+        return signed(signingKeys(hdKey, new DerivationCache()), false);
+    }
+
+    // private keys of the children of `hdKey` that sign at least one input, each once
+    byte[][] signingKeys(HDKey hdKey, DerivationCache cache) {
+        Map<PubKey, byte[]> keys = new LinkedHashMap<>();
+        byte[] fingerprint = hdKey.getMasterFingerprint();
+        if (fingerprint == null || hdKey.isNeutered())
+            return new byte[0][];
+
         for (PsbtInput input : inputs) {
-            Map<PubKey, KeyOrigin> originMap = input.getCanSignOriginMap(hdKey);
-            if (originMap != null) {
-                for (Map.Entry<PubKey, KeyOrigin> e : originMap.entrySet()) {
-                    try {
-                        HDKey childKey = hdKey.derive(e.getValue().getPath());
-                        if (childKey.getPrivKey().getPubKey().equals(e.getKey())) {
-                            psbt = psbt.signed(childKey.getPrivKey());
-                        }
-                    } catch (Bip32Exception ignore) {
-                    }
+            if (input.getOriginMap() == null)
+                continue;
+            for (Map.Entry<PubKey, KeyOrigin> e : input.getOriginMap().entrySet()) {
+                KeyOrigin origin = e.getValue();
+                if (keys.containsKey(e.getKey()) ||
+                    !origin.hasFingerprint(fingerprint) ||
+                    !cache.matches(hdKey, origin, e.getKey())) {
+                    continue;
                 }
+                keys.put(e.getKey(), cache.deriveKey(hdKey, origin.getPath())
+                                          .getPrivKey()
+                                          .getData());
             }
         }
+        return keys.values().toArray(new byte[0][]);
+    }
 
-        return psbt;
+    // signs with all keys and optionally finalizes in a single native call
+    Psbt signed(byte[][] keys, boolean finalize) {
+        if (keys.length == 0 && !finalize)
+            return this;
+        return withInputs(wally_psbt_sign_finalize_inputs(rawPsbt, keys, 0, finalize));
     }
 
-    public Psbt finalized() {
-        WallyPsbt clonedPsbt = psbtNativeClone();
-        return new Psbt(wally_psbt_finalize(clonedPsbt), network);
+    public CompletableFuture<Psbt> signedAsync(Key privKey) {
+        return signedAsync(privKey, NativeExecutor.getDefault());
+    }
+
+    public CompletableFuture<Psbt> signedAsync(final Key privKey, NativeExecutor executor) {
+        return executor.supplyAsync(new Supplier<Psbt>() {
+            @Override
+            public Psbt get() {
+                return signed(privKey);
+            }
+        });
+    }
+
+    public CompletableFuture<Psbt> signedAsync(HDKey hdKey) {
+        return signedAsync(hdKey, NativeExecutor.getDefault());
+    }
+
+    public CompletableFuture<Psbt> signedAsync(final HDKey hdKey, NativeExecutor executor) {
+        return executor.supplyAsync(new Supplier<Psbt>() {
+            @Override
+            public Psbt get() {
+                return signed(hdKey);
+            }
+        });
+    }
+
+    // BIP174 combiner, merges the partial psbts of all cosigners in a single native call. All of
+    // them must share the network and the unsigned transaction, the latter compared by txid.
+    public static Psbt combine(Psbt... psbts) {
+        if (psbts.length == 0)
+            throw new PsbtException("Nothing to combine");
+
+        Network network = psbts[0].network;
+        WallyPsbt[] rawPsbts = new WallyPsbt[psbts.length];
+        for (int i = 0; i < psbts.length; i++) {
+            if (psbts[i].network != network)
+                throw new PsbtException("Invalid psbt network");
+            rawPsbts[i] = psbts[i].rawPsbt;
+        }
+
+        if (psbts.length == 1)
+            return psbts[0];
+        return new Psbt(wally_psbt_combine(rawPsbts), network);
     }
 
-    private WallyPsbt psbtNativeClone() {
-        return wally_psbt_clone_alloc(rawPsbt, 0);
+    public Psbt finalized() {
+        return withInputs(wally_psbt_finalize_inputs(rawPsbt));
     }
 
     public Network getNetwork() {
@@ -186,6 +343,6 @@ public class Psbt {
         if (o == null || getClass() != o.getClass())
             return false;
         Psbt psbt1 = (Psbt) o;
-        return network == psbt1.network && Arrays.equals(getData(), psbt1.getData());
+        return network == psbt1.network && Arrays.equals(serialized(), psbt1.serialized());
     }
 }
@@ -6,6 +6,8 @@ import com.bc.libwally.bip32.HDKey;
 import com.bc.libwally.Network;
 import com.bc.libwally.psbt.raw.WallyMap;
 import com.bc.libwally.psbt.raw.WallyPsbtInput;
+import com.bc.libwally.tx.raw.WallyTx;
+import com.bc.libwally.tx.raw.WallyTxInput;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -23,9 +25,13 @@ public class PsbtInput {
 
     private final Long amount;
 
-    PsbtInput(WallyPsbtInput wallyPsbtInput, Network network) {
+    // `prevOut` is the unsigned tx input, used to read the amount from a non witness utxo
+    PsbtInput(WallyPsbtInput wallyPsbtInput,
+              WallyTxInput prevOut,
+              Network network,
+              KeyOriginDecoder decoder) {
         if (wallyPsbtInput.getKeyPaths().hasValue()) {
-            this.originMap = KeyOrigin.getOriginMap(wallyPsbtInput.getKeyPaths(), network);
+            this.originMap = decoder.decode(wallyPsbtInput.getKeyPaths());
         } else {
             this.originMap = null;
         }
@@ -42,7 +48,15 @@ public class PsbtInput {
             amount = wallyPsbtInput.getWitnessUtxo().getSatoshi();
         } else {
             isSegwit = false;
-            amount = null;
+            WallyTx utxo = wallyPsbtInput.getUtxo();
+            long vout = prevOut.getIndex();
+            // the amount is only trusted from the tx the input actually spends
+            if (utxo != null && vout < utxo.getOutputs().length &&
+                Arrays.equals(wallyPsbtInput.getUtxoTxid(), prevOut.getTxHash())) {
+                amount = utxo.getOutputs()[(int) vout].getSatoshi();
+            } else {
+                amount = null;
+            }
         }
     }
 
@@ -66,7 +80,7 @@ public class PsbtInput {
 
             PubKey pubKey = entry.getKey();
             KeyOrigin keyOrigin = entry.getValue();
-            if (Arrays.equals(masterKeyFingerprint, keyOrigin.getFingerprint())) {
+            if (keyOrigin.hasFingerprint(masterKeyFingerprint)) {
                 try {
                     HDKey childKey = key.derive(keyOrigin.getPath());
                     if (childKey.getPubKey().equals(pubKey)) {
@@ -81,7 +95,23 @@ public class PsbtInput {
     }
 
     public boolean canSign(HDKey key) {
-        return getCanSignOriginMap(key) != null;
+        return canSign(key, new DerivationCache());
+    }
+
+    // stops at the first origin the key can sign for
+    boolean canSign(HDKey key, DerivationCache cache) {
+        byte[] masterKeyFingerprint = key.getMasterFingerprint();
+        if (masterKeyFingerprint == null || originMap == null)
+            return false;
+
+        for (Map.Entry<PubKey, KeyOrigin> entry : originMap.entrySet()) {
+            KeyOrigin keyOrigin = entry.getValue();
+            if (keyOrigin.hasFingerprint(masterKeyFingerprint) &&
+                cache.matches(key, keyOrigin, entry.getKey())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public Map<PubKey, KeyOrigin> getOriginMap() {
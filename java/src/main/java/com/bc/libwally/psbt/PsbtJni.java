@@ -1,32 +1,159 @@
 package com.bc.libwally.psbt;
 
+import com.bc.libwally.JniTracer;
+import com.bc.libwally.NativeLoader;
 import com.bc.libwally.psbt.raw.WallyPsbt;
+import com.bc.libwally.psbt.raw.WallyPsbtInput;
 import com.bc.libwally.tx.raw.WallyTx;
 
+import java.nio.ByteBuffer;
+
 class PsbtJni {
 
-    static {
-        System.loadLibrary("bc-libwally-psbt-jni");
+    private static final JniTracer.Source SOURCE = new JniTracer.Source("PsbtJni") {
+        @Override
+        protected void readStats(long[] stats) {
+            Native.jni_stats(stats);
+        }
+    };
+
+    static WallyPsbt wally_psbt_from_bytes(byte[] bytes, int offset, int len) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_psbt_from_bytes(bytes, offset, len);
+        } finally {
+            SOURCE.exit("wally_psbt_from_bytes", start);
+        }
+    }
+
+    static WallyPsbt wally_psbt_from_buffer(ByteBuffer buffer, int offset, int len) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_psbt_from_buffer(buffer, offset, len);
+        } finally {
+            SOURCE.exit("wally_psbt_from_buffer", start);
+        }
+    }
+
+    static byte[] wally_psbt_to_bytes(WallyPsbt psbt, long flags) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_psbt_to_bytes(psbt, flags);
+        } finally {
+            SOURCE.exit("wally_psbt_to_bytes", start);
+        }
+    }
+
+    static WallyTx wally_psbt_extract(WallyPsbt psbt) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_psbt_extract(psbt);
+        } finally {
+            SOURCE.exit("wally_psbt_extract", start);
+        }
+    }
+
+    static byte[] wally_psbt_finalize_extract(WallyPsbt psbt, byte[] txid) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_psbt_finalize_extract(psbt, txid);
+        } finally {
+            SOURCE.exit("wally_psbt_finalize_extract", start);
+        }
+    }
+
+    static WallyPsbtInput[] wally_psbt_sign_inputs(WallyPsbt psbt, byte[] key, long flags) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_psbt_sign_inputs(psbt, key, flags);
+        } finally {
+            SOURCE.exit("wally_psbt_sign_inputs", start);
+        }
+    }
+
+    static WallyPsbtInput[] wally_psbt_sign_finalize_inputs(WallyPsbt psbt,
+                                                            byte[][] keys,
+                                                            long flags,
+                                                            boolean finalize) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_psbt_sign_finalize_inputs(psbt, keys, flags, finalize);
+        } finally {
+            SOURCE.exit("wally_psbt_sign_finalize_inputs", start);
+        }
+    }
+
+    static WallyPsbtInput[] wally_psbt_finalize_inputs(WallyPsbt psbt) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_psbt_finalize_inputs(psbt);
+        } finally {
+            SOURCE.exit("wally_psbt_finalize_inputs", start);
+        }
     }
 
-    static native WallyPsbt wally_psbt_clone_alloc(WallyPsbt psbt, long flags);
+    static WallyPsbt wally_psbt_combine(WallyPsbt[] psbts) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_psbt_combine(psbts);
+        } finally {
+            SOURCE.exit("wally_psbt_combine", start);
+        }
+    }
 
-    static native WallyPsbt wally_psbt_from_bytes(byte[] bytes);
+    static boolean wally_psbt_is_finalized(WallyPsbt psbt) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_psbt_is_finalized(psbt);
+        } finally {
+            SOURCE.exit("wally_psbt_is_finalized", start);
+        }
+    }
+
+    static WallyPsbt wally_psbt_from_base64(String base64) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_psbt_from_base64(base64);
+        } finally {
+            SOURCE.exit("wally_psbt_from_base64", start);
+        }
+    }
 
-    static native int wally_psbt_get_length(WallyPsbt psbt, long flags);
+    private static final class Native {
 
-    static native int wally_psbt_to_bytes(WallyPsbt psbt, long flags, byte[] output, int[] written);
+        static {
+            NativeLoader.load();
+        }
 
-    static native WallyTx wally_psbt_extract(WallyPsbt psbt);
+        static native WallyPsbt wally_psbt_from_bytes(byte[] bytes, int offset, int len);
 
-    static native WallyPsbt wally_psbt_sign(WallyPsbt psbt, byte[] key, long flags);
+        static native WallyPsbt wally_psbt_from_buffer(ByteBuffer buffer, int offset, int len);
 
-    static native WallyPsbt wally_psbt_finalize(WallyPsbt psbt);
+        static native byte[] wally_psbt_to_bytes(WallyPsbt psbt, long flags);
 
-    static native boolean wally_psbt_is_finalized(WallyPsbt psbt);
+        static native WallyTx wally_psbt_extract(WallyPsbt psbt);
 
-    static native WallyPsbt wally_psbt_from_base64(String base64);
+        // returns the serialized tx with witnesses and writes its txid to `txid`
+        static native byte[] wally_psbt_finalize_extract(WallyPsbt psbt, byte[] txid);
 
-    static native String wally_psbt_to_base64(WallyPsbt psbt, long flags);
+        // these return the inputs changed by the operation, with null for unchanged ones
+        static native WallyPsbtInput[] wally_psbt_sign_inputs(WallyPsbt psbt,
+                                                              byte[] key,
+                                                              long flags);
 
+        static native WallyPsbtInput[] wally_psbt_sign_finalize_inputs(WallyPsbt psbt,
+                                                                       byte[][] keys,
+                                                                       long flags,
+                                                                       boolean finalize);
+
+        static native WallyPsbtInput[] wally_psbt_finalize_inputs(WallyPsbt psbt);
+
+        static native WallyPsbt wally_psbt_combine(WallyPsbt[] psbts);
+
+        static native boolean wally_psbt_is_finalized(WallyPsbt psbt);
+
+        static native WallyPsbt wally_psbt_from_base64(String base64);
+
+        static native void jni_stats(long[] stats);
+    }
 }
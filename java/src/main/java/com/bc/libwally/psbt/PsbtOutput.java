@@ -2,7 +2,6 @@ package com.bc.libwally.psbt;
 
 import com.bc.libwally.address.PubKey;
 import com.bc.libwally.bip32.Bip32Derivation;
-import com.bc.libwally.bip32.Bip32Exception;
 import com.bc.libwally.bip32.Bip32Path;
 import com.bc.libwally.bip32.HDKey;
 import com.bc.libwally.Network;
@@ -11,8 +10,6 @@ import com.bc.libwally.script.ScriptPubKey;
 import com.bc.libwally.tx.TxOutput;
 import com.bc.libwally.tx.raw.WallyTxOutput;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Map;
 
 import static com.bc.libwally.ArrayUtils.reversed;
@@ -23,9 +20,12 @@ public class PsbtOutput {
 
     private final Map<PubKey, KeyOrigin> originMap;
 
-    PsbtOutput(WallyPsbtOutput psbtOutput, WallyTxOutput txOutput, Network network) {
+    PsbtOutput(WallyPsbtOutput psbtOutput,
+               WallyTxOutput txOutput,
+               Network network,
+               KeyOriginDecoder decoder) {
         if (psbtOutput.getKeyPaths().hasValue()) {
-            this.originMap = KeyOrigin.getOriginMap(psbtOutput.getKeyPaths(), network);
+            this.originMap = decoder.decode(psbtOutput.getKeyPaths());
         } else {
             this.originMap = null;
         }
@@ -40,7 +40,8 @@ public class PsbtOutput {
     private static boolean commonOriginChecks(KeyOrigin origin,
                                               PubKey pubKey,
                                               HDKey signer,
-                                              HDKey[] cosigners) {
+                                              HDKey[] cosigners,
+                                              DerivationCache cache) {
         // Check that origin ends with 0/* or 1/*
         Bip32Derivation[] components = origin.getPath().getComponents();
         if (components.length < 2 ||
@@ -54,7 +55,7 @@ public class PsbtOutput {
         }
 
         HDKey hdKey = null;
-        if (Arrays.equals(signer.getMasterFingerprint(), origin.getFingerprint())) {
+        if (origin.hasFingerprint(signer.getMasterFingerprint())) {
             hdKey = signer;
         } else {
             for (HDKey cosigner : cosigners) {
@@ -62,7 +63,7 @@ public class PsbtOutput {
                     return false;
                 }
 
-                if (Arrays.equals(cosigner.getMasterFingerprint(), origin.getFingerprint())) {
+                if (origin.hasFingerprint(cosigner.getMasterFingerprint())) {
                     hdKey = cosigner;
                     break;
                 }
@@ -73,14 +74,7 @@ public class PsbtOutput {
             return false;
         }
 
-        HDKey childKey;
-        try {
-            childKey = hdKey.derive(origin.getPath());
-        } catch (Bip32Exception ignore) {
-            return false;
-        }
-
-        return childKey.getPubKey().equals(pubKey);
+        return cache.matches(hdKey, origin, pubKey);
     }
 
     public boolean isChange(HDKey signer, PsbtInput[] inputs, HDKey cosigner, int threshold) {
@@ -88,11 +82,24 @@ public class PsbtOutput {
     }
 
     public boolean isChange(HDKey signer, PsbtInput[] inputs, HDKey[] cosigners, int threshold) {
+        return isChange(signer, inputs, cosigners, threshold, new DerivationCache());
+    }
+
+    boolean isChange(HDKey signer,
+                     PsbtInput[] inputs,
+                     HDKey[] cosigners,
+                     int threshold,
+                     DerivationCache cache) {
         // Transaction must have at least one input
         if (inputs.length < 1) {
             return false;
         }
 
+        // Output must have origin info, checked first as it needs no key derivation
+        if (originMap == null) {
+            return false;
+        }
+
         // All inputs must have origin info
         for (PsbtInput input : inputs) {
             if (input.getOriginMap() == null) {
@@ -101,38 +108,28 @@ public class PsbtOutput {
         }
 
         // Skip key derivation root
-        Bip32Path keyPath = new ArrayList<>(inputs[0].getOriginMap().entrySet()).get(0)
-                                                                                .getValue()
-                                                                                .getPath();
+        Bip32Path keyPath = inputs[0].getOriginMap().values().iterator().next().getPath();
         if (keyPath.getComponents().length < 2) {
             return false;
         }
 
         for (PsbtInput input : inputs) {
             // Check that we can sign all inputs (TODO: relax assumption for e.g. coinjoin)
-            if (!input.canSign(signer)) {
-                return false;
-            }
-
-            if (input.getOriginMap() == null) {
+            if (!input.canSign(signer, cache)) {
                 return false;
             }
 
             for (Map.Entry<PubKey, KeyOrigin> e : input.getOriginMap().entrySet()) {
-                if (!commonOriginChecks(e.getValue(), e.getKey(), signer, cosigners)) {
+                if (!commonOriginChecks(e.getValue(), e.getKey(), signer, cosigners, cache)) {
                     return false;
                 }
             }
         }
 
         // Check outputs
-        if (originMap == null) {
-            return false;
-        }
-
         Long changeIndex = null;
         for (Map.Entry<PubKey, KeyOrigin> e : originMap.entrySet()) {
-            if (!commonOriginChecks(e.getValue(), e.getKey(), signer, cosigners)) {
+            if (!commonOriginChecks(e.getValue(), e.getKey(), signer, cosigners, cache)) {
                 return false;
             }
 
@@ -0,0 +1,188 @@
+package com.bc.libwally.psbt;
+
+import com.bc.libwally.bip32.HDKey;
+import com.bc.libwally.psbt.raw.WallyPsbtInput;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Coordinator pipeline for one cosigner: checks the fee rate, identifies the change outputs,
+// then signs and finalizes. All stages share one derivation cache, so each key path is derived
+// once per psbt, and signing plus finalizing is a single native call whatever the number of
+// keys. A psbt that fails a check is reported without being signed.
+public final class PsbtProcessor {
+
+    private static final float NO_FEE_CAP = Float.MAX_VALUE;
+
+    private final HDKey signer;
+
+    private final HDKey[] cosigners;
+
+    private final int threshold;
+
+    private final float maxFeeRate;
+
+    private final boolean finalize;
+
+    public PsbtProcessor(HDKey signer, HDKey[] cosigners, int threshold) {
+        this(signer, cosigners, threshold, NO_FEE_CAP, true);
+    }
+
+    // `maxFeeRate` is in sat/vbyte over the estimated vsize of the finalized transaction
+    public PsbtProcessor(HDKey signer,
+                         HDKey[] cosigners,
+                         int threshold,
+                         float maxFeeRate,
+                         boolean finalize) {
+        if (threshold <= 0 || threshold > cosigners.length + 1 || maxFeeRate < 0)
+            throw new PsbtException("Invalid processor parameters");
+        this.signer = signer;
+        this.cosigners = cosigners;
+        this.threshold = threshold;
+        this.maxFeeRate = maxFeeRate;
+        this.finalize = finalize;
+    }
+
+    public Report process(Psbt psbt) {
+        if (signer.getNetwork() != psbt.getNetwork())
+            throw new PsbtException("Invalid key network");
+
+        Report report = new Report(psbt);
+        DerivationCache cache = new DerivationCache();
+        long start = System.nanoTime();
+
+        report.estimatedVsize = psbt.getEstimatedVsize();
+        try {
+            report.fee = psbt.getFee();
+            Float feeRate = report.getFeeRate();
+            // an unknown rate only matters when there is a cap to check it against
+            if (feeRate == null) {
+                if (maxFeeRate != NO_FEE_CAP)
+                    report.problems.add("Unknown fee rate");
+            } else if (feeRate > maxFeeRate) {
+                report.problems.add("Fee rate " + feeRate + " exceeds " + maxFeeRate);
+            }
+        } catch (PsbtException e) {
+            report.problems.add(e.getMessage());
+        }
+        long feeChecked = System.nanoTime();
+        report.feeNanos = feeChecked - start;
+
+        PsbtOutput[] outputs = psbt.getOutputs();
+        List<Integer> change = new ArrayList<>();
+        for (int i = 0; i < outputs.length; i++) {
+            if (outputs[i].isChange(signer, psbt.getInputs(), cosigners, threshold, cache))
+                change.add(i);
+        }
+        report.changeOutputs = new int[change.size()];
+        for (int i = 0; i < change.size(); i++) {
+            report.changeOutputs[i] = change.get(i);
+        }
+        long changeChecked = System.nanoTime();
+        report.changeNanos = changeChecked - feeChecked;
+
+        if (report.problems.isEmpty()) {
+            Psbt signed = psbt.signed(psbt.signingKeys(signer, cache), finalize);
+            for (int i = 0; i < signed.getInputs().length; i++) {
+                if (signed.getInputs()[i] != psbt.getInputs()[i])
+                    report.changedInputCount++;
+            }
+            report.psbt = signed;
+        }
+        long end = System.nanoTime();
+        report.signNanos = end - changeChecked;
+        report.elapsedNanos = end - start;
+        return report;
+    }
+
+    public static final class Report {
+
+        private final List<String> problems = new ArrayList<>();
+
+        private Psbt psbt;
+
+        private Long fee;
+
+        private Integer estimatedVsize;
+
+        private int[] changeOutputs;
+
+        private int changedInputCount;
+
+        private long feeNanos;
+
+        private long changeNanos;
+
+        private long signNanos;
+
+        private long elapsedNanos;
+
+        private Report(Psbt psbt) {
+            this.psbt = psbt;
+        }
+
+        public boolean isValid() {
+            return problems.isEmpty();
+        }
+
+        public List<String> getProblems() {
+            return Collections.unmodifiableList(problems);
+        }
+
+        // the signed psbt, or the unchanged input psbt if a check failed
+        public Psbt getPsbt() {
+            return psbt;
+        }
+
+        public Long getFee() {
+            return fee;
+        }
+
+        public Integer getEstimatedVsize() {
+            return estimatedVsize;
+        }
+
+        public Float getFeeRate() {
+            if (fee == null || estimatedVsize == null)
+                return null;
+
+            return (float) fee / (float) estimatedVsize;
+        }
+
+        public int[] getChangeOutputs() {
+            return changeOutputs.clone();
+        }
+
+        // inputs that got a signature or were finalized
+        public int getChangedInputCount() {
+            return changedInputCount;
+        }
+
+        // checked on the raw psbt, without another native call
+        public boolean isFinalized() {
+            for (WallyPsbtInput input : psbt.getRawPsbt().getInputs()) {
+                if (input.getFinalScriptSig() == null && input.getFinalWitness() == null)
+                    return false;
+            }
+            return true;
+        }
+
+        public long getFeeNanos() {
+            return feeNanos;
+        }
+
+        public long getChangeNanos() {
+            return changeNanos;
+        }
+
+        // signing and finalizing
+        public long getSignNanos() {
+            return signNanos;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+}
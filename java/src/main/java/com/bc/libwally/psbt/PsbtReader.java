@@ -0,0 +1,185 @@
+package com.bc.libwally.psbt;
+
+import com.bc.libwally.psbt.raw.WallyPsbt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.bc.libwally.psbt.PsbtJni.wally_psbt_from_buffer;
+import static com.bc.libwally.psbt.PsbtJni.wally_psbt_from_bytes;
+
+// Reads a binary or base64 PSBT from a buffer or stream. Binary input is handed to the native
+// parser in place where possible, base64 input is decoded chunk by chunk into a single growing
+// array, so no String or exactly sized copy of a large PSBT is ever made.
+final class PsbtReader {
+
+    // first byte of the binary magic "psbt\xff", base64 input starts with 'c' instead
+    private static final int BINARY_MAGIC = 'p';
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private PsbtReader() {
+    }
+
+    // consumes the remaining bytes of `buffer`
+    static WallyPsbt read(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        int position = buffer.position();
+        WallyPsbt psbt;
+        if (length == 0 || isBinary(buffer.get(firstNonSpace(buffer)))) {
+            if (buffer.isDirect()) {
+                psbt = wally_psbt_from_buffer(buffer, position, length);
+            } else if (buffer.hasArray()) {
+                psbt = wally_psbt_from_bytes(buffer.array(),
+                                             buffer.arrayOffset() + position,
+                                             length);
+            } else {
+                byte[] bytes = new byte[length];
+                buffer.duplicate().get(bytes);
+                psbt = wally_psbt_from_bytes(bytes, 0, length);
+            }
+        } else {
+            Base64Decoder decoder = new Base64Decoder(length / 4 * 3);
+            decoder.update(buffer.duplicate());
+            psbt = decoder.parse();
+        }
+        buffer.position(buffer.limit());
+        return psbt;
+    }
+
+    // reads `in` to its end, the stream is not closed
+    static WallyPsbt read(InputStream in) throws IOException {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int read = readFully(in, chunk);
+
+        int first = 0;
+        while (first < read && isSpace(chunk[first])) {
+            first++;
+        }
+
+        if (first == read || isBinary(chunk[first])) {
+            byte[] bytes = chunk;
+            int length = read;
+            if (length == chunk.length) {
+                // the first chunk was filled, read on until the end of the stream
+                do {
+                    if (length == bytes.length)
+                        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                    read = in.read(bytes, length, bytes.length - length);
+                    if (read > 0)
+                        length += read;
+                } while (read >= 0);
+            }
+            return wally_psbt_from_bytes(bytes, 0, length);
+        }
+
+        Base64Decoder decoder = new Base64Decoder(CHUNK_SIZE);
+        while (read > 0) {
+            decoder.update(ByteBuffer.wrap(chunk, 0, read));
+            read = readFully(in, chunk);
+        }
+        return decoder.parse();
+    }
+
+    private static int readFully(InputStream in, byte[] chunk) throws IOException {
+        int length = 0;
+        while (length < chunk.length) {
+            int read = in.read(chunk, length, chunk.length - length);
+            if (read < 0)
+                break;
+            length += read;
+        }
+        return length;
+    }
+
+    private static int firstNonSpace(ByteBuffer buffer) {
+        int index = buffer.position();
+        while (index < buffer.limit() - 1 && isSpace(buffer.get(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isBinary(byte first) {
+        return first == BINARY_MAGIC;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static final class Base64Decoder {
+
+        private static final byte[] VALUES = new byte[128];
+
+        static {
+            String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+            for (int i = 0; i < VALUES.length; i++) {
+                VALUES[i] = -1;
+            }
+            for (int i = 0; i < alphabet.length(); i++) {
+                VALUES[alphabet.charAt(i)] = (byte) i;
+            }
+        }
+
+        private byte[] output;
+
+        private int length;
+
+        private int bits;
+
+        private int count;
+
+        private int padding;
+
+        private Base64Decoder(int capacity) {
+            this.output = new byte[Math.max(capacity, 3)];
+        }
+
+        private void update(ByteBuffer input) {
+            while (input.hasRemaining()) {
+                byte c = input.get();
+                if (isSpace(c))
+                    continue;
+
+                if (c == '=') {
+                    if (count < 2)
+                        throw new PsbtException("Invalid base64 padding");
+                    padding++;
+                    count++;
+                } else {
+                    int value = c < 0 ? -1 : VALUES[c];
+                    if (value < 0 || padding > 0)
+                        throw new PsbtException("Invalid base64 character");
+                    bits = (bits << 6) | value;
+                    count++;
+                }
+
+                if (count == 4)
+                    flush();
+            }
+        }
+
+        private void flush() {
+            if (length + 3 > output.length)
+                output = Arrays.copyOf(output, output.length * 2);
+
+            bits <<= 6 * padding;
+            output[length++] = (byte) (bits >> 16);
+            if (padding < 2)
+                output[length++] = (byte) (bits >> 8);
+            if (padding < 1)
+                output[length++] = (byte) bits;
+            bits = 0;
+            count = 0;
+        }
+
+        private WallyPsbt parse() {
+            if (count != 0)
+                throw new PsbtException("Truncated base64 input");
+            return wally_psbt_from_bytes(output, 0, length);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.bc.libwally.psbt;
+
+import com.bc.libwally.psbt.raw.WallyPsbt;
+import com.bc.libwally.psbt.raw.WallyPsbtInput;
+import com.bc.libwally.tx.raw.WallyTx;
+import com.bc.libwally.tx.raw.WallyTxInput;
+import com.bc.libwally.tx.raw.WallyTxOutput;
+import com.bc.libwally.tx.raw.WallyTxWitnessStack;
+
+import static com.bc.libwally.crypto.CryptoConstants.EC_PUBLIC_KEY_LEN;
+import static com.bc.libwally.crypto.CryptoConstants.EC_SIGNATURE_DER_MAX_LEN;
+import static com.bc.libwally.script.ScriptConstant.OP_0;
+import static com.bc.libwally.script.ScriptConstant.OP_1;
+import static com.bc.libwally.script.ScriptConstant.OP_16;
+import static com.bc.libwally.script.ScriptConstant.OP_CHECKMULTISIG;
+import static com.bc.libwally.script.ScriptConstant.OP_CHECKSIG;
+import static com.bc.libwally.script.ScriptConstant.OP_DUP;
+import static com.bc.libwally.script.ScriptConstant.OP_EQUAL;
+import static com.bc.libwally.script.ScriptConstant.OP_EQUALVERIFY;
+import static com.bc.libwally.script.ScriptConstant.OP_HASH160;
+import static com.bc.libwally.script.ScriptConstant.OP_PUSHDATA1;
+import static com.bc.libwally.script.ScriptConstant.WALLY_SCRIPTPUBKEY_P2PKH_LEN;
+import static com.bc.libwally.script.ScriptConstant.WALLY_SCRIPTPUBKEY_P2SH_LEN;
+import static com.bc.libwally.script.ScriptConstant.WALLY_SCRIPTPUBKEY_P2WPKH_LEN;
+import static com.bc.libwally.script.ScriptConstant.WALLY_SCRIPTPUBKEY_P2WSH_LEN;
+
+// Estimates the vsize a psbt will have once finalized, from the scripts it already carries.
+// Finalized inputs count with their actual scriptSig and witness, the others with worst case
+// signatures for their type: p2pkh, p2wpkh, p2sh-p2wpkh, and multisig in p2sh, p2wsh or
+// p2sh-p2wsh. Works on the raw psbt only and does not call into native code.
+final class VsizeEstimator {
+
+    // DER signature plus sighash byte
+    private static final int SIG_LEN = EC_SIGNATURE_DER_MAX_LEN + 1;
+
+    private VsizeEstimator() {
+    }
+
+    // null if the type of an input is unknown or its scripts are missing
+    static Integer estimate(WallyPsbt psbt) {
+        WallyTx tx = psbt.getTx();
+        WallyTxInput[] txInputs = tx.getInputs();
+        WallyTxOutput[] txOutputs = tx.getOutputs();
+
+        long base = 4 + varIntLen(txInputs.length) + varIntLen(txOutputs.length) + 4;
+        for (WallyTxOutput output : txOutputs) {
+            base += 8 + pushedLen(output.getScript().length);
+        }
+
+        long[] witnessLens = new long[txInputs.length];
+        boolean segwit = false;
+        for (int i = 0; i < txInputs.length; i++) {
+            long[] lens = inputLens(psbt.getInputs()[i], txInputs[i]);
+            if (lens == null)
+                return null;
+            base += 32 + 4 + 4 + pushedLen(lens[0]);
+            witnessLens[i] = lens[1];
+            segwit |= lens[1] > 0;
+        }
+
+        long weight = base * 4;
+        if (segwit) {
+            // marker and flag, then one stack per input, empty ones included
+            weight += 2;
+            for (long witnessLen : witnessLens) {
+                weight += witnessLen == 0 ? 1 : witnessLen;
+            }
+        }
+        return (int) ((weight + 3) / 4);
+    }
+
+    // scriptSig length and serialized witness length of the input
+    private static long[] inputLens(WallyPsbtInput input, WallyTxInput txInput) {
+        if (input.getFinalScriptSig() != null || input.getFinalWitness() != null) {
+            byte[] scriptSig = input.getFinalScriptSig();
+            return new long[]{scriptSig == null ? 0 : scriptSig.length,
+                              witnessLen(input.getFinalWitness())};
+        }
+
+        byte[] script = prevOutScript(input, txInput);
+        if (script == null)
+            return null;
+
+        if (isP2pkh(script))
+            return new long[]{pushedLen(SIG_LEN) + pushedLen(EC_PUBLIC_KEY_LEN), 0};
+
+        long scriptSigLen = 0;
+        if (isP2sh(script)) {
+            script = input.getRedeemScript();
+            if (script == null)
+                return null;
+            if (!isP2wpkh(script) && !isP2wsh(script)) {
+                // bare multisig redeem script: OP_0 <sig>... <redeemScript>
+                int threshold = multisigThreshold(script);
+                if (threshold < 0)
+                    return null;
+                return new long[]{1 + threshold * pushedLen(SIG_LEN) + pushDataLen(script.length),
+                                  0};
+            }
+            scriptSigLen = pushedLen(script.length);
+        }
+
+        if (isP2wpkh(script))
+            return new long[]{scriptSigLen, 1 + pushedLen(SIG_LEN) + pushedLen(EC_PUBLIC_KEY_LEN)};
+
+        if (isP2wsh(script)) {
+            byte[] witnessScript = input.getWitnessScript();
+            int threshold = witnessScript == null ? -1 : multisigThreshold(witnessScript);
+            if (threshold < 0)
+                return null;
+            // empty dummy item for CHECKMULTISIG, the signatures and the witness script
+            return new long[]{scriptSigLen,
+                              varIntLen(threshold + 2) + 1 + threshold * pushedLen(SIG_LEN) +
+                              pushedLen(witnessScript.length)};
+        }
+        return null;
+    }
+
+    private static byte[] prevOutScript(WallyPsbtInput input, WallyTxInput txInput) {
+        if (input.getWitnessUtxo() != null)
+            return input.getWitnessUtxo().getScript();
+
+        WallyTx utxo = input.getUtxo();
+        if (utxo == null || txInput.getIndex() >= utxo.getOutputs().length)
+            return null;
+        return utxo.getOutputs()[(int) txInput.getIndex()].getScript();
+    }
+
+    private static long witnessLen(WallyTxWitnessStack witness) {
+        if (witness == null || witness.getItems().length == 0)
+            return 0;
+
+        long len = varIntLen(witness.getItems().length);
+        for (WallyTxWitnessStack.WallyTxWitnessItem item : witness.getItems()) {
+            len += pushedLen(item.getWitness().length);
+        }
+        return len;
+    }
+
+    // OP_m <pubkey>... OP_n OP_CHECKMULTISIG, returns m or -1 for other scripts
+    private static int multisigThreshold(byte[] script) {
+        int len = script.length;
+        if (len < 3 || (script[len - 1] & 0xff) != OP_CHECKMULTISIG)
+            return -1;
+
+        int m = script[0] & 0xff;
+        int n = script[len - 2] & 0xff;
+        if (m < OP_1 || m > OP_16 || n < m || n > OP_16)
+            return -1;
+        return m - OP_1 + 1;
+    }
+
+    private static boolean isP2pkh(byte[] script) {
+        return script.length == WALLY_SCRIPTPUBKEY_P2PKH_LEN &&
+               (script[0] & 0xff) == OP_DUP &&
+               (script[1] & 0xff) == OP_HASH160 &&
+               (script[23] & 0xff) == OP_EQUALVERIFY &&
+               (script[24] & 0xff) == OP_CHECKSIG;
+    }
+
+    private static boolean isP2sh(byte[] script) {
+        return script.length == WALLY_SCRIPTPUBKEY_P2SH_LEN &&
+               (script[0] & 0xff) == OP_HASH160 &&
+               (script[22] & 0xff) == OP_EQUAL;
+    }
+
+    private static boolean isP2wpkh(byte[] script) {
+        return script.length == WALLY_SCRIPTPUBKEY_P2WPKH_LEN && script[0] == OP_0 &&
+               script[1] == 20;
+    }
+
+    private static boolean isP2wsh(byte[] script) {
+        return script.length == WALLY_SCRIPTPUBKEY_P2WSH_LEN && script[0] == OP_0 &&
+               script[1] == 32;
+    }
+
+    // length prefixed with its compact size, as in witness items and scripts
+    private static long pushedLen(long len) {
+        return varIntLen(len) + len;
+    }
+
+    // length pushed inside a script, using the smallest push opcode
+    private static long pushDataLen(long len) {
+        if (len < OP_PUSHDATA1)
+            return 1 + len;
+        return (len <= 0xff ? 2 : len <= 0xffff ? 3 : 5) + len;
+    }
+
+    private static int varIntLen(long value) {
+        if (value < 0xfd)
+            return 1;
+        return value <= 0xffff ? 3 : value <= 0xffffffffL ? 5 : 9;
+    }
+}
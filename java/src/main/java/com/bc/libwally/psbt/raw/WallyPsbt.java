@@ -38,6 +38,27 @@ public class WallyPsbt {
         this.version = version;
     }
 
+    // Copy on write: returns a psbt sharing everything with this one except for the non null
+    // entries of `changedInputs`, which replace the inputs at the same index.
+    public WallyPsbt withInputs(WallyPsbtInput[] changedInputs) {
+        if (changedInputs.length != inputs.length)
+            throw new IllegalArgumentException("Input count mismatch");
+
+        WallyPsbtInput[] merged = inputs.clone();
+        for (int i = 0; i < merged.length; i++) {
+            if (changedInputs[i] != null)
+                merged[i] = changedInputs[i];
+        }
+        return new WallyPsbt(magic,
+                             tx,
+                             merged,
+                             inputsAllocLength,
+                             outputs,
+                             outputsAllocLength,
+                             unknowns,
+                             version);
+    }
+
     public byte[] getMagic() {
         return magic;
     }
@@ -8,6 +8,9 @@ public class WallyPsbtInput {
 
     private final WallyTx utxo;
 
+    // computed natively when the input is read, null without a utxo
+    private final byte[] utxoTxid;
+
     private final WallyTxOutput witnessUtxo;
 
     private final byte[] redeemScript;
@@ -27,6 +30,7 @@ public class WallyPsbtInput {
     private long sigHash;
 
     WallyPsbtInput(WallyTx utxo,
+                   byte[] utxoTxid,
                    WallyTxOutput witnessUtxo,
                    byte[] redeemScript,
                    byte[] witnessScript,
@@ -36,6 +40,7 @@ public class WallyPsbtInput {
                    WallyMap signatures,
                    WallyMap unknowns) {
         this.utxo = utxo;
+        this.utxoTxid = utxoTxid;
         this.witnessUtxo = witnessUtxo;
         this.redeemScript = redeemScript;
         this.witnessScript = witnessScript;
@@ -50,6 +55,10 @@ public class WallyPsbtInput {
         return utxo;
     }
 
+    public byte[] getUtxoTxid() {
+        return utxoTxid;
+    }
+
     public WallyTxOutput getWitnessUtxo() {
         return witnessUtxo;
     }
@@ -0,0 +1,129 @@
+package com.bc.libwally.script;
+
+import com.bc.libwally.Network;
+import com.bc.libwally.address.Bech32;
+import com.bc.libwally.bip32.HDKey;
+
+import java.util.Arrays;
+
+import static com.bc.libwally.crypto.CryptoConstants.EC_PUBLIC_KEY_LEN;
+import static com.bc.libwally.script.ScriptConstant.WALLY_SCRIPTPUBKEY_P2WSH_LEN;
+
+// Generates `wsh(sortedmulti(threshold, cosigners...))` witness scripts, witness programs and
+// addresses for a range of child indexes. The child keys of each cosigner are derived with one
+// JNI call per range, while BIP67 sorting, script assembly, hashing and address encoding happen
+// on the Java side through `WitnessMultisigBuilder`. Instances reuse their scratch state and are
+// not thread-safe.
+public final class MultisigScriptGenerator {
+
+    private final HDKey[] cosigners;
+
+    private final int threshold;
+
+    private final Network network;
+
+    private final int scriptLength;
+
+    private final WitnessMultisigBuilder builder;
+
+    public MultisigScriptGenerator(HDKey[] cosigners, int threshold, Network network) {
+        if (cosigners == null || cosigners.length == 0 || cosigners.length > 16)
+            throw new ScriptException("Invalid cosigners");
+        if (threshold < 1 || threshold > cosigners.length)
+            throw new ScriptException("Invalid threshold");
+
+        this.cosigners = cosigners.clone();
+        this.threshold = threshold;
+        this.network = network;
+        this.builder = new WitnessMultisigBuilder(cosigners.length, threshold, true);
+        this.scriptLength = builder.getScriptLength();
+    }
+
+    public Range generate(long startIndex, int count) {
+        byte[][] childKeys = new byte[cosigners.length][];
+        for (int i = 0; i < cosigners.length; i++) {
+            childKeys[i] = cosigners[i].getChildPubKeys(startIndex, count);
+        }
+
+        byte[] scripts = new byte[count * scriptLength];
+        byte[] programs = new byte[count * WALLY_SCRIPTPUBKEY_P2WSH_LEN];
+        String[] addresses = new String[count];
+        for (int i = 0; i < count; i++) {
+            int scriptOffset = i * scriptLength;
+            builder.writeScript(childKeys, i * EC_PUBLIC_KEY_LEN, scripts, scriptOffset);
+
+            int programOffset = i * WALLY_SCRIPTPUBKEY_P2WSH_LEN;
+            builder.writeProgram(scripts, scriptOffset, programs, programOffset);
+            addresses[i] = Bech32.encodeSegwitAddress(network,
+                                                      programs,
+                                                      programOffset,
+                                                      WALLY_SCRIPTPUBKEY_P2WSH_LEN);
+        }
+        return new Range(startIndex, count, scriptLength, scripts, programs, addresses);
+    }
+
+    // Scripts and witness programs of a range are packed back to back, every script has
+    // `getScriptLength()` bytes and every witness program `WALLY_SCRIPTPUBKEY_P2WSH_LEN` bytes.
+    public static final class Range {
+
+        private final long startIndex;
+
+        private final int count;
+
+        private final int scriptLength;
+
+        private final byte[] scripts;
+
+        private final byte[] witnessPrograms;
+
+        private final String[] addresses;
+
+        private Range(long startIndex,
+                      int count,
+                      int scriptLength,
+                      byte[] scripts,
+                      byte[] witnessPrograms,
+                      String[] addresses) {
+            this.startIndex = startIndex;
+            this.count = count;
+            this.scriptLength = scriptLength;
+            this.scripts = scripts;
+            this.witnessPrograms = witnessPrograms;
+            this.addresses = addresses;
+        }
+
+        public long getStartIndex() {
+            return startIndex;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public int getScriptLength() {
+            return scriptLength;
+        }
+
+        public byte[] getScripts() {
+            return scripts;
+        }
+
+        public byte[] getWitnessPrograms() {
+            return witnessPrograms;
+        }
+
+        public ScriptPubKey getWitnessScript(int i) {
+            int offset = i * scriptLength;
+            return new ScriptPubKey(Arrays.copyOfRange(scripts, offset, offset + scriptLength));
+        }
+
+        public byte[] getWitnessProgram(int i) {
+            int offset = i * WALLY_SCRIPTPUBKEY_P2WSH_LEN;
+            return Arrays.copyOfRange(witnessPrograms, offset, offset + WALLY_SCRIPTPUBKEY_P2WSH_LEN);
+        }
+
+        public String getAddress(int i) {
+            return addresses[i];
+        }
+    }
+}
@@ -44,4 +44,25 @@ public class ScriptConstant {
     public static final int WALLY_SCRIPT_AS_PUSH = 0x4;
 
     public static final int WALLY_SCRIPT_MULTISIG_SORTED = 0x8;
+
+    /* Script opcodes */
+    public static final int OP_0 = 0x00;
+
+    public static final int OP_PUSHDATA1 = 0x4c;
+
+    public static final int OP_1 = 0x51;
+
+    public static final int OP_16 = 0x60;
+
+    public static final int OP_DUP = 0x76;
+
+    public static final int OP_EQUAL = 0x87;
+
+    public static final int OP_EQUALVERIFY = 0x88;
+
+    public static final int OP_HASH160 = 0xa9;
+
+    public static final int OP_CHECKSIG = 0xac;
+
+    public static final int OP_CHECKMULTISIG = 0xae;
 }
@@ -1,21 +1,70 @@
 package com.bc.libwally.script;
 
+import com.bc.libwally.JniTracer;
+import com.bc.libwally.NativeLoader;
+
 class ScriptJni {
 
-    static {
-        System.loadLibrary("bc-libwally-script-jni");
+    private static final JniTracer.Source SOURCE = new JniTracer.Source("ScriptJni") {
+        @Override
+        protected void readStats(long[] stats) {
+            Native.jni_stats(stats);
+        }
+    };
+
+    static int wally_scriptpubkey_get_type(byte[] bytes) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_scriptpubkey_get_type(bytes);
+        } finally {
+            SOURCE.exit("wally_scriptpubkey_get_type", start);
+        }
+    }
+
+    static int wally_scriptpubkey_multisig_from_bytes(byte[] bytes,
+                                                      long threshold,
+                                                      long flags,
+                                                      byte[] output,
+                                                      int[] written) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_scriptpubkey_multisig_from_bytes(bytes, threshold, flags, output, written);
+        } finally {
+            SOURCE.exit("wally_scriptpubkey_multisig_from_bytes", start);
+        }
+    }
+
+    static int wally_witness_program_from_bytes(byte[] bytes,
+                                                long flags,
+                                                byte[] output,
+                                                int[] written) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_witness_program_from_bytes(bytes, flags, output, written);
+        } finally {
+            SOURCE.exit("wally_witness_program_from_bytes", start);
+        }
     }
 
-    static native int wally_scriptpubkey_get_type(byte[] bytes);
+    private static final class Native {
+
+        static {
+            NativeLoader.load();
+        }
+
+        static native int wally_scriptpubkey_get_type(byte[] bytes);
 
-    static native int wally_scriptpubkey_multisig_from_bytes(byte[] bytes,
-                                                             long threshold,
-                                                             long flags,
-                                                             byte[] output,
-                                                             int[] written);
+        static native int wally_scriptpubkey_multisig_from_bytes(byte[] bytes,
+                                                                 long threshold,
+                                                                 long flags,
+                                                                 byte[] output,
+                                                                 int[] written);
 
-    static native int wally_witness_program_from_bytes(byte[] bytes,
-                                                       long flags,
-                                                       byte[] output,
-                                                       int[] written);
+        static native int wally_witness_program_from_bytes(byte[] bytes,
+                                                           long flags,
+                                                           byte[] output,
+                                                           int[] written);
+
+        static native void jni_stats(long[] stats);
+    }
 }
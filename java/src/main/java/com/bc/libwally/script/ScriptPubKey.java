@@ -59,8 +59,9 @@ public class ScriptPubKey implements Cloneable {
         byte[] pubKeysBytes = new byte[pubKeysBytesLen];
         int offset = 0;
         for (PubKey pubKey : pubKeys) {
-            System.arraycopy(pubKey.getData(), 0, pubKeysBytes, offset, EC_PUBLIC_KEY_LEN);
-            offset += EC_PUBLIC_KEY_LEN;
+            if (!pubKey.isCompressed())
+                throw new ScriptException("Invalid pubKeys");
+            offset += pubKey.writeTo(pubKeysBytes, offset);
         }
 
         int scriptLength = 3 + pubKeys.length * (EC_PUBLIC_KEY_LEN + 1);
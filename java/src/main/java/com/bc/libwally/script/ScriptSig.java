@@ -3,9 +3,7 @@ package com.bc.libwally.script;
 import java.util.Arrays;
 import java.util.Objects;
 
-import static com.bc.libwally.ArrayUtils.append;
 import static com.bc.libwally.core.Core.hex2Bytes;
-import static com.bc.libwally.crypto.Crypto.hash160;
 import static com.bc.libwally.crypto.CryptoConstants.EC_SIGNATURE_DER_MAX_LOW_R_LEN;
 import static com.bc.libwally.tx.TxConstant.WALLY_SIGHASH_ALL;
 
@@ -16,6 +14,8 @@ public class ScriptSig implements Cloneable {
         FEE_WORST_CASE
     }
 
+    private static final byte[] DUMMY_SIGNATURE = new byte[EC_SIGNATURE_DER_MAX_LOW_R_LEN];
+
     private final ScriptSigType type;
 
     private byte[] signature;
@@ -27,39 +27,26 @@ public class ScriptSig implements Cloneable {
     public byte[] render(Purpose purpose) {
         switch (type.getType()) {
             case PAY_TO_PUBKEY_HASH:
-                byte[] sigHashBytes = new byte[]{WALLY_SIGHASH_ALL};
-                byte[] lengthPushPubKey = new byte[]{(byte) type.getPubKey().getData().length};
                 byte[] pubKeyData = type.getPubKey().getData();
 
                 switch (purpose) {
                     case FEE_WORST_CASE:
-                        byte[] dummySig = new byte[EC_SIGNATURE_DER_MAX_LOW_R_LEN];
-                        byte[] lengthPushSig = new byte[]{(byte) (dummySig.length + 1)};
-
-                        return append(lengthPushSig,
-                                      dummySig,
-                                      sigHashBytes,
-                                      lengthPushPubKey,
-                                      pubKeyData);
+                        return ScriptTemplate.pubKeyHashScriptSig(DUMMY_SIGNATURE,
+                                                                  WALLY_SIGHASH_ALL,
+                                                                  pubKeyData);
 
                     case SIGNED:
                         if (signature != null) {
-                            lengthPushSig = new byte[]{(byte) (signature.length + 1)};
-
-                            return append(lengthPushSig,
-                                          signature,
-                                          sigHashBytes,
-                                          lengthPushPubKey,
-                                          pubKeyData);
+                            return ScriptTemplate.pubKeyHashScriptSig(signature,
+                                                                      WALLY_SIGHASH_ALL,
+                                                                      pubKeyData);
                         } else {
                             return null;
                         }
 
                 }
             case PAY_TO_SCRIPT_HASH_PAY_TO_WITNESS_PUBKEY_HASH:
-                byte[] pubKeyHashBytes = hash160(type.getPubKey().getData());
-                byte[] redeemScript = append(hex2Bytes("0014"), pubKeyHashBytes);
-                return append(new byte[]{(byte) redeemScript.length}, redeemScript);
+                return ScriptTemplate.pushedPayToWitnessPubKeyHash(type.getPubKeyHash());
         }
 
         return null;
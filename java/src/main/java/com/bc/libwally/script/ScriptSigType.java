@@ -4,6 +4,8 @@ import com.bc.libwally.address.PubKey;
 
 import java.util.Objects;
 
+import static com.bc.libwally.crypto.Crypto.hash160;
+
 public class ScriptSigType implements Cloneable {
     public enum Type {
         PAY_TO_PUBKEY_HASH, // P2PKH
@@ -14,6 +16,9 @@ public class ScriptSigType implements Cloneable {
 
     private final PubKey pubKey;
 
+    // hash160 of `pubKey`, computed on first use
+    private byte[] pubKeyHash;
+
     public static ScriptSigType payToPubKeyHash(PubKey pubKey) {
         return new ScriptSigType(Type.PAY_TO_PUBKEY_HASH, pubKey);
     }
@@ -35,6 +40,15 @@ public class ScriptSigType implements Cloneable {
         return pubKey;
     }
 
+    byte[] getPubKeyHash() {
+        byte[] hash = pubKeyHash;
+        if (hash == null) {
+            hash = hash160(pubKey.getData());
+            pubKeyHash = hash;
+        }
+        return hash;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o)
@@ -0,0 +1,90 @@
+package com.bc.libwally.script;
+
+import static com.bc.libwally.crypto.CryptoConstants.HASH160_LEN;
+import static com.bc.libwally.script.ScriptConstant.OP_0;
+import static com.bc.libwally.script.ScriptConstant.OP_CHECKSIG;
+import static com.bc.libwally.script.ScriptConstant.OP_DUP;
+import static com.bc.libwally.script.ScriptConstant.OP_EQUALVERIFY;
+import static com.bc.libwally.script.ScriptConstant.OP_HASH160;
+import static com.bc.libwally.script.ScriptConstant.WALLY_SCRIPTPUBKEY_P2PKH_LEN;
+import static com.bc.libwally.script.ScriptConstant.WALLY_SCRIPTPUBKEY_P2WPKH_LEN;
+
+// Writes a script into a single buffer sized up front, for the fixed layouts rendered on every
+// signing and fee estimation pass. Only direct pushes (< OP_PUSHDATA1) are supported, which
+// covers keys, hashes and signatures.
+final class ScriptTemplate {
+
+    private static final int MAX_DIRECT_PUSH = 75;
+
+    private final byte[] script;
+
+    private int pos;
+
+    ScriptTemplate(int length) {
+        this.script = new byte[length];
+    }
+
+    static int pushLength(int dataLength) {
+        return 1 + dataLength;
+    }
+
+    ScriptTemplate op(int opcode) {
+        script[pos++] = (byte) opcode;
+        return this;
+    }
+
+    ScriptTemplate push(byte[] data) {
+        return push(data, 0, data.length);
+    }
+
+    ScriptTemplate push(byte[] data, int offset, int length) {
+        if (length > MAX_DIRECT_PUSH)
+            throw new ScriptException("Push too large");
+        script[pos++] = (byte) length;
+        System.arraycopy(data, offset, script, pos, length);
+        pos += length;
+        return this;
+    }
+
+    // pushes a DER signature followed by its sighash type byte
+    ScriptTemplate pushSignature(byte[] signature, int sigHash) {
+        if (signature.length + 1 > MAX_DIRECT_PUSH)
+            throw new ScriptException("Push too large");
+        script[pos++] = (byte) (signature.length + 1);
+        System.arraycopy(signature, 0, script, pos, signature.length);
+        pos += signature.length;
+        script[pos++] = (byte) sigHash;
+        return this;
+    }
+
+    byte[] build() {
+        if (pos != script.length)
+            throw new ScriptException("Script length mismatch");
+        return script;
+    }
+
+    // OP_DUP OP_HASH160 <20> OP_EQUALVERIFY OP_CHECKSIG, also the P2WPKH script code
+    static byte[] payToPubKeyHash(byte[] pubKeyHash) {
+        return new ScriptTemplate(WALLY_SCRIPTPUBKEY_P2PKH_LEN).op(OP_DUP)
+                                                               .op(OP_HASH160)
+                                                               .push(pubKeyHash)
+                                                               .op(OP_EQUALVERIFY)
+                                                               .op(OP_CHECKSIG)
+                                                               .build();
+    }
+
+    // <22> OP_0 <20>, the pushed P2WPKH program used as P2SH-P2WPKH scriptSig
+    static byte[] pushedPayToWitnessPubKeyHash(byte[] pubKeyHash) {
+        int length = pushLength(WALLY_SCRIPTPUBKEY_P2WPKH_LEN);
+        return new ScriptTemplate(length).op(WALLY_SCRIPTPUBKEY_P2WPKH_LEN)
+                                         .op(OP_0)
+                                         .push(pubKeyHash, 0, HASH160_LEN)
+                                         .build();
+    }
+
+    // <sig + sighash> <pubkey>
+    static byte[] pubKeyHashScriptSig(byte[] signature, int sigHash, byte[] pubKey) {
+        int length = pushLength(signature.length + 1) + pushLength(pubKey.length);
+        return new ScriptTemplate(length).pushSignature(signature, sigHash).push(pubKey).build();
+    }
+}
@@ -6,9 +6,6 @@ import com.bc.libwally.tx.raw.WallyTxWitnessStack;
 import java.util.Arrays;
 import java.util.Objects;
 
-import static com.bc.libwally.ArrayUtils.append;
-import static com.bc.libwally.core.Core.hex2Bytes;
-import static com.bc.libwally.crypto.Crypto.hash160;
 import static com.bc.libwally.crypto.CryptoConstants.EC_SIGNATURE_DER_MAX_LOW_R_LEN;
 
 public class Witness implements Cloneable {
@@ -41,8 +38,7 @@ public class Witness implements Cloneable {
     }
 
     public byte[] getScriptCode() {
-        byte[] pubKeyHashBytes = hash160(type.getPubKey().getData());
-        return append(hex2Bytes("76a914"), pubKeyHashBytes, hex2Bytes("88ac"));
+        return ScriptTemplate.payToPubKeyHash(type.getPubKeyHash());
     }
 
     public byte[] getSignature() {
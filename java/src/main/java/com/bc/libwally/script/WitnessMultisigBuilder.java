@@ -0,0 +1,97 @@
+package com.bc.libwally.script;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static com.bc.libwally.crypto.CryptoConstants.EC_PUBLIC_KEY_LEN;
+import static com.bc.libwally.crypto.CryptoConstants.SHA256_LEN;
+import static com.bc.libwally.script.ScriptConstant.OP_0;
+import static com.bc.libwally.script.ScriptConstant.OP_1;
+import static com.bc.libwally.script.ScriptConstant.OP_CHECKMULTISIG;
+
+// Assembles `OP_k <key>... OP_n OP_CHECKMULTISIG` witness scripts from child keys packed back to
+// back, one array per cosigner, and hashes them into p2wsh witness programs. Shared by the
+// multisig generator and output descriptors. Instances reuse their scratch state and are not
+// thread-safe.
+public final class WitnessMultisigBuilder {
+
+    private final int threshold;
+
+    private final boolean sorted;
+
+    private final int[] order;
+
+    private final int scriptLength;
+
+    private final MessageDigest sha256;
+
+    // `sorted` orders the keys of every script as in BIP67
+    public WitnessMultisigBuilder(int keyCount, int threshold, boolean sorted) {
+        if (keyCount < 1 || keyCount > 16 || threshold < 1 || threshold > keyCount)
+            throw new ScriptException("Invalid multisig parameters");
+
+        this.threshold = threshold;
+        this.sorted = sorted;
+        this.order = new int[keyCount];
+        this.scriptLength = 3 + keyCount * (EC_PUBLIC_KEY_LEN + 1);
+        try {
+            this.sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new ScriptException(e.getMessage());
+        }
+    }
+
+    public int getScriptLength() {
+        return scriptLength;
+    }
+
+    // writes the script over the keys at `keyOffset` of every `keys[i]`
+    public void writeScript(byte[][] keys, int keyOffset, byte[] output, int offset) {
+        sortKeys(keys, keyOffset);
+
+        int pos = offset;
+        output[pos++] = (byte) (OP_1 + threshold - 1);
+        for (int index : order) {
+            output[pos++] = EC_PUBLIC_KEY_LEN;
+            System.arraycopy(keys[index], keyOffset, output, pos, EC_PUBLIC_KEY_LEN);
+            pos += EC_PUBLIC_KEY_LEN;
+        }
+        output[pos++] = (byte) (OP_1 + order.length - 1);
+        output[pos] = (byte) OP_CHECKMULTISIG;
+    }
+
+    // writes `OP_0 <sha256(script)>` for the script at `scriptOffset`
+    public void writeProgram(byte[] scripts, int scriptOffset, byte[] output, int offset) {
+        output[offset] = OP_0;
+        output[offset + 1] = SHA256_LEN;
+        sha256.update(scripts, scriptOffset, scriptLength);
+        try {
+            sha256.digest(output, offset + 2, SHA256_LEN);
+        } catch (DigestException e) {
+            throw new ScriptException(e.getMessage());
+        }
+    }
+
+    // BIP67: lexicographic order of the serialized compressed keys, an insertion sort over the
+    // handful of cosigners into `order`
+    private void sortKeys(byte[][] keys, int offset) {
+        for (int i = 0; i < order.length; i++) {
+            int j = i;
+            while (sorted && j > 0 && compareKeys(keys[order[j - 1]], keys[i], offset) > 0) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = i;
+        }
+    }
+
+    private static int compareKeys(byte[] a, byte[] b, int offset) {
+        for (int i = offset; i < offset + EC_PUBLIC_KEY_LEN; i++) {
+            int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+            if (cmp != 0)
+                return cmp;
+        }
+        return 0;
+    }
+}
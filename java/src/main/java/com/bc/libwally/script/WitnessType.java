@@ -4,6 +4,8 @@ import com.bc.libwally.address.PubKey;
 
 import java.util.Objects;
 
+import static com.bc.libwally.crypto.Crypto.hash160;
+
 public class WitnessType implements Cloneable {
 
     public enum Type {
@@ -15,6 +17,9 @@ public class WitnessType implements Cloneable {
 
     private final PubKey pubKey;
 
+    // hash160 of `pubKey`, computed on first use
+    private byte[] pubKeyHash;
+
     public static WitnessType payToWitnessPubKeyHash(PubKey pubKey) {
         return new WitnessType(Type.PAY_TO_WITNESS_PUBKEY_HASH, pubKey);
     }
@@ -32,6 +37,15 @@ public class WitnessType implements Cloneable {
         return pubKey;
     }
 
+    byte[] getPubKeyHash() {
+        byte[] hash = pubKeyHash;
+        if (hash == null) {
+            hash = hash160(pubKey.getData());
+            pubKeyHash = hash;
+        }
+        return hash;
+    }
+
     public Type getType() {
         return type;
     }
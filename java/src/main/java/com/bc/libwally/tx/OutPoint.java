@@ -0,0 +1,165 @@
+package com.bc.libwally.tx;
+
+import static com.bc.libwally.ArrayUtils.reversed;
+import static com.bc.libwally.core.Core.bytes2Hex;
+import static com.bc.libwally.core.Core.hex2Bytes;
+import static com.bc.libwally.crypto.CryptoConstants.SHA256_LEN;
+
+// Reference to a transaction output, immutable and cheap to hash and compare so it can key large
+// utxo maps. The tx hash is kept in internal byte order packed into four longs, the hash code is
+// computed once. Ordering is by tx hash bytes, then vout, both unsigned.
+public final class OutPoint implements Comparable<OutPoint> {
+
+    // tx hash followed by the little endian vout, as in a serialized tx input
+    public static final int SERIALIZED_LEN = SHA256_LEN + 4;
+
+    private final long hash0;
+
+    private final long hash1;
+
+    private final long hash2;
+
+    private final long hash3;
+
+    private final int vout;
+
+    private final int hashCode;
+
+    public OutPoint(byte[] txHash, long vout) {
+        this(checkTxHash(txHash), 0, vout);
+    }
+
+    public OutPoint(byte[] txHash, int offset, long vout) {
+        if (txHash == null || offset < 0 || txHash.length - offset < SHA256_LEN)
+            throw new TxException("invalid tx hash");
+        if (vout < 0 || vout > 0xffffffffL)
+            throw new TxException("invalid vout");
+
+        this.hash0 = readLong(txHash, offset);
+        this.hash1 = readLong(txHash, offset + 8);
+        this.hash2 = readLong(txHash, offset + 16);
+        this.hash3 = readLong(txHash, offset + 24);
+        this.vout = (int) vout;
+        // the tx hash is uniformly distributed already, a few of its bits are enough
+        this.hashCode = 31 * (int) (hash0 ^ (hash0 >>> 32)) + this.vout;
+    }
+
+    // `txid` in the reversed hex form shown by explorers and RPCs
+    public static OutPoint fromTxid(String txid, long vout) {
+        return new OutPoint(reversed(hex2Bytes(txid)), vout);
+    }
+
+    public static OutPoint fromBytes(byte[] data, int offset) {
+        if (data == null || offset < 0 || data.length - offset < SERIALIZED_LEN)
+            throw new TxException("invalid outpoint");
+
+        int index = offset + SHA256_LEN;
+        long vout = (data[index] & 0xffL) |
+                    (data[index + 1] & 0xffL) << 8 |
+                    (data[index + 2] & 0xffL) << 16 |
+                    (data[index + 3] & 0xffL) << 24;
+        return new OutPoint(data, offset, vout);
+    }
+
+    private static byte[] checkTxHash(byte[] txHash) {
+        if (txHash == null || txHash.length != SHA256_LEN)
+            throw new TxException("invalid tx hash");
+        return txHash;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | (bytes[offset + i] & 0xffL);
+        }
+        return value;
+    }
+
+    private static void writeLong(long value, byte[] bytes, int offset) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    // in internal byte order
+    public byte[] getTxHash() {
+        byte[] txHash = new byte[SHA256_LEN];
+        writeTxHash(txHash, 0);
+        return txHash;
+    }
+
+    public void writeTxHash(byte[] output, int offset) {
+        writeLong(hash0, output, offset);
+        writeLong(hash1, output, offset + 8);
+        writeLong(hash2, output, offset + 16);
+        writeLong(hash3, output, offset + 24);
+    }
+
+    public String getTxid() {
+        return bytes2Hex(reversed(getTxHash()));
+    }
+
+    public long getVout() {
+        return vout & 0xffffffffL;
+    }
+
+    public byte[] toBytes() {
+        byte[] data = new byte[SERIALIZED_LEN];
+        writeTo(data, 0);
+        return data;
+    }
+
+    public int writeTo(byte[] output, int offset) {
+        writeTxHash(output, offset);
+        int index = offset + SHA256_LEN;
+        output[index] = (byte) vout;
+        output[index + 1] = (byte) (vout >>> 8);
+        output[index + 2] = (byte) (vout >>> 16);
+        output[index + 3] = (byte) (vout >>> 24);
+        return SERIALIZED_LEN;
+    }
+
+    @Override
+    public int compareTo(OutPoint o) {
+        int result = compareUnsigned(hash0, o.hash0);
+        if (result == 0)
+            result = compareUnsigned(hash1, o.hash1);
+        if (result == 0)
+            result = compareUnsigned(hash2, o.hash2);
+        if (result == 0)
+            result = compareUnsigned(hash3, o.hash3);
+        if (result == 0)
+            result = Long.compare(getVout(), o.getVout());
+        return result;
+    }
+
+    // Long.compareUnsigned is not available on all supported Android versions
+    private static int compareUnsigned(long a, long b) {
+        return Long.compare(a + Long.MIN_VALUE, b + Long.MIN_VALUE);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        OutPoint outPoint = (OutPoint) o;
+        return hash0 == outPoint.hash0 &&
+               hash1 == outPoint.hash1 &&
+               hash2 == outPoint.hash2 &&
+               hash3 == outPoint.hash3 &&
+               vout == outPoint.vout;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return getTxid() + ":" + getVout();
+    }
+}
@@ -0,0 +1,8 @@
+package com.bc.libwally.tx;
+
+// How `Transaction.signed` checks the signatures it produces
+public enum SigningPolicy {
+    VERIFY_EACH, // verify the key and each signature right after signing its input
+    VERIFY_BATCH, // verify all signatures in a single native call once every input is signed
+    TRUST // skip verification, invalid keys are still rejected by the signer
+}
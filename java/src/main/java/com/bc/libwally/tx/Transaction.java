@@ -1,12 +1,21 @@
 package com.bc.libwally.tx;
 
+import com.bc.libwally.NativeExecutor;
 import com.bc.libwally.bip32.HDKey;
+import com.bc.libwally.crypto.CryptoException;
 import com.bc.libwally.script.ScriptSig;
 import com.bc.libwally.script.Witness;
 import com.bc.libwally.tx.raw.WallyTx;
 import com.bc.libwally.tx.raw.WallyTxWitnessStack;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import static com.bc.libwally.ArrayUtils.append;
 import static com.bc.libwally.ArrayUtils.reversed;
@@ -18,21 +27,25 @@ import static com.bc.libwally.crypto.Crypto.ecSig2Der;
 import static com.bc.libwally.crypto.Crypto.ecSigFromBytes;
 import static com.bc.libwally.crypto.Crypto.ecSigNormalize;
 import static com.bc.libwally.crypto.Crypto.ecSigVerify;
+import static com.bc.libwally.crypto.Crypto.ecSigVerifyBatch;
 import static com.bc.libwally.crypto.CryptoConstants.EC_FLAG_ECDSA;
 import static com.bc.libwally.crypto.CryptoConstants.EC_FLAG_GRIND_R;
+import static com.bc.libwally.crypto.CryptoConstants.EC_PUBLIC_KEY_LEN;
+import static com.bc.libwally.crypto.CryptoConstants.EC_SIGNATURE_DER_MAX_LEN;
+import static com.bc.libwally.crypto.CryptoConstants.EC_SIGNATURE_LEN;
 import static com.bc.libwally.crypto.CryptoConstants.SHA256_LEN;
 import static com.bc.libwally.tx.TxConstant.WALLY_SIGHASH_ALL;
 import static com.bc.libwally.tx.TxConstant.WALLY_TX_FLAG_USE_WITNESS;
-import static com.bc.libwally.tx.TxJni.wally_tx_add_input;
-import static com.bc.libwally.tx.TxJni.wally_tx_add_output;
+import static com.bc.libwally.tx.TxJni.wally_tx_build;
 import static com.bc.libwally.tx.TxJni.wally_tx_clone_alloc;
 import static com.bc.libwally.tx.TxJni.wally_tx_from_bytes;
 import static com.bc.libwally.tx.TxJni.wally_tx_get_btc_signature_hash;
 import static com.bc.libwally.tx.TxJni.wally_tx_get_total_output_satoshi;
 import static com.bc.libwally.tx.TxJni.wally_tx_get_vsize;
-import static com.bc.libwally.tx.TxJni.wally_tx_init_alloc;
 import static com.bc.libwally.tx.TxJni.wally_tx_set_input_script;
 import static com.bc.libwally.tx.TxJni.wally_tx_set_input_witness;
+import static com.bc.libwally.tx.TxJni.wally_tx_to_buffer;
+import static com.bc.libwally.tx.TxJni.wally_tx_to_bytes;
 import static com.bc.libwally.tx.TxJni.wally_tx_to_hex;
 import static com.bc.libwally.tx.TxJni.wally_tx_witness_stack_init_alloc;
 import static com.bc.libwally.tx.TxJni.wally_tx_witness_stack_set;
@@ -48,13 +61,20 @@ public class Transaction {
     private final WallyTx rawTx;
 
     public static WallyTxWitnessStack createWallyTxWitnessStack(Witness witness) {
-        WallyTxWitnessStack stack = wally_tx_witness_stack_init_alloc(2);
-        byte[] sigHashBytes = new byte[]{WALLY_SIGHASH_ALL};
-        stack = wally_tx_witness_stack_set(stack, 0, append(witness.getSignature(), sigHashBytes));
-        stack = wally_tx_witness_stack_set(stack, 1, witness.getType().getPubKey().getData());
+        byte[][] items = witnessItems(witness);
+        WallyTxWitnessStack stack = wally_tx_witness_stack_init_alloc(items.length);
+        for (int i = 0; i < items.length; i++) {
+            stack = wally_tx_witness_stack_set(stack, i, items[i]);
+        }
         return stack;
     }
 
+    private static byte[][] witnessItems(Witness witness) {
+        byte[] sigHashBytes = new byte[]{WALLY_SIGHASH_ALL};
+        return new byte[][]{append(witness.getSignature(), sigHashBytes),
+                            witness.getType().getPubKey().getData()};
+    }
+
     public Transaction(WallyTx rawTx) {
         this.rawTx = rawTx;
         this.hash = null;
@@ -82,16 +102,74 @@ public class Transaction {
         int version = 1;
         int locktime = 0;
 
-        WallyTx tx = wally_tx_init_alloc(version, locktime, inputs.length, outputs.length);
-        for (TxInput input : inputs) {
-            tx = wally_tx_add_input(tx, input.createWallyTxInput());
+        // everything is packed into flat arrays so the whole transaction is built in a single
+        // JNI call instead of one call per input and output
+        byte[] txHashes = new byte[inputs.length * SHA256_LEN];
+        long[] indexes = new long[inputs.length];
+        long[] sequences = new long[inputs.length];
+        int[] witnessCounts = new int[inputs.length];
+        byte[][][] witnesses = new byte[inputs.length][][];
+        int witnessItemCount = 0;
+        int witnessDataLen = 0;
+        for (int i = 0; i < inputs.length; i++) {
+            TxInput input = inputs[i];
+            input.getOutPoint().writeTxHash(txHashes, i * SHA256_LEN);
+            indexes[i] = input.getOutPoint().getVout();
+            sequences[i] = input.getSequence();
+            if (input.getWitness() == null) {
+                witnessCounts[i] = -1;
+                continue;
+            }
+            witnesses[i] = witnessItems(input.getWitness());
+            witnessCounts[i] = witnesses[i].length;
+            witnessItemCount += witnesses[i].length;
+            for (byte[] item : witnesses[i]) {
+                witnessDataLen += item.length;
+            }
+        }
+
+        byte[] witnessData = new byte[witnessDataLen];
+        int[] witnessItemLens = new int[witnessItemCount];
+        int item = 0;
+        int offset = 0;
+        for (byte[][] witness : witnesses) {
+            if (witness == null)
+                continue;
+            for (byte[] data : witness) {
+                System.arraycopy(data, 0, witnessData, offset, data.length);
+                witnessItemLens[item++] = data.length;
+                offset += data.length;
+            }
+        }
+
+        long[] satoshis = new long[outputs.length];
+        int[] scriptLens = new int[outputs.length];
+        int scriptsLen = 0;
+        for (int i = 0; i < outputs.length; i++) {
+            satoshis[i] = outputs[i].getAmount();
+            scriptLens[i] = outputs[i].getScriptPubKey().getData().length;
+            scriptsLen += scriptLens[i];
         }
 
-        for (TxOutput output : outputs) {
-            tx = wally_tx_add_output(tx, output.createWallyTxOutput());
+        byte[] scripts = new byte[scriptsLen];
+        offset = 0;
+        for (int i = 0; i < outputs.length; i++) {
+            byte[] script = outputs[i].getScriptPubKey().getData();
+            System.arraycopy(script, 0, scripts, offset, script.length);
+            offset += scriptLens[i];
         }
 
-        this.rawTx = tx;
+        this.rawTx = wally_tx_build(version,
+                                    locktime,
+                                    txHashes,
+                                    indexes,
+                                    sequences,
+                                    witnessData,
+                                    witnessItemLens,
+                                    witnessCounts,
+                                    satoshis,
+                                    scripts,
+                                    scriptLens);
     }
 
     private Transaction(TxInput[] inputs, TxOutput[] outputs, WallyTx rawTx) {
@@ -102,19 +180,85 @@ public class Transaction {
     }
 
     public String getDescription() {
-        if (rawTx == null) {
+        if (!isComplete()) {
             return null;
         }
 
+        return wally_tx_to_hex(rawTx, WALLY_TX_FLAG_USE_WITNESS);
+    }
+
+    public byte[] getBytes() {
+        return getBytes(true);
+    }
+
+    // Like `getDescription()` this returns null while the tx is unknown or not fully signed, so
+    // callers can probe for completeness. The `writeTo` methods write into caller owned targets
+    // and throw a TxException in that state instead.
+    public byte[] getBytes(boolean withWitness) {
+        if (!isComplete()) {
+            return null;
+        }
+
+        return wally_tx_to_bytes(rawTx, serializationFlags(withWitness));
+    }
+
+    public int writeTo(ByteBuffer buffer) {
+        return writeTo(buffer, true);
+    }
+
+    // Writes the serialized tx at the buffer's position and advances it. Direct buffers are
+    // written to in place by the native side, nothing is written if the tx does not fit or is
+    // not complete, the latter throwing a TxException where `getBytes` returns null.
+    public int writeTo(ByteBuffer buffer, boolean withWitness) {
+        if (!isComplete())
+            throw new TxException("Transaction is not complete");
+
+        if (buffer.isReadOnly())
+            throw new ReadOnlyBufferException();
+
+        long flags = serializationFlags(withWitness);
+        if (!buffer.isDirect()) {
+            byte[] bytes = wally_tx_to_bytes(rawTx, flags);
+            buffer.put(bytes);
+            return bytes.length;
+        }
+
+        int position = buffer.position();
+        int len = wally_tx_to_buffer(rawTx, flags, buffer, position, buffer.remaining());
+        if (len > buffer.remaining())
+            throw new BufferOverflowException();
+        buffer.position(position + len);
+        return len;
+    }
+
+    public int writeTo(OutputStream out) throws IOException {
+        return writeTo(out, true);
+    }
+
+    public int writeTo(OutputStream out, boolean withWitness) throws IOException {
+        if (!isComplete())
+            throw new TxException("Transaction is not complete");
+
+        byte[] bytes = wally_tx_to_bytes(rawTx, serializationFlags(withWitness));
+        out.write(bytes);
+        return bytes.length;
+    }
+
+    private boolean isComplete() {
+        if (rawTx == null)
+            return false;
+
         if (inputs != null) {
             for (TxInput input : inputs) {
-                if (!input.isSigned()) {
-                    return null;
-                }
+                if (!input.isSigned())
+                    return false;
             }
         }
+        return true;
+    }
 
-        return wally_tx_to_hex(rawTx, WALLY_TX_FLAG_USE_WITNESS);
+    private static long serializationFlags(boolean withWitness) {
+        return withWitness ? WALLY_TX_FLAG_USE_WITNESS : 0;
     }
 
     public Long getTotalIn() {
@@ -180,7 +324,30 @@ public class Transaction {
         return (float) fee / (float) vbytes;
     }
 
+    public CompletableFuture<Transaction> signedAsync(HDKey[] keys) {
+        return signedAsync(keys, NativeExecutor.getDefault());
+    }
+
+    public CompletableFuture<Transaction> signedAsync(HDKey[] keys, NativeExecutor executor) {
+        return signedAsync(keys, SigningPolicy.VERIFY_EACH, executor);
+    }
+
+    public CompletableFuture<Transaction> signedAsync(final HDKey[] keys,
+                                                      final SigningPolicy policy,
+                                                      NativeExecutor executor) {
+        return executor.supplyAsync(new Supplier<Transaction>() {
+            @Override
+            public Transaction get() {
+                return signed(keys, policy);
+            }
+        });
+    }
+
     public Transaction signed(HDKey[] keys) {
+        return signed(keys, SigningPolicy.VERIFY_EACH);
+    }
+
+    public Transaction signed(HDKey[] keys, SigningPolicy policy) {
         if (rawTx == null)
             throw new TxException("No tx to sign");
 
@@ -195,10 +362,21 @@ public class Transaction {
             WallyTx clonedTx = nativeCloneTx();
             TxInput[] inputs = cloneInputs(this.inputs);
 
+            // packed pub keys, sighashes and compact signatures for `VERIFY_BATCH`
+            boolean batch = policy == SigningPolicy.VERIFY_BATCH;
+            byte[] pubKeys = batch ? new byte[inputs.length * EC_PUBLIC_KEY_LEN] : null;
+            byte[] messages = batch ? new byte[inputs.length * SHA256_LEN] : null;
+            byte[] sigs = batch ? new byte[inputs.length * EC_SIGNATURE_LEN] : null;
+
+            // reused across inputs, every one of them is fully overwritten per input
+            byte[] messageBytes = new byte[SHA256_LEN];
+            byte[] compactSigBytes = new byte[EC_SIGNATURE_LEN];
+            byte[] sigNormBytes = new byte[EC_SIGNATURE_LEN];
+            byte[] derBytes = new byte[EC_SIGNATURE_DER_MAX_LEN];
+
             for (int i = 0; i < inputs.length; i++) {
                 TxInput input = inputs[i];
                 boolean hasWitness = input.getWitness() != null;
-                byte[] messageBytes = new byte[SHA256_LEN];
 
                 if (hasWitness) {
                     switch (input.getWitness().getType().getType()) {
@@ -251,27 +429,45 @@ public class Transaction {
                 privKey = slice(privKey, 1, privKey.length);
 
                 // Ensure private key is valid
-                if (!ecPrvKeyVerify(privKey)) {
+                if (policy == SigningPolicy.VERIFY_EACH && !ecPrvKeyVerify(privKey)) {
                     throw new TxException("Invalid private key");
                 }
 
-                byte[] compactSigBytes = ecSigFromBytes(privKey,
-                                                        messageBytes,
-                                                        EC_FLAG_ECDSA | EC_FLAG_GRIND_R);
+                try {
+                    ecSigFromBytes(privKey,
+                                   messageBytes,
+                                   EC_FLAG_ECDSA | EC_FLAG_GRIND_R,
+                                   compactSigBytes,
+                                   0);
+                } catch (CryptoException e) {
+                    throw new TxException("Invalid private key");
+                }
 
                 // Check that signature is valid and for the correct public key
-                if (!ecSigVerify(keys[i].getRawKey().getPubKey(),
+                if (policy == SigningPolicy.VERIFY_EACH &&
+                    !ecSigVerify(keys[i].getRawKey().getPubKey(),
                                  messageBytes,
                                  EC_FLAG_ECDSA,
                                  compactSigBytes)) {
                     throw new TxException("Could not verify signature");
                 }
 
+                if (batch) {
+                    byte[] pubKey = keys[i].getRawKey().getPubKey();
+                    System.arraycopy(pubKey, 0, pubKeys, i * EC_PUBLIC_KEY_LEN, EC_PUBLIC_KEY_LEN);
+                    System.arraycopy(messageBytes, 0, messages, i * SHA256_LEN, SHA256_LEN);
+                    System.arraycopy(compactSigBytes,
+                                     0,
+                                     sigs,
+                                     i * EC_SIGNATURE_LEN,
+                                     EC_SIGNATURE_LEN);
+                }
+
                 // Convert to low s form
-                byte[] sigNormBytes = ecSigNormalize(compactSigBytes);
+                ecSigNormalize(compactSigBytes, sigNormBytes, 0);
 
                 // Convert normalized signature to DER
-                byte[] sigBytes = ecSig2Der(sigNormBytes);
+                byte[] sigBytes = slice(derBytes, 0, ecSig2Der(sigNormBytes, derBytes, 0));
 
                 // Store signature in TxInput
                 if (hasWitness) {
@@ -288,6 +484,10 @@ public class Transaction {
                 }
             }
 
+            if (batch && ecSigVerifyBatch(pubKeys, messages, EC_FLAG_ECDSA, sigs) != -1) {
+                throw new TxException("Could not verify signature");
+            }
+
             return new Transaction(inputs, outputs, clonedTx);
 
         } catch (CloneNotSupportedException e) {
@@ -0,0 +1,127 @@
+package com.bc.libwally.tx;
+
+import com.bc.libwally.tx.raw.WallyTx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.bc.libwally.tx.TxConstant.WALLY_TX_FLAG_USE_WITNESS;
+import static com.bc.libwally.tx.TxJni.wally_tx_from_bytes_batch;
+
+// Decodes batches of serialized transactions, e.g. the results of `getrawtransaction` or
+// `getblock`, with one JNI call per batch instead of two per transaction. Hex is decoded on the
+// Java side into a single buffer and the returned transactions only wrap the decoded `WallyTx`.
+public final class TransactionDecoder {
+
+    private TransactionDecoder() {
+    }
+
+    public static Transaction[] decode(String[] hexes) {
+        return decode(hexes, null, 0);
+    }
+
+    public static Transaction[] decode(String[] hexes, ExecutorService executor, int chunkSize) {
+        int[] offsets = new int[hexes.length];
+        int[] lengths = new int[hexes.length];
+        int total = 0;
+        for (int i = 0; i < hexes.length; i++) {
+            int len = hexes[i].length();
+            if (len % 2 != 0)
+                throw new TxException("Invalid hex at index " + i);
+            offsets[i] = total;
+            lengths[i] = len / 2;
+            total += lengths[i];
+        }
+
+        byte[] data = new byte[total];
+        for (int i = 0; i < hexes.length; i++) {
+            if (!decodeHex(hexes[i], data, offsets[i]))
+                throw new TxException("Invalid hex at index " + i);
+        }
+        return decode(data, offsets, lengths, executor, chunkSize);
+    }
+
+    public static Transaction[] decode(byte[] data, int[] offsets, int[] lengths) {
+        return decode(data, offsets, lengths, null, 0);
+    }
+
+    // With an executor the batch is split into chunks of `chunkSize` transactions which are
+    // decoded concurrently, one JNI call per chunk.
+    public static Transaction[] decode(byte[] data,
+                                       int[] offsets,
+                                       int[] lengths,
+                                       ExecutorService executor,
+                                       int chunkSize) {
+        if (offsets.length != lengths.length)
+            throw new TxException("offsets and lengths differ in length");
+
+        if (executor == null || chunkSize <= 0 || offsets.length <= chunkSize) {
+            return wrap(wally_tx_from_bytes_batch(data,
+                                                  offsets,
+                                                  lengths,
+                                                  WALLY_TX_FLAG_USE_WITNESS));
+        }
+
+        List<Future<WallyTx[]>> chunks = new ArrayList<>();
+        for (int from = 0; from < offsets.length; from += chunkSize) {
+            int to = Math.min(from + chunkSize, offsets.length);
+            final int[] chunkOffsets = Arrays.copyOfRange(offsets, from, to);
+            final int[] chunkLengths = Arrays.copyOfRange(lengths, from, to);
+            chunks.add(executor.submit(new Callable<WallyTx[]>() {
+                @Override
+                public WallyTx[] call() {
+                    return wally_tx_from_bytes_batch(data,
+                                                     chunkOffsets,
+                                                     chunkLengths,
+                                                     WALLY_TX_FLAG_USE_WITNESS);
+                }
+            }));
+        }
+
+        Transaction[] txs = new Transaction[offsets.length];
+        int index = 0;
+        try {
+            for (Future<WallyTx[]> chunk : chunks) {
+                for (WallyTx tx : chunk.get()) {
+                    txs[index++] = new Transaction(tx);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TxException("Interrupted while decoding");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new TxException(String.valueOf(e.getCause()));
+        } finally {
+            for (Future<WallyTx[]> chunk : chunks) {
+                chunk.cancel(false);
+            }
+        }
+        return txs;
+    }
+
+    private static Transaction[] wrap(WallyTx[] rawTxs) {
+        Transaction[] txs = new Transaction[rawTxs.length];
+        for (int i = 0; i < rawTxs.length; i++) {
+            txs[i] = new Transaction(rawTxs[i]);
+        }
+        return txs;
+    }
+
+    private static boolean decodeHex(String hex, byte[] dst, int offset) {
+        for (int i = 0; i < hex.length(); i += 2) {
+            int hi = Character.digit(hex.charAt(i), 16);
+            int lo = Character.digit(hex.charAt(i + 1), 16);
+            if (hi < 0 || lo < 0)
+                return false;
+            dst[offset + i / 2] = (byte) ((hi << 4) | lo);
+        }
+        return true;
+    }
+}
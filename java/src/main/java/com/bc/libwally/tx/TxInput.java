@@ -10,9 +10,7 @@ import static com.bc.libwally.tx.TxJni.wally_tx_input_init_alloc;
 
 public class TxInput implements Cloneable {
 
-    private final byte[] txHash;
-
-    private final long vout;
+    private final OutPoint outPoint;
 
     private final long sequence;
 
@@ -24,31 +22,38 @@ public class TxInput implements Cloneable {
 
     private ScriptPubKey scriptPubKey;
 
-    public TxInput(byte[] txHash,
-                   long vout,
+    public TxInput(OutPoint outPoint,
                    long sequence,
                    long amount,
                    ScriptSig scriptSig,
                    ScriptPubKey scriptPubKey) {
-        this(txHash, vout, sequence, amount, scriptPubKey);
+        this(outPoint, sequence, amount, scriptPubKey);
         this.scriptSig = scriptSig;
     }
 
     public TxInput(byte[] txHash,
                    long vout,
+                   long sequence,
                    long amount,
                    ScriptSig scriptSig,
                    ScriptPubKey scriptPubKey) {
-        this(txHash, vout, 0xffffffff, amount, scriptSig, scriptPubKey);
+        this(new OutPoint(txHash, vout), sequence, amount, scriptSig, scriptPubKey);
     }
 
     public TxInput(byte[] txHash,
                    long vout,
+                   long amount,
+                   ScriptSig scriptSig,
+                   ScriptPubKey scriptPubKey) {
+        this(txHash, vout, 0xffffffff, amount, scriptSig, scriptPubKey);
+    }
+
+    public TxInput(OutPoint outPoint,
                    long sequence,
                    long amount,
                    Witness witness,
                    ScriptPubKey scriptPubKey) {
-        this(txHash, vout, sequence, amount, scriptPubKey);
+        this(outPoint, sequence, amount, scriptPubKey);
         this.witness = witness;
         switch (witness.getType().getType()) {
             case PAY_TO_WITNESS_PUBKEY_HASH:
@@ -61,6 +66,15 @@ public class TxInput implements Cloneable {
         }
     }
 
+    public TxInput(byte[] txHash,
+                   long vout,
+                   long sequence,
+                   long amount,
+                   Witness witness,
+                   ScriptPubKey scriptPubKey) {
+        this(new OutPoint(txHash, vout), sequence, amount, witness, scriptPubKey);
+    }
+
     public TxInput(byte[] txHash,
                    long vout,
                    long amount,
@@ -69,21 +83,16 @@ public class TxInput implements Cloneable {
         this(txHash, vout, 0xffffffff, amount, witness, scriptPubKey);
     }
 
-    private TxInput(byte[] txHash,
-                    long vout,
-                    long sequence,
-                    long amount,
-                    ScriptPubKey scriptPubKey) {
-        this.txHash = txHash;
-        this.vout = vout;
+    private TxInput(OutPoint outPoint, long sequence, long amount, ScriptPubKey scriptPubKey) {
+        this.outPoint = outPoint;
         this.sequence = sequence;
         this.amount = amount;
         this.scriptPubKey = scriptPubKey;
     }
 
     public WallyTxInput createWallyTxInput() {
-        return wally_tx_input_init_alloc(txHash,
-                                         vout,
+        return wally_tx_input_init_alloc(outPoint.getTxHash(),
+                                         outPoint.getVout(),
                                          sequence,
                                          null,
                                          witness == null
@@ -96,12 +105,16 @@ public class TxInput implements Cloneable {
                (this.witness != null && !this.witness.isDummy());
     }
 
+    public OutPoint getOutPoint() {
+        return outPoint;
+    }
+
     public byte[] getTxHash() {
-        return txHash;
+        return outPoint.getTxHash();
     }
 
     public long getVout() {
-        return vout;
+        return outPoint.getVout();
     }
 
     public long getSequence() {
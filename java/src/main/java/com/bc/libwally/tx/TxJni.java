@@ -1,60 +1,277 @@
 package com.bc.libwally.tx;
 
+import com.bc.libwally.JniTracer;
+import com.bc.libwally.NativeLoader;
 import com.bc.libwally.tx.raw.WallyTx;
 import com.bc.libwally.tx.raw.WallyTxInput;
 import com.bc.libwally.tx.raw.WallyTxOutput;
 import com.bc.libwally.tx.raw.WallyTxWitnessStack;
 
+import java.nio.ByteBuffer;
+
 class TxJni {
 
-    static {
-        System.loadLibrary("bc-libwally-tx-jni");
+    private static final JniTracer.Source SOURCE = new JniTracer.Source("TxJni") {
+        @Override
+        protected void readStats(long[] stats) {
+            Native.jni_stats(stats);
+        }
+    };
+
+    static WallyTxInput wally_tx_input_init_alloc(byte[] txHash,
+                                                  long utxoIndex,
+                                                  long sequence,
+                                                  byte[] script,
+                                                  WallyTxWitnessStack witness) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_tx_input_init_alloc(txHash, utxoIndex, sequence, script, witness);
+        } finally {
+            SOURCE.exit("wally_tx_input_init_alloc", start);
+        }
     }
 
-    static native WallyTxInput wally_tx_input_init_alloc(byte[] txHash,
-                                                         long utxoIndex,
-                                                         long sequence,
-                                                         byte[] script,
-                                                         WallyTxWitnessStack witness);
+    static WallyTx wally_tx_clone_alloc(WallyTx wallyTx, long flags) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_tx_clone_alloc(wallyTx, flags);
+        } finally {
+            SOURCE.exit("wally_tx_clone_alloc", start);
+        }
+    }
 
-    static native WallyTx wally_tx_clone_alloc(WallyTx wallyTx, long flags);
+    static WallyTxOutput wally_tx_output_init_alloc(long satoshi, byte[] script) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_tx_output_init_alloc(satoshi, script);
+        } finally {
+            SOURCE.exit("wally_tx_output_init_alloc", start);
+        }
+    }
 
-    static native WallyTxOutput wally_tx_output_init_alloc(long satoshi, byte[] script);
+    static WallyTxWitnessStack wally_tx_witness_stack_init_alloc(int allocationLength) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_tx_witness_stack_init_alloc(allocationLength);
+        } finally {
+            SOURCE.exit("wally_tx_witness_stack_init_alloc", start);
+        }
+    }
 
-    static native WallyTxWitnessStack wally_tx_witness_stack_init_alloc(int allocationLength);
+    static WallyTxWitnessStack wally_tx_witness_stack_set(WallyTxWitnessStack stack,
+                                                          int index,
+                                                          byte[] witness) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_tx_witness_stack_set(stack, index, witness);
+        } finally {
+            SOURCE.exit("wally_tx_witness_stack_set", start);
+        }
+    }
 
-    static native WallyTxWitnessStack wally_tx_witness_stack_set(WallyTxWitnessStack stack,
-                                                                 int index,
-                                                                 byte[] witness);
+    static WallyTx wally_tx_from_bytes(byte[] bytes, long flags) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_tx_from_bytes(bytes, flags);
+        } finally {
+            SOURCE.exit("wally_tx_from_bytes", start);
+        }
+    }
 
-    static native WallyTx wally_tx_from_bytes(byte[] bytes, long flags);
+    static WallyTx[] wally_tx_from_bytes_batch(byte[] bytes,
+                                               int[] offsets,
+                                               int[] lengths,
+                                               long flags) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_tx_from_bytes_batch(bytes, offsets, lengths, flags);
+        } finally {
+            SOURCE.exit("wally_tx_from_bytes_batch", start);
+        }
+    }
 
-    static native WallyTx wally_tx_init_alloc(long version,
-                                              long locktime,
-                                              int inputsAllocLen,
-                                              int outputsAllocLen);
+    static WallyTx wally_tx_build(long version,
+                                  long locktime,
+                                  byte[] txHashes,
+                                  long[] indexes,
+                                  long[] sequences,
+                                  byte[] witnessData,
+                                  int[] witnessItemLens,
+                                  int[] witnessCounts,
+                                  long[] satoshis,
+                                  byte[] scripts,
+                                  int[] scriptLens) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_tx_build(version,
+                                         locktime,
+                                         txHashes,
+                                         indexes,
+                                         sequences,
+                                         witnessData,
+                                         witnessItemLens,
+                                         witnessCounts,
+                                         satoshis,
+                                         scripts,
+                                         scriptLens);
+        } finally {
+            SOURCE.exit("wally_tx_build", start);
+        }
+    }
 
-    static native WallyTx wally_tx_add_input(WallyTx wallyTx, WallyTxInput input);
+    static byte[] wally_tx_to_bytes(WallyTx wallyTx, long flags) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_tx_to_bytes(wallyTx, flags);
+        } finally {
+            SOURCE.exit("wally_tx_to_bytes", start);
+        }
+    }
 
-    static native WallyTx wally_tx_add_output(WallyTx wallyTx, WallyTxOutput output);
+    static int wally_tx_to_buffer(WallyTx wallyTx,
+                                  long flags,
+                                  ByteBuffer buffer,
+                                  int offset,
+                                  int len) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_tx_to_buffer(wallyTx, flags, buffer, offset, len);
+        } finally {
+            SOURCE.exit("wally_tx_to_buffer", start);
+        }
+    }
 
-    static native String wally_tx_to_hex(WallyTx wallyTx, long flags);
+    static String wally_tx_to_hex(WallyTx wallyTx, long flags) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_tx_to_hex(wallyTx, flags);
+        } finally {
+            SOURCE.exit("wally_tx_to_hex", start);
+        }
+    }
 
-    static native long wally_tx_get_total_output_satoshi(WallyTx wallyTx);
+    static long wally_tx_get_total_output_satoshi(WallyTx wallyTx) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_tx_get_total_output_satoshi(wallyTx);
+        } finally {
+            SOURCE.exit("wally_tx_get_total_output_satoshi", start);
+        }
+    }
 
-    static native WallyTx wally_tx_set_input_script(WallyTx wallyTx, int index, byte[] script);
+    static WallyTx wally_tx_set_input_script(WallyTx wallyTx, int index, byte[] script) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_tx_set_input_script(wallyTx, index, script);
+        } finally {
+            SOURCE.exit("wally_tx_set_input_script", start);
+        }
+    }
 
-    static native int wally_tx_get_vsize(WallyTx wallyTx);
+    static int wally_tx_get_vsize(WallyTx wallyTx) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_tx_get_vsize(wallyTx);
+        } finally {
+            SOURCE.exit("wally_tx_get_vsize", start);
+        }
+    }
+
+    static int wally_tx_get_btc_signature_hash(WallyTx wallyTx,
+                                               int index,
+                                               byte[] script,
+                                               long satoshi,
+                                               long sigHash,
+                                               long flags,
+                                               byte[] output) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_tx_get_btc_signature_hash(wallyTx, index, script, satoshi, sigHash, flags, output);
+        } finally {
+            SOURCE.exit("wally_tx_get_btc_signature_hash", start);
+        }
+    }
+
+    static WallyTx wally_tx_set_input_witness(WallyTx wallyTx,
+                                              int index,
+                                              WallyTxWitnessStack stack) {
+        long start = SOURCE.enter();
+        try {
+            return Native.wally_tx_set_input_witness(wallyTx, index, stack);
+        } finally {
+            SOURCE.exit("wally_tx_set_input_witness", start);
+        }
+    }
 
-    static native int wally_tx_get_btc_signature_hash(WallyTx wallyTx,
-                                                      int index,
-                                                      byte[] script,
-                                                      long satoshi,
-                                                      long sigHash,
-                                                      long flags,
-                                                      byte[] output);
+    private static final class Native {
 
-    static native WallyTx wally_tx_set_input_witness(WallyTx wallyTx,
-                                                     int index,
-                                                     WallyTxWitnessStack stack);
+        static {
+            NativeLoader.load();
+        }
+
+        static native WallyTxInput wally_tx_input_init_alloc(byte[] txHash,
+                                                             long utxoIndex,
+                                                             long sequence,
+                                                             byte[] script,
+                                                             WallyTxWitnessStack witness);
+
+        static native WallyTx wally_tx_clone_alloc(WallyTx wallyTx, long flags);
+
+        static native WallyTxOutput wally_tx_output_init_alloc(long satoshi, byte[] script);
+
+        static native WallyTxWitnessStack wally_tx_witness_stack_init_alloc(int allocationLength);
+
+        static native WallyTxWitnessStack wally_tx_witness_stack_set(WallyTxWitnessStack stack,
+                                                                     int index,
+                                                                     byte[] witness);
+
+        static native WallyTx wally_tx_from_bytes(byte[] bytes, long flags);
+
+        static native WallyTx[] wally_tx_from_bytes_batch(byte[] bytes,
+                                                          int[] offsets,
+                                                          int[] lengths,
+                                                          long flags);
+
+        static native WallyTx wally_tx_build(long version,
+                                             long locktime,
+                                             byte[] txHashes,
+                                             long[] indexes,
+                                             long[] sequences,
+                                             byte[] witnessData,
+                                             int[] witnessItemLens,
+                                             int[] witnessCounts,
+                                             long[] satoshis,
+                                             byte[] scripts,
+                                             int[] scriptLens);
+
+        static native byte[] wally_tx_to_bytes(WallyTx wallyTx, long flags);
+
+        static native int wally_tx_to_buffer(WallyTx wallyTx,
+                                             long flags,
+                                             ByteBuffer buffer,
+                                             int offset,
+                                             int len);
+
+        static native String wally_tx_to_hex(WallyTx wallyTx, long flags);
+
+        static native long wally_tx_get_total_output_satoshi(WallyTx wallyTx);
+
+        static native WallyTx wally_tx_set_input_script(WallyTx wallyTx, int index, byte[] script);
+
+        static native int wally_tx_get_vsize(WallyTx wallyTx);
+
+        static native int wally_tx_get_btc_signature_hash(WallyTx wallyTx,
+                                                          int index,
+                                                          byte[] script,
+                                                          long satoshi,
+                                                          long sigHash,
+                                                          long flags,
+                                                          byte[] output);
+
+        static native WallyTx wally_tx_set_input_witness(WallyTx wallyTx,
+                                                         int index,
+                                                         WallyTxWitnessStack stack);
+
+        static native void jni_stats(long[] stats);
+    }
 }
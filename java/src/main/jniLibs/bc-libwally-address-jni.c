@@ -2,7 +2,7 @@
 #include <limits.h>
 #include <stdbool.h>
 #include <string.h>
-#include "jni-utils.c"
+#include "jni-utils.h"
 #include <wally_address.h>
 #include <wally_core.h>
 #include <wally_crypto.h>
@@ -12,6 +12,8 @@ static bool throw_new_address_exception(JNIEnv *env, char *msg) {
     return throw_new(env, "com/bc/libwally/address/AddressException", msg);
 }
 
+DEFINE_JNI_STATS(Java_com_bc_libwally_address_AddressJni_00024Native)
+
 static bool verify_wif_flag(uint32_t flags) {
     if (flags == WALLY_WIF_FLAG_COMPRESSED || flags == WALLY_WIF_FLAG_UNCOMPRESSED) {
         return true;
@@ -21,12 +23,12 @@ static bool verify_wif_flag(uint32_t flags) {
 
 
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_address_AddressJni_wally_1addr_1segwit_1to_1bytes(JNIEnv *env,
-                                                                       jclass clazz,
-                                                                       jstring addr,
-                                                                       jstring addr_family,
-                                                                       jbyteArray output,
-                                                                       jintArray written) {
+Java_com_bc_libwally_address_AddressJni_00024Native_wally_1addr_1segwit_1to_1bytes(JNIEnv *env,
+                                                                                   jclass clazz,
+                                                                                   jstring addr,
+                                                                                   jstring addr_family,
+                                                                                   jbyteArray output,
+                                                                                   jintArray written) {
 
     if (output == NULL) {
         throw_new_address_exception(env, "output is NULL");
@@ -42,14 +44,14 @@ Java_com_bc_libwally_address_AddressJni_wally_1addr_1segwit_1to_1bytes(JNIEnv *e
     const char *c_addr = (*env)->GetStringUTFChars(env, addr, 0);
     const char *c_addr_family = (*env)->GetStringUTFChars(env, addr_family, 0);
     const size_t addr_len = strlen(c_addr);
-    unsigned char *c_output = calloc(addr_len, sizeof(char));
+    unsigned char *c_output = jni_calloc(addr_len, sizeof(char));
     size_t c_written = 0;
 
     int ret = wally_addr_segwit_to_bytes(c_addr, c_addr_family, 0, c_output, addr_len, &c_written);
     if (ret != WALLY_OK) {
         (*env)->ReleaseStringUTFChars(env, addr, c_addr);
         (*env)->ReleaseStringUTFChars(env, addr_family, c_addr_family);
-        free(c_output);
+        jni_free(c_output);
         return ret;
     }
 
@@ -58,18 +60,18 @@ Java_com_bc_libwally_address_AddressJni_wally_1addr_1segwit_1to_1bytes(JNIEnv *e
 
     (*env)->ReleaseStringUTFChars(env, addr, c_addr);
     (*env)->ReleaseStringUTFChars(env, addr_family, c_addr_family);
-    free(c_output);
+    jni_free(c_output);
 
     return WALLY_OK;
 }
 
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_address_AddressJni_wally_1address_1to_1scriptpubkey(JNIEnv *env,
-                                                                         jclass clazz,
-                                                                         jstring addr,
-                                                                         jlong network,
-                                                                         jbyteArray output,
-                                                                         jintArray written) {
+Java_com_bc_libwally_address_AddressJni_00024Native_wally_1address_1to_1scriptpubkey(JNIEnv *env,
+                                                                                     jclass clazz,
+                                                                                     jstring addr,
+                                                                                     jlong network,
+                                                                                     jbyteArray output,
+                                                                                     jintArray written) {
 
     if (output == NULL) {
         throw_new_address_exception(env, "output is NULL");
@@ -89,14 +91,14 @@ Java_com_bc_libwally_address_AddressJni_wally_1address_1to_1scriptpubkey(JNIEnv
 
     const char *c_addr = (*env)->GetStringUTFChars(env, addr, 0);
     jsize output_len = (*env)->GetArrayLength(env, output);
-    unsigned char *c_output = calloc(output_len, sizeof(char));
+    unsigned char *c_output = jni_calloc(output_len, sizeof(char));
     size_t c_written = 0;
 
     int ret = wally_address_to_scriptpubkey(c_addr, (uint32_t) network, c_output, output_len,
                                             &c_written);
     if (ret != WALLY_OK) {
         (*env)->ReleaseStringUTFChars(env, addr, c_addr);
-        free(c_output);
+        jni_free(c_output);
         return ret;
     }
 
@@ -104,17 +106,17 @@ Java_com_bc_libwally_address_AddressJni_wally_1address_1to_1scriptpubkey(JNIEnv
     copy_to_jintArray(env, written, &c_written, 1);
 
     (*env)->ReleaseStringUTFChars(env, addr, c_addr);
-    free(c_output);
+    jni_free(c_output);
 
     return WALLY_OK;
 }
 
 JNIEXPORT jstring JNICALL
-Java_com_bc_libwally_address_AddressJni_wally_1bip32_1key_1to_1address(JNIEnv *env,
-                                                                       jclass clazz,
-                                                                       jobject key,
-                                                                       jlong flags,
-                                                                       jlong version) {
+Java_com_bc_libwally_address_AddressJni_00024Native_wally_1bip32_1key_1to_1address(JNIEnv *env,
+                                                                                   jclass clazz,
+                                                                                   jobject key,
+                                                                                   jlong flags,
+                                                                                   jlong version) {
     if (key == NULL) {
         throw_new_address_exception(env, "key is NULL");
         return NULL;
@@ -126,60 +128,68 @@ Java_com_bc_libwally_address_AddressJni_wally_1bip32_1key_1to_1address(JNIEnv *e
     }
 
     struct ext_key *c_key = to_c_ext_key(env, key);
-    char *output = "";
+    if (c_key == NULL) {
+        throw_new_address_exception(env, "invalid key");
+        return NULL;
+    }
+    char *output = NULL;
 
     int ret = wally_bip32_key_to_address(c_key, (uint32_t) flags, (uint32_t) version, &output);
     if (ret != WALLY_OK) {
-        free(output);
-        free(c_key);
+        wally_free_string(output);
+        jni_free(c_key);
         throw_new_address_exception(env, "wally_bip32_key_to_address error");
         return NULL;
     }
 
     jstring result = (*env)->NewStringUTF(env, output);
 
-    free(output);
-    free(c_key);
+    wally_free_string(output);
+    jni_free(c_key);
 
     return result;
 }
 
 JNIEXPORT jstring JNICALL
-Java_com_bc_libwally_address_AddressJni_wally_1bip32_1key_1to_1addr_1segwit(JNIEnv *env,
-                                                                            jclass clazz,
-                                                                            jobject key,
-                                                                            jstring addr_family) {
+Java_com_bc_libwally_address_AddressJni_00024Native_wally_1bip32_1key_1to_1addr_1segwit(JNIEnv *env,
+                                                                                        jclass clazz,
+                                                                                        jobject key,
+                                                                                        jstring addr_family) {
     if (key == NULL) {
         throw_new_address_exception(env, "key is NULL");
         return NULL;
     }
 
     struct ext_key *c_key = to_c_ext_key(env, key);
+    if (c_key == NULL) {
+        throw_new_address_exception(env, "invalid key");
+        return NULL;
+    }
     const char *c_addr_family = (*env)->GetStringUTFChars(env, addr_family, 0);
-    char *output = "";
+    char *output = NULL;
 
     int ret = wally_bip32_key_to_addr_segwit(c_key, c_addr_family, 0, &output);
     if (ret != WALLY_OK) {
-        free(output);
-        free(c_key);
+        wally_free_string(output);
+        jni_free(c_key);
         (*env)->ReleaseStringUTFChars(env, addr_family, c_addr_family);
         throw_new_address_exception(env, "wally_bip32_key_to_addr_segwit error");
         return NULL;
     }
     jstring result = (*env)->NewStringUTF(env, output);
 
-    free(output);
-    free(c_key);
+    wally_free_string(output);
+    jni_free(c_key);
     (*env)->ReleaseStringUTFChars(env, addr_family, c_addr_family);
 
     return result;
 }
 
 JNIEXPORT jstring JNICALL
-Java_com_bc_libwally_address_AddressJni_wally_1scriptpubkey_1to_1address(JNIEnv *env,
-                                                                         jclass clazz,
-                                                                         jbyteArray script_pub_key,
-                                                                         jlong network) {
+Java_com_bc_libwally_address_AddressJni_00024Native_wally_1scriptpubkey_1to_1address(JNIEnv *env,
+                                                                                     jclass clazz,
+                                                                                     jbyteArray script_pub_key,
+                                                                                     jlong network) {
 
     if (script_pub_key == NULL) {
         throw_new_address_exception(env, "script_pub_key is NULL");
@@ -193,31 +203,31 @@ Java_com_bc_libwally_address_AddressJni_wally_1scriptpubkey_1to_1address(JNIEnv
 
     unsigned char *c_script_pubkey = to_unsigned_char_array(env, script_pub_key);
     jsize script_pubkey_len = (*env)->GetArrayLength(env, script_pub_key);
-    char *output = "";
+    char *output = NULL;
 
     int ret = wally_scriptpubkey_to_address(c_script_pubkey,
                                             (size_t) script_pubkey_len,
                                             (uint32_t) network,
                                             &output);
     if (ret != WALLY_OK) {
-        free(output);
-        free(c_script_pubkey);
+        wally_free_string(output);
+        jni_free(c_script_pubkey);
         throw_new_address_exception(env, "wally_scriptpubkey_to_address error");
         return NULL;
     }
     jstring result = (*env)->NewStringUTF(env, output);
 
-    free(output);
-    free(c_script_pubkey);
+    wally_free_string(output);
+    jni_free(c_script_pubkey);
 
     return result;
 }
 
 JNIEXPORT jstring JNICALL
-Java_com_bc_libwally_address_AddressJni_wally_1addr_1segwit_1from_1bytes(JNIEnv *env,
-                                                                         jclass clazz,
-                                                                         jbyteArray bytes,
-                                                                         jstring addr_family) {
+Java_com_bc_libwally_address_AddressJni_00024Native_wally_1addr_1segwit_1from_1bytes(JNIEnv *env,
+                                                                                     jclass clazz,
+                                                                                     jbyteArray bytes,
+                                                                                     jstring addr_family) {
     if (bytes == NULL) {
         throw_new_address_exception(env, "bytes is NULL");
         return NULL;
@@ -226,7 +236,7 @@ Java_com_bc_libwally_address_AddressJni_wally_1addr_1segwit_1from_1bytes(JNIEnv
     unsigned char *c_bytes = to_unsigned_char_array(env, bytes);
     jsize bytes_len = (*env)->GetArrayLength(env, bytes);
     const char *c_addr_family = (*env)->GetStringUTFChars(env, addr_family, 0);
-    char *output = "";
+    char *output = NULL;
 
     int ret = wally_addr_segwit_from_bytes(c_bytes,
                                            (size_t) bytes_len,
@@ -234,28 +244,28 @@ Java_com_bc_libwally_address_AddressJni_wally_1addr_1segwit_1from_1bytes(JNIEnv
                                            0,
                                            &output);
     if (ret != WALLY_OK) {
-        free(output);
-        free(c_bytes);
+        wally_free_string(output);
+        jni_free(c_bytes);
         (*env)->ReleaseStringUTFChars(env, addr_family, c_addr_family);
         throw_new_address_exception(env, "wally_addr_segwit_from_bytes error");
         return NULL;
     }
     jstring result = (*env)->NewStringUTF(env, output);
 
-    free(output);
-    free(c_bytes);
+    wally_free_string(output);
+    jni_free(c_bytes);
     (*env)->ReleaseStringUTFChars(env, addr_family, c_addr_family);
 
     return result;
 }
 
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_address_AddressJni_wally_1wif_1to_1bytes(JNIEnv *env,
-                                                              jclass clazz,
-                                                              jbyteArray wif,
-                                                              jlong prefix,
-                                                              jlong flags,
-                                                              jbyteArray output) {
+Java_com_bc_libwally_address_AddressJni_00024Native_wally_1wif_1to_1bytes(JNIEnv *env,
+                                                                          jclass clazz,
+                                                                          jbyteArray wif,
+                                                                          jlong prefix,
+                                                                          jlong flags,
+                                                                          jbyteArray output) {
 
     if (wif == NULL) {
         throw_new_address_exception(env, "wif is NULL");
@@ -273,7 +283,7 @@ Java_com_bc_libwally_address_AddressJni_wally_1wif_1to_1bytes(JNIEnv *env,
     }
 
     char *c_wif = (char *) to_unsigned_char_array(env, wif);
-    unsigned char *c_output = (unsigned char *) calloc(EC_PRIVATE_KEY_LEN, sizeof(char));
+    unsigned char *c_output = (unsigned char *) jni_calloc(EC_PRIVATE_KEY_LEN, sizeof(char));
 
     int ret = wally_wif_to_bytes(c_wif,
                                  (uint32_t) prefix,
@@ -281,25 +291,25 @@ Java_com_bc_libwally_address_AddressJni_wally_1wif_1to_1bytes(JNIEnv *env,
                                  c_output,
                                  EC_PRIVATE_KEY_LEN);
     if (ret != WALLY_OK) {
-        free(c_output);
-        free(c_wif);
+        jni_free(c_output);
+        jni_free(c_wif);
         return ret;
     }
 
     copy_to_jbyteArray(env, output, c_output, EC_PRIVATE_KEY_LEN);
 
-    free(c_output);
-    free(c_wif);
+    jni_free(c_output);
+    jni_free(c_wif);
 
     return WALLY_OK;
 }
 
 JNIEXPORT jstring JNICALL
-Java_com_bc_libwally_address_AddressJni_wally_1wif_1from_1bytes(JNIEnv *env,
-                                                                jclass clazz,
-                                                                jbyteArray priv_key,
-                                                                jlong prefix,
-                                                                jlong flags) {
+Java_com_bc_libwally_address_AddressJni_00024Native_wally_1wif_1from_1bytes(JNIEnv *env,
+                                                                            jclass clazz,
+                                                                            jbyteArray priv_key,
+                                                                            jlong prefix,
+                                                                            jlong flags) {
     if (priv_key == NULL) {
         throw_new_address_exception(env, "priv_key is NULL");
         return NULL;
@@ -318,7 +328,7 @@ Java_com_bc_libwally_address_AddressJni_wally_1wif_1from_1bytes(JNIEnv *env,
     unsigned char *c_prv_key = to_unsigned_char_array(env, priv_key);
     jsize prv_len = (*env)->GetArrayLength(env, priv_key);
 
-    char *output = "";
+    char *output = NULL;
 
     int ret = wally_wif_from_bytes(c_prv_key,
                                    (size_t) prv_len,
@@ -326,16 +336,16 @@ Java_com_bc_libwally_address_AddressJni_wally_1wif_1from_1bytes(JNIEnv *env,
                                    (uint32_t) flags,
                                    &output);
     if (ret != WALLY_OK) {
-        free(c_prv_key);
-        free(output);
+        jni_free(c_prv_key);
+        wally_free_string(output);
         throw_new_address_exception(env, "wally_wif_from_bytes error");
         return NULL;
     }
 
     jstring result = (*env)->NewStringUTF(env, output);
 
-    free(c_prv_key);
-    free(output);
+    jni_free(c_prv_key);
+    wally_free_string(output);
 
     return result;
 }
\ No newline at end of file
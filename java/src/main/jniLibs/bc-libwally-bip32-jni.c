@@ -1,7 +1,7 @@
 #include <jni.h>
 #include <limits.h>
 #include <stdbool.h>
-#include "jni-utils.c"
+#include "jni-utils.h"
 #include <wally_bip32.h>
 #include <wally_core.h>
 
@@ -10,6 +10,8 @@ static bool throw_new_bip32_exception(JNIEnv *env, char *msg) {
     return throw_new(env, "com/bc/libwally/bip32/Bip32Exception", msg);
 }
 
+DEFINE_JNI_STATS(Java_com_bc_libwally_bip32_Bip32Jni_00024Native)
+
 static bool verify_seed_version(uint32_t version) {
     if (version == BIP32_VER_MAIN_PRIVATE || version == BIP32_VER_TEST_PRIVATE) {
         return true;
@@ -32,15 +34,15 @@ static bool verify_key_flags(uint32_t flags) {
 }
 
 JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_bip32_Bip32Jni_bip32_1key_1from_1base58_1alloc(JNIEnv *env,
-                                                                    jclass clazz,
-                                                                    jstring base58) {
+Java_com_bc_libwally_bip32_Bip32Jni_00024Native_bip32_1key_1from_1base58_1alloc(JNIEnv *env,
+                                                                                jclass clazz,
+                                                                                jstring base58) {
     const char *c_base58 = (*env)->GetStringUTFChars(env, base58, 0);
-    struct ext_key *output = (struct ext_key *) calloc(1, sizeof(struct ext_key));
+    struct ext_key *output = NULL;
 
     int ret = bip32_key_from_base58_alloc(c_base58, &output);
     if (ret != WALLY_OK) {
-        free(output);
+        bip32_key_free(output);
         (*env)->ReleaseStringUTFChars(env, base58, c_base58);
         throw_new_bip32_exception(env, "bip32_key_from_base58_alloc error");
         return NULL;
@@ -48,18 +50,18 @@ Java_com_bc_libwally_bip32_Bip32Jni_bip32_1key_1from_1base58_1alloc(JNIEnv *env,
 
     jobject result = to_jWallyHDKey(env, output);
 
-    free(output);
+    bip32_key_free(output);
     (*env)->ReleaseStringUTFChars(env, base58, c_base58);
 
     return result;
 }
 
 JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_bip32_Bip32Jni_bip32_1key_1from_1seed_1alloc(JNIEnv *env,
-                                                                  jclass clazz,
-                                                                  jbyteArray seed,
-                                                                  jlong version,
-                                                                  jlong flags) {
+Java_com_bc_libwally_bip32_Bip32Jni_00024Native_bip32_1key_1from_1seed_1alloc(JNIEnv *env,
+                                                                              jclass clazz,
+                                                                              jbyteArray seed,
+                                                                              jlong version,
+                                                                              jlong flags) {
 
     if (seed == NULL) {
         throw_new_bip32_exception(env, "seed is NULL");
@@ -78,7 +80,7 @@ Java_com_bc_libwally_bip32_Bip32Jni_bip32_1key_1from_1seed_1alloc(JNIEnv *env,
 
     unsigned char *c_seed = to_unsigned_char_array(env, seed);
     jsize seed_len = (*env)->GetArrayLength(env, seed);
-    struct ext_key *output = (struct ext_key *) calloc(1, sizeof(struct ext_key));
+    struct ext_key *output = NULL;
 
     int ret = bip32_key_from_seed_alloc(c_seed,
                                         (size_t) seed_len,
@@ -86,25 +88,25 @@ Java_com_bc_libwally_bip32_Bip32Jni_bip32_1key_1from_1seed_1alloc(JNIEnv *env,
                                         (uint32_t) flags,
                                         &output);
     if (ret != WALLY_OK) {
-        free((unsigned char *) c_seed);
-        free(output);
+        jni_free((unsigned char *) c_seed);
+        bip32_key_free(output);
         throw_new_bip32_exception(env, "bip32_key_from_seed_alloc error");
         return NULL;
     }
 
     jobject result = to_jWallyHDKey(env, output);
 
-    free(c_seed);
-    free(output);
+    jni_free(c_seed);
+    bip32_key_free(output);
 
     return result;
 }
 
 JNIEXPORT jstring JNICALL
-Java_com_bc_libwally_bip32_Bip32Jni_bip32_1key_1to_1base58(JNIEnv *env,
-                                                           jclass clazz,
-                                                           jobject key,
-                                                           jlong flags) {
+Java_com_bc_libwally_bip32_Bip32Jni_00024Native_bip32_1key_1to_1base58(JNIEnv *env,
+                                                                       jclass clazz,
+                                                                       jobject key,
+                                                                       jlong flags) {
     if (key == NULL) {
         throw_new_bip32_exception(env, "key is NULL");
         return NULL;
@@ -116,57 +118,67 @@ Java_com_bc_libwally_bip32_Bip32Jni_bip32_1key_1to_1base58(JNIEnv *env,
     }
 
     struct ext_key *c_key = to_c_ext_key(env, key);
-    char *output = "";
+    if (c_key == NULL) {
+        throw_new_bip32_exception(env, "invalid key");
+        return NULL;
+    }
+    char *output = NULL;
 
     int ret = bip32_key_to_base58(c_key, (uint32_t) flags, &output);
     if (ret != WALLY_OK) {
-        free(c_key);
+        jni_free(c_key);
+    wally_free_string(output);
         throw_new_bip32_exception(env, "bip32_key_to_base58 error");
         return NULL;
     }
 
     jstring result = (*env)->NewStringUTF(env, output);
 
-    free(c_key);
+    jni_free(c_key);
+    wally_free_string(output);
 
     return result;
 }
 
 JNIEXPORT jbyteArray JNICALL
-Java_com_bc_libwally_bip32_Bip32Jni_bip32_1key_1get_1fingerprint(JNIEnv *env,
-                                                                 jclass clazz,
-                                                                 jobject key) {
+Java_com_bc_libwally_bip32_Bip32Jni_00024Native_bip32_1key_1get_1fingerprint(JNIEnv *env,
+                                                                             jclass clazz,
+                                                                             jobject key) {
     if (key == NULL) {
         throw_new_bip32_exception(env, "key is NULL");
         return NULL;
     }
 
     struct ext_key *c_key = to_c_ext_key(env, key);
-    unsigned char *c_output = (unsigned char *) calloc(BIP32_KEY_FINGERPRINT_LEN,
+    if (c_key == NULL) {
+        throw_new_bip32_exception(env, "invalid key");
+        return NULL;
+    }
+    unsigned char *c_output = (unsigned char *) jni_calloc(BIP32_KEY_FINGERPRINT_LEN,
                                                        sizeof(unsigned char));
 
     int ret = bip32_key_get_fingerprint(c_key, c_output, BIP32_KEY_FINGERPRINT_LEN);
     if (ret != WALLY_OK) {
-        free(c_output);
-        free(c_key);
+        jni_free(c_output);
+        jni_free(c_key);
         throw_new_bip32_exception(env, "bip32_key_get_fingerprint error");
         return NULL;
     }
 
     jbyteArray result = create_jbyteArray(env, c_output, BIP32_KEY_FINGERPRINT_LEN);
 
-    free(c_output);
-    free(c_key);
+    jni_free(c_output);
+    jni_free(c_key);
 
     return result;
 }
 
 JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_bip32_Bip32Jni_bip32_1key_1from_1parent_1path_1alloc(JNIEnv *env,
-                                                                          jclass clazz,
-                                                                          jobject key,
-                                                                          jlongArray child_path,
-                                                                          jlong flags) {
+Java_com_bc_libwally_bip32_Bip32Jni_00024Native_bip32_1key_1from_1parent_1path_1alloc(JNIEnv *env,
+                                                                                      jclass clazz,
+                                                                                      jobject key,
+                                                                                      jlongArray child_path,
+                                                                                      jlong flags) {
     if (key == NULL) {
         throw_new_bip32_exception(env, "key is NULL");
         return NULL;
@@ -178,9 +190,13 @@ Java_com_bc_libwally_bip32_Bip32Jni_bip32_1key_1from_1parent_1path_1alloc(JNIEnv
     }
 
     struct ext_key *c_key = to_c_ext_key(env, key);
+    if (c_key == NULL) {
+        throw_new_bip32_exception(env, "invalid key");
+        return NULL;
+    }
     uint32_t *c_child_path = to_uint32_t_array(env, child_path);
     jsize child_path_len = (*env)->GetArrayLength(env, child_path);
-    struct ext_key *output = calloc(1, sizeof(struct ext_key));
+    struct ext_key *output = NULL;
 
     int ret = bip32_key_from_parent_path_alloc(c_key,
                                                c_child_path,
@@ -189,18 +205,72 @@ Java_com_bc_libwally_bip32_Bip32Jni_bip32_1key_1from_1parent_1path_1alloc(JNIEnv
                                                &output);
 
     if (ret != WALLY_OK) {
-        free(c_key);
-        free(c_child_path);
-        free(output);
+        jni_free(c_key);
+        jni_free(c_child_path);
+        bip32_key_free(output);
         throw_new_bip32_exception(env, "bip32_key_from_parent_path_alloc error");
         return NULL;
     }
 
     jobject result = to_jWallyHDKey(env, output);
 
-    free(c_key);
-    free(c_child_path);
-    free(output);
+    jni_free(c_key);
+    jni_free(c_child_path);
+    bip32_key_free(output);
+
+    return result;
+}
+
+// Derives the public keys of the `count` unhardened children starting at `start_index` in a
+// single crossing and returns them packed back to back as compressed keys.
+JNIEXPORT jbyteArray JNICALL
+Java_com_bc_libwally_bip32_Bip32Jni_00024Native_bip32_1key_1get_1child_1pub_1keys(JNIEnv *env,
+                                                                                   jclass clazz,
+                                                                                   jobject key,
+                                                                                   jlong start_index,
+                                                                                   jint count) {
+    if (key == NULL) {
+        throw_new_bip32_exception(env, "key is NULL");
+        return NULL;
+    }
+
+    if (count < 0 || start_index < 0 || start_index + count > BIP32_INITIAL_HARDENED_CHILD) {
+        throw_new_bip32_exception(env, "invalid child range");
+        return NULL;
+    }
+
+    struct ext_key *c_key = to_c_ext_key(env, key);
+    if (c_key == NULL) {
+        throw_new_bip32_exception(env, "invalid key");
+        return NULL;
+    }
+
+    size_t pub_keys_len = (size_t) count * EC_PUBLIC_KEY_LEN;
+    unsigned char *pub_keys = (unsigned char *) jni_calloc(pub_keys_len == 0 ? 1 : pub_keys_len,
+                                                           sizeof(unsigned char));
+    struct ext_key child;
+    int ret = WALLY_OK;
+    for (jint i = 0; i < count && ret == WALLY_OK; i++) {
+        ret = bip32_key_from_parent(c_key,
+                                    (uint32_t) (start_index + i),
+                                    BIP32_FLAG_KEY_PUBLIC | BIP32_FLAG_SKIP_HASH,
+                                    &child);
+        if (ret == WALLY_OK) {
+            memcpy(pub_keys + (size_t) i * EC_PUBLIC_KEY_LEN, child.pub_key, EC_PUBLIC_KEY_LEN);
+        }
+    }
+
+    jni_free(c_key);
+
+    if (ret != WALLY_OK) {
+        jni_free(pub_keys);
+        throw_new_bip32_exception(env, "bip32_key_from_parent error");
+        return NULL;
+    }
+
+    jbyteArray result = create_jbyteArray(env, pub_keys, pub_keys_len);
+
+    jni_free(pub_keys);
 
     return result;
 }
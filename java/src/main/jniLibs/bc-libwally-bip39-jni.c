@@ -1,6 +1,6 @@
 #include <jni.h>
 #include <stdbool.h>
-#include "jni-utils.c"
+#include "jni-utils.h"
 #include <wally_bip39.h>
 #include <wally_core.h>
 #include "../../../../deps/libwally-core/src/wordlist.h"
@@ -10,17 +10,20 @@ static bool throw_new_bip39_exception(JNIEnv *env, char *msg) {
     return throw_new(env, "com/bc/libwally/bip39/Bip39Exception", msg);
 }
 
+DEFINE_JNI_STATS(Java_com_bc_libwally_bip39_Bip39Jni_00024Native)
+
 typedef struct words bip39_words;
 
 JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_bip39_Bip39Jni_bip39_1get_1wordlist(JNIEnv *env, jclass clazz, jstring lang) {
+Java_com_bc_libwally_bip39_Bip39Jni_00024Native_bip39_1get_1wordlist(JNIEnv *env, jclass clazz, jstring lang) {
 
     const char *c_lang = NULL;
     if (lang != NULL) {
         c_lang = (*env)->GetStringUTFChars(env, lang, 0);
     }
 
-    bip39_words *output = (bip39_words *) calloc(1, sizeof(bip39_words));
+    // word lists are static in libwally and must never be freed
+    const bip39_words *output = NULL;
 
     int ret = bip39_get_wordlist(c_lang, &output);
     if (ret != WALLY_OK) {
@@ -40,10 +43,10 @@ Java_com_bc_libwally_bip39_Bip39Jni_bip39_1get_1wordlist(JNIEnv *env, jclass cla
 }
 
 JNIEXPORT jstring JNICALL
-Java_com_bc_libwally_bip39_Bip39Jni_bip39_1get_1word(JNIEnv *env,
-                                                     jclass clazz,
-                                                     jobject words,
-                                                     jint index) {
+Java_com_bc_libwally_bip39_Bip39Jni_00024Native_bip39_1get_1word(JNIEnv *env,
+                                                                 jclass clazz,
+                                                                 jobject words,
+                                                                 jint index) {
     bip39_words *c_words = NULL;
 
     if (words != NULL) {
@@ -54,26 +57,26 @@ Java_com_bc_libwally_bip39_Bip39Jni_bip39_1get_1word(JNIEnv *env,
         }
     }
 
-    char *output = "";
+    char *output = NULL;
 
     int ret = bip39_get_word(c_words, (size_t) index, &output);
     if (ret != WALLY_OK) {
-        if (words != NULL)free(output);
+        wally_free_string(output);
         throw_new_bip39_exception(env, "bip39_get_word error");
         return NULL;
     }
 
     jstring result = (*env)->NewStringUTF(env, output);
 
-    if (words != NULL) free(output);
+    wally_free_string(output);
     return result;
 }
 
 JNIEXPORT jstring JNICALL
-Java_com_bc_libwally_bip39_Bip39Jni_bip39_1mnemonic_1from_1bytes(JNIEnv *env,
-                                                                 jclass clazz,
-                                                                 jobject words,
-                                                                 jbyteArray bytes) {
+Java_com_bc_libwally_bip39_Bip39Jni_00024Native_bip39_1mnemonic_1from_1bytes(JNIEnv *env,
+                                                                             jclass clazz,
+                                                                             jobject words,
+                                                                             jbyteArray bytes) {
 
     if (bytes == NULL) {
         throw_new_bip39_exception(env, "bytes is NULL");
@@ -91,31 +94,31 @@ Java_com_bc_libwally_bip39_Bip39Jni_bip39_1mnemonic_1from_1bytes(JNIEnv *env,
 
     unsigned char *c_bytes = to_unsigned_char_array(env, bytes);
     jsize byte_len = (*env)->GetArrayLength(env, bytes);
-    char *output = "";
+    char *output = NULL;
 
     int ret = bip39_mnemonic_from_bytes(c_words, c_bytes, (size_t) byte_len, &output);
     if (ret != WALLY_OK) {
-        free(c_bytes);
-        if (words != NULL)free(output);
+        jni_free(c_bytes);
+        wally_free_string(output);
         throw_new_bip39_exception(env, "bip39_mnemonic_from_bytes error");
         return NULL;
     }
 
     jstring result = (*env)->NewStringUTF(env, output);
 
-    free(c_bytes);
-    if (words != NULL)free(output);
+    jni_free(c_bytes);
+    wally_free_string(output);
 
     return result;
 }
 
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_bip39_Bip39Jni_bip39_1mnemonic_1to_1bytes(JNIEnv *env,
-                                                               jclass clazz,
-                                                               jobject words,
-                                                               jstring mnemonic,
-                                                               jbyteArray output,
-                                                               jintArray written) {
+Java_com_bc_libwally_bip39_Bip39Jni_00024Native_bip39_1mnemonic_1to_1bytes(JNIEnv *env,
+                                                                           jclass clazz,
+                                                                           jobject words,
+                                                                           jstring mnemonic,
+                                                                           jbyteArray output,
+                                                                           jintArray written) {
     if (output == NULL) {
         throw_new_bip39_exception(env, "output is NULL");
         return WALLY_ERROR;
@@ -138,14 +141,13 @@ Java_com_bc_libwally_bip39_Bip39Jni_bip39_1mnemonic_1to_1bytes(JNIEnv *env,
 
     const char *c_mnemonic = (*env)->GetStringUTFChars(env, mnemonic, 0);
     jsize output_len = (*env)->GetArrayLength(env, output);
-    unsigned char *c_output = calloc(output_len, sizeof(char));
+    unsigned char *c_output = jni_calloc(output_len, sizeof(char));
     size_t c_written = 0;
 
     int ret = bip39_mnemonic_to_bytes(c_words, c_mnemonic, c_output, output_len, &c_written);
     if (ret != WALLY_OK) {
         (*env)->ReleaseStringUTFChars(env, mnemonic, c_mnemonic);
-        free(c_output);
-        if (words != NULL) free(c_words);
+        jni_free(c_output);
         return ret;
     }
 
@@ -153,19 +155,18 @@ Java_com_bc_libwally_bip39_Bip39Jni_bip39_1mnemonic_1to_1bytes(JNIEnv *env,
     copy_to_jintArray(env, written, &c_written, 1);
 
     (*env)->ReleaseStringUTFChars(env, mnemonic, c_mnemonic);
-    free(c_output);
-    if (words != NULL) free(c_words);
+    jni_free(c_output);
 
     return WALLY_OK;
 }
 
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_bip39_Bip39Jni_bip39_1mnemonic_1to_1seed(JNIEnv *env,
-                                                              jclass clazz,
-                                                              jstring mnemonic,
-                                                              jstring passphrase,
-                                                              jbyteArray output,
-                                                              jintArray written) {
+Java_com_bc_libwally_bip39_Bip39Jni_00024Native_bip39_1mnemonic_1to_1seed(JNIEnv *env,
+                                                                          jclass clazz,
+                                                                          jstring mnemonic,
+                                                                          jstring passphrase,
+                                                                          jbyteArray output,
+                                                                          jintArray written) {
     if (output == NULL) {
         throw_new_bip39_exception(env, "output is NULL");
         return WALLY_ERROR;
@@ -180,7 +181,7 @@ Java_com_bc_libwally_bip39_Bip39Jni_bip39_1mnemonic_1to_1seed(JNIEnv *env,
     const char *c_mnemonic = (*env)->GetStringUTFChars(env, mnemonic, 0);
     const char *c_pass_phrase = (*env)->GetStringUTFChars(env, passphrase, 0);
     jsize output_len = (*env)->GetArrayLength(env, output);
-    unsigned char *c_output = calloc(output_len, sizeof(char));
+    unsigned char *c_output = jni_calloc(output_len, sizeof(char));
     size_t c_written = 0;
 
     int ret = bip39_mnemonic_to_seed(c_mnemonic, c_pass_phrase, c_output, output_len, &c_written);
@@ -188,7 +189,7 @@ Java_com_bc_libwally_bip39_Bip39Jni_bip39_1mnemonic_1to_1seed(JNIEnv *env,
     if (ret != WALLY_OK) {
         (*env)->ReleaseStringUTFChars(env, mnemonic, c_mnemonic);
         (*env)->ReleaseStringUTFChars(env, passphrase, c_pass_phrase);
-        free(c_output);
+        jni_free(c_output);
         return ret;
     }
 
@@ -197,16 +198,16 @@ Java_com_bc_libwally_bip39_Bip39Jni_bip39_1mnemonic_1to_1seed(JNIEnv *env,
 
     (*env)->ReleaseStringUTFChars(env, mnemonic, c_mnemonic);
     (*env)->ReleaseStringUTFChars(env, passphrase, c_pass_phrase);
-    free(c_output);
+    jni_free(c_output);
 
     return WALLY_OK;
 }
 
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_bip39_Bip39Jni_bip39_1mnemonic_1validate(JNIEnv *env,
-                                                              jclass clazz,
-                                                              jobject words,
-                                                              jstring mnemonic) {
+Java_com_bc_libwally_bip39_Bip39Jni_00024Native_bip39_1mnemonic_1validate(JNIEnv *env,
+                                                                          jclass clazz,
+                                                                          jobject words,
+                                                                          jstring mnemonic) {
     bip39_words *c_words = NULL;
     if (words != NULL) {
         c_words = (bip39_words *) to_c_obj_ptr(env, words);
@@ -221,7 +222,6 @@ Java_com_bc_libwally_bip39_Bip39Jni_bip39_1mnemonic_1validate(JNIEnv *env,
     int ret = bip39_mnemonic_validate(c_words, c_mnemonic);
 
     (*env)->ReleaseStringUTFChars(env, mnemonic, c_mnemonic);
-    if (c_words != NULL) free(c_words);
 
     return ret;
 }
\ No newline at end of file
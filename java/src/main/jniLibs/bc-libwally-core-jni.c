@@ -2,7 +2,7 @@
 #include <limits.h>
 #include <stdbool.h>
 #include <wally_core.h>
-#include "jni-utils.c"
+#include "jni-utils.h"
 #include <ccan/ccan/base64/base64.h>
 
 // com/bc/libwally/core/CoreException
@@ -10,10 +10,12 @@ static bool throw_new_core_exception(JNIEnv *env, char *msg) {
     return throw_new(env, "com/bc/libwally/core/CoreException", msg);
 }
 
+DEFINE_JNI_STATS(Java_com_bc_libwally_core_CoreJni_00024Native)
+
 JNIEXPORT jstring JNICALL
-Java_com_bc_libwally_core_CoreJni_wally_1hex_1from_1bytes(JNIEnv *env,
-                                                          jclass clazz,
-                                                          jbyteArray bytes) {
+Java_com_bc_libwally_core_CoreJni_00024Native_wally_1hex_1from_1bytes(JNIEnv *env,
+                                                                      jclass clazz,
+                                                                      jbyteArray bytes) {
     if (bytes == NULL) {
         throw_new_core_exception(env, "bytes is NULL");
         return NULL;
@@ -21,30 +23,30 @@ Java_com_bc_libwally_core_CoreJni_wally_1hex_1from_1bytes(JNIEnv *env,
 
     unsigned char *c_bytes = to_unsigned_char_array(env, bytes);
     jsize bytes_len = (*env)->GetArrayLength(env, bytes);
-    char *output = "";
+    char *output = NULL;
 
     int ret = wally_hex_from_bytes(c_bytes, bytes_len, &output);
     if (ret != WALLY_OK) {
-        free(c_bytes);
-        free(output);
+        jni_free(c_bytes);
+        wally_free_string(output);
         throw_new_core_exception(env, "wally_hex_from_bytes error");
         return NULL;
     }
 
     jstring result = (*env)->NewStringUTF(env, output);
 
-    free(c_bytes);
-    free(output);
+    jni_free(c_bytes);
+    wally_free_string(output);
 
     return result;
 }
 
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_core_CoreJni_wally_1hex_1to_1bytes(JNIEnv *env,
-                                                        jclass clazz,
-                                                        jstring hex,
-                                                        jbyteArray output,
-                                                        jintArray written) {
+Java_com_bc_libwally_core_CoreJni_00024Native_wally_1hex_1to_1bytes(JNIEnv *env,
+                                                                    jclass clazz,
+                                                                    jstring hex,
+                                                                    jbyteArray output,
+                                                                    jintArray written) {
     if (output == NULL) {
         throw_new_core_exception(env, "output is NULL");
         return WALLY_ERROR;
@@ -63,7 +65,7 @@ Java_com_bc_libwally_core_CoreJni_wally_1hex_1to_1bytes(JNIEnv *env,
 
     int ret = wally_hex_to_bytes(c_hex, c_output, (size_t) output_len, &c_written);
     if (ret != WALLY_OK) {
-        free(c_output);
+        jni_free(c_output);
         (*env)->ReleaseStringUTFChars(env, hex, c_hex);
         return ret;
     }
@@ -71,17 +73,17 @@ Java_com_bc_libwally_core_CoreJni_wally_1hex_1to_1bytes(JNIEnv *env,
     copy_to_jbyteArray(env, output, c_output, output_len);
     copy_to_jintArray(env, written, &c_written, 1);
 
-    free(c_output);
+    jni_free(c_output);
     (*env)->ReleaseStringUTFChars(env, hex, c_hex);
 
     return WALLY_OK;
 }
 
 JNIEXPORT jstring JNICALL
-Java_com_bc_libwally_core_CoreJni_wally_1base58_1from_1bytes(JNIEnv *env,
-                                                             jclass clazz,
-                                                             jbyteArray bytes,
-                                                             jlong flags) {
+Java_com_bc_libwally_core_CoreJni_00024Native_wally_1base58_1from_1bytes(JNIEnv *env,
+                                                                         jclass clazz,
+                                                                         jbyteArray bytes,
+                                                                         jlong flags) {
     if (bytes == NULL) {
         throw_new_core_exception(env, "bytes is NULL");
         return NULL;
@@ -94,31 +96,31 @@ Java_com_bc_libwally_core_CoreJni_wally_1base58_1from_1bytes(JNIEnv *env,
 
     unsigned char *c_bytes = to_unsigned_char_array(env, bytes);
     jsize bytes_len = (*env)->GetArrayLength(env, bytes);
-    char *output = "";
+    char *output = NULL;
 
     int ret = wally_base58_from_bytes(c_bytes, bytes_len, (uint32_t) flags, &output);
     if (ret != WALLY_OK) {
-        free(c_bytes);
-        free(output);
+        jni_free(c_bytes);
+        wally_free_string(output);
         throw_new_core_exception(env, "wally_base58_from_bytes error");
         return NULL;
     }
 
     jstring result = (*env)->NewStringUTF(env, output);
 
-    free(c_bytes);
-    free(output);
+    jni_free(c_bytes);
+    wally_free_string(output);
 
     return result;
 }
 
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_core_CoreJni_wally_1base58_1to_1bytes(JNIEnv *env,
-                                                           jclass clazz,
-                                                           jstring base58,
-                                                           jlong flags,
-                                                           jbyteArray output,
-                                                           jintArray written) {
+Java_com_bc_libwally_core_CoreJni_00024Native_wally_1base58_1to_1bytes(JNIEnv *env,
+                                                                       jclass clazz,
+                                                                       jstring base58,
+                                                                       jlong flags,
+                                                                       jbyteArray output,
+                                                                       jintArray written) {
     if (output == NULL) {
         throw_new_core_exception(env, "output is NULL");
         return WALLY_ERROR;
@@ -146,7 +148,7 @@ Java_com_bc_libwally_core_CoreJni_wally_1base58_1to_1bytes(JNIEnv *env,
                                     (size_t) output_len,
                                     &c_written);
     if (ret != WALLY_OK) {
-        free(c_output);
+        jni_free(c_output);
         (*env)->ReleaseStringUTFChars(env, base58, c_base58);
         return ret;
     }
@@ -154,16 +156,16 @@ Java_com_bc_libwally_core_CoreJni_wally_1base58_1to_1bytes(JNIEnv *env,
     copy_to_jbyteArray(env, output, c_output, output_len);
     copy_to_jintArray(env, written, &c_written, 1);
 
-    free(c_output);
+    jni_free(c_output);
     (*env)->ReleaseStringUTFChars(env, base58, c_base58);
 
     return WALLY_OK;
 }
 
 JNIEXPORT jstring JNICALL
-Java_com_bc_libwally_core_CoreJni_wally_1base64_1from_1bytes(JNIEnv *env,
-                                                             jclass clazz,
-                                                             jbyteArray bytes) {
+Java_com_bc_libwally_core_CoreJni_00024Native_wally_1base64_1from_1bytes(JNIEnv *env,
+                                                                         jclass clazz,
+                                                                         jbyteArray bytes) {
     if (bytes == NULL) {
         throw_new_core_exception(env, "bytes is NULL");
         return NULL;
@@ -172,44 +174,44 @@ Java_com_bc_libwally_core_CoreJni_wally_1base64_1from_1bytes(JNIEnv *env,
     unsigned char *c_bytes = to_unsigned_char_array(env, bytes);
     jsize bytes_len = (*env)->GetArrayLength(env, bytes);
     size_t output_len = base64_encoded_length(bytes_len);
-    char *output = (char *) calloc(output_len, sizeof(char));
+    char *output = (char *) jni_calloc(output_len, sizeof(char));
 
     size_t written = base64_encode(output, output_len, (char *) c_bytes, bytes_len);
     if (written == 0 || written > output_len) {
-        free(c_bytes);
-        free(output);
+        jni_free(c_bytes);
+        jni_free(output);
         throw_new_core_exception(env, "base64_encode error");
         return NULL;
     }
 
-    char *c_result = (char *) calloc(written + 1, sizeof(char));
+    char *c_result = (char *) jni_calloc(written + 1, sizeof(char));
     strncpy(c_result, output, written);
     c_result[written] = 0;
 
     jstring result = (*env)->NewStringUTF(env, c_result);
 
-    free(c_bytes);
-    free(output);
-    free(c_result);
+    jni_free(c_bytes);
+    jni_free(output);
+    jni_free(c_result);
 
     return result;
 
 }
 
 JNIEXPORT jbyteArray JNICALL
-Java_com_bc_libwally_core_CoreJni_wally_1base64_1to_1bytes(JNIEnv *env,
-                                                           jclass clazz,
-                                                           jstring base64) {
+Java_com_bc_libwally_core_CoreJni_00024Native_wally_1base64_1to_1bytes(JNIEnv *env,
+                                                                       jclass clazz,
+                                                                       jstring base64) {
 
     const char *c_base64 = (*env)->GetStringUTFChars(env, base64, 0);
     size_t base64_len = strlen(c_base64);
     size_t output_len = base64_decoded_length(base64_len);
-    char *output = (char *) calloc(output_len, sizeof(char));
+    char *output = (char *) jni_calloc(output_len, sizeof(char));
 
     size_t written = base64_decode(output, output_len, c_base64, base64_len);
     if (written == 0 || written > output_len) {
         (*env)->ReleaseStringUTFChars(env, base64, c_base64);
-        free(output);
+        jni_free(output);
         throw_new_core_exception(env, "base64_decode error");
         return NULL;
     }
@@ -217,7 +219,7 @@ Java_com_bc_libwally_core_CoreJni_wally_1base64_1to_1bytes(JNIEnv *env,
     jbyteArray result = create_jbyteArray(env, (unsigned char *) output, output_len);
 
     (*env)->ReleaseStringUTFChars(env, base64, c_base64);
-    free(output);
+    jni_free(output);
 
     return result;
 }
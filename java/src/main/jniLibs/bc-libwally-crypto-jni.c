@@ -2,18 +2,21 @@
 #include <stdbool.h>
 #include <wally_crypto.h>
 #include <wally_core.h>
-#include "jni-utils.c"
+#include "jni-utils.h"
 
 // com/bc/libwally/crypto/CryptoException
 static bool throw_new_crypto_exception(JNIEnv *env, char *msg) {
     return throw_new(env, "com/bc/libwally/crypto/CryptoException", msg);
 }
 
+DEFINE_JNI_STATS(Java_com_bc_libwally_crypto_CryptoJni_00024Native)
+
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_crypto_CryptoJni_wally_1ec_1public_1key_1from_1private_1key(JNIEnv *env,
-                                                                                 jclass clazz,
-                                                                                 jbyteArray priv_key,
-                                                                                 jbyteArray output) {
+Java_com_bc_libwally_crypto_CryptoJni_00024Native_wally_1ec_1public_1key_1from_1private_1key(JNIEnv *env,
+                                                                                             jclass clazz,
+                                                                                             jbyteArray priv_key,
+                                                                                             jbyteArray output,
+                                                                                             jint offset) {
     if (priv_key == NULL) {
         throw_new_crypto_exception(env, "priv_key is NULL");
         return WALLY_ERROR;
@@ -30,32 +33,32 @@ Java_com_bc_libwally_crypto_CryptoJni_wally_1ec_1public_1key_1from_1private_1key
         return WALLY_ERROR;
     }
 
+    if (!jbyteArray_fits(env, output, offset, EC_PUBLIC_KEY_LEN)) {
+        throw_new_crypto_exception(env, "output is too small");
+        return WALLY_ERROR;
+    }
+
     unsigned char *c_priv_key = to_unsigned_char_array(env, priv_key);
-    unsigned char *c_output = (unsigned char *) calloc(EC_PUBLIC_KEY_LEN, sizeof(unsigned char));
+    unsigned char c_output[EC_PUBLIC_KEY_LEN];
 
     int ret = wally_ec_public_key_from_private_key(c_priv_key,
                                                    (size_t) priv_key_len,
                                                    c_output,
                                                    EC_PUBLIC_KEY_LEN);
-    if (ret != WALLY_OK) {
-        free(c_priv_key);
-        free(c_output);
-        return ret;
+    if (ret == WALLY_OK) {
+        copy_to_jbyteArray_at(env, output, offset, c_output, EC_PUBLIC_KEY_LEN);
     }
 
-    copy_to_jbyteArray(env, output, c_output, EC_PUBLIC_KEY_LEN);
+    jni_free(c_priv_key);
 
-    free(c_priv_key);
-    free(c_output);
-
-    return WALLY_OK;
+    return ret;
 }
 
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_crypto_CryptoJni_wally_1ec_1public_1key_1decompress(JNIEnv *env,
-                                                                         jclass clazz,
-                                                                         jbyteArray pub_key,
-                                                                         jbyteArray output) {
+Java_com_bc_libwally_crypto_CryptoJni_00024Native_wally_1ec_1public_1key_1decompress(JNIEnv *env,
+                                                                                     jclass clazz,
+                                                                                     jbyteArray pub_key,
+                                                                                     jbyteArray output) {
     if (pub_key == NULL) {
         throw_new_crypto_exception(env, "pub_key is NULL");
         return WALLY_ERROR;
@@ -73,7 +76,7 @@ Java_com_bc_libwally_crypto_CryptoJni_wally_1ec_1public_1key_1decompress(JNIEnv
     }
 
     unsigned char *c_pub_key = to_unsigned_char_array(env, pub_key);
-    unsigned char *c_output = (unsigned char *) calloc(EC_PUBLIC_KEY_UNCOMPRESSED_LEN,
+    unsigned char *c_output = (unsigned char *) jni_calloc(EC_PUBLIC_KEY_UNCOMPRESSED_LEN,
                                                        sizeof(unsigned char));
 
     int ret = wally_ec_public_key_decompress(c_pub_key,
@@ -81,24 +84,25 @@ Java_com_bc_libwally_crypto_CryptoJni_wally_1ec_1public_1key_1decompress(JNIEnv
                                              c_output,
                                              EC_PUBLIC_KEY_UNCOMPRESSED_LEN);
     if (ret != WALLY_OK) {
-        free(c_pub_key);
-        free(c_output);
+        jni_free(c_pub_key);
+        jni_free(c_output);
         return ret;
     }
 
     copy_to_jbyteArray(env, output, c_output, EC_PUBLIC_KEY_UNCOMPRESSED_LEN);
 
-    free(c_pub_key);
-    free(c_output);
+    jni_free(c_pub_key);
+    jni_free(c_output);
 
     return WALLY_OK;
 }
 
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_crypto_CryptoJni_wally_1hash160(JNIEnv *env,
-                                                     jclass clazz,
-                                                     jbyteArray bytes,
-                                                     jbyteArray output) {
+Java_com_bc_libwally_crypto_CryptoJni_00024Native_wally_1hash160(JNIEnv *env,
+                                                                 jclass clazz,
+                                                                 jbyteArray bytes,
+                                                                 jbyteArray output,
+                                                                 jint offset) {
     if (bytes == NULL) {
         throw_new_crypto_exception(env, "bytes is NULL");
         return WALLY_ERROR;
@@ -109,30 +113,82 @@ Java_com_bc_libwally_crypto_CryptoJni_wally_1hash160(JNIEnv *env,
         return WALLY_ERROR;
     }
 
+    if (!jbyteArray_fits(env, output, offset, HASH160_LEN)) {
+        throw_new_crypto_exception(env, "output is too small");
+        return WALLY_ERROR;
+    }
+
     jsize bytes_len = (*env)->GetArrayLength(env, bytes);
 
     unsigned char *c_bytes = to_unsigned_char_array(env, bytes);
-    unsigned char *c_output = (unsigned char *) calloc(HASH160_LEN, sizeof(unsigned char));
+    unsigned char c_output[HASH160_LEN];
 
     int ret = wally_hash160(c_bytes, (size_t) bytes_len, c_output, HASH160_LEN);
-    if (ret != WALLY_OK) {
-        free(c_bytes);
-        free(c_output);
-        return ret;
+    if (ret == WALLY_OK) {
+        copy_to_jbyteArray_at(env, output, offset, c_output, HASH160_LEN);
     }
 
-    copy_to_jbyteArray(env, output, c_output, HASH160_LEN);
+    jni_free(c_bytes);
 
-    free(c_bytes);
-    free(c_output);
+    return ret;
+}
 
-    return WALLY_OK;
+// Hashes the `item_len` byte items packed back to back in `bytes`, writing the hashes packed the
+// same way to `output`.
+JNIEXPORT jint JNICALL
+Java_com_bc_libwally_crypto_CryptoJni_00024Native_wally_1hash160_1batch(JNIEnv *env,
+                                                                        jclass clazz,
+                                                                        jbyteArray bytes,
+                                                                        jint item_len,
+                                                                        jbyteArray output) {
+    if (bytes == NULL) {
+        throw_new_crypto_exception(env, "bytes is NULL");
+        return WALLY_ERROR;
+    }
+
+    if (output == NULL) {
+        throw_new_crypto_exception(env, "output is NULL");
+        return WALLY_ERROR;
+    }
+
+    jsize bytes_len = (*env)->GetArrayLength(env, bytes);
+    if (item_len <= 0 || bytes_len % item_len != 0) {
+        throw_new_crypto_exception(env, "invalid item_len");
+        return WALLY_ERROR;
+    }
+
+    size_t count = (size_t) (bytes_len / item_len);
+    if ((size_t) (*env)->GetArrayLength(env, output) != count * HASH160_LEN) {
+        throw_new_crypto_exception(env, "invalid output length");
+        return WALLY_ERROR;
+    }
+
+    unsigned char *c_bytes = to_unsigned_char_array(env, bytes);
+    unsigned char *c_output = (unsigned char *) jni_calloc(count == 0 ? 1 : count * HASH160_LEN,
+                                                           sizeof(unsigned char));
+
+    int ret = WALLY_OK;
+    for (size_t i = 0; i < count && ret == WALLY_OK; i++) {
+        ret = wally_hash160(c_bytes + i * item_len,
+                            (size_t) item_len,
+                            c_output + i * HASH160_LEN,
+                            HASH160_LEN);
+    }
+
+    if (ret == WALLY_OK) {
+        copy_to_jbyteArray(env, output, c_output, count * HASH160_LEN);
+    }
+
+    jni_free(c_bytes);
+    jni_free(c_output);
+
+    return ret;
 }
 
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_crypto_CryptoJni_wally_1ec_1private_1key_1verify(JNIEnv *env,
-                                                                      jclass clazz,
-                                                                      jbyteArray priv_key) {
+Java_com_bc_libwally_crypto_CryptoJni_00024Native_wally_1ec_1private_1key_1verify(JNIEnv *env,
+                                                                                  jclass clazz,
+                                                                                  jbyteArray priv_key) {
 
     if (priv_key == NULL) {
         throw_new_crypto_exception(env, "priv_key is NULL");
@@ -144,17 +200,18 @@ Java_com_bc_libwally_crypto_CryptoJni_wally_1ec_1private_1key_1verify(JNIEnv *en
 
     int ret = wally_ec_private_key_verify(c_priv_key, (size_t) priv_key_len);
 
-    free(c_priv_key);
+    jni_free(c_priv_key);
     return ret;
 }
 
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_crypto_CryptoJni_wally_1ec_1sig_1from_1bytes(JNIEnv *env,
-                                                                  jclass clazz,
-                                                                  jbyteArray priv_key,
-                                                                  jbyteArray message,
-                                                                  jlong flags,
-                                                                  jbyteArray output) {
+Java_com_bc_libwally_crypto_CryptoJni_00024Native_wally_1ec_1sig_1from_1bytes(JNIEnv *env,
+                                                                              jclass clazz,
+                                                                              jbyteArray priv_key,
+                                                                              jbyteArray message,
+                                                                              jlong flags,
+                                                                              jbyteArray output,
+                                                                              jint offset) {
     if (priv_key == NULL) {
         throw_new_crypto_exception(env, "priv_key is NULL");
         return WALLY_ERROR;
@@ -175,13 +232,18 @@ Java_com_bc_libwally_crypto_CryptoJni_wally_1ec_1sig_1from_1bytes(JNIEnv *env,
         return WALLY_ERROR;
     }
 
+    uint32_t out_len =
+            flags == EC_FLAG_RECOVERABLE ? EC_SIGNATURE_RECOVERABLE_LEN : EC_SIGNATURE_LEN;
+    if (!jbyteArray_fits(env, output, offset, out_len)) {
+        throw_new_crypto_exception(env, "output is too small");
+        return WALLY_ERROR;
+    }
+
     unsigned char *c_priv_key = to_unsigned_char_array(env, priv_key);
     jsize priv_key_len = (*env)->GetArrayLength(env, priv_key);
     unsigned char *c_message = to_unsigned_char_array(env, message);
     jsize message_len = (*env)->GetArrayLength(env, message);
-    uint32_t out_len =
-            flags == EC_FLAG_RECOVERABLE ? EC_SIGNATURE_RECOVERABLE_LEN : EC_SIGNATURE_LEN;
-    unsigned char *c_output = (unsigned char *) calloc(out_len, sizeof(unsigned char));
+    unsigned char c_output[EC_SIGNATURE_RECOVERABLE_LEN];
 
     int ret = wally_ec_sig_from_bytes(c_priv_key,
                                       (size_t) priv_key_len,
@@ -190,22 +252,22 @@ Java_com_bc_libwally_crypto_CryptoJni_wally_1ec_1sig_1from_1bytes(JNIEnv *env,
                                       (uint32_t) flags,
                                       c_output,
                                       (size_t) out_len);
+    if (ret == WALLY_OK) {
+        copy_to_jbyteArray_at(env, output, offset, c_output, out_len);
+    }
 
-    copy_to_jbyteArray(env, output, c_output, out_len);
-
-    free(c_priv_key);
-    free(c_message);
-    free(c_output);
+    jni_free(c_priv_key);
+    jni_free(c_message);
     return ret;
 }
 
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_crypto_CryptoJni_wally_1ec_1sig_1verify(JNIEnv *env,
-                                                             jclass clazz,
-                                                             jbyteArray pub_key,
-                                                             jbyteArray message,
-                                                             jlong flags,
-                                                             jbyteArray sig) {
+Java_com_bc_libwally_crypto_CryptoJni_00024Native_wally_1ec_1sig_1verify(JNIEnv *env,
+                                                                         jclass clazz,
+                                                                         jbyteArray pub_key,
+                                                                         jbyteArray message,
+                                                                         jlong flags,
+                                                                         jbyteArray sig) {
     if (pub_key == NULL) {
         throw_new_crypto_exception(env, "pub_key is NULL");
         return WALLY_ERROR;
@@ -240,18 +302,19 @@ Java_com_bc_libwally_crypto_CryptoJni_wally_1ec_1sig_1verify(JNIEnv *env,
                                   c_sig,
                                   EC_SIGNATURE_LEN);
 
-    free(c_pub_key);
-    free(c_message);
-    free(c_sig);
+    jni_free(c_pub_key);
+    jni_free(c_message);
+    jni_free(c_sig);
 
     return ret;
 }
 
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_crypto_CryptoJni_wally_1ec_1sig_1normalize(JNIEnv *env,
-                                                                jclass clazz,
-                                                                jbyteArray sig,
-                                                                jbyteArray output) {
+Java_com_bc_libwally_crypto_CryptoJni_00024Native_wally_1ec_1sig_1normalize(JNIEnv *env,
+                                                                            jclass clazz,
+                                                                            jbyteArray sig,
+                                                                            jbyteArray output,
+                                                                            jint offset) {
     if (sig == NULL) {
         throw_new_crypto_exception(env, "sig is NULL");
         return WALLY_ERROR;
@@ -262,27 +325,32 @@ Java_com_bc_libwally_crypto_CryptoJni_wally_1ec_1sig_1normalize(JNIEnv *env,
         return WALLY_ERROR;
     }
 
+    if (!jbyteArray_fits(env, output, offset, EC_SIGNATURE_LEN)) {
+        throw_new_crypto_exception(env, "output is too small");
+        return WALLY_ERROR;
+    }
+
     unsigned char *c_sig = to_unsigned_char_array(env, sig);
     jsize sig_len = (*env)->GetArrayLength(env, sig);
-    unsigned char *c_output = calloc(EC_SIGNATURE_LEN, sizeof(unsigned char));
+    unsigned char c_output[EC_SIGNATURE_LEN];
 
     int ret = wally_ec_sig_normalize(c_sig, (size_t) sig_len, c_output, EC_SIGNATURE_LEN);
+    if (ret == WALLY_OK) {
+        copy_to_jbyteArray_at(env, output, offset, c_output, EC_SIGNATURE_LEN);
+    }
 
-    copy_to_jbyteArray(env, output, c_output, EC_SIGNATURE_LEN);
-
-    free(c_sig);
-    free(c_output);
+    jni_free(c_sig);
 
     return ret;
-
 }
 
+// returns the DER length written at `offset`, or a negative wally error code
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_crypto_CryptoJni_wally_1ec_1sig_1to_1der(JNIEnv *env,
-                                                              jclass clazz,
-                                                              jbyteArray sig,
-                                                              jbyteArray output,
-                                                              jintArray written) {
+Java_com_bc_libwally_crypto_CryptoJni_00024Native_wally_1ec_1sig_1to_1der(JNIEnv *env,
+                                                                          jclass clazz,
+                                                                          jbyteArray sig,
+                                                                          jbyteArray output,
+                                                                          jint offset) {
     if (sig == NULL) {
         throw_new_crypto_exception(env, "sig is NULL");
         return WALLY_ERROR;
@@ -293,20 +361,9 @@ Java_com_bc_libwally_crypto_CryptoJni_wally_1ec_1sig_1to_1der(JNIEnv *env,
         return WALLY_ERROR;
     }
 
-    if (written == NULL) {
-        throw_new_crypto_exception(env, "written is NULL");
-        return WALLY_ERROR;
-    }
-
-    jsize written_len = (*env)->GetArrayLength(env, written);
-    if (written_len != 1) {
-        throw_new_crypto_exception(env, "written len must be 1");
-        return WALLY_ERROR;
-    }
-
     unsigned char *c_sig = to_unsigned_char_array(env, sig);
     jsize sig_len = (*env)->GetArrayLength(env, sig);
-    unsigned char *c_output = calloc(EC_SIGNATURE_DER_MAX_LEN, sizeof(unsigned char));
+    unsigned char c_output[EC_SIGNATURE_DER_MAX_LEN];
     size_t c_written = 0;
 
     int ret = wally_ec_sig_to_der(c_sig,
@@ -314,13 +371,117 @@ Java_com_bc_libwally_crypto_CryptoJni_wally_1ec_1sig_1to_1der(JNIEnv *env,
                                   c_output,
                                   EC_SIGNATURE_DER_MAX_LEN,
                                   &c_written);
+    jni_free(c_sig);
+    if (ret != WALLY_OK) {
+        return ret;
+    }
+
+    if (!jbyteArray_fits(env, output, offset, c_written)) {
+        throw_new_crypto_exception(env, "output is too small");
+        return WALLY_ERROR;
+    }
+
+    copy_to_jbyteArray_at(env, output, offset, c_output, c_written);
 
-    copy_to_jbyteArray(env, output, c_output, EC_SIGNATURE_DER_MAX_LEN);
-    copy_to_jintArray(env, written, &c_written, 1);
+    return (jint) c_written;
+}
+
+
+JNIEXPORT jint JNICALL
+Java_com_bc_libwally_crypto_CryptoJni_00024Native_wally_1secp_1context_1init(JNIEnv *env,
+                                                                            jclass clazz) {
+    int ret = wally_init(0);
+    if (ret != WALLY_OK) {
+        return ret;
+    }
 
-    free(c_sig);
-    free(c_output);
+    // the global context is otherwise created lazily by the first EC call
+    return wally_get_secp_context() == NULL ? WALLY_ENOMEM : WALLY_OK;
+}
+
+JNIEXPORT jint JNICALL
+Java_com_bc_libwally_crypto_CryptoJni_00024Native_wally_1secp_1randomize(JNIEnv *env,
+                                                                        jclass clazz,
+                                                                        jbyteArray bytes) {
+    if (bytes == NULL) {
+        throw_new_crypto_exception(env, "bytes is NULL");
+        return WALLY_ERROR;
+    }
+
+    jsize bytes_len = (*env)->GetArrayLength(env, bytes);
+    if (bytes_len != WALLY_SECP_RANDOMIZE_LEN) {
+        throw_new_crypto_exception(env, "bytes len must be WALLY_SECP_RANDOMIZE_LEN");
+        return WALLY_ERROR;
+    }
+
+    unsigned char *c_bytes = to_unsigned_char_array(env, bytes);
+
+    int ret = wally_secp_randomize(c_bytes, (size_t) bytes_len);
+
+    memset(c_bytes, 0, (size_t) bytes_len);
+    jni_free(c_bytes);
 
     return ret;
 }
 
+// returns the index of the first signature that does not verify, or -1 if all of them do
+JNIEXPORT jint JNICALL
+Java_com_bc_libwally_crypto_CryptoJni_00024Native_wally_1ec_1sig_1verify_1batch(JNIEnv *env,
+                                                                               jclass clazz,
+                                                                               jbyteArray pub_keys,
+                                                                               jbyteArray messages,
+                                                                               jlong flags,
+                                                                               jbyteArray sigs) {
+    if (pub_keys == NULL) {
+        throw_new_crypto_exception(env, "pub_keys is NULL");
+        return WALLY_ERROR;
+    }
+
+    if (messages == NULL) {
+        throw_new_crypto_exception(env, "messages is NULL");
+        return WALLY_ERROR;
+    }
+
+    if (sigs == NULL) {
+        throw_new_crypto_exception(env, "sigs is NULL");
+        return WALLY_ERROR;
+    }
+
+    jsize pub_keys_len = (*env)->GetArrayLength(env, pub_keys);
+    if (pub_keys_len % EC_PUBLIC_KEY_LEN != 0) {
+        throw_new_crypto_exception(env, "invalid pub_keys length");
+        return WALLY_ERROR;
+    }
+
+    size_t count = (size_t) (pub_keys_len / EC_PUBLIC_KEY_LEN);
+    if ((size_t) (*env)->GetArrayLength(env, messages) != count * SHA256_LEN ||
+        (size_t) (*env)->GetArrayLength(env, sigs) != count * EC_SIGNATURE_LEN) {
+        throw_new_crypto_exception(env, "messages and sigs must match pub_keys");
+        return WALLY_ERROR;
+    }
+
+    unsigned char *c_pub_keys = to_unsigned_char_array(env, pub_keys);
+    unsigned char *c_messages = to_unsigned_char_array(env, messages);
+    unsigned char *c_sigs = to_unsigned_char_array(env, sigs);
+
+    jint failed = -1;
+    for (size_t i = 0; i < count; i++) {
+        int ret = wally_ec_sig_verify(c_pub_keys + i * EC_PUBLIC_KEY_LEN,
+                                      EC_PUBLIC_KEY_LEN,
+                                      c_messages + i * SHA256_LEN,
+                                      SHA256_LEN,
+                                      (uint32_t) flags,
+                                      c_sigs + i * EC_SIGNATURE_LEN,
+                                      EC_SIGNATURE_LEN);
+        if (ret != WALLY_OK) {
+            failed = (jint) i;
+            break;
+        }
+    }
+
+    jni_free(c_pub_keys);
+    jni_free(c_messages);
+    jni_free(c_sigs);
+
+    return failed;
+}
@@ -1,194 +1,283 @@
 #include <jni.h>
-#include "jni-utils.c"
+#include "jni-utils.h"
 #include <stdbool.h>
 #include <wally_psbt.h>
 #include <wally_transaction.h>
 #include <limits.h>
 #include <stdio.h>
+#include <string.h>
 
 // com/bc/libwally/psbt/PsbtException
 static bool throw_new_psbt_exception(JNIEnv *env, char *msg) {
     return throw_new(env, "com/bc/libwally/psbt/PsbtException", msg);
 }
 
+DEFINE_JNI_STATS(Java_com_bc_libwally_psbt_PsbtJni_00024Native)
+
+// Parses `len` bytes at `offset`. The array is read in place, wally_psbt_from_bytes makes no
+// JNI calls while the critical section is held.
 JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_psbt_PsbtJni_wally_1psbt_1clone_1alloc(JNIEnv *env,
-                                                            jclass clazz,
-                                                            jobject psbt,
-                                                            jlong flags) {
-    if (psbt == NULL) {
-        throw_new_psbt_exception(env, "psbt is NULL");
+Java_com_bc_libwally_psbt_PsbtJni_00024Native_wally_1psbt_1from_1bytes(JNIEnv *env,
+                                                                       jclass clazz,
+                                                                       jbyteArray bytes,
+                                                                       jint offset,
+                                                                       jint len) {
+    if (bytes == NULL) {
+        throw_new_psbt_exception(env, "bytes is NULL");
         return NULL;
     }
 
-    if (flags > UINT32_MAX) {
-        throw_new_psbt_exception(env, "flags is too large");
+    jsize bytes_len = (*env)->GetArrayLength(env, bytes);
+    if (offset < 0 || len < 0 || offset > bytes_len - len) {
+        throw_new_psbt_exception(env, "invalid offset or len");
         return NULL;
     }
 
-    struct wally_psbt *c_psbt = to_c_wally_psbt(env, psbt);
-    struct wally_psbt *output = (struct wally_psbt *) calloc(1, sizeof(struct wally_psbt));
+    unsigned char *c_bytes = (*env)->GetPrimitiveArrayCritical(env, bytes, NULL);
+    if (c_bytes == NULL) {
+        return NULL;
+    }
+
+    struct wally_psbt *output = NULL;
+    int ret = wally_psbt_from_bytes(c_bytes + offset, (size_t) len, &output);
+    (*env)->ReleasePrimitiveArrayCritical(env, bytes, c_bytes, JNI_ABORT);
+    jni_bytes_in += len;
 
-    int ret = wally_psbt_clone_alloc(c_psbt, (uint32_t) flags, &output);
     if (ret != WALLY_OK) {
-        free(c_psbt);
-        free(output);
-        throw_new_psbt_exception(env, "wally_psbt_clone_alloc error");
+        wally_psbt_free(output);
+        throw_new_psbt_exception(env, "wally_psbt_from_bytes error");
         return NULL;
     }
 
     jobject result = to_jWallyPsbt(env, output);
 
-    free(c_psbt);
-    free(output);
+    wally_psbt_free(output);
 
     return result;
 }
 
+// Parses `len` bytes at `offset` of a direct buffer without copying them.
 JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_psbt_PsbtJni_wally_1psbt_1from_1bytes(JNIEnv *env,
-                                                           jclass clazz,
-                                                           jbyteArray bytes) {
-    if (bytes == NULL) {
-        throw_new_psbt_exception(env, "bytes is NULL");
+Java_com_bc_libwally_psbt_PsbtJni_00024Native_wally_1psbt_1from_1buffer(JNIEnv *env,
+                                                                        jclass clazz,
+                                                                        jobject buffer,
+                                                                        jint offset,
+                                                                        jint len) {
+    if (buffer == NULL) {
+        throw_new_psbt_exception(env, "buffer is NULL");
         return NULL;
     }
 
-    unsigned char *c_bytes = to_unsigned_char_array(env, bytes);
-    jsize bytes_len = (*env)->GetArrayLength(env, bytes);
-    struct wally_psbt *output = (struct wally_psbt *) calloc(1, sizeof(struct wally_psbt));
+    unsigned char *address = (*env)->GetDirectBufferAddress(env, buffer);
+    jlong capacity = (*env)->GetDirectBufferCapacity(env, buffer);
+    if (address == NULL || offset < 0 || len < 0 || (jlong) offset + len > capacity) {
+        throw_new_psbt_exception(env, "invalid buffer");
+        return NULL;
+    }
+
+    struct wally_psbt *output = NULL;
+    int ret = wally_psbt_from_bytes(address + offset, (size_t) len, &output);
+    jni_bytes_in += len;
 
-    int ret = wally_psbt_from_bytes(c_bytes, (size_t) bytes_len, &output);
     if (ret != WALLY_OK) {
-        free(c_bytes);
-        free(output);
+        wally_psbt_free(output);
         throw_new_psbt_exception(env, "wally_psbt_from_bytes error");
         return NULL;
     }
 
     jobject result = to_jWallyPsbt(env, output);
 
-    free(c_bytes);
-    free(output);
+    wally_psbt_free(output);
 
     return result;
 }
 
-JNIEXPORT jint JNICALL
-Java_com_bc_libwally_psbt_PsbtJni_wally_1psbt_1get_1length(JNIEnv *env,
-                                                           jclass clazz,
-                                                           jobject psbt,
-                                                           jlong flags) {
+JNIEXPORT jbyteArray JNICALL
+Java_com_bc_libwally_psbt_PsbtJni_00024Native_wally_1psbt_1to_1bytes(JNIEnv *env,
+                                                                     jclass clazz,
+                                                                     jobject psbt,
+                                                                     jlong flags) {
     if (psbt == NULL) {
         throw_new_psbt_exception(env, "psbt is NULL");
-        return JNI_ERR;
+        return NULL;
     }
 
     if (flags > UINT32_MAX) {
         throw_new_psbt_exception(env, "flags is too large");
-        return JNI_ERR;
+        return NULL;
     }
 
     struct wally_psbt *c_psbt = to_c_wally_psbt(env, psbt);
-    size_t written = 0;
-
-    int ret = wally_psbt_get_length(c_psbt, (uint32_t) flags, &written);
-    if (ret != WALLY_OK) {
-        free(c_psbt);
+    size_t len = 0;
+    if (wally_psbt_get_length(c_psbt, (uint32_t) flags, &len) != WALLY_OK) {
+        wally_psbt_free(c_psbt);
         throw_new_psbt_exception(env, "wally_psbt_get_length error");
-        return ret;
+        return NULL;
     }
 
-    free(c_psbt);
+    // serialized straight into the Java array, there is no intermediate native buffer
+    jbyteArray result = (*env)->NewByteArray(env, (jsize) len);
+    if (result == NULL) {
+        wally_psbt_free(c_psbt);
+        return NULL;
+    }
 
-    return (jint) written;
-}
+    jbyte *bytes = (*env)->GetByteArrayElements(env, result, NULL);
+    size_t written = 0;
+    int ret = wally_psbt_to_bytes(c_psbt, (uint32_t) flags, (unsigned char *) bytes, len, &written);
+    (*env)->ReleaseByteArrayElements(env, result, bytes, 0);
+    wally_psbt_free(c_psbt);
 
-JNIEXPORT jint JNICALL
-Java_com_bc_libwally_psbt_PsbtJni_wally_1psbt_1to_1bytes(JNIEnv *env,
-                                                         jclass clazz,
-                                                         jobject psbt,
-                                                         jlong flags,
-                                                         jbyteArray output,
-                                                         jintArray written) {
-    if (psbt == NULL) {
-        throw_new_psbt_exception(env, "psbt is NULL");
-        return JNI_ERR;
+    if (ret != WALLY_OK || written != len) {
+        throw_new_psbt_exception(env, "wally_psbt_to_bytes error");
+        return NULL;
     }
 
-    if (flags > UINT32_MAX) {
-        throw_new_psbt_exception(env, "flags is too large");
-        return JNI_ERR;
-    }
+    jni_bytes_out += len;
+    return result;
+}
 
-    if (output == NULL) {
-        throw_new_psbt_exception(env, "output is NULL");
-        return JNI_ERR;
-    }
+JNIEXPORT jobject JNICALL
+Java_com_bc_libwally_psbt_PsbtJni_00024Native_wally_1psbt_1extract(JNIEnv *env, jclass clazz, jobject psbt) {
 
-    if (written == NULL) {
-        throw_new_psbt_exception(env, "written is NULL");
-        return JNI_ERR;
+    if (psbt == NULL) {
+        throw_new_psbt_exception(env, "psbt is NULL");
+        return NULL;
     }
 
     struct wally_psbt *c_psbt = to_c_wally_psbt(env, psbt);
-    unsigned char *c_output = to_unsigned_char_array(env, output);
-    jsize output_len = (*env)->GetArrayLength(env, output);
-    size_t c_written = 0;
-
-    int ret = wally_psbt_to_bytes(c_psbt,
-                                  (uint32_t) flags,
-                                  c_output,
-                                  (size_t) output_len,
-                                  &c_written);
+    struct wally_tx *output = NULL;
+
+    int ret = wally_psbt_extract(c_psbt, &output);
     if (ret != WALLY_OK) {
-        free(c_psbt);
-        free(c_output);
-        return ret;
+        wally_psbt_free(c_psbt);
+        wally_tx_free(output);
+        throw_new_psbt_exception(env, "wally_psbt_extract error");
+        return NULL;
     }
 
-    copy_to_jbyteArray(env, output, c_output, output_len);
-    copy_to_jintArray(env, written, &c_written, 1);
+    jobject result = to_jWallyTx(env, output);
 
-    free(c_psbt);
-    free(c_output);
+    wally_psbt_free(c_psbt);
+    wally_tx_free(output);
 
-    return WALLY_OK;
+    return result;
 }
 
-JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_psbt_PsbtJni_wally_1psbt_1extract(JNIEnv *env, jclass clazz, jobject psbt) {
-
+// Finalizes, extracts and serializes the transaction with its witnesses in one pass, writing the
+// txid to `txid`. Nothing but the raw transaction is marshalled back to Java.
+JNIEXPORT jbyteArray JNICALL
+Java_com_bc_libwally_psbt_PsbtJni_00024Native_wally_1psbt_1finalize_1extract(JNIEnv *env,
+                                                                             jclass clazz,
+                                                                             jobject psbt,
+                                                                             jbyteArray txid) {
     if (psbt == NULL) {
         throw_new_psbt_exception(env, "psbt is NULL");
         return NULL;
     }
 
+    if (!jbyteArray_fits(env, txid, 0, WALLY_TXHASH_LEN)) {
+        throw_new_psbt_exception(env, "txid is too short");
+        return NULL;
+    }
+
     struct wally_psbt *c_psbt = to_c_wally_psbt(env, psbt);
-    struct wally_tx *output = (struct wally_tx *) calloc(1, sizeof(struct wally_tx));
+    struct wally_tx *c_tx = NULL;
 
-    int ret = wally_psbt_extract(c_psbt, &output);
+    int ret = wally_psbt_finalize(c_psbt);
     if (ret != WALLY_OK) {
-        free(c_psbt);
-        free(output);
+        wally_psbt_free(c_psbt);
+        throw_new_psbt_exception(env, "wally_psbt_finalize error");
+        return NULL;
+    }
+
+    ret = wally_psbt_extract(c_psbt, &c_tx);
+    wally_psbt_free(c_psbt);
+    if (ret != WALLY_OK) {
+        wally_tx_free(c_tx);
         throw_new_psbt_exception(env, "wally_psbt_extract error");
         return NULL;
     }
 
-    jobject result = to_jWallyTx(env, output);
+    unsigned char c_txid[WALLY_TXHASH_LEN];
+    size_t len = 0;
+    if (wally_tx_get_txid(c_tx, c_txid, WALLY_TXHASH_LEN) != WALLY_OK ||
+        wally_tx_get_length(c_tx, WALLY_TX_FLAG_USE_WITNESS, &len) != WALLY_OK) {
+        wally_tx_free(c_tx);
+        throw_new_psbt_exception(env, "invalid extracted tx");
+        return NULL;
+    }
+
+    jbyteArray result = (*env)->NewByteArray(env, (jsize) len);
+    if (result == NULL) {
+        wally_tx_free(c_tx);
+        return NULL;
+    }
 
-    free(c_psbt);
-    free(output);
+    jbyte *bytes = (*env)->GetByteArrayElements(env, result, NULL);
+    size_t written = 0;
+    ret = wally_tx_to_bytes(c_tx, WALLY_TX_FLAG_USE_WITNESS, (unsigned char *) bytes, len, &written);
+    (*env)->ReleaseByteArrayElements(env, result, bytes, 0);
+    wally_tx_free(c_tx);
 
+    if (ret != WALLY_OK || written != len) {
+        throw_new_psbt_exception(env, "wally_tx_to_bytes error");
+        return NULL;
+    }
+
+    copy_to_jbyteArray_at(env, txid, 0, c_txid, WALLY_TXHASH_LEN);
+    jni_bytes_out += len;
     return result;
 }
 
-JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_psbt_PsbtJni_wally_1psbt_1sign(JNIEnv *env,
-                                                    jclass clazz,
-                                                    jobject psbt,
-                                                    jbyteArray key,
-                                                    jlong flags) {
+// What signing or finalizing can change about an input: its signature count and whether it has
+// a final scriptSig or witness. Only inputs whose state changed are marshalled back to Java.
+static size_t input_state(const struct wally_psbt_input *input) {
+    return input->signatures.num_items * 4 +
+           (input->final_scriptsig != NULL ? 2 : 0) +
+           (input->final_witness != NULL ? 1 : 0);
+}
+
+static size_t *to_input_states(const struct wally_psbt *psbt) {
+    size_t *states = jni_calloc(psbt->num_inputs == 0 ? 1 : psbt->num_inputs, sizeof(size_t));
+    for (size_t i = 0; i < psbt->num_inputs; i++) {
+        states[i] = input_state(psbt->inputs + i);
+    }
+    return states;
+}
+
+// Returns an array as long as the inputs, holding the changed inputs and NULL for the others.
+static jobjectArray to_changed_jWallyPsbtInputs(JNIEnv *env,
+                                                struct wally_psbt *psbt,
+                                                const size_t *states) {
+    jclass clazz = find_jclass(env, "com/bc/libwally/psbt/raw/WallyPsbtInput");
+    if (clazz == NULL) {
+        return NULL;
+    }
+
+    jobjectArray result = (*env)->NewObjectArray(env, (jsize) psbt->num_inputs, clazz, NULL);
+    if (result == NULL) {
+        return NULL;
+    }
+
+    for (size_t i = 0; i < psbt->num_inputs; i++) {
+        if (input_state(psbt->inputs + i) == states[i]) {
+            continue;
+        }
+        jobject input = to_jWallyPsbtInput(env, psbt->inputs + i);
+        (*env)->SetObjectArrayElement(env, result, (jsize) i, input);
+        (*env)->DeleteLocalRef(env, input);
+    }
+
+    return result;
+}
+
+JNIEXPORT jobjectArray JNICALL
+Java_com_bc_libwally_psbt_PsbtJni_00024Native_wally_1psbt_1sign_1inputs(JNIEnv *env,
+                                                                        jclass clazz,
+                                                                        jobject psbt,
+                                                                        jbyteArray key,
+                                                                        jlong flags) {
     if (psbt == NULL) {
         throw_new_psbt_exception(env, "psbt is NULL");
         return NULL;
@@ -207,108 +296,146 @@ Java_com_bc_libwally_psbt_PsbtJni_wally_1psbt_1sign(JNIEnv *env,
     struct wally_psbt *c_psbt = to_c_wally_psbt(env, psbt);
     unsigned char *c_key = to_unsigned_char_array(env, key);
     jsize key_len = (*env)->GetArrayLength(env, key);
+    size_t *states = to_input_states(c_psbt);
 
     int ret = wally_psbt_sign(c_psbt, c_key, (size_t) key_len, (uint32_t) flags);
     if (ret != WALLY_OK) {
-        free(c_psbt);
-        free(c_key);
+        wally_psbt_free(c_psbt);
+        jni_free(c_key);
+        jni_free(states);
         throw_new_psbt_exception(env, "wally_psbt_sign error");
         return NULL;
     }
 
-    jobject result = to_jWallyPsbt(env, c_psbt);
+    jobjectArray result = to_changed_jWallyPsbtInputs(env, c_psbt, states);
 
-    free(c_psbt);
-    free(c_key);
+    wally_psbt_free(c_psbt);
+    jni_free(c_key);
+    jni_free(states);
 
     return result;
 }
 
-JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_psbt_PsbtJni_wally_1psbt_1finalize(JNIEnv *env, jclass clazz, jobject psbt) {
-
+// Signs with every key and optionally finalizes, marshalling the psbt in and the changed inputs
+// out only once for the whole batch.
+JNIEXPORT jobjectArray JNICALL
+Java_com_bc_libwally_psbt_PsbtJni_00024Native_wally_1psbt_1sign_1finalize_1inputs(JNIEnv *env,
+                                                                                  jclass clazz,
+                                                                                  jobject psbt,
+                                                                                  jobjectArray keys,
+                                                                                  jlong flags,
+                                                                                  jboolean finalize) {
     if (psbt == NULL) {
         throw_new_psbt_exception(env, "psbt is NULL");
         return NULL;
     }
 
+    if (keys == NULL) {
+        throw_new_psbt_exception(env, "keys is NULL");
+        return NULL;
+    }
+
+    if (flags > UINT32_MAX) {
+        throw_new_psbt_exception(env, "flags is too large");
+        return NULL;
+    }
+
     struct wally_psbt *c_psbt = to_c_wally_psbt(env, psbt);
+    size_t *states = to_input_states(c_psbt);
+
+    int ret = WALLY_OK;
+    jsize count = (*env)->GetArrayLength(env, keys);
+    for (jsize i = 0; i < count && ret == WALLY_OK; i++) {
+        jbyteArray key = (jbyteArray) (*env)->GetObjectArrayElement(env, keys, i);
+        if (key == NULL) {
+            ret = WALLY_EINVAL;
+            break;
+        }
+        unsigned char *c_key = to_unsigned_char_array(env, key);
+        jsize key_len = (*env)->GetArrayLength(env, key);
+        ret = wally_psbt_sign(c_psbt, c_key, (size_t) key_len, (uint32_t) flags);
+        jni_free(c_key);
+        (*env)->DeleteLocalRef(env, key);
+    }
 
-    int ret = wally_psbt_finalize(c_psbt);
     if (ret != WALLY_OK) {
-        free(c_psbt);
+        wally_psbt_free(c_psbt);
+        jni_free(states);
+        throw_new_psbt_exception(env, "wally_psbt_sign error");
+        return NULL;
+    }
+
+    if (finalize && wally_psbt_finalize(c_psbt) != WALLY_OK) {
+        wally_psbt_free(c_psbt);
+        jni_free(states);
         throw_new_psbt_exception(env, "wally_psbt_finalize error");
         return NULL;
     }
 
-    jobject result = to_jWallyPsbt(env, c_psbt);
+    jobjectArray result = to_changed_jWallyPsbtInputs(env, c_psbt, states);
 
-    free(c_psbt);
+    wally_psbt_free(c_psbt);
+    jni_free(states);
 
     return result;
 }
 
-JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_psbt_PsbtJni_wally_1psbt_1from_1base64(JNIEnv *env,
-                                                            jclass clazz,
-                                                            jstring base64) {
+JNIEXPORT jobjectArray JNICALL
+Java_com_bc_libwally_psbt_PsbtJni_00024Native_wally_1psbt_1finalize_1inputs(JNIEnv *env,
+                                                                            jclass clazz,
+                                                                            jobject psbt) {
+    if (psbt == NULL) {
+        throw_new_psbt_exception(env, "psbt is NULL");
+        return NULL;
+    }
 
-    struct wally_psbt *output = (struct wally_psbt *) calloc(1, sizeof(struct wally_psbt));
-    const char *c_base64 = (*env)->GetStringUTFChars(env, base64, 0);
+    struct wally_psbt *c_psbt = to_c_wally_psbt(env, psbt);
+    size_t *states = to_input_states(c_psbt);
 
-    int ret = wally_psbt_from_base64(c_base64, &output);
+    int ret = wally_psbt_finalize(c_psbt);
     if (ret != WALLY_OK) {
-        free(output);
-        (*env)->ReleaseStringUTFChars(env, base64, c_base64);
-        throw_new_psbt_exception(env, "wally_psbt_from_base64 error");
+        wally_psbt_free(c_psbt);
+        jni_free(states);
+        throw_new_psbt_exception(env, "wally_psbt_finalize error");
         return NULL;
     }
 
-    jobject result = to_jWallyPsbt(env, output);
+    jobjectArray result = to_changed_jWallyPsbtInputs(env, c_psbt, states);
 
-    free(output);
-    (*env)->ReleaseStringUTFChars(env, base64, c_base64);
+    wally_psbt_free(c_psbt);
+    jni_free(states);
 
     return result;
 }
 
-JNIEXPORT jstring JNICALL
-Java_com_bc_libwally_psbt_PsbtJni_wally_1psbt_1to_1base64(JNIEnv *env,
-                                                          jclass clazz,
-                                                          jobject psbt,
-                                                          jlong flags) {
-
-    if (psbt == NULL) {
-        throw_new_psbt_exception(env, "psbt is NULL");
-        return NULL;
-    }
-
-    if (flags > UINT32_MAX) {
-        throw_new_psbt_exception(env, "flags is too large");
-        return NULL;
-    }
+JNIEXPORT jobject JNICALL
+Java_com_bc_libwally_psbt_PsbtJni_00024Native_wally_1psbt_1from_1base64(JNIEnv *env,
+                                                                        jclass clazz,
+                                                                        jstring base64) {
 
-    struct wally_psbt *c_psbt = to_c_wally_psbt(env, psbt);
-    char *output = "";
+    struct wally_psbt *output = NULL;
+    const char *c_base64 = (*env)->GetStringUTFChars(env, base64, 0);
 
-    int ret = wally_psbt_to_base64(c_psbt, (uint32_t) flags, &output);
+    int ret = wally_psbt_from_base64(c_base64, &output);
     if (ret != WALLY_OK) {
-        free(c_psbt);
-        throw_new_psbt_exception(env, "wally_psbt_to_base64 error");
+        wally_psbt_free(output);
+        (*env)->ReleaseStringUTFChars(env, base64, c_base64);
+        throw_new_psbt_exception(env, "wally_psbt_from_base64 error");
         return NULL;
     }
 
-    jstring result = (*env)->NewStringUTF(env, output);
+    jobject result = to_jWallyPsbt(env, output);
 
-    free(c_psbt);
+    wally_psbt_free(output);
+    (*env)->ReleaseStringUTFChars(env, base64, c_base64);
 
     return result;
 }
 
 JNIEXPORT jboolean JNICALL
-Java_com_bc_libwally_psbt_PsbtJni_wally_1psbt_1is_1finalized(JNIEnv *env,
-                                                             jclass clazz,
-                                                             jobject psbt) {
+Java_com_bc_libwally_psbt_PsbtJni_00024Native_wally_1psbt_1is_1finalized(JNIEnv *env,
+                                                                         jclass clazz,
+                                                                         jobject psbt) {
     if (psbt == NULL) {
         throw_new_psbt_exception(env, "psbt is NULL");
         return JNI_FALSE;
@@ -319,11 +446,80 @@ Java_com_bc_libwally_psbt_PsbtJni_wally_1psbt_1is_1finalized(JNIEnv *env,
 
     int ret = wally_psbt_is_finalized(c_psbt, &written);
     if (ret != WALLY_OK) {
-        free(c_psbt);
+        wally_psbt_free(c_psbt);
         throw_new_psbt_exception(env, "wally_psbt_is_finalized error");
         return JNI_FALSE;
     }
 
-    free(c_psbt);
+    wally_psbt_free(c_psbt);
     return written;
-}
\ No newline at end of file
+}
+
+// BIP174 combiner: merges every psbt into the first one. Each source is marshalled to C, merged
+// and freed in turn, so the cost is linear in the total size and only two psbts are alive in
+// native memory at any time. The unsigned transactions are matched by txid.
+JNIEXPORT jobject JNICALL
+Java_com_bc_libwally_psbt_PsbtJni_00024Native_wally_1psbt_1combine(JNIEnv *env,
+                                                                   jclass clazz,
+                                                                   jobjectArray psbts) {
+    if (psbts == NULL) {
+        throw_new_psbt_exception(env, "psbts is NULL");
+        return NULL;
+    }
+
+    jsize count = (*env)->GetArrayLength(env, psbts);
+    if (count == 0) {
+        throw_new_psbt_exception(env, "psbts is empty");
+        return NULL;
+    }
+
+    jobject j_first = (*env)->GetObjectArrayElement(env, psbts, 0);
+    struct wally_psbt *c_psbt = j_first == NULL ? NULL : to_c_wally_psbt(env, j_first);
+    unsigned char txid[WALLY_TXHASH_LEN];
+    if (c_psbt == NULL || c_psbt->tx == NULL ||
+        wally_tx_get_txid(c_psbt->tx, txid, WALLY_TXHASH_LEN) != WALLY_OK) {
+        wally_psbt_free(c_psbt);
+        throw_new_psbt_exception(env, "invalid psbt");
+        return NULL;
+    }
+    (*env)->DeleteLocalRef(env, j_first);
+
+    for (jsize i = 1; i < count; i++) {
+        // marshalling creates a handful of local references, drop them per source
+        if ((*env)->PushLocalFrame(env, 16) != JNI_OK) {
+            wally_psbt_free(c_psbt);
+            return NULL;
+        }
+        jobject j_src = (*env)->GetObjectArrayElement(env, psbts, i);
+        struct wally_psbt *c_src = j_src == NULL ? NULL : to_c_wally_psbt(env, j_src);
+        (*env)->PopLocalFrame(env, NULL);
+
+        unsigned char src_txid[WALLY_TXHASH_LEN];
+        bool matches = c_src != NULL && c_src->tx != NULL &&
+                       wally_tx_get_txid(c_src->tx, src_txid, WALLY_TXHASH_LEN) == WALLY_OK &&
+                       memcmp(txid, src_txid, WALLY_TXHASH_LEN) == 0;
+        int ret = matches ? wally_psbt_combine(c_psbt, c_src) : WALLY_EINVAL;
+        wally_psbt_free(c_src);
+
+        if (ret != WALLY_OK) {
+            wally_psbt_free(c_psbt);
+            if ((*env)->ExceptionCheck(env)) {
+                return NULL;
+            }
+            if (!matches) {
+                char msg[64];
+                snprintf(msg, sizeof(msg), "psbt %d does not match the first psbt", (int) i);
+                throw_new_psbt_exception(env, msg);
+            } else {
+                throw_new_psbt_exception(env, "wally_psbt_combine error");
+            }
+            return NULL;
+        }
+    }
+
+    jobject result = to_jWallyPsbt(env, c_psbt);
+
+    wally_psbt_free(c_psbt);
+
+    return result;
+}
@@ -3,17 +3,19 @@
 #include <limits.h>
 #include <wally_script.h>
 #include <wally_core.h>
-#include "jni-utils.c"
+#include "jni-utils.h"
 
 // com/bc/libwally/script/ScriptException
 static bool throw_new_script_exception(JNIEnv *env, char *msg) {
     return throw_new(env, "com/bc/libwally/script/ScriptException", msg);
 }
 
+DEFINE_JNI_STATS(Java_com_bc_libwally_script_ScriptJni_00024Native)
+
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_script_ScriptJni_wally_1scriptpubkey_1get_1type(JNIEnv *env,
-                                                                     jclass clazz,
-                                                                     jbyteArray bytes) {
+Java_com_bc_libwally_script_ScriptJni_00024Native_wally_1scriptpubkey_1get_1type(JNIEnv *env,
+                                                                                 jclass clazz,
+                                                                                 jbyteArray bytes) {
     if (bytes == NULL) {
         throw_new_script_exception(env, "bytes is NULL");
         return WALLY_ERROR;
@@ -25,23 +27,23 @@ Java_com_bc_libwally_script_ScriptJni_wally_1scriptpubkey_1get_1type(JNIEnv *env
 
     int ret = wally_scriptpubkey_get_type(c_bytes, (size_t) bytes_len, &written);
     if (ret != WALLY_OK) {
-        free(c_bytes);
+        jni_free(c_bytes);
         throw_new_script_exception(env, "wally_scriptpubkey_get_type error");
         return ret;
     }
 
-    free(c_bytes);
+    jni_free(c_bytes);
     return written;
 }
 
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_script_ScriptJni_wally_1scriptpubkey_1multisig_1from_1bytes(JNIEnv *env,
-                                                                                 jclass clazz,
-                                                                                 jbyteArray bytes,
-                                                                                 jlong threshold,
-                                                                                 jlong flags,
-                                                                                 jbyteArray output,
-                                                                                 jintArray written) {
+Java_com_bc_libwally_script_ScriptJni_00024Native_wally_1scriptpubkey_1multisig_1from_1bytes(JNIEnv *env,
+                                                                                             jclass clazz,
+                                                                                             jbyteArray bytes,
+                                                                                             jlong threshold,
+                                                                                             jlong flags,
+                                                                                             jbyteArray output,
+                                                                                             jintArray written) {
     if (bytes == NULL) {
         throw_new_script_exception(env, "bytes is NULL");
         return WALLY_ERROR;
@@ -71,7 +73,7 @@ Java_com_bc_libwally_script_ScriptJni_wally_1scriptpubkey_1multisig_1from_1bytes
     unsigned char *c_bytes = to_unsigned_char_array(env, bytes);
     jsize bytes_len = (*env)->GetArrayLength(env, bytes);
     jsize output_len = (*env)->GetArrayLength(env, output);
-    unsigned char *c_output = (unsigned char *) calloc(output_len, sizeof(unsigned char));
+    unsigned char *c_output = (unsigned char *) jni_calloc(output_len, sizeof(unsigned char));
     size_t c_written = 0;
 
     int ret = wally_scriptpubkey_multisig_from_bytes(c_bytes,
@@ -83,8 +85,8 @@ Java_com_bc_libwally_script_ScriptJni_wally_1scriptpubkey_1multisig_1from_1bytes
                                                      &c_written);
 
     if (ret != WALLY_OK) {
-        free(c_bytes);
-        free(c_output);
+        jni_free(c_bytes);
+        jni_free(c_output);
         throw_new_script_exception(env, "wally_scriptpubkey_multisig_from_bytes error");
         return ret;
     }
@@ -92,19 +94,19 @@ Java_com_bc_libwally_script_ScriptJni_wally_1scriptpubkey_1multisig_1from_1bytes
     copy_to_jbyteArray(env, output, c_output, output_len);
     copy_to_jintArray(env, written, &c_written, 1);
 
-    free(c_bytes);
-    free(c_output);
+    jni_free(c_bytes);
+    jni_free(c_output);
 
     return WALLY_OK;
 }
 
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_script_ScriptJni_wally_1witness_1program_1from_1bytes(JNIEnv *env,
-                                                                           jclass clazz,
-                                                                           jbyteArray bytes,
-                                                                           jlong flags,
-                                                                           jbyteArray output,
-                                                                           jintArray written) {
+Java_com_bc_libwally_script_ScriptJni_00024Native_wally_1witness_1program_1from_1bytes(JNIEnv *env,
+                                                                                       jclass clazz,
+                                                                                       jbyteArray bytes,
+                                                                                       jlong flags,
+                                                                                       jbyteArray output,
+                                                                                       jintArray written) {
     if (bytes == NULL) {
         throw_new_script_exception(env, "bytes is NULL");
         return WALLY_ERROR;
@@ -130,7 +132,7 @@ Java_com_bc_libwally_script_ScriptJni_wally_1witness_1program_1from_1bytes(JNIEn
     unsigned char *c_bytes = to_unsigned_char_array(env, bytes);
     jsize bytes_len = (*env)->GetArrayLength(env, bytes);
     jsize output_len = (*env)->GetArrayLength(env, output);
-    unsigned char *c_output = (unsigned char *) calloc(output_len, sizeof(unsigned char));
+    unsigned char *c_output = (unsigned char *) jni_calloc(output_len, sizeof(unsigned char));
     size_t c_written = 0;
 
     int ret = wally_witness_program_from_bytes(c_bytes,
@@ -141,8 +143,8 @@ Java_com_bc_libwally_script_ScriptJni_wally_1witness_1program_1from_1bytes(JNIEn
                                                &c_written);
 
     if (ret != WALLY_OK) {
-        free(c_bytes);
-        free(c_output);
+        jni_free(c_bytes);
+        jni_free(c_output);
         throw_new_script_exception(env, "wally_witness_program_from_bytes error");
         return ret;
     }
@@ -150,8 +152,8 @@ Java_com_bc_libwally_script_ScriptJni_wally_1witness_1program_1from_1bytes(JNIEn
     copy_to_jbyteArray(env, output, c_output, output_len);
     copy_to_jintArray(env, written, &c_written, 1);
 
-    free(c_bytes);
-    free(c_output);
+    jni_free(c_bytes);
+    jni_free(c_output);
 
     return WALLY_OK;
 }
\ No newline at end of file
@@ -1,5 +1,5 @@
 #include <jni.h>
-#include "jni-utils.c"
+#include "jni-utils.h"
 #include <stdbool.h>
 #include <wally_transaction.h>
 #include <limits.h>
@@ -11,14 +11,16 @@ static bool throw_new_tx_exception(JNIEnv *env, char *msg) {
     return throw_new(env, "com/bc/libwally/tx/TxException", msg);
 }
 
+DEFINE_JNI_STATS(Java_com_bc_libwally_tx_TxJni_00024Native)
+
 JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_tx_TxJni_wally_1tx_1input_1init_1alloc(JNIEnv *env,
-                                                            jclass clazz,
-                                                            jbyteArray tx_hash,
-                                                            jlong utxo_index,
-                                                            jlong sequence,
-                                                            jbyteArray script,
-                                                            jobject witness) {
+Java_com_bc_libwally_tx_TxJni_00024Native_wally_1tx_1input_1init_1alloc(JNIEnv *env,
+                                                                        jclass clazz,
+                                                                        jbyteArray tx_hash,
+                                                                        jlong utxo_index,
+                                                                        jlong sequence,
+                                                                        jbyteArray script,
+                                                                        jobject witness) {
 
     if (tx_hash == NULL) {
         throw_new_tx_exception(env, "tx_hash is NULL");
@@ -48,7 +50,7 @@ Java_com_bc_libwally_tx_TxJni_wally_1tx_1input_1init_1alloc(JNIEnv *env,
         c_witness = to_c_wally_tx_witness_stack(env, witness);
     }
 
-    struct wally_tx_input *output = calloc(1, sizeof(struct wally_tx_input));
+    struct wally_tx_input *output = NULL;
 
     int ret = wally_tx_input_init_alloc(c_tx_hash,
                                         (size_t) tx_hash_len,
@@ -59,13 +61,13 @@ Java_com_bc_libwally_tx_TxJni_wally_1tx_1input_1init_1alloc(JNIEnv *env,
                                         c_witness,
                                         &output);
     if (ret != WALLY_OK) {
-        free(c_tx_hash);
-        free(output);
+        jni_free(c_tx_hash);
+        wally_tx_input_free(output);
         if (c_script != NULL) {
-            free(c_script);
+            jni_free(c_script);
         }
         if (c_witness != NULL) {
-            free(c_witness);
+            wally_tx_witness_stack_free(c_witness);
         }
         throw_new_tx_exception(env, "wally_tx_input_init_alloc error");
         return NULL;
@@ -73,13 +75,13 @@ Java_com_bc_libwally_tx_TxJni_wally_1tx_1input_1init_1alloc(JNIEnv *env,
 
     jobject result = to_jWallyTxInput(env, output);
 
-    free(c_tx_hash);
-    free(output);
+    jni_free(c_tx_hash);
+    wally_tx_input_free(output);
     if (c_script != NULL) {
-        free(c_script);
+        jni_free(c_script);
     }
     if (c_witness != NULL) {
-        free(c_witness);
+        wally_tx_witness_stack_free(c_witness);
     }
 
     return result;
@@ -87,10 +89,10 @@ Java_com_bc_libwally_tx_TxJni_wally_1tx_1input_1init_1alloc(JNIEnv *env,
 }
 
 JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_tx_TxJni_wally_1tx_1output_1init_1alloc(JNIEnv *env,
-                                                             jclass clazz,
-                                                             jlong satoshi,
-                                                             jbyteArray script) {
+Java_com_bc_libwally_tx_TxJni_00024Native_wally_1tx_1output_1init_1alloc(JNIEnv *env,
+                                                                         jclass clazz,
+                                                                         jlong satoshi,
+                                                                         jbyteArray script) {
 
     if (script == NULL) {
         throw_new_tx_exception(env, "script is NULL");
@@ -104,53 +106,53 @@ Java_com_bc_libwally_tx_TxJni_wally_1tx_1output_1init_1alloc(JNIEnv *env,
 
     unsigned char *c_script = to_unsigned_char_array(env, script);
     jsize script_len = (*env)->GetArrayLength(env, script);
-    struct wally_tx_output *output = calloc(1, sizeof(struct wally_tx_output));
+    struct wally_tx_output *output = NULL;
 
     int ret = wally_tx_output_init_alloc((uint64_t) satoshi,
                                          c_script,
                                          (size_t) script_len,
                                          &output);
     if (ret != WALLY_OK) {
-        free(c_script);
-        free(output);
+        jni_free(c_script);
+        wally_tx_output_free(output);
         throw_new_tx_exception(env, "wally_tx_output_init_alloc error");
         return NULL;
     }
 
     jobject result = to_jWallyTxOutput(env, output);
 
-    free(c_script);
-    free(output);
+    jni_free(c_script);
+    wally_tx_output_free(output);
 
     return result;
 }
 
 JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_tx_TxJni_wally_1tx_1witness_1stack_1init_1alloc(JNIEnv *env,
-                                                                     jclass clazz,
-                                                                     jint allocation_length) {
+Java_com_bc_libwally_tx_TxJni_00024Native_wally_1tx_1witness_1stack_1init_1alloc(JNIEnv *env,
+                                                                                 jclass clazz,
+                                                                                 jint allocation_length) {
 
-    struct wally_tx_witness_stack *output = calloc(1, sizeof(struct wally_tx_witness_stack));
+    struct wally_tx_witness_stack *output = NULL;
     int ret = wally_tx_witness_stack_init_alloc((size_t) allocation_length, &output);
     if (ret != WALLY_OK) {
-        free(output);
+        wally_tx_witness_stack_free(output);
         throw_new_tx_exception(env, "wally_tx_witness_stack_init_alloc error");
         return NULL;
     }
 
     jobject result = to_jWallyTxWitnessStack(env, output);
 
-    free(output);
+    wally_tx_witness_stack_free(output);
 
     return result;
 }
 
 JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_tx_TxJni_wally_1tx_1witness_1stack_1set(JNIEnv *env,
-                                                             jclass clazz,
-                                                             jobject stack,
-                                                             jint index,
-                                                             jbyteArray witness) {
+Java_com_bc_libwally_tx_TxJni_00024Native_wally_1tx_1witness_1stack_1set(JNIEnv *env,
+                                                                         jclass clazz,
+                                                                         jobject stack,
+                                                                         jint index,
+                                                                         jbyteArray witness) {
 
     if (stack == NULL) {
         throw_new_tx_exception(env, "stack is NULL");
@@ -168,25 +170,25 @@ Java_com_bc_libwally_tx_TxJni_wally_1tx_1witness_1stack_1set(JNIEnv *env,
 
     int ret = wally_tx_witness_stack_set(c_stack, (size_t) index, c_witness, (size_t) witness_len);
     if (ret != WALLY_OK) {
-        free(c_stack);
-        free(c_witness);
+        wally_tx_witness_stack_free(c_stack);
+        jni_free(c_witness);
         throw_new_tx_exception(env, "wally_tx_witness_stack_set error");
         return NULL;
     }
 
     jobject result = to_jWallyTxWitnessStack(env, c_stack);
 
-    free(c_stack);
-    free(c_witness);
+    wally_tx_witness_stack_free(c_stack);
+    jni_free(c_witness);
 
     return result;
 }
 
 JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_tx_TxJni_wally_1tx_1from_1bytes(JNIEnv *env,
-                                                     jclass clazz,
-                                                     jbyteArray bytes,
-                                                     jlong flags) {
+Java_com_bc_libwally_tx_TxJni_00024Native_wally_1tx_1from_1bytes(JNIEnv *env,
+                                                                 jclass clazz,
+                                                                 jbyteArray bytes,
+                                                                 jlong flags) {
 
     if (bytes == NULL) {
         throw_new_tx_exception(env, "bytes is NULL");
@@ -200,136 +202,29 @@ Java_com_bc_libwally_tx_TxJni_wally_1tx_1from_1bytes(JNIEnv *env,
 
     unsigned char *c_bytes = to_unsigned_char_array(env, bytes);
     jsize bytes_len = (*env)->GetArrayLength(env, bytes);
-    struct wally_tx *output = calloc(1, sizeof(struct wally_tx));
+    struct wally_tx *output = NULL;
 
     int ret = wally_tx_from_bytes(c_bytes, (size_t) bytes_len, (uint32_t) flags, &output);
     if (ret != WALLY_OK) {
-        free(c_bytes);
-        free(output);
+        jni_free(c_bytes);
+        wally_tx_free(output);
         throw_new_tx_exception(env, "wally_tx_from_bytes error");
         return NULL;
     }
 
     jobject result = to_jWallyTx(env, output);
 
-    free(c_bytes);
-    free(output);
-
-    return result;
-}
-
-JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_tx_TxJni_wally_1tx_1init_1alloc(JNIEnv *env,
-                                                     jclass clazz,
-                                                     jlong version,
-                                                     jlong locktime,
-                                                     jint inputs_alloc_len,
-                                                     jint outputs_alloc_len) {
-    if (version > UINT32_MAX) {
-        throw_new_tx_exception(env, "version is too large");
-        return NULL;
-    }
-
-    if (locktime > UINT32_MAX) {
-        throw_new_tx_exception(env, "locktime is too large");
-        return NULL;
-    }
-
-    struct wally_tx *output = calloc(1, sizeof(struct wally_tx));
-
-    int ret = wally_tx_init_alloc((uint32_t) version,
-                                  (uint32_t) locktime,
-                                  (size_t) inputs_alloc_len,
-                                  (size_t) outputs_alloc_len,
-                                  &output);
-
-    if (ret != WALLY_OK) {
-        free(output);
-        throw_new_tx_exception(env, "wally_tx_init_alloc error");
-        return NULL;
-    }
-
-    jobject result = to_jWallyTx(env, output);
-
-    free(output);
-
-    return result;
-}
-
-JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_tx_TxJni_wally_1tx_1add_1input(JNIEnv *env,
-                                                    jclass clazz,
-                                                    jobject wally_tx,
-                                                    jobject input) {
-
-    if (wally_tx == NULL) {
-        throw_new_tx_exception(env, "wally_tx is NULL");
-        return NULL;
-    }
-
-    if (input == NULL) {
-        throw_new_tx_exception(env, "input is NULL");
-        return NULL;
-    }
-
-    struct wally_tx *c_tx = to_c_wally_tx(env, wally_tx);
-    struct wally_tx_input *c_tx_input = to_c_wally_tx_input(env, input);
-
-    int ret = wally_tx_add_input(c_tx, c_tx_input);
-    if (ret != WALLY_OK) {
-        free(c_tx);
-        free(c_tx_input);
-        throw_new_tx_exception(env, "wally_tx_add_input error");
-        return NULL;
-    }
-
-    jobject result = to_jWallyTx(env, c_tx);
-
-    free(c_tx);
-    free(c_tx_input);
-
-    return result;
-}
-
-JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_tx_TxJni_wally_1tx_1add_1output(JNIEnv *env,
-                                                     jclass clazz,
-                                                     jobject wally_tx,
-                                                     jobject output) {
-    if (wally_tx == NULL) {
-        throw_new_tx_exception(env, "wally_tx is NULL");
-        return NULL;
-    }
-
-    if (output == NULL) {
-        throw_new_tx_exception(env, "output is NULL");
-        return NULL;
-    }
-
-    struct wally_tx *c_tx = to_c_wally_tx(env, wally_tx);
-    struct wally_tx_output *c_tx_output = to_c_wally_tx_output(env, output);
-
-    int ret = wally_tx_add_output(c_tx, c_tx_output);
-    if (ret != WALLY_OK) {
-        free(c_tx);
-        free(c_tx_output);
-        throw_new_tx_exception(env, "wally_tx_add_output error");
-        return NULL;
-    }
-
-    jobject result = to_jWallyTx(env, c_tx);
-
-    free(c_tx);
-    free(c_tx_output);
+    jni_free(c_bytes);
+    wally_tx_free(output);
 
     return result;
 }
 
 JNIEXPORT jstring JNICALL
-Java_com_bc_libwally_tx_TxJni_wally_1tx_1to_1hex(JNIEnv *env,
-                                                 jclass clazz,
-                                                 jobject wally_tx,
-                                                 jlong flags) {
+Java_com_bc_libwally_tx_TxJni_00024Native_wally_1tx_1to_1hex(JNIEnv *env,
+                                                             jclass clazz,
+                                                             jobject wally_tx,
+                                                             jlong flags) {
 
     if (wally_tx == NULL) {
         throw_new_tx_exception(env, "wally_tx is NULL");
@@ -342,28 +237,28 @@ Java_com_bc_libwally_tx_TxJni_wally_1tx_1to_1hex(JNIEnv *env,
     }
 
     struct wally_tx *c_tx = to_c_wally_tx(env, wally_tx);
-    char *output = "";
+    char *output = NULL;
 
     int ret = wally_tx_to_hex(c_tx, (uint32_t) flags, &output);
     if (ret != WALLY_OK) {
-        free(c_tx);
-        free(output);
+        wally_tx_free(c_tx);
+        wally_free_string(output);
         throw_new_tx_exception(env, "wally_tx_to_hex error");
         return NULL;
     }
 
     jstring result = to_jstring(env, output);
 
-    free(c_tx);
-    free(output);
+    wally_tx_free(c_tx);
+    wally_free_string(output);
 
     return result;
 }
 
 JNIEXPORT jlong JNICALL
-Java_com_bc_libwally_tx_TxJni_wally_1tx_1get_1total_1output_1satoshi(JNIEnv *env,
-                                                                     jclass clazz,
-                                                                     jobject wally_tx) {
+Java_com_bc_libwally_tx_TxJni_00024Native_wally_1tx_1get_1total_1output_1satoshi(JNIEnv *env,
+                                                                                 jclass clazz,
+                                                                                 jobject wally_tx) {
 
     if (wally_tx == NULL) {
         throw_new_tx_exception(env, "wally_tx is NULL");
@@ -375,24 +270,24 @@ Java_com_bc_libwally_tx_TxJni_wally_1tx_1get_1total_1output_1satoshi(JNIEnv *env
 
     int ret = wally_tx_get_total_output_satoshi(c_tx, &output);
     if (ret != WALLY_OK) {
-        free(c_tx);
+        wally_tx_free(c_tx);
         throw_new_tx_exception(env, "wally_tx_get_total_output_satoshi error");
         return JNI_ERR;
     }
 
     jlong result = (jlong) output;
 
-    free(c_tx);
+    wally_tx_free(c_tx);
 
     return result;
 }
 
 JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_tx_TxJni_wally_1tx_1set_1input_1script(JNIEnv *env,
-                                                            jclass clazz,
-                                                            jobject wally_tx,
-                                                            jint index,
-                                                            jbyteArray script) {
+Java_com_bc_libwally_tx_TxJni_00024Native_wally_1tx_1set_1input_1script(JNIEnv *env,
+                                                                        jclass clazz,
+                                                                        jobject wally_tx,
+                                                                        jint index,
+                                                                        jbyteArray script) {
     if (wally_tx == NULL) {
         throw_new_tx_exception(env, "wally_tx is NULL");
         return NULL;
@@ -409,22 +304,22 @@ Java_com_bc_libwally_tx_TxJni_wally_1tx_1set_1input_1script(JNIEnv *env,
 
     int ret = wally_tx_set_input_script(c_tx, (size_t) index, c_script, (size_t) script_len);
     if (ret != WALLY_OK) {
-        free(c_tx);
-        free(c_script);
+        wally_tx_free(c_tx);
+        jni_free(c_script);
         throw_new_tx_exception(env, "wally_tx_set_input_script error");
         return NULL;
     }
 
     jobject result = to_jWallyTx(env, c_tx);
 
-    free(c_tx);
-    free(c_script);
+    wally_tx_free(c_tx);
+    jni_free(c_script);
 
     return result;
 }
 
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_tx_TxJni_wally_1tx_1get_1vsize(JNIEnv *env, jclass clazz, jobject wally_tx) {
+Java_com_bc_libwally_tx_TxJni_00024Native_wally_1tx_1get_1vsize(JNIEnv *env, jclass clazz, jobject wally_tx) {
 
     if (wally_tx == NULL) {
         throw_new_tx_exception(env, "wally_tx is NULL");
@@ -436,28 +331,28 @@ Java_com_bc_libwally_tx_TxJni_wally_1tx_1get_1vsize(JNIEnv *env, jclass clazz, j
 
     int ret = wally_tx_get_vsize(c_tx, &written);
     if (ret != WALLY_OK) {
-        free(c_tx);
+        wally_tx_free(c_tx);
         throw_new_tx_exception(env, "wally_tx_get_vsize error");
         return ret;
     }
 
     jint result = (jint) written;
 
-    free(c_tx);
+    wally_tx_free(c_tx);
 
     return result;
 }
 
 JNIEXPORT jint JNICALL
-Java_com_bc_libwally_tx_TxJni_wally_1tx_1get_1btc_1signature_1hash(JNIEnv *env,
-                                                                   jclass clazz,
-                                                                   jobject wally_tx,
-                                                                   jint index,
-                                                                   jbyteArray script,
-                                                                   jlong satoshi,
-                                                                   jlong sig_hash,
-                                                                   jlong flags,
-                                                                   jbyteArray output) {
+Java_com_bc_libwally_tx_TxJni_00024Native_wally_1tx_1get_1btc_1signature_1hash(JNIEnv *env,
+                                                                               jclass clazz,
+                                                                               jobject wally_tx,
+                                                                               jint index,
+                                                                               jbyteArray script,
+                                                                               jlong satoshi,
+                                                                               jlong sig_hash,
+                                                                               jlong flags,
+                                                                               jbyteArray output) {
 
     if (wally_tx == NULL) {
         throw_new_tx_exception(env, "wally_tx is NULL");
@@ -492,7 +387,7 @@ Java_com_bc_libwally_tx_TxJni_wally_1tx_1get_1btc_1signature_1hash(JNIEnv *env,
     struct wally_tx *c_tx = to_c_wally_tx(env, wally_tx);
     unsigned char *c_script = to_unsigned_char_array(env, script);
     jsize script_len = (*env)->GetArrayLength(env, script);
-    unsigned char *c_output = calloc(SHA256_LEN, sizeof(unsigned char));
+    unsigned char *c_output = jni_calloc(SHA256_LEN, sizeof(unsigned char));
 
     int ret = wally_tx_get_btc_signature_hash(c_tx,
                                               (size_t) index,
@@ -505,27 +400,27 @@ Java_com_bc_libwally_tx_TxJni_wally_1tx_1get_1btc_1signature_1hash(JNIEnv *env,
                                               SHA256_LEN);
 
     if (ret != WALLY_OK) {
-        free(c_tx);
-        free(c_script);
-        free(c_output);
+        wally_tx_free(c_tx);
+        jni_free(c_script);
+        jni_free(c_output);
         return ret;
     }
 
     copy_to_jbyteArray(env, output, c_output, SHA256_LEN);
 
-    free(c_tx);
-    free(c_script);
-    free(c_output);
+    wally_tx_free(c_tx);
+    jni_free(c_script);
+    jni_free(c_output);
 
     return WALLY_OK;
 }
 
 JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_tx_TxJni_wally_1tx_1set_1input_1witness(JNIEnv *env,
-                                                             jclass clazz,
-                                                             jobject wally_tx,
-                                                             jint index,
-                                                             jobject stack) {
+Java_com_bc_libwally_tx_TxJni_00024Native_wally_1tx_1set_1input_1witness(JNIEnv *env,
+                                                                         jclass clazz,
+                                                                         jobject wally_tx,
+                                                                         jint index,
+                                                                         jobject stack) {
 
     if (wally_tx == NULL) {
         throw_new_tx_exception(env, "wally_tx is NULL");
@@ -542,25 +437,25 @@ Java_com_bc_libwally_tx_TxJni_wally_1tx_1set_1input_1witness(JNIEnv *env,
 
     int ret = wally_tx_set_input_witness(c_tx, (size_t) index, c_witness);
     if (ret != WALLY_OK) {
-        free(c_tx);
-        free(c_witness);
+        wally_tx_free(c_tx);
+        wally_tx_witness_stack_free(c_witness);
         throw_new_tx_exception(env, "wally_tx_set_input_witness error");
         return NULL;
     }
 
     jobject result = to_jWallyTx(env, c_tx);
 
-    free(c_tx);
-    free(c_witness);
+    wally_tx_free(c_tx);
+    wally_tx_witness_stack_free(c_witness);
 
     return result;
 }
 
 JNIEXPORT jobject JNICALL
-Java_com_bc_libwally_tx_TxJni_wally_1tx_1clone_1alloc(JNIEnv *env,
-                                                      jclass clazz,
-                                                      jobject wally_tx,
-                                                      jlong flags) {
+Java_com_bc_libwally_tx_TxJni_00024Native_wally_1tx_1clone_1alloc(JNIEnv *env,
+                                                                  jclass clazz,
+                                                                  jobject wally_tx,
+                                                                  jlong flags) {
 
     if (wally_tx == NULL) {
         throw_new_tx_exception(env, "wally_tx is NULL");
@@ -573,20 +468,357 @@ Java_com_bc_libwally_tx_TxJni_wally_1tx_1clone_1alloc(JNIEnv *env,
     }
 
     struct wally_tx *c_tx = to_c_wally_tx(env, wally_tx);
-    struct wally_tx *cloned_tx = (struct wally_tx *) calloc(1, sizeof(struct wally_tx));
+    struct wally_tx *cloned_tx = NULL;
 
     int ret = wally_tx_clone_alloc(c_tx, (uint32_t) flags, &cloned_tx);
     if (ret != WALLY_OK) {
-        free(c_tx);
-        free(cloned_tx);
+        wally_tx_free(c_tx);
+        wally_tx_free(cloned_tx);
         throw_new_tx_exception(env, "wally_tx_clone_alloc error");
         return NULL;
     }
 
     jobject j_tx = to_jWallyTx(env, cloned_tx);
 
-    free(c_tx);
-    free(cloned_tx);
+    wally_tx_free(c_tx);
+    wally_tx_free(cloned_tx);
 
     return j_tx;
-}
\ No newline at end of file
+}
+
+// Builds a whole transaction from packed arrays in a single crossing:
+// - `tx_hashes` holds one 32 byte hash per input.
+// - `witness_counts` holds the number of witness items per input, or -1 if the input has no
+//   witness. The items are concatenated in `witness_data` and sized by `witness_item_lens`.
+// - Output scripts are concatenated in `scripts` and sized by `script_lens`.
+JNIEXPORT jobject JNICALL
+Java_com_bc_libwally_tx_TxJni_00024Native_wally_1tx_1build(JNIEnv *env,
+                                                           jclass clazz,
+                                                           jlong version,
+                                                           jlong locktime,
+                                                           jbyteArray tx_hashes,
+                                                           jlongArray indexes,
+                                                           jlongArray sequences,
+                                                           jbyteArray witness_data,
+                                                           jintArray witness_item_lens,
+                                                           jintArray witness_counts,
+                                                           jlongArray satoshis,
+                                                           jbyteArray scripts,
+                                                           jintArray script_lens) {
+    if (tx_hashes == NULL || indexes == NULL || sequences == NULL || witness_data == NULL ||
+        witness_item_lens == NULL || witness_counts == NULL || satoshis == NULL ||
+        scripts == NULL || script_lens == NULL) {
+        throw_new_tx_exception(env, "input is NULL");
+        return NULL;
+    }
+
+    if (version > UINT32_MAX || locktime > UINT32_MAX) {
+        throw_new_tx_exception(env, "version or locktime is too large");
+        return NULL;
+    }
+
+    jsize num_inputs = (*env)->GetArrayLength(env, indexes);
+    jsize num_outputs = (*env)->GetArrayLength(env, satoshis);
+    if ((*env)->GetArrayLength(env, tx_hashes) != num_inputs * SHA256_LEN ||
+        (*env)->GetArrayLength(env, sequences) != num_inputs ||
+        (*env)->GetArrayLength(env, witness_counts) != num_inputs ||
+        (*env)->GetArrayLength(env, script_lens) != num_outputs) {
+        throw_new_tx_exception(env, "inconsistent array lengths");
+        return NULL;
+    }
+
+    jsize witness_data_len = (*env)->GetArrayLength(env, witness_data);
+    jsize num_witness_items = (*env)->GetArrayLength(env, witness_item_lens);
+    jsize scripts_len = (*env)->GetArrayLength(env, scripts);
+
+    jbyte *c_tx_hashes = (*env)->GetByteArrayElements(env, tx_hashes, NULL);
+    jlong *c_indexes = (*env)->GetLongArrayElements(env, indexes, NULL);
+    jlong *c_sequences = (*env)->GetLongArrayElements(env, sequences, NULL);
+    jbyte *c_witness_data = (*env)->GetByteArrayElements(env, witness_data, NULL);
+    jint *c_witness_item_lens = (*env)->GetIntArrayElements(env, witness_item_lens, NULL);
+    jint *c_witness_counts = (*env)->GetIntArrayElements(env, witness_counts, NULL);
+    jlong *c_satoshis = (*env)->GetLongArrayElements(env, satoshis, NULL);
+    jbyte *c_scripts = (*env)->GetByteArrayElements(env, scripts, NULL);
+    jint *c_script_lens = (*env)->GetIntArrayElements(env, script_lens, NULL);
+    jni_bytes_in += num_inputs * (SHA256_LEN + 2 * sizeof(jlong) + sizeof(jint)) +
+                    witness_data_len + num_witness_items * sizeof(jint) +
+                    num_outputs * (sizeof(jlong) + sizeof(jint)) + scripts_len;
+
+    struct wally_tx *tx = NULL;
+    char *error = NULL;
+    int ret = wally_tx_init_alloc((uint32_t) version,
+                                  (uint32_t) locktime,
+                                  (size_t) num_inputs,
+                                  (size_t) num_outputs,
+                                  &tx);
+    if (ret != WALLY_OK) {
+        error = "wally_tx_init_alloc error";
+    }
+
+    jsize witness_offset = 0;
+    jsize witness_item = 0;
+    for (jsize i = 0; error == NULL && i < num_inputs; i++) {
+        struct wally_tx_witness_stack *witness = NULL;
+        jint count = c_witness_counts[i];
+        if (count >= 0) {
+            if (wally_tx_witness_stack_init_alloc((size_t) count, &witness) != WALLY_OK) {
+                error = "wally_tx_witness_stack_init_alloc error";
+                break;
+            }
+            for (jint j = 0; j < count; j++, witness_item++) {
+                jint len = witness_item < num_witness_items ? c_witness_item_lens[witness_item] : -1;
+                if (len < 0 || witness_offset + len > witness_data_len ||
+                    wally_tx_witness_stack_add(witness,
+                                               (unsigned char *) c_witness_data + witness_offset,
+                                               (size_t) len) != WALLY_OK) {
+                    error = "invalid witness";
+                    break;
+                }
+                witness_offset += len;
+            }
+        }
+
+        if (error == NULL && (c_indexes[i] < 0 || c_indexes[i] > UINT32_MAX ||
+                              wally_tx_add_raw_input(tx,
+                                                     (unsigned char *) c_tx_hashes + i * SHA256_LEN,
+                                                     SHA256_LEN,
+                                                     (uint32_t) c_indexes[i],
+                                                     (uint32_t) c_sequences[i],
+                                                     NULL,
+                                                     0,
+                                                     witness,
+                                                     0) != WALLY_OK)) {
+            error = "wally_tx_add_raw_input error";
+        }
+        wally_tx_witness_stack_free(witness);
+    }
+
+    jsize script_offset = 0;
+    for (jsize i = 0; error == NULL && i < num_outputs; i++) {
+        jint len = c_script_lens[i];
+        if (len < 0 || script_offset + len > scripts_len ||
+            wally_tx_add_raw_output(tx,
+                                    (uint64_t) c_satoshis[i],
+                                    (unsigned char *) c_scripts + script_offset,
+                                    (size_t) len,
+                                    0) != WALLY_OK) {
+            error = "wally_tx_add_raw_output error";
+            break;
+        }
+        script_offset += len;
+    }
+
+    (*env)->ReleaseByteArrayElements(env, tx_hashes, c_tx_hashes, JNI_ABORT);
+    (*env)->ReleaseLongArrayElements(env, indexes, c_indexes, JNI_ABORT);
+    (*env)->ReleaseLongArrayElements(env, sequences, c_sequences, JNI_ABORT);
+    (*env)->ReleaseByteArrayElements(env, witness_data, c_witness_data, JNI_ABORT);
+    (*env)->ReleaseIntArrayElements(env, witness_item_lens, c_witness_item_lens, JNI_ABORT);
+    (*env)->ReleaseIntArrayElements(env, witness_counts, c_witness_counts, JNI_ABORT);
+    (*env)->ReleaseLongArrayElements(env, satoshis, c_satoshis, JNI_ABORT);
+    (*env)->ReleaseByteArrayElements(env, scripts, c_scripts, JNI_ABORT);
+    (*env)->ReleaseIntArrayElements(env, script_lens, c_script_lens, JNI_ABORT);
+
+    if (error != NULL) {
+        wally_tx_free(tx);
+        throw_new_tx_exception(env, error);
+        return NULL;
+    }
+
+    jobject result = to_jWallyTx(env, tx);
+
+    wally_tx_free(tx);
+
+    return result;
+}
+
+JNIEXPORT jbyteArray JNICALL
+Java_com_bc_libwally_tx_TxJni_00024Native_wally_1tx_1to_1bytes(JNIEnv *env,
+                                                               jclass clazz,
+                                                               jobject wally_tx,
+                                                               jlong flags) {
+
+    if (wally_tx == NULL) {
+        throw_new_tx_exception(env, "wally_tx is NULL");
+        return NULL;
+    }
+
+    if (flags > UINT32_MAX) {
+        throw_new_tx_exception(env, "flags is too large");
+        return NULL;
+    }
+
+    struct wally_tx *c_tx = to_c_wally_tx(env, wally_tx);
+    size_t len = 0;
+    if (wally_tx_get_length(c_tx, (uint32_t) flags, &len) != WALLY_OK) {
+        wally_tx_free(c_tx);
+        throw_new_tx_exception(env, "wally_tx_get_length error");
+        return NULL;
+    }
+
+    // serialized straight into the Java array, there is no intermediate native buffer
+    jbyteArray result = (*env)->NewByteArray(env, (jsize) len);
+    if (result == NULL) {
+        wally_tx_free(c_tx);
+        return NULL;
+    }
+
+    jbyte *bytes = (*env)->GetByteArrayElements(env, result, NULL);
+    size_t written = 0;
+    int ret = wally_tx_to_bytes(c_tx, (uint32_t) flags, (unsigned char *) bytes, len, &written);
+    (*env)->ReleaseByteArrayElements(env, result, bytes, 0);
+    wally_tx_free(c_tx);
+
+    if (ret != WALLY_OK || written != len) {
+        throw_new_tx_exception(env, "wally_tx_to_bytes error");
+        return NULL;
+    }
+
+    jni_bytes_out += len;
+    return result;
+}
+
+// Serializes into a direct buffer starting at `offset` if at most `len` bytes are needed and
+// returns the serialized length, which callers compare against `len` to detect an overflow.
+JNIEXPORT jint JNICALL
+Java_com_bc_libwally_tx_TxJni_00024Native_wally_1tx_1to_1buffer(JNIEnv *env,
+                                                                jclass clazz,
+                                                                jobject wally_tx,
+                                                                jlong flags,
+                                                                jobject buffer,
+                                                                jint offset,
+                                                                jint len) {
+
+    if (wally_tx == NULL || buffer == NULL) {
+        throw_new_tx_exception(env, "input is NULL");
+        return 0;
+    }
+
+    if (flags > UINT32_MAX) {
+        throw_new_tx_exception(env, "flags is too large");
+        return 0;
+    }
+
+    unsigned char *address = (*env)->GetDirectBufferAddress(env, buffer);
+    jlong capacity = (*env)->GetDirectBufferCapacity(env, buffer);
+    if (address == NULL || offset < 0 || len < 0 || (jlong) offset + len > capacity) {
+        throw_new_tx_exception(env, "invalid buffer");
+        return 0;
+    }
+
+    struct wally_tx *c_tx = to_c_wally_tx(env, wally_tx);
+    size_t tx_len = 0;
+    if (wally_tx_get_length(c_tx, (uint32_t) flags, &tx_len) != WALLY_OK) {
+        wally_tx_free(c_tx);
+        throw_new_tx_exception(env, "wally_tx_get_length error");
+        return 0;
+    }
+
+    if (tx_len > (size_t) len) {
+        wally_tx_free(c_tx);
+        return (jint) tx_len;
+    }
+
+    size_t written = 0;
+    int ret = wally_tx_to_bytes(c_tx, (uint32_t) flags, address + offset, tx_len, &written);
+    wally_tx_free(c_tx);
+
+    if (ret != WALLY_OK || written != tx_len) {
+        throw_new_tx_exception(env, "wally_tx_to_bytes error");
+        return 0;
+    }
+
+    jni_bytes_out += tx_len;
+    return (jint) tx_len;
+}
+
+// Decodes the transactions stored at `offsets`/`lengths` of `bytes` in a single crossing. The
+// array is pinned once for the whole batch rather than copied per transaction.
+JNIEXPORT jobjectArray JNICALL
+Java_com_bc_libwally_tx_TxJni_00024Native_wally_1tx_1from_1bytes_1batch(JNIEnv *env,
+                                                                        jclass clazz,
+                                                                        jbyteArray bytes,
+                                                                        jintArray offsets,
+                                                                        jintArray lengths,
+                                                                        jlong flags) {
+
+    if (bytes == NULL || offsets == NULL || lengths == NULL) {
+        throw_new_tx_exception(env, "input is NULL");
+        return NULL;
+    }
+
+    if (flags > UINT32_MAX) {
+        throw_new_tx_exception(env, "flags is too large");
+        return NULL;
+    }
+
+    jsize count = (*env)->GetArrayLength(env, offsets);
+    if ((*env)->GetArrayLength(env, lengths) != count) {
+        throw_new_tx_exception(env, "offsets and lengths differ in length");
+        return NULL;
+    }
+
+    jclass tx_class = find_jclass(env, "com/bc/libwally/tx/raw/WallyTx");
+    if (tx_class == NULL) {
+        return NULL;
+    }
+
+    jobjectArray result = (*env)->NewObjectArray(env, count, tx_class, NULL);
+    if (result == NULL) {
+        return NULL;
+    }
+
+    jsize bytes_len = (*env)->GetArrayLength(env, bytes);
+    jint *c_offsets = (*env)->GetIntArrayElements(env, offsets, NULL);
+    jint *c_lengths = (*env)->GetIntArrayElements(env, lengths, NULL);
+    jbyte *c_bytes = (*env)->GetByteArrayElements(env, bytes, NULL);
+    jni_bytes_in += bytes_len;
+
+    for (jsize i = 0; i < count; i++) {
+        jint offset = c_offsets[i];
+        jint len = c_lengths[i];
+        if (offset < 0 || len < 0 || (jlong) offset + len > bytes_len) {
+            throw_new_tx_exception(env, "invalid offset or length");
+            break;
+        }
+
+        struct wally_tx *tx = NULL;
+        if (wally_tx_from_bytes((unsigned char *) c_bytes + offset,
+                                (size_t) len,
+                                (uint32_t) flags,
+                                &tx) != WALLY_OK) {
+            wally_tx_free(tx);
+            throw_new_tx_exception(env, "wally_tx_from_bytes error");
+            break;
+        }
+
+        // every transaction creates a handful of local references, drop them per element so
+        // large batches do not exhaust the local reference table
+        if ((*env)->PushLocalFrame(env, 16) != JNI_OK) {
+            wally_tx_free(tx);
+            break;
+        }
+        jobject j_tx = to_jWallyTx(env, tx);
+        if (j_tx != NULL) {
+            (*env)->SetObjectArrayElement(env, result, i, j_tx);
+        }
+        (*env)->PopLocalFrame(env, NULL);
+        wally_tx_free(tx);
+
+        if (j_tx == NULL) {
+            if (!(*env)->ExceptionCheck(env)) {
+                throw_new_tx_exception(env, "to_jWallyTx error");
+            }
+            break;
+        }
+    }
+
+    (*env)->ReleaseByteArrayElements(env, bytes, c_bytes, JNI_ABORT);
+    (*env)->ReleaseIntArrayElements(env, lengths, c_lengths, JNI_ABORT);
+    (*env)->ReleaseIntArrayElements(env, offsets, c_offsets, JNI_ABORT);
+
+    if ((*env)->ExceptionCheck(env)) {
+        return NULL;
+    }
+
+    return result;
+}
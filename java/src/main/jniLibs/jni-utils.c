@@ -1,18 +1,139 @@
-#include <jni.h>
-#include <stdio.h>
-#include <string.h>
-#include <stdbool.h>
-#include <stdlib.h>
-#include <stdint.h>
-#include <limits.h>
-#include <wally_address.h>
-#include <wally_bip32.h>
-#include <wally_transaction.h>
-#include <wally_psbt.h>
-#include <stdio.h>
+#include "jni-utils.h"
+
+// -------------- Instrumentation ---------------- //
+
+// Per-thread counters of the marshalling layer. They are read and reset by the `jni_stats`
+// native of each *Jni class while com.bc.libwally.JniTracer is enabled.
+__thread jlong jni_bytes_in = 0;
+__thread jlong jni_bytes_out = 0;
+__thread jlong jni_native_allocated = 0;
+
+// Process wide count of the blocks allocated by `jni_calloc` or by libwally and not freed yet.
+// libwally allocates and frees through the hooks installed in JNI_OnLoad, so a balanced batch
+// of calls leaves the count where it was.
+static jlong jni_outstanding_allocations = 0;
+
+void *jni_calloc(size_t count, size_t size) {
+    void *ptr = calloc(count, size);
+    if (ptr != NULL) {
+        jni_native_allocated += (jlong) (count * size);
+        __atomic_add_fetch(&jni_outstanding_allocations, 1, __ATOMIC_RELAXED);
+    }
+    return ptr;
+}
+
+void jni_free(void *ptr) {
+    if (ptr == NULL) {
+        return;
+    }
+    __atomic_sub_fetch(&jni_outstanding_allocations, 1, __ATOMIC_RELAXED);
+    free(ptr);
+}
+
+static void *jni_wally_malloc(size_t size) {
+    void *ptr = malloc(size);
+    if (ptr != NULL) {
+        __atomic_add_fetch(&jni_outstanding_allocations, 1, __ATOMIC_RELAXED);
+    }
+    return ptr;
+}
+
+JNIEXPORT jlong JNICALL
+Java_com_bc_libwally_JniTracer_00024Native_jni_1outstanding_1allocations(JNIEnv *env,
+                                                                         jclass clazz) {
+    return __atomic_load_n(&jni_outstanding_allocations, __ATOMIC_RELAXED);
+}
+
+// -------------- END Instrumentation ---------------- //
+
+// -------------- Class cache ---------------- //
+
+// Classes resolved once in JNI_OnLoad and kept as global references, so the marshalling code
+// does not look them up again on every call.
+static const char *cached_class_names[] = {
+        "com/bc/libwally/NativeWrapper$JniObject",
+        "com/bc/libwally/bip32/WallyHDKey",
+        "com/bc/libwally/tx/raw/WallyTx",
+        "com/bc/libwally/tx/raw/WallyTxInput",
+        "com/bc/libwally/tx/raw/WallyTxOutput",
+        "com/bc/libwally/tx/raw/WallyTxWitnessStack",
+        "com/bc/libwally/tx/raw/WallyTxWitnessStack$WallyTxWitnessItem",
+        "com/bc/libwally/psbt/raw/WallyMap",
+        "com/bc/libwally/psbt/raw/WallyMap$WallyMapItem",
+        "com/bc/libwally/psbt/raw/WallyPsbt",
+        "com/bc/libwally/psbt/raw/WallyPsbtInput",
+        "com/bc/libwally/psbt/raw/WallyPsbtOutput",
+        "com/bc/libwally/address/AddressException",
+        "com/bc/libwally/bip32/Bip32Exception",
+        "com/bc/libwally/bip39/Bip39Exception",
+        "com/bc/libwally/core/CoreException",
+        "com/bc/libwally/crypto/CryptoException",
+        "com/bc/libwally/psbt/PsbtException",
+        "com/bc/libwally/script/ScriptException",
+        "com/bc/libwally/tx/TxException"
+};
+
+#define CACHED_CLASS_COUNT (sizeof(cached_class_names) / sizeof(cached_class_names[0]))
+
+static jclass cached_classes[CACHED_CLASS_COUNT];
+
+JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *reserved) {
+    JNIEnv *env;
+    if ((*vm)->GetEnv(vm, (void **) &env, JNI_VERSION_1_6) != JNI_OK) {
+        return JNI_ERR;
+    }
+
+    // structs built by the marshalling layer are released with the wally_*_free functions, so
+    // libwally has to allocate and free through the same counted functions
+    struct wally_operations ops;
+    if (wally_get_operations(&ops) != WALLY_OK) {
+        return JNI_ERR;
+    }
+    ops.malloc_fn = jni_wally_malloc;
+    ops.free_fn = jni_free;
+    if (wally_set_operations(&ops) != WALLY_OK) {
+        return JNI_ERR;
+    }
+
+    for (size_t i = 0; i < CACHED_CLASS_COUNT; i++) {
+        jclass clazz = (*env)->FindClass(env, cached_class_names[i]);
+        if (clazz == NULL) {
+            // not fatal, the class is looked up again when it is first used
+            (*env)->ExceptionClear(env);
+            continue;
+        }
+        cached_classes[i] = (jclass) (*env)->NewGlobalRef(env, clazz);
+        (*env)->DeleteLocalRef(env, clazz);
+    }
+
+    return JNI_VERSION_1_6;
+}
+
+JNIEXPORT void JNICALL JNI_OnUnload(JavaVM *vm, void *reserved) {
+    JNIEnv *env;
+    if ((*vm)->GetEnv(vm, (void **) &env, JNI_VERSION_1_6) != JNI_OK) {
+        return;
+    }
+
+    for (size_t i = 0; i < CACHED_CLASS_COUNT; i++) {
+        if (cached_classes[i] != NULL) {
+            (*env)->DeleteGlobalRef(env, cached_classes[i]);
+            cached_classes[i] = NULL;
+        }
+    }
+}
+
+// -------------- END Class cache ---------------- //
 
 // -------------- Common JNI methods ---------------- //
-static jclass find_jclass(JNIEnv *env, char *className) {
+
+jclass find_jclass(JNIEnv *env, char *className) {
+    for (size_t i = 0; i < CACHED_CLASS_COUNT; i++) {
+        if (cached_classes[i] != NULL && strcmp(cached_class_names[i], className) == 0) {
+            return cached_classes[i];
+        }
+    }
+
     jclass clazz = (*env)->FindClass(env, className);
     if (clazz == NULL) {
         fprintf(stderr, "JNIEnv::FindClass error");
@@ -22,7 +143,7 @@ static jclass find_jclass(JNIEnv *env, char *className) {
     return clazz;
 }
 
-static jmethodID get_methodID(JNIEnv *env, jclass clazz, char *methodName, char *methodSig) {
+jmethodID get_methodID(JNIEnv *env, jclass clazz, char *methodName, char *methodSig) {
     jmethodID methodID = (*env)->GetMethodID(env, clazz, methodName, methodSig);
     if (methodID == NULL) {
         fprintf(stderr, "JNIEnv::GetMethodID error");
@@ -32,7 +153,7 @@ static jmethodID get_methodID(JNIEnv *env, jclass clazz, char *methodName, char
     return methodID;
 }
 
-static bool throw_new(JNIEnv *env, char *className, char *msg) {
+bool throw_new(JNIEnv *env, char *className, char *msg) {
     jclass clazz = find_jclass(env, className);
     const jint rs = (*env)->ThrowNew(env, clazz, msg);
     if (rs != JNI_OK) {
@@ -43,18 +164,19 @@ static bool throw_new(JNIEnv *env, char *className, char *msg) {
     return true;
 }
 
-static unsigned char *to_unsigned_char_array(JNIEnv *env, jbyteArray array) {
+unsigned char *to_unsigned_char_array(JNIEnv *env, jbyteArray array) {
     jsize count = (*env)->GetArrayLength(env, array);
+    jni_bytes_in += count;
     jbyte *elements = (*env)->GetByteArrayElements(env, array, JNI_FALSE);
-    unsigned char *ret = (unsigned char *) calloc(count, sizeof(unsigned char));
+    unsigned char *ret = (unsigned char *) jni_calloc(count, sizeof(unsigned char));
     memcpy(ret, elements, count);
     (*env)->ReleaseByteArrayElements(env, array, elements, JNI_ABORT);
     return ret;
 }
 
-static unsigned char **to_unsigned_char_2dimension_array(JNIEnv *env, jobjectArray array) {
+unsigned char **to_unsigned_char_2dimension_array(JNIEnv *env, jobjectArray array) {
     jsize count = (*env)->GetArrayLength(env, array);
-    unsigned char **ret = (uint8_t **) calloc(count, sizeof(unsigned char *));
+    unsigned char **ret = (uint8_t **) jni_calloc(count, sizeof(unsigned char *));
     for (int i = 0; i < count; i++) {
         jbyteArray obj = (jbyteArray) (*env)->GetObjectArrayElement(env, array, i);
         *(ret + i) = to_unsigned_char_array(env, obj);
@@ -62,10 +184,22 @@ static unsigned char **to_unsigned_char_2dimension_array(JNIEnv *env, jobjectArr
     return ret;
 }
 
-static uint32_t *to_uint32_t_array(JNIEnv *env, jlongArray array) {
+void free_unsigned_char_2dimension_array(unsigned char **array, jsize count) {
+    if (array == NULL) {
+        return;
+    }
+
+    for (int i = 0; i < count; i++) {
+        jni_free(*(array + i));
+    }
+    jni_free(array);
+}
+
+uint32_t *to_uint32_t_array(JNIEnv *env, jlongArray array) {
     jsize count = (*env)->GetArrayLength(env, array);
+    jni_bytes_in += count * sizeof(jlong);
     jlong *elements = (*env)->GetLongArrayElements(env, array, JNI_FALSE);
-    uint32_t *ret = (uint32_t *) calloc(count, sizeof(uint32_t));
+    uint32_t *ret = (uint32_t *) jni_calloc(count, sizeof(uint32_t));
     for (int i = 0; i < count; i++) {
         *(ret + i) = (uint32_t) *(elements + i);
     }
@@ -73,7 +207,7 @@ static uint32_t *to_uint32_t_array(JNIEnv *env, jlongArray array) {
     return ret;
 }
 
-static void
+void
 copy_to_jbyteArray(JNIEnv *env, jbyteArray dst, const unsigned char *src, size_t src_len) {
     jsize count = (*env)->GetArrayLength(env, dst);
     if (count != src_len) {
@@ -81,6 +215,7 @@ copy_to_jbyteArray(JNIEnv *env, jbyteArray dst, const unsigned char *src, size_t
         return;
     }
 
+    jni_bytes_out += count;
     jbyte *jbytes = (*env)->GetByteArrayElements(env, dst, JNI_FALSE);
     for (int i = 0; i < count; ++i) {
         *(jbytes + i) = *(src + i);
@@ -88,13 +223,30 @@ copy_to_jbyteArray(JNIEnv *env, jbyteArray dst, const unsigned char *src, size_t
     (*env)->ReleaseByteArrayElements(env, dst, jbytes, 0);
 }
 
-static void copy_to_jintArray(JNIEnv *env, jintArray dst, const size_t *src, size_t src_len) {
+bool jbyteArray_fits(JNIEnv *env, jbyteArray dst, jint offset, size_t len) {
+    jsize count = (*env)->GetArrayLength(env, dst);
+    return offset >= 0 && offset <= count && len <= (size_t) (count - offset);
+}
+
+// Writes `src` into `dst` starting at `offset`, the caller checks the range with
+// `jbyteArray_fits` first.
+void copy_to_jbyteArray_at(JNIEnv *env,
+                           jbyteArray dst,
+                           jint offset,
+                           const unsigned char *src,
+                           size_t src_len) {
+    jni_bytes_out += src_len;
+    (*env)->SetByteArrayRegion(env, dst, offset, (jsize) src_len, (const jbyte *) src);
+}
+
+void copy_to_jintArray(JNIEnv *env, jintArray dst, const size_t *src, size_t src_len) {
     jsize count = (*env)->GetArrayLength(env, dst);
     if (count != src_len) {
         fprintf(stderr, "the length between src and dst is different");
         return;
     }
 
+    jni_bytes_out += count * sizeof(jint);
     jint *jints = (*env)->GetIntArrayElements(env, dst, JNI_FALSE);
     for (int i = 0; i < count; ++i) {
         *(jints + i) = *(src + i);
@@ -102,13 +254,13 @@ static void copy_to_jintArray(JNIEnv *env, jintArray dst, const size_t *src, siz
     (*env)->ReleaseIntArrayElements(env, dst, jints, 0);
 }
 
-static jbyteArray create_jbyteArray(JNIEnv *env, const unsigned char *src, size_t src_len) {
+jbyteArray create_jbyteArray(JNIEnv *env, const unsigned char *src, size_t src_len) {
     jbyteArray dst = (*env)->NewByteArray(env, src_len);
     copy_to_jbyteArray(env, dst, src, src_len);
     return dst;
 }
 
-static jobject to_jobject(JNIEnv *env, void *ptr) {
+jobject to_jobject(JNIEnv *env, void *ptr) {
     jclass clazz = find_jclass(env, "com/bc/libwally/NativeWrapper$JniObject");
     if (clazz == NULL) {
         return NULL;
@@ -123,7 +275,7 @@ static jobject to_jobject(JNIEnv *env, void *ptr) {
             ptr);
 }
 
-static void *to_c_obj_ptr(JNIEnv *env, jobject obj) {
+void *to_c_obj_ptr(JNIEnv *env, jobject obj) {
     jclass clazz = find_jclass(env, "com/bc/libwally/NativeWrapper$JniObject");
     if (clazz == NULL) {
         return NULL;
@@ -139,11 +291,11 @@ static void *to_c_obj_ptr(JNIEnv *env, jobject obj) {
     return ret;
 }
 
-static jstring to_jstring(JNIEnv *env, char *input) {
+jstring to_jstring(JNIEnv *env, char *input) {
     return (*env)->NewStringUTF(env, input);
 }
 
-static bool verify_network(uint32_t network) {
+bool verify_network(uint32_t network) {
     if (network == WALLY_NETWORK_BITCOIN_MAINNET || network == WALLY_NETWORK_BITCOIN_TESTNET ||
         network == WALLY_NETWORK_LIQUID || network == WALLY_NETWORK_LIQUID_REGTEST) {
         return true;
@@ -155,99 +307,47 @@ static bool verify_network(uint32_t network) {
 
 // -------------- Bip32 JNI methods --------------------//
 
-static jobject to_jWallyHDKey(JNIEnv *env, struct ext_key *key) {
+// WallyHDKey mirrors the layout of `struct ext_key` so it is copied as a single buffer
+jobject to_jWallyHDKey(JNIEnv *env, struct ext_key *key) {
     jclass clazz = find_jclass(env, "com/bc/libwally/bip32/WallyHDKey");
     if (clazz == NULL) {
         return NULL;
     }
 
-    jmethodID constructor_mid = get_methodID(env, clazz, "<init>", "([B[BS[B[BJ[BJ[B[B)V");
+    jmethodID constructor_mid = get_methodID(env, clazz, "<init>", "([B)V");
     if (constructor_mid == NULL) {
         return NULL;
     }
 
+    jbyteArray j_data = create_jbyteArray(env, (const unsigned char *) key,
+                                          sizeof(struct ext_key));
+    if (j_data == NULL) {
+        return NULL;
+    }
 
-    jbyteArray j_chain_code = create_jbyteArray(env, key->chain_code, 32);
-    jbyteArray j_parent160 = create_jbyteArray(env, key->parent160, 20);
-    jbyteArray j_pad1 = create_jbyteArray(env, key->pad1, 10);
-    jbyteArray j_priv_key = create_jbyteArray(env, key->priv_key, 33);
-    jbyteArray j_hash160 = create_jbyteArray(env, key->hash160, 20);
-    jbyteArray j_pad2 = create_jbyteArray(env, key->pad2, 3);
-    jbyteArray j_pub_key = create_jbyteArray(env, key->pub_key, 33);
-
-    jobject result = (*env)->NewObject(env, clazz, constructor_mid, j_chain_code,
-                                       j_parent160, (jshort) key->depth, j_pad1, j_priv_key,
-                                       (jlong) key->child_num, j_hash160, (jlong) key->version,
-                                       j_pad2,
-                                       j_pub_key);
-
-    return result;
+    return (*env)->NewObject(env, clazz, constructor_mid, j_data);
 }
 
-static struct ext_key *to_c_ext_key(JNIEnv *env, jobject jHDKey) {
+struct ext_key *to_c_ext_key(JNIEnv *env, jobject jHDKey) {
     jclass clazz = find_jclass(env, "com/bc/libwally/bip32/WallyHDKey");
     if (clazz == NULL) {
         return NULL;
     }
 
-    jmethodID get_chain_code_mid = get_methodID(env, clazz, "getChainCode", "()[B");
-    jbyteArray j_chain_code = (jbyteArray) (*env)->CallObjectMethod(env,
-                                                                    jHDKey,
-                                                                    get_chain_code_mid);
-    jmethodID get_parent160_mid = get_methodID(env, clazz, "getParent160", "()[B");
-    jbyteArray j_parent160 = (jbyteArray) (*env)->CallObjectMethod(env, jHDKey, get_parent160_mid);
-    jmethodID get_depth_mid = get_methodID(env, clazz, "getDepth", "()S");
-    jshort j_depth = (*env)->CallShortMethod(env, jHDKey, get_depth_mid);
-    jmethodID get_pad1_mid = get_methodID(env, clazz, "getPad1", "()[B");
-    jbyteArray j_pad1 = (jbyteArray) (*env)->CallObjectMethod(env, jHDKey, get_pad1_mid);
-    jmethodID get_priv_key_mid = get_methodID(env, clazz, "getPrivKey", "()[B");
-    jbyteArray j_priv_key = (jbyteArray) (*env)->CallObjectMethod(env, jHDKey, get_priv_key_mid);
-    jmethodID get_child_num_mid = get_methodID(env, clazz, "getChildNum", "()J");
-    jlong j_child_num = (*env)->CallLongMethod(env, jHDKey, get_child_num_mid);
-    jmethodID get_hash160_mid = get_methodID(env, clazz, "getHash160", "()[B");
-    jbyteArray j_hash160 = (jbyteArray) (*env)->CallObjectMethod(env, jHDKey, get_hash160_mid);
-    jmethodID get_version_mid = get_methodID(env, clazz, "getVersion", "()J");
-    jlong j_version = (*env)->CallLongMethod(env, jHDKey, get_version_mid);
-    jmethodID get_pad2_mid = get_methodID(env, clazz, "getPad2", "()[B");
-    jbyteArray j_pad2 = (jbyteArray) (*env)->CallObjectMethod(env, jHDKey, get_pad2_mid);
-    jmethodID get_pub_key_mid = get_methodID(env, clazz, "getPubKey", "()[B");
-    jbyteArray j_pub_key = (jbyteArray) (*env)->CallObjectMethod(env, jHDKey, get_pub_key_mid);
-
-    struct ext_key *key = (struct ext_key *) calloc(1, sizeof(struct ext_key));
-    unsigned char *c_chain_code = to_unsigned_char_array(env, j_chain_code);
-    memcpy(key->chain_code, c_chain_code, 32);
-    free(c_chain_code);
-
-    unsigned char *c_parent160 = to_unsigned_char_array(env, j_parent160);
-    memcpy(key->parent160, c_parent160, 20);
-    free(c_parent160);
-
-    key->depth = (uint8_t) j_depth;
-
-    unsigned char *c_pad1 = to_unsigned_char_array(env, j_pad1);
-    memcpy(key->pad1, c_pad1, 10);
-    free(c_pad1);
-
-    unsigned char *c_priv_key = to_unsigned_char_array(env, j_priv_key);
-    memcpy(key->priv_key, c_priv_key, 33);
-    free(c_priv_key);
-
-    key->child_num = (uint32_t) j_child_num;
-
-    unsigned char *c_hash160 = to_unsigned_char_array(env, j_hash160);
-    memcpy(key->hash160, c_hash160, 20);
-    free(c_hash160);
-
-    key->version = (uint32_t) j_version;
-
-    unsigned char *c_pad2 = to_unsigned_char_array(env, j_pad2);
-    memcpy(key->pad2, c_pad2, 3);
-    free(c_pad2);
+    jmethodID get_data_mid = get_methodID(env, clazz, "getData", "()[B");
+    if (get_data_mid == NULL) {
+        return NULL;
+    }
 
-    unsigned char *c_pub_key = to_unsigned_char_array(env, j_pub_key);
-    memcpy(key->pub_key, c_pub_key, 33);
-    free(c_pub_key);
+    jbyteArray j_data = (jbyteArray) (*env)->CallObjectMethod(env, jHDKey, get_data_mid);
+    if (j_data == NULL || (*env)->GetArrayLength(env, j_data) != sizeof(struct ext_key)) {
+        fprintf(stderr, "to_c_ext_key error: invalid ext_key data");
+        return NULL;
+    }
 
+    struct ext_key *key = (struct ext_key *) jni_calloc(1, sizeof(struct ext_key));
+    (*env)->GetByteArrayRegion(env, j_data, 0, sizeof(struct ext_key), (jbyte *) key);
+    jni_bytes_in += sizeof(struct ext_key);
     return key;
 }
 
@@ -255,7 +355,7 @@ static struct ext_key *to_c_ext_key(JNIEnv *env, jobject jHDKey) {
 
 // -------------- Tx JNI methods -----------------------//
 
-static jobject to_jWallyTxWitnessItem(JNIEnv *env, struct wally_tx_witness_item *item) {
+jobject to_jWallyTxWitnessItem(JNIEnv *env, struct wally_tx_witness_item *item) {
     jclass clazz = find_jclass(env,
                                "com/bc/libwally/tx/raw/WallyTxWitnessStack$WallyTxWitnessItem");
     if (clazz == NULL) {
@@ -271,7 +371,7 @@ static jobject to_jWallyTxWitnessItem(JNIEnv *env, struct wally_tx_witness_item
     return (*env)->NewObject(env, clazz, constructor_mid, j_witness);
 }
 
-static struct wally_tx_witness_item *
+struct wally_tx_witness_item *
 to_c_wally_tx_witness_item(JNIEnv *env, jobject jWallyTxWitnessItem) {
     jclass clazz = find_jclass(env,
                                "com/bc/libwally/tx/raw/WallyTxWitnessStack$WallyTxWitnessItem");
@@ -286,7 +386,7 @@ to_c_wally_tx_witness_item(JNIEnv *env, jobject jWallyTxWitnessItem) {
                                                                  get_witness_mid);
 
     // assign to C struct
-    struct wally_tx_witness_item *item = (struct wally_tx_witness_item *) calloc(1,
+    struct wally_tx_witness_item *item = (struct wally_tx_witness_item *) jni_calloc(1,
                                                                                  sizeof(struct wally_tx_witness_item));
 
     if (j_witness != NULL) {
@@ -300,7 +400,7 @@ to_c_wally_tx_witness_item(JNIEnv *env, jobject jWallyTxWitnessItem) {
     return item;
 }
 
-static jobject to_jWallyTxWitnessStack(JNIEnv *env, struct wally_tx_witness_stack *stack) {
+jobject to_jWallyTxWitnessStack(JNIEnv *env, struct wally_tx_witness_stack *stack) {
     jclass stack_clazz = find_jclass(env, "com/bc/libwally/tx/raw/WallyTxWitnessStack");
     if (stack_clazz == NULL) {
         return NULL;
@@ -345,7 +445,7 @@ static jobject to_jWallyTxWitnessStack(JNIEnv *env, struct wally_tx_witness_stac
     return j_stack;
 }
 
-static struct wally_tx_witness_stack *
+struct wally_tx_witness_stack *
 to_c_wally_tx_witness_stack(JNIEnv *env, jobject jWallyTxWitnessStack) {
     jclass clazz = find_jclass(env, "com/bc/libwally/tx/raw/WallyTxWitnessStack");
     if (clazz == NULL) {
@@ -368,24 +468,25 @@ to_c_wally_tx_witness_stack(JNIEnv *env, jobject jWallyTxWitnessStack) {
                                                               get_items_alloc_len_mid);
 
     // assign to C struct
-    struct wally_tx_witness_stack *stack = (struct wally_tx_witness_stack *) calloc(1,
+    struct wally_tx_witness_stack *stack = (struct wally_tx_witness_stack *) jni_calloc(1,
                                                                                     sizeof(struct wally_tx_witness_stack));
     stack->num_items = (size_t) j_num_items;
     stack->items_allocation_len = j_items_alloc_len;
-    struct wally_tx_witness_item *items = calloc(stack->items_allocation_len,
+    struct wally_tx_witness_item *items = jni_calloc(stack->items_allocation_len,
                                                  sizeof(struct wally_tx_witness_item));
 
     for (int i = 0; i < j_num_items; ++i) {
         jobject item = (*env)->GetObjectArrayElement(env, j_items, i);
         struct wally_tx_witness_item *c_item = to_c_wally_tx_witness_item(env, item);
         *(items + i) = *c_item;
+        jni_free(c_item);
     }
 
     stack->items = items;
     return stack;
 }
 
-static jobject to_jWallyTxOutput(JNIEnv *env, struct wally_tx_output *output) {
+jobject to_jWallyTxOutput(JNIEnv *env, struct wally_tx_output *output) {
     jclass clazz = find_jclass(env, "com/bc/libwally/tx/raw/WallyTxOutput");
     if (clazz == NULL) {
         return NULL;
@@ -407,7 +508,7 @@ static jobject to_jWallyTxOutput(JNIEnv *env, struct wally_tx_output *output) {
                              j_features);
 }
 
-static struct wally_tx_output *to_c_wally_tx_output(JNIEnv *env, jobject jWallyTxOutput) {
+struct wally_tx_output *to_c_wally_tx_output(JNIEnv *env, jobject jWallyTxOutput) {
     jclass clazz = find_jclass(env, "com/bc/libwally/tx/raw/WallyTxOutput");
     if (clazz == NULL) {
         return NULL;
@@ -424,7 +525,7 @@ static struct wally_tx_output *to_c_wally_tx_output(JNIEnv *env, jobject jWallyT
     jshort j_features = (*env)->CallShortMethod(env, jWallyTxOutput, get_features_mid);
 
     // assign to C struct
-    struct wally_tx_output *output = (struct wally_tx_output *) calloc(1,
+    struct wally_tx_output *output = (struct wally_tx_output *) jni_calloc(1,
                                                                        sizeof(struct wally_tx_output));
     output->satoshi = (uint64_t) j_amount;
     unsigned char *c_script = to_unsigned_char_array(env, j_script);
@@ -435,7 +536,7 @@ static struct wally_tx_output *to_c_wally_tx_output(JNIEnv *env, jobject jWallyT
     return output;
 }
 
-static jobject to_jWallyTxInput(JNIEnv *env, struct wally_tx_input *input) {
+jobject to_jWallyTxInput(JNIEnv *env, struct wally_tx_input *input) {
     jclass clazz = find_jclass(env, "com/bc/libwally/tx/raw/WallyTxInput");
     if (clazz == NULL) {
         return NULL;
@@ -477,7 +578,7 @@ static jobject to_jWallyTxInput(JNIEnv *env, struct wally_tx_input *input) {
                              j_feafures);
 }
 
-static struct wally_tx_input *to_c_wally_tx_input(JNIEnv *env, jobject jWallyTxInput) {
+struct wally_tx_input *to_c_wally_tx_input(JNIEnv *env, jobject jWallyTxInput) {
     jclass clazz = find_jclass(env, "com/bc/libwally/tx/raw/WallyTxInput");
     if (clazz == NULL) {
         return NULL;
@@ -505,14 +606,14 @@ static struct wally_tx_input *to_c_wally_tx_input(JNIEnv *env, jobject jWallyTxI
     jshort j_features = (*env)->CallShortMethod(env, jWallyTxInput, get_features_mid);
 
     // assign to C struct
-    struct wally_tx_input *input = (struct wally_tx_input *) calloc(1,
+    struct wally_tx_input *input = (struct wally_tx_input *) jni_calloc(1,
                                                                     sizeof(struct wally_tx_input));
 
     if (j_tx_hash != NULL) {
         unsigned char *c_tx_hash = to_unsigned_char_array(env, j_tx_hash);
         jsize hash_len = (*env)->GetArrayLength(env, j_tx_hash);
         memcpy(input->txhash, c_tx_hash, (size_t) hash_len);
-        free(c_tx_hash);
+        jni_free(c_tx_hash);
     }
 
     input->index = (uint32_t) j_index;
@@ -535,7 +636,7 @@ static struct wally_tx_input *to_c_wally_tx_input(JNIEnv *env, jobject jWallyTxI
     return input;
 }
 
-static jobject to_jWallyTx(JNIEnv *env, struct wally_tx *tx) {
+jobject to_jWallyTx(JNIEnv *env, struct wally_tx *tx) {
     jclass wally_tx_clazz = find_jclass(env, "com/bc/libwally/tx/raw/WallyTx");
     if (wally_tx_clazz == NULL) {
         return NULL;
@@ -599,7 +700,7 @@ static jobject to_jWallyTx(JNIEnv *env, struct wally_tx *tx) {
 
 }
 
-static struct wally_tx *to_c_wally_tx(JNIEnv *env, jobject jWallyTx) {
+struct wally_tx *to_c_wally_tx(JNIEnv *env, jobject jWallyTx) {
     jclass clazz = find_jclass(env, "com/bc/libwally/tx/raw/WallyTx");
     if (clazz == NULL) {
         return NULL;
@@ -628,7 +729,7 @@ static struct wally_tx *to_c_wally_tx(JNIEnv *env, jobject jWallyTx) {
     jint j_outputs_alloc_len = (*env)->CallIntMethod(env, jWallyTx, get_output_alloc_len_mid);
 
     // assign to C struct
-    struct wally_tx *tx = (struct wally_tx *) calloc(1, sizeof(struct wally_tx));
+    struct wally_tx *tx = (struct wally_tx *) jni_calloc(1, sizeof(struct wally_tx));
     tx->version = (uint32_t) j_version;
     tx->locktime = (uint32_t) j_lock_time;
     tx->inputs_allocation_len = (size_t) j_inputs_alloc_len;
@@ -636,24 +737,26 @@ static struct wally_tx *to_c_wally_tx(JNIEnv *env, jobject jWallyTx) {
 
     // copy `wally_tx_input`s
     jsize num_inputs = (*env)->GetArrayLength(env, j_inputs);
-    struct wally_tx_input *c_inputs = calloc(tx->inputs_allocation_len,
+    struct wally_tx_input *c_inputs = jni_calloc(tx->inputs_allocation_len,
                                              sizeof(struct wally_tx_input));
     for (int i = 0; i < num_inputs; ++i) {
         jobject j_input = (*env)->GetObjectArrayElement(env, j_inputs, i);
         struct wally_tx_input *c_input = to_c_wally_tx_input(env, j_input);
         *(c_inputs + i) = *c_input;
+        jni_free(c_input);
     }
     tx->inputs = c_inputs;
     tx->num_inputs = (size_t) num_inputs;
 
     // copy `wally_tx_output`s
     jsize num_outputs = (*env)->GetArrayLength(env, j_outputs);
-    struct wally_tx_output *c_outputs = (struct wally_tx_output *) calloc(tx->outputs_allocation_len,
+    struct wally_tx_output *c_outputs = (struct wally_tx_output *) jni_calloc(tx->outputs_allocation_len,
                                                                           sizeof(struct wally_tx_output));
     for (int i = 0; i < num_outputs; ++i) {
         jobject j_output = (*env)->GetObjectArrayElement(env, j_outputs, i);
         struct wally_tx_output *c_output = to_c_wally_tx_output(env, j_output);
         *(c_outputs + i) = *c_output;
+        jni_free(c_output);
     }
     tx->outputs = c_outputs;
     tx->num_outputs = (size_t) num_outputs;
@@ -665,7 +768,7 @@ static struct wally_tx *to_c_wally_tx(JNIEnv *env, jobject jWallyTx) {
 
 // -------------- PSBT JNI methods -----------------------//
 
-static jobject to_jWallyMapItem(JNIEnv *env, struct wally_map_item *item) {
+jobject to_jWallyMapItem(JNIEnv *env, struct wally_map_item *item) {
     jclass clazz = find_jclass(env, "com/bc/libwally/psbt/raw/WallyMap$WallyMapItem");
     if (clazz == NULL) {
         return NULL;
@@ -681,7 +784,7 @@ static jobject to_jWallyMapItem(JNIEnv *env, struct wally_map_item *item) {
     return (*env)->NewObject(env, clazz, constructor_mid, j_key, j_value);
 }
 
-static struct wally_map_item *to_c_wally_map_item(JNIEnv *env, jobject jWallyMapItem) {
+struct wally_map_item *to_c_wally_map_item(JNIEnv *env, jobject jWallyMapItem) {
     jclass clazz = find_jclass(env, "com/bc/libwally/psbt/raw/WallyMap$WallyMapItem");
     if (clazz == NULL) {
         return NULL;
@@ -698,7 +801,7 @@ static struct wally_map_item *to_c_wally_map_item(JNIEnv *env, jobject jWallyMap
                                                                get_value_mid);
 
     // assign to C struct
-    struct wally_map_item *item = (struct wally_map_item *) calloc(1,
+    struct wally_map_item *item = (struct wally_map_item *) jni_calloc(1,
                                                                    sizeof(struct wally_map_item));
 
     jsize key_len = (*env)->GetArrayLength(env, j_key);
@@ -715,7 +818,7 @@ static struct wally_map_item *to_c_wally_map_item(JNIEnv *env, jobject jWallyMap
     return item;
 }
 
-static jobject to_jWallyMap(JNIEnv *env, struct wally_map *map) {
+jobject to_jWallyMap(JNIEnv *env, struct wally_map *map) {
     jclass map_clazz = find_jclass(env, "com/bc/libwally/psbt/raw/WallyMap");
     if (map_clazz == NULL) {
         return NULL;
@@ -758,7 +861,7 @@ static jobject to_jWallyMap(JNIEnv *env, struct wally_map *map) {
                              (jint) map->items_allocation_len);
 }
 
-static struct wally_map *to_c_wally_map(JNIEnv *env, jobject jWallyMap) {
+struct wally_map *to_c_wally_map(JNIEnv *env, jobject jWallyMap) {
     jclass clazz = find_jclass(env, "com/bc/libwally/psbt/raw/WallyMap");
     if (clazz == NULL) {
         return NULL;
@@ -780,22 +883,33 @@ static struct wally_map *to_c_wally_map(JNIEnv *env, jobject jWallyMap) {
                                                               get_items_alloc_len_mid);
 
     // assign to C struct
-    struct wally_map *map = (struct wally_map *) calloc(1, sizeof(struct wally_map));
+    struct wally_map *map = (struct wally_map *) jni_calloc(1, sizeof(struct wally_map));
     map->num_items = (size_t) j_num_items;
     map->items_allocation_len = j_items_alloc_len;
-    struct wally_map_item *items = calloc(map->items_allocation_len, sizeof(struct wally_map_item));
+    struct wally_map_item *items = jni_calloc(map->items_allocation_len, sizeof(struct wally_map_item));
 
     for (int i = 0; i < j_num_items; ++i) {
         jobject item = (*env)->GetObjectArrayElement(env, j_items, i);
         struct wally_map_item *c_item = to_c_wally_map_item(env, item);
         *(items + i) = *c_item;
+        jni_free(c_item);
     }
 
     map->items = items;
     return map;
 }
 
-static jobject to_jWallyPsbtInput(JNIEnv *env, struct wally_psbt_input *input) {
+// moves the content of a heap allocated map into an embedded one and releases the shell
+static void take_c_wally_map(struct wally_map *dst, struct wally_map *src) {
+    if (src == NULL) {
+        return;
+    }
+
+    *dst = *src;
+    jni_free(src);
+}
+
+jobject to_jWallyPsbtInput(JNIEnv *env, struct wally_psbt_input *input) {
     jclass clazz = find_jclass(env, "com/bc/libwally/psbt/raw/WallyPsbtInput");
     if (clazz == NULL) {
         return NULL;
@@ -805,6 +919,7 @@ static jobject to_jWallyPsbtInput(JNIEnv *env, struct wally_psbt_input *input) {
                                              clazz,
                                              "<init>",
                                              "(Lcom/bc/libwally/tx/raw/WallyTx;"
+                                             "[B"
                                              "Lcom/bc/libwally/tx/raw/WallyTxOutput;"
                                              "[B[B[B"
                                              "Lcom/bc/libwally/tx/raw/WallyTxWitnessStack;"
@@ -816,8 +931,15 @@ static jobject to_jWallyPsbtInput(JNIEnv *env, struct wally_psbt_input *input) {
     }
 
     jobject j_utxo = NULL;
+    jbyteArray j_utxo_txid = NULL;
     if (input->utxo != NULL) {
         j_utxo = to_jWallyTx(env, input->utxo);
+
+        // hashed while the utxo is still in C, Java only compares it with the prevout hash
+        unsigned char txid[WALLY_TXHASH_LEN];
+        if (wally_tx_get_txid(input->utxo, txid, WALLY_TXHASH_LEN) == WALLY_OK) {
+            j_utxo_txid = create_jbyteArray(env, txid, WALLY_TXHASH_LEN);
+        }
     }
 
     jobject j_witness_utxo = NULL;
@@ -859,6 +981,7 @@ static jobject to_jWallyPsbtInput(JNIEnv *env, struct wally_psbt_input *input) {
                              clazz,
                              constructor_mid,
                              j_utxo,
+                             j_utxo_txid,
                              j_witness_utxo,
                              j_redeem_script,
                              j_witness_script,
@@ -869,7 +992,7 @@ static jobject to_jWallyPsbtInput(JNIEnv *env, struct wally_psbt_input *input) {
                              j_unknowns);
 }
 
-static struct wally_psbt_input *to_c_wally_psbt_input(JNIEnv *env, jobject jWallyPsbtInput) {
+struct wally_psbt_input *to_c_wally_psbt_input(JNIEnv *env, jobject jWallyPsbtInput) {
     jclass clazz = find_jclass(env, "com/bc/libwally/psbt/raw/WallyPsbtInput");
     if (clazz == NULL) {
         return NULL;
@@ -932,7 +1055,7 @@ static struct wally_psbt_input *to_c_wally_psbt_input(JNIEnv *env, jobject jWall
 
 
     // assign to C struct
-    struct wally_psbt_input *input = (struct wally_psbt_input *) calloc(1,
+    struct wally_psbt_input *input = (struct wally_psbt_input *) jni_calloc(1,
                                                                         sizeof(struct wally_psbt_input));
     if (j_utxo != NULL) {
         input->utxo = to_c_wally_tx(env, j_utxo);
@@ -968,21 +1091,21 @@ static struct wally_psbt_input *to_c_wally_psbt_input(JNIEnv *env, jobject jWall
     }
 
     if (j_key_paths != NULL) {
-        input->keypaths = *to_c_wally_map(env, j_key_paths);
+        take_c_wally_map(&input->keypaths, to_c_wally_map(env, j_key_paths));
     }
 
     if (j_signatures != NULL) {
-        input->signatures = *to_c_wally_map(env, j_signatures);
+        take_c_wally_map(&input->signatures, to_c_wally_map(env, j_signatures));
     }
 
     if (j_unknowns != NULL) {
-        input->unknowns = *to_c_wally_map(env, j_unknowns);
+        take_c_wally_map(&input->unknowns, to_c_wally_map(env, j_unknowns));
     }
 
     return input;
 }
 
-static jobject to_jWallyPsbtOutput(JNIEnv *env, struct wally_psbt_output *output) {
+jobject to_jWallyPsbtOutput(JNIEnv *env, struct wally_psbt_output *output) {
     jclass clazz = find_jclass(env, "com/bc/libwally/psbt/raw/WallyPsbtOutput");
     if (clazz == NULL) {
         return NULL;
@@ -1018,7 +1141,7 @@ static jobject to_jWallyPsbtOutput(JNIEnv *env, struct wally_psbt_output *output
                              j_unknowns);
 }
 
-static struct wally_psbt_output *to_c_wally_psbt_output(JNIEnv *env, jobject jWallyPsbtOutput) {
+struct wally_psbt_output *to_c_wally_psbt_output(JNIEnv *env, jobject jWallyPsbtOutput) {
     jclass clazz = find_jclass(env, "com/bc/libwally/psbt/raw/WallyPsbtOutput");
     if (clazz == NULL) {
         return NULL;
@@ -1048,7 +1171,7 @@ static struct wally_psbt_output *to_c_wally_psbt_output(JNIEnv *env, jobject jWa
     jobject j_unknowns = (*env)->CallObjectMethod(env, jWallyPsbtOutput, get_unknowns_mid);
 
     // assign to C struct
-    struct wally_psbt_output *output = (struct wally_psbt_output *) calloc(1,
+    struct wally_psbt_output *output = (struct wally_psbt_output *) jni_calloc(1,
                                                                            sizeof(struct wally_psbt_output));
     if (j_redeem_script != NULL) {
         jsize redeem_script_len = (*env)->GetArrayLength(env, j_redeem_script);
@@ -1064,13 +1187,13 @@ static struct wally_psbt_output *to_c_wally_psbt_output(JNIEnv *env, jobject jWa
         output->witness_script_len = (size_t) witness_script_len;
     }
 
-    output->keypaths = *to_c_wally_map(env, j_key_paths);
-    output->unknowns = *to_c_wally_map(env, j_unknowns);
+    take_c_wally_map(&output->keypaths, to_c_wally_map(env, j_key_paths));
+    take_c_wally_map(&output->unknowns, to_c_wally_map(env, j_unknowns));
 
     return output;
 }
 
-static jobject to_jWallyPsbt(JNIEnv *env, struct wally_psbt *psbt) {
+jobject to_jWallyPsbt(JNIEnv *env, struct wally_psbt *psbt) {
     jclass psbt_clazz = find_jclass(env, "com/bc/libwally/psbt/raw/WallyPsbt");
     if (psbt_clazz == NULL) {
         return NULL;
@@ -1145,7 +1268,7 @@ static jobject to_jWallyPsbt(JNIEnv *env, struct wally_psbt *psbt) {
                              j_version);
 }
 
-static struct wally_psbt *to_c_wally_psbt(JNIEnv *env, jobject jWallyPsbt) {
+struct wally_psbt *to_c_wally_psbt(JNIEnv *env, jobject jWallyPsbt) {
     jclass clazz = find_jclass(env, "com/bc/libwally/psbt/raw/WallyPsbt");
     if (clazz == NULL) {
         return NULL;
@@ -1183,36 +1306,40 @@ static struct wally_psbt *to_c_wally_psbt(JNIEnv *env, jobject jWallyPsbt) {
     jlong j_version = (*env)->CallLongMethod(env, jWallyPsbt, get_version_mid);
 
     // assign to C struct
-    struct wally_psbt *psbt = (struct wally_psbt *) calloc(1, sizeof(struct wally_psbt));
+    struct wally_psbt *psbt = (struct wally_psbt *) jni_calloc(1, sizeof(struct wally_psbt));
     unsigned char *c_magic = to_unsigned_char_array(env, j_magic);
     memcpy(psbt->magic, c_magic, 5);
-    free(c_magic);
+    jni_free(c_magic);
     psbt->version = (uint32_t) j_version;
     psbt->inputs_allocation_len = (size_t) j_inputs_alloc_len;
     psbt->outputs_allocation_len = (size_t) j_outputs_alloc_len;
-    psbt->unknowns = *to_c_wally_map(env, j_unkowns);
-    psbt->tx = to_c_wally_tx(env, j_tx);
+    take_c_wally_map(&psbt->unknowns, to_c_wally_map(env, j_unkowns));
+    if (j_tx != NULL) {
+        psbt->tx = to_c_wally_tx(env, j_tx);
+    }
 
     // copy `wally_psbt_input`s
     jsize num_inputs = (*env)->GetArrayLength(env, j_inputs);
-    struct wally_psbt_input *c_inputs = calloc(psbt->inputs_allocation_len,
+    struct wally_psbt_input *c_inputs = jni_calloc(psbt->inputs_allocation_len,
                                                sizeof(struct wally_psbt_input));
     for (int i = 0; i < num_inputs; ++i) {
         jobject j_input = (*env)->GetObjectArrayElement(env, j_inputs, i);
         struct wally_psbt_input *c_input = to_c_wally_psbt_input(env, j_input);
         *(c_inputs + i) = *c_input;
+        jni_free(c_input);
     }
     psbt->inputs = c_inputs;
     psbt->num_inputs = (size_t) num_inputs;
 
     // copy `wally_psbt_output`s
     jsize num_outputs = (*env)->GetArrayLength(env, j_outputs);
-    struct wally_psbt_output *c_outputs = (struct wally_psbt_output *) calloc(psbt->outputs_allocation_len,
+    struct wally_psbt_output *c_outputs = (struct wally_psbt_output *) jni_calloc(psbt->outputs_allocation_len,
                                                                               sizeof(struct wally_psbt_output));
     for (int i = 0; i < num_outputs; ++i) {
         jobject j_output = (*env)->GetObjectArrayElement(env, j_outputs, i);
         struct wally_psbt_output *c_output = to_c_wally_psbt_output(env, j_output);
         *(c_outputs + i) = *c_output;
+        jni_free(c_output);
     }
     psbt->outputs = c_outputs;
     psbt->num_outputs = (size_t) num_outputs;
@@ -0,0 +1,129 @@
+#ifndef BC_LIBWALLY_JNI_UTILS_H
+#define BC_LIBWALLY_JNI_UTILS_H
+
+#include <jni.h>
+#include <stdio.h>
+#include <string.h>
+#include <stdbool.h>
+#include <stdlib.h>
+#include <stdint.h>
+#include <limits.h>
+#include <wally_core.h>
+#include <wally_address.h>
+#include <wally_bip32.h>
+#include <wally_transaction.h>
+#include <wally_psbt.h>
+
+// -------------- Instrumentation ---------------- //
+
+extern __thread jlong jni_bytes_in;
+extern __thread jlong jni_bytes_out;
+extern __thread jlong jni_native_allocated;
+
+#define DEFINE_JNI_STATS(prefix)                                                              \
+JNIEXPORT void JNICALL prefix##_jni_1stats(JNIEnv *env, jclass clazz, jlongArray stats) {     \
+    jlong values[3] = {jni_bytes_in, jni_bytes_out, jni_native_allocated};                    \
+    jni_bytes_in = 0;                                                                         \
+    jni_bytes_out = 0;                                                                        \
+    jni_native_allocated = 0;                                                                 \
+    if (stats != NULL && (*env)->GetArrayLength(env, stats) >= 3) {                           \
+        (*env)->SetLongArrayRegion(env, stats, 0, 3, values);                                 \
+    }                                                                                         \
+}
+
+// -------------- Common JNI methods ---------------- //
+
+void *jni_calloc(size_t count, size_t size);
+
+// frees memory from `jni_calloc` or libwally, keeping the outstanding allocation count
+void jni_free(void *ptr);
+
+jclass find_jclass(JNIEnv *env, char *className);
+
+jmethodID get_methodID(JNIEnv *env, jclass clazz, char *methodName, char *methodSig);
+
+bool throw_new(JNIEnv *env, char *className, char *msg);
+
+unsigned char *to_unsigned_char_array(JNIEnv *env, jbyteArray array);
+
+unsigned char **to_unsigned_char_2dimension_array(JNIEnv *env, jobjectArray array);
+
+void free_unsigned_char_2dimension_array(unsigned char **array, jsize count);
+
+uint32_t *to_uint32_t_array(JNIEnv *env, jlongArray array);
+
+void copy_to_jbyteArray(JNIEnv *env, jbyteArray dst, const unsigned char *src, size_t src_len);
+
+bool jbyteArray_fits(JNIEnv *env, jbyteArray dst, jint offset, size_t len);
+
+void copy_to_jbyteArray_at(JNIEnv *env,
+                           jbyteArray dst,
+                           jint offset,
+                           const unsigned char *src,
+                           size_t src_len);
+
+void copy_to_jintArray(JNIEnv *env, jintArray dst, const size_t *src, size_t src_len);
+
+jbyteArray create_jbyteArray(JNIEnv *env, const unsigned char *src, size_t src_len);
+
+jobject to_jobject(JNIEnv *env, void *ptr);
+
+void *to_c_obj_ptr(JNIEnv *env, jobject obj);
+
+jstring to_jstring(JNIEnv *env, char *input);
+
+bool verify_network(uint32_t network);
+
+// -------------- Bip32 JNI methods ---------------- //
+
+jobject to_jWallyHDKey(JNIEnv *env, struct ext_key *key);
+
+struct ext_key *to_c_ext_key(JNIEnv *env, jobject jHDKey);
+
+// -------------- Tx JNI methods ---------------- //
+
+jobject to_jWallyTxWitnessItem(JNIEnv *env, struct wally_tx_witness_item *item);
+
+struct wally_tx_witness_item *to_c_wally_tx_witness_item(JNIEnv *env,
+                                                         jobject jWallyTxWitnessItem);
+
+jobject to_jWallyTxWitnessStack(JNIEnv *env, struct wally_tx_witness_stack *stack);
+
+struct wally_tx_witness_stack *to_c_wally_tx_witness_stack(JNIEnv *env,
+                                                           jobject jWallyTxWitnessStack);
+
+jobject to_jWallyTxOutput(JNIEnv *env, struct wally_tx_output *output);
+
+struct wally_tx_output *to_c_wally_tx_output(JNIEnv *env, jobject jWallyTxOutput);
+
+jobject to_jWallyTxInput(JNIEnv *env, struct wally_tx_input *input);
+
+struct wally_tx_input *to_c_wally_tx_input(JNIEnv *env, jobject jWallyTxInput);
+
+jobject to_jWallyTx(JNIEnv *env, struct wally_tx *tx);
+
+struct wally_tx *to_c_wally_tx(JNIEnv *env, jobject jWallyTx);
+
+// -------------- PSBT JNI methods ---------------- //
+
+jobject to_jWallyMapItem(JNIEnv *env, struct wally_map_item *item);
+
+struct wally_map_item *to_c_wally_map_item(JNIEnv *env, jobject jWallyMapItem);
+
+jobject to_jWallyMap(JNIEnv *env, struct wally_map *map);
+
+struct wally_map *to_c_wally_map(JNIEnv *env, jobject jWallyMap);
+
+jobject to_jWallyPsbtInput(JNIEnv *env, struct wally_psbt_input *input);
+
+struct wally_psbt_input *to_c_wally_psbt_input(JNIEnv *env, jobject jWallyPsbtInput);
+
+jobject to_jWallyPsbtOutput(JNIEnv *env, struct wally_psbt_output *output);
+
+struct wally_psbt_output *to_c_wally_psbt_output(JNIEnv *env, jobject jWallyPsbtOutput);
+
+jobject to_jWallyPsbt(JNIEnv *env, struct wally_psbt *psbt);
+
+struct wally_psbt *to_c_wally_psbt(JNIEnv *env, jobject jWallyPsbt);
+
+#endif // BC_LIBWALLY_JNI_UTILS_H
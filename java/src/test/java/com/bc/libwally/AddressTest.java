@@ -1,7 +1,9 @@
 package com.bc.libwally;
 
 import com.bc.libwally.address.Address;
+import com.bc.libwally.address.Bech32;
 import com.bc.libwally.address.Key;
+import com.bc.libwally.address.PubKey;
 import com.bc.libwally.bip32.HDKey;
 import com.bc.libwally.script.ScriptPubKey;
 
@@ -16,6 +18,7 @@ import static com.bc.libwally.core.Core.bytes2Hex;
 import static com.bc.libwally.core.Core.hex2Bytes;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(JUnit4.class)
 public class AddressTest {
@@ -98,4 +101,37 @@ public class AddressTest {
         Key key = new Key(data, Network.MAINNET, false);
         assertEquals("5HueCGU8rMjxEXxiPuD5BDku4MkFqeZyd4dZ1jvhTVqvbTLvyTJ", key.getWif());
     }
+
+    @Test
+    public void testPubKeyRoundTrip() {
+        String hex = "03501e454bf00751f24b1b489aa925215d66af2234e3891c3b21a52bedb3cd711c";
+        PubKey pubKey = new PubKey(hex, Network.MAINNET);
+        assertEquals(hex, bytes2Hex(pubKey.getData()));
+        assertTrue(pubKey.isCompressed());
+
+        byte[] buffer = new byte[pubKey.getLength() + 2];
+        assertEquals(33, pubKey.writeTo(buffer, 1));
+        PubKey copy = new PubKey(buffer, 1, Network.MAINNET, true);
+        assertEquals(pubKey, copy);
+        assertEquals(pubKey.hashCode(), copy.hashCode());
+        assertEquals(hdKeyMainnet.getPubKey(), new PubKey(hdKeyMainnet.getPubKey().getData(),
+                                                          Network.MAINNET));
+    }
+
+    @Test
+    public void testBech32() {
+        assertEquals("bc1qw508d6qejxtdg4y5r3zarvary0c5xw7kv8f3t4",
+                     Bech32.encodeSegwitAddress(Network.MAINNET, hex2Bytes(
+                             "0014751e76e8199196d454941c45d1b3a323f1433bd6")));
+        assertEquals("tb1qrp33g0q5c5txsp9arysrx4k6zdkfs4nce4xj0gdcccefvpysxf3q0sl5k7",
+                     Bech32.encodeSegwitAddress(Network.TESTNET, hex2Bytes(
+                             "00201863143c14c5166804bd19203356da136c985678cd4d27a1b8c6329604903262")));
+        assertEquals("bc1p5cyxnuxmeuwuvkwfem96lqzszd02n6xdcjrs20cac6yqjjwudpxqkedrcr",
+                     Bech32.encodeSegwitAddress(Network.MAINNET, hex2Bytes(
+                             "5120a60869f0dbcf1dc659c9cecbaf8050135ea9e8cdc487053f1dc6880949dc684c")));
+
+        ScriptPubKey scriptPubKey = new ScriptPubKey("0014bef5a2f9a56a94aab12459f72ad9cf8cf19c7bbe");
+        assertEquals(new Address(scriptPubKey, Network.TESTNET).getAddress(),
+                     Bech32.encodeSegwitAddress(Network.TESTNET, scriptPubKey.getData()));
+    }
 }
@@ -4,6 +4,10 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static com.bc.libwally.core.Core.base582Bytes;
 import static com.bc.libwally.core.Core.base642Bytes;
 import static com.bc.libwally.core.Core.bytes2Base58;
@@ -12,6 +16,8 @@ import static com.bc.libwally.core.Core.bytes2Hex;
 import static com.bc.libwally.core.Core.hex2Bytes;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(JUnit4.class)
 public class CoreTest {
@@ -99,4 +105,65 @@ public class CoreTest {
         assertArrayEquals(expectedBytes, base642Bytes(base64));
     }
 
+    @Test
+    public void testJniTracer() {
+        final AtomicInteger calls = new AtomicInteger();
+        JniCallListener listener = new JniCallListener() {
+            @Override
+            public void onCall(String module,
+                               String method,
+                               long nanos,
+                               long bytesIn,
+                               long bytesOut,
+                               long nativeAllocated) {
+                calls.incrementAndGet();
+            }
+        };
+
+        JniTracer.reset();
+        JniTracer.addListener(listener);
+        JniTracer.setEnabled(true);
+        try {
+            bytes2Hex(new byte[]{0x01, 0x02, 0x03});
+        } finally {
+            JniTracer.setEnabled(false);
+            JniTracer.removeListener(listener);
+        }
+        bytes2Hex(new byte[]{0x01});
+
+        JniCallStats stats = JniTracer.getStats().get("CoreJni.wally_hex_from_bytes");
+        assertNotNull(stats);
+        assertEquals(1, stats.getCount());
+        assertEquals(3, stats.getBytesIn());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testNativeExecutor() throws Exception {
+        NativeExecutor executor = new NativeExecutor(1, 1);
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            CompletableFuture<Integer> running = executor.supplyAsync(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return 1;
+            });
+            CompletableFuture<Integer> queued = executor.supplyAsync(() -> 2);
+            CompletableFuture<Integer> rejected = executor.supplyAsync(() -> 3);
+
+            assertTrue(rejected.isCompletedExceptionally());
+            assertEquals(1, executor.getRejectedCount());
+            assertTrue(executor.getMaxQueueDepth() >= 1);
+
+            release.countDown();
+            assertEquals(1, (int) running.get());
+            assertEquals(2, (int) queued.get());
+            assertEquals(0, executor.getQueueDepth());
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
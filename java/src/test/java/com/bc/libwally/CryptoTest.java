@@ -1,14 +1,35 @@
 package com.bc.libwally;
 
+import com.bc.libwally.crypto.CryptoException;
+import com.bc.libwally.crypto.SecpContext;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.security.SecureRandom;
+import java.util.Arrays;
+
 import static com.bc.libwally.core.Core.bytes2Hex;
 import static com.bc.libwally.core.Core.hex2Bytes;
 import static com.bc.libwally.crypto.Crypto.ecPubKeyDecompress;
 import static com.bc.libwally.crypto.Crypto.ecPubKeyFromPrvKey;
+import static com.bc.libwally.crypto.Crypto.ecSig2Der;
+import static com.bc.libwally.crypto.Crypto.ecSigFromBytes;
+import static com.bc.libwally.crypto.Crypto.ecSigNormalize;
+import static com.bc.libwally.crypto.Crypto.ecSigVerifyBatch;
+import static com.bc.libwally.crypto.Crypto.hash160;
+import static com.bc.libwally.crypto.CryptoConstants.EC_FLAG_ECDSA;
+import static com.bc.libwally.crypto.CryptoConstants.EC_PUBLIC_KEY_LEN;
+import static com.bc.libwally.crypto.CryptoConstants.EC_SIGNATURE_DER_MAX_LEN;
+import static com.bc.libwally.crypto.CryptoConstants.EC_SIGNATURE_LEN;
+import static com.bc.libwally.crypto.CryptoConstants.HASH160_LEN;
+import static com.bc.libwally.crypto.CryptoConstants.SHA256_LEN;
+import static com.bc.libwally.util.TestUtils.assertThrows;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(JUnit4.class)
 public class CryptoTest {
@@ -30,4 +51,78 @@ public class CryptoTest {
                 "0459d56f9de85d8541b5e205b2241c21e7bbb7cb0bf66427c9323dd3289e34d47b262b62de697d6ea343cbd245e3ad67ae60804e423077828b6ffd98028acaf693",
                 bytes2Hex(decompressedPubKey));
     }
+
+    @Test
+    public void testSecpContext() {
+        // a plain warm-up does not stop the context from being blinded afterwards
+        SecpContext.warmUp();
+        boolean wasRandomized = SecpContext.isRandomized();
+        assertEquals(!wasRandomized, SecpContext.warmUp(new SecureRandom()));
+        assertTrue(SecpContext.isInitialized());
+        assertTrue(SecpContext.isRandomized());
+
+        // randomizing only blinds the context, results stay the same
+        byte[] prvKey = hex2Bytes("30ef3d794cd7f3439a8a1d97c6cfcdd66f5ebd014094bf95105e623c69576f2f");
+        assertEquals("0359d56f9de85d8541b5e205b2241c21e7bbb7cb0bf66427c9323dd3289e34d47b",
+                     bytes2Hex(ecPubKeyFromPrvKey(prvKey)));
+
+        // the context is only randomized once
+        final int[] draws = {0};
+        boolean randomized = SecpContext.warmUp(new SecureRandom() {
+            @Override
+            public void nextBytes(byte[] bytes) {
+                draws[0]++;
+                super.nextBytes(bytes);
+            }
+        });
+        assertFalse(randomized);
+        assertEquals(0, draws[0]);
+    }
+
+    @Test
+    public void testWriteIntoOffset() {
+        byte[] prvKey = hex2Bytes("30ef3d794cd7f3439a8a1d97c6cfcdd66f5ebd014094bf95105e623c69576f2f");
+        byte[] pubKey = ecPubKeyFromPrvKey(prvKey);
+        byte[] output = new byte[3 + EC_PUBLIC_KEY_LEN];
+        assertEquals(EC_PUBLIC_KEY_LEN, ecPubKeyFromPrvKey(prvKey, output, 3));
+        assertArrayEquals(pubKey, Arrays.copyOfRange(output, 3, output.length));
+
+        assertEquals(HASH160_LEN, hash160(pubKey, output, 1));
+        assertArrayEquals(hash160(pubKey), Arrays.copyOfRange(output, 1, 1 + HASH160_LEN));
+
+        byte[] message = Arrays.copyOf(hash160(prvKey), 32);
+        byte[] sig = ecSigNormalize(ecSigFromBytes(prvKey, message, EC_FLAG_ECDSA));
+        byte[] der = ecSig2Der(sig);
+        byte[] derOutput = new byte[5 + EC_SIGNATURE_DER_MAX_LEN];
+        assertEquals(der.length, ecSig2Der(sig, derOutput, 5));
+        assertArrayEquals(der, Arrays.copyOfRange(derOutput, 5, 5 + der.length));
+
+        assertThrows("Test output too small failed",
+                     CryptoException.class,
+                     () -> hash160(pubKey, new byte[HASH160_LEN], 1));
+    }
+
+    @Test
+    public void testEcSigVerifyBatch() {
+        int count = 3;
+        byte[] pubKeys = new byte[count * EC_PUBLIC_KEY_LEN];
+        byte[] messages = new byte[count * SHA256_LEN];
+        byte[] sigs = new byte[count * EC_SIGNATURE_LEN];
+        for (int i = 0; i < count; i++) {
+            byte[] prvKey = new byte[32];
+            Arrays.fill(prvKey, (byte) (i + 1));
+            byte[] message = new byte[SHA256_LEN];
+            Arrays.fill(message, (byte) (0x40 + i));
+            System.arraycopy(ecPubKeyFromPrvKey(prvKey), 0, pubKeys, i * EC_PUBLIC_KEY_LEN,
+                             EC_PUBLIC_KEY_LEN);
+            System.arraycopy(message, 0, messages, i * SHA256_LEN, SHA256_LEN);
+            System.arraycopy(ecSigFromBytes(prvKey, message, EC_FLAG_ECDSA), 0, sigs,
+                             i * EC_SIGNATURE_LEN, EC_SIGNATURE_LEN);
+        }
+        assertEquals(-1, ecSigVerifyBatch(pubKeys, messages, EC_FLAG_ECDSA, sigs));
+
+        // the index of the corrupted signature is what makes VERIFY_BATCH refuse to sign
+        sigs[EC_SIGNATURE_LEN + 10] ^= 0x01;
+        assertEquals(1, ecSigVerifyBatch(pubKeys, messages, EC_FLAG_ECDSA, sigs));
+    }
 }
@@ -0,0 +1,174 @@
+package com.bc.libwally;
+
+import com.bc.libwally.address.Address;
+import com.bc.libwally.address.PubKey;
+import com.bc.libwally.bip32.Bip32Path;
+import com.bc.libwally.bip32.HDKey;
+import com.bc.libwally.descriptor.Descriptor;
+import com.bc.libwally.descriptor.DescriptorException;
+import com.bc.libwally.descriptor.HistoryLookup;
+import com.bc.libwally.descriptor.ScriptIndex;
+import com.bc.libwally.descriptor.WalletSync;
+import com.bc.libwally.script.ScriptPubKey;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.bc.libwally.address.AddressType.PAY_TO_PUBKEY_HASH;
+import static com.bc.libwally.address.AddressType.PAY_TO_SCRIPT_HASH_PAY_TO_WITNESS_PUBKEY_HASH;
+import static com.bc.libwally.address.AddressType.PAY_TO_WITNESS_PUBKEY_HASH;
+import static com.bc.libwally.core.Core.bytes2Hex;
+import static com.bc.libwally.core.Core.hex2Bytes;
+import static com.bc.libwally.crypto.Crypto.hash160;
+import static com.bc.libwally.util.TestUtils.assertThrows;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class DescriptorTest {
+
+    private static final String XPUB_1 = "xpub6E64WfdQwBGz85XhbZryr9gUGUPBgoSu5WV6tJWpzAvgAmpVpdPHkT3XYm9R5J6MeWzvLQoz4q845taC9Q28XutbptxAmg7q8QPkjvTL4oi";
+
+    private static final String XPUB_2 = "xpub6DwQ4gBCmJZM3TaKogP41tpjuEwnMH2nWEi3PFev37LfsWPvjZrh1GfAG8xvoDYMPWGKG1oBPMCfKpkVbJtUHRaqRdCb6X6o1e9PQTVK88a";
+
+    private static final String MULTISIG = "wsh(sortedmulti(2,[3442193e/48h/0h/0h/2h]" + XPUB_1 +
+                                           "/0/*,[bd16bee5/48h/0h/0h/2h]" + XPUB_2 +
+                                           "/0/*))#75z63vc9";
+
+    @Test
+    public void testSortedMulti() {
+        Descriptor descriptor = Descriptor.parse(MULTISIG);
+        assertEquals(Descriptor.Type.WSH_SORTED_MULTI, descriptor.getType());
+        assertTrue(descriptor.isRange());
+        assertEquals("75z63vc9", descriptor.getChecksum());
+
+        ScriptPubKey[] scripts = descriptor.expand(0, 3);
+        for (int i = 0; i < scripts.length; i++) {
+            Bip32Path path = new Bip32Path(new long[]{0, i}, true);
+            PubKey[] pubKeys = new PubKey[]{new HDKey(XPUB_1).derive(path).getPubKey(),
+                                            new HDKey(XPUB_2).derive(path).getPubKey()};
+            byte[] witnessProgram = new ScriptPubKey(pubKeys, 2).getWitnessProgram();
+            assertArrayEquals(witnessProgram, scripts[i].getData());
+        }
+        assertEquals(scripts[2], descriptor.getScriptPubKey(2));
+    }
+
+    @Test
+    public void testSingleKey() {
+        String pubKey = "02f9308a019258c31049344f85f89d5229b531c845836f99b08601f113bce036f9";
+        Descriptor wpkh = Descriptor.parse("wpkh(" + pubKey + ")#8zl0zxma");
+        assertFalse(wpkh.isRange());
+        assertEquals("0014" + bytes2Hex(hash160(hex2Bytes(pubKey))),
+                     wpkh.getScriptPubKey(5).getHexData());
+
+        HDKey child = new HDKey(XPUB_1).derive(new Bip32Path(new long[]{1, 7}, true));
+        assertEquals(new Address(child, PAY_TO_PUBKEY_HASH).getScriptPubKey(),
+                     Descriptor.parse("pkh(" + XPUB_1 + "/1/*)").getScriptPubKey(7));
+        assertEquals(new Address(child, PAY_TO_WITNESS_PUBKEY_HASH).getScriptPubKey(),
+                     Descriptor.parse("wpkh(" + XPUB_1 + "/1/*)").getScriptPubKey(7));
+        assertEquals(new Address(child, PAY_TO_SCRIPT_HASH_PAY_TO_WITNESS_PUBKEY_HASH)
+                             .getScriptPubKey(),
+                     Descriptor.parse("sh(wpkh(" + XPUB_1 + "/1/*))").getScriptPubKey(7));
+    }
+
+    @Test
+    public void testInvalidDescriptor() {
+        assertThrows("Test invalid checksum failed",
+                     DescriptorException.class,
+                     () -> Descriptor.parse(MULTISIG.replace("#75z63vc9", "#75z63vc8")));
+        assertThrows("Test unsupported descriptor failed",
+                     DescriptorException.class,
+                     () -> Descriptor.parse("tr(" + XPUB_1 + "/0/*)"));
+        assertThrows("Test hardened wildcard failed",
+                     DescriptorException.class,
+                     () -> Descriptor.parse("wpkh(" + XPUB_1 + "/0/*h)"));
+        assertThrows("Test invalid threshold failed",
+                     DescriptorException.class,
+                     () -> Descriptor.parse("wsh(multi(3," + XPUB_1 + "," + XPUB_2 + "))"));
+    }
+
+    @Test
+    public void testScriptIndex() {
+        Descriptor descriptor = Descriptor.parse(MULTISIG);
+        ScriptIndex index = new ScriptIndex();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            index.add(descriptor, 0, 50, executor, 16);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(50, index.size());
+
+        ScriptPubKey script = descriptor.getScriptPubKey(42);
+        ScriptIndex.Match match = index.lookup(script.getData());
+        assertEquals(descriptor, match.getDescriptor());
+        assertEquals(42, match.getIndex());
+        assertTrue(index.isMine(script));
+        assertFalse(index.isMine(descriptor.getScriptPubKey(50)));
+        assertNull(index.lookup(new ScriptPubKey("0014bef5a2f9a56a94aab12459f72ad9cf8cf19c7bbe")));
+    }
+
+    @Test
+    public void testWalletSync() {
+        Descriptor receive = Descriptor.parse("wpkh(" + XPUB_1 + "/0/*)");
+        Descriptor change = Descriptor.parse("wpkh(" + XPUB_1 + "/1/*)");
+        Set<ScriptPubKey> used = new HashSet<>(Arrays.asList(receive.getScriptPubKey(0),
+                                                             receive.getScriptPubKey(5),
+                                                             receive.getScriptPubKey(30),
+                                                             change.getScriptPubKey(2)));
+        WalletSync.Result result = new WalletSync.Result();
+        AtomicBoolean liveRate = new AtomicBoolean();
+        HistoryLookup lookup = scripts -> {
+            // the rate is readable while the sync runs, once a first chunk was checked
+            if (result.getCheckedCount() > 0 && result.getCheckedPerSecond() > 0)
+                liveRate.set(true);
+            boolean[] found = new boolean[scripts.length];
+            for (int i = 0; i < scripts.length; i++) {
+                found[i] = used.contains(scripts[i]);
+            }
+            return found;
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            new WalletSync(lookup, executor, 20, 8, 4).sync(result, receive, change);
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(liveRate.get());
+        assertEquals(30, result.getLastUsedIndex(receive));
+        assertEquals(2, result.getLastUsedIndex(change));
+        assertEquals(4, result.getUsedCount());
+        assertEquals(51 + 23, result.getDerivedCount());
+        assertEquals(result.getDerivedCount(), result.getCheckedCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testWalletSyncLookupFailure() {
+        Descriptor receive = Descriptor.parse("wpkh(" + XPUB_1 + "/0/*)");
+        HistoryLookup lookup = scripts -> {
+            throw new IllegalArgumentException("Lookup failed");
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            WalletSync sync = new WalletSync(lookup, executor, 20, 8, 4);
+            assertThrows("Test failing lookup failed",
+                         IllegalArgumentException.class,
+                         () -> sync.sync(receive));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.bc.libwally;
+
+import com.bc.libwally.address.Address;
+import com.bc.libwally.bip32.Bip32Path;
+import com.bc.libwally.bip32.HDKey;
+import com.bc.libwally.core.CoreException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static com.bc.libwally.address.AddressType.PAY_TO_WITNESS_PUBKEY_HASH;
+import static com.bc.libwally.core.Core.base582Bytes;
+import static com.bc.libwally.core.Core.base642Bytes;
+import static com.bc.libwally.core.Core.bytes2Base58;
+import static com.bc.libwally.core.Core.bytes2Base64;
+import static com.bc.libwally.core.Core.bytes2Hex;
+import static com.bc.libwally.core.Core.hex2Bytes;
+import static com.bc.libwally.crypto.Crypto.ecPubKeyFromPrvKey;
+import static com.bc.libwally.crypto.Crypto.hash160;
+import static com.bc.libwally.util.TestUtils.assertThrows;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class NativeWrapperTest {
+
+    private static final String XPUB = "tpubDDgEAMpHn8tX5Bs19WWJLZBeFzbpE7BYuP3Qo71abZnQ7FmN3idRPg4oPWt2Q6Uf9huGv7AGMTu8M2BaCxAdThQArjLWLDLpxVX2gYfh2YJ";
+
+    @Test
+    public void testCloseReleasesHandle() {
+        NativeWrapper wrapper = new NativeWrapper(new NativeWrapper.JniObject(1)) {
+        };
+        assertFalse(wrapper.isClosed());
+        wrapper.close();
+        assertTrue(wrapper.isClosed());
+        wrapper.close();
+        assertTrue(wrapper.isClosed());
+    }
+
+    @Test
+    public void testNoOutstandingAllocations() {
+        byte[] prvKey = hex2Bytes("30ef3d794cd7f3439a8a1d97c6cfcdd66f5ebd014094bf95105e623c69576f2f");
+        HDKey hdKey = new HDKey(XPUB);
+        Bip32Path path = new Bip32Path("0/1");
+
+        long before = JniTracer.getOutstandingAllocations();
+        for (int i = 0; i < 100; i++) {
+            bytes2Hex(prvKey);
+            base582Bytes(bytes2Base58(prvKey));
+            base642Bytes(bytes2Base64(prvKey));
+            hash160(ecPubKeyFromPrvKey(prvKey));
+            new Address(hdKey.derive(path), PAY_TO_WITNESS_PUBKEY_HASH).getAddress();
+
+            // failing calls have to release what they allocated as well
+            assertThrows("Test invalid hex failed", CoreException.class, () -> hex2Bytes("zz"));
+        }
+        assertEquals(before, JniTracer.getOutstandingAllocations());
+    }
+}
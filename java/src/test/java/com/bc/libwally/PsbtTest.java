@@ -4,18 +4,30 @@ import com.bc.libwally.address.Key;
 import com.bc.libwally.address.PubKey;
 import com.bc.libwally.bip32.Bip32Path;
 import com.bc.libwally.bip32.HDKey;
+import com.bc.libwally.psbt.FinalTransaction;
 import com.bc.libwally.psbt.KeyOrigin;
 import com.bc.libwally.psbt.Psbt;
 import com.bc.libwally.psbt.PsbtException;
 import com.bc.libwally.psbt.PsbtInput;
+import com.bc.libwally.psbt.PsbtProcessor;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 
+import static com.bc.libwally.ArrayUtils.reversed;
 import static com.bc.libwally.core.Core.base642Bytes;
+import static com.bc.libwally.core.Core.bytes2Hex;
 import static com.bc.libwally.core.Core.hex2Bytes;
 import static com.bc.libwally.util.TestUtils.assertThrows;
 import static org.junit.Assert.assertArrayEquals;
@@ -23,6 +35,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 @RunWith(JUnit4.class)
@@ -454,6 +467,48 @@ public class PsbtTest {
         assertArrayEquals(data, psbt.getData());
     }
 
+    @Test
+    public void testParseBufferAndStream() throws IOException {
+        byte[] data = base642Bytes(VALID_PSBT);
+        byte[] base64 = (VALID_PSBT + "\n").getBytes(StandardCharsets.US_ASCII);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).flip();
+        ByteBuffer heap = ByteBuffer.wrap(base64);
+        Psbt[] psbts = new Psbt[]{new Psbt(direct, Network.TESTNET),
+                                  new Psbt(heap, Network.TESTNET),
+                                  new Psbt(new ByteArrayInputStream(data), Network.TESTNET),
+                                  new Psbt(new ByteArrayInputStream(base64), Network.TESTNET)};
+        for (Psbt psbt : psbts) {
+            assertEquals(VALID_PSBT, psbt.getDescription());
+        }
+        assertFalse(direct.hasRemaining());
+        assertFalse(heap.hasRemaining());
+
+        assertThrows("Test truncated base64 failed",
+                     PsbtException.class,
+                     () -> new Psbt(ByteBuffer.wrap(Arrays.copyOf(base64, 10)), Network.TESTNET));
+    }
+
+    @Test
+    public void testWriteTo() throws IOException {
+        byte[] data = base642Bytes(VALID_PSBT);
+        Psbt psbt = new Psbt(VALID_PSBT, Network.TESTNET);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(data.length, psbt.writeTo(out));
+        assertArrayEquals(data, out.toByteArray());
+
+        out.reset();
+        assertEquals(data.length, psbt.writeTo(Channels.newChannel(out)));
+        assertArrayEquals(data, out.toByteArray());
+
+        // callers get their own copy of the cached bytes
+        psbt.getData()[0] = 0;
+        assertArrayEquals(data, psbt.getData());
+        assertEquals(VALID_PSBT, psbt.getDescription());
+    }
+
     @Test
     public void testInvalidPSBT() {
         testInvalidPsbt(
@@ -497,6 +552,24 @@ public class PsbtTest {
                      completePsbt.getTransactionFinal().getDescription());
     }
 
+    @Test
+    public void testFinalizedTransaction() {
+        String expected = new Psbt(FINALIZED_PSBT, Network.TESTNET).getTransactionFinal()
+                                                                    .getDescription();
+        FinalTransaction tx = new Psbt(SIGNED_PSBT, Network.TESTNET).finalizedTransaction();
+        assertEquals(expected, tx.getDescription());
+        assertEquals(expected.length() / 2, tx.getLength());
+        // double sha256 of the serialization without witnesses
+        assertEquals("c001dff12b319c432360072394690d2e9ef1a28a5d77e3f5346ecc46dff966cd",
+                     tx.getTxidHex());
+        assertEquals(tx.getTxidHex(), bytes2Hex(reversed(tx.getTxid())));
+        assertEquals(expected, tx.toTransaction().getDescription());
+
+        assertThrows("Test finalize incomplete psbt failed",
+                     PsbtException.class,
+                     () -> new Psbt(VALID_PSBT, Network.TESTNET).finalizedTransaction());
+    }
+
     @Test
     public void testSignWithKey() {
         Key privKey0 = new Key(WIF_0, Network.TESTNET);
@@ -517,6 +590,40 @@ public class PsbtTest {
         assertEquals(expectedPsbt13.getDescription(), p213.getDescription());
     }
 
+    @Test
+    public void testSignSharesUnchangedParts() {
+        Psbt unsigned = new Psbt(UNSIGNED_PSBT, Network.TESTNET);
+        Psbt signed = unsigned.signed(new Key(WIF_0, Network.TESTNET));
+        assertSame(unsigned.getOutputs(), signed.getOutputs());
+
+        int changed = 0;
+        for (int i = 0; i < unsigned.getInputs().length; i++) {
+            PsbtInput before = unsigned.getInputs()[i];
+            PsbtInput after = signed.getInputs()[i];
+            if (before != after) {
+                changed++;
+                assertNotNull(after.getSignatureMap());
+            }
+        }
+        assertEquals(1, changed);
+    }
+
+    @Test
+    public void testCombine() {
+        Psbt psbt02 = new Psbt(SIGNED_PSBT_0_2, Network.TESTNET);
+        Psbt psbt13 = new Psbt(SIGNED_PSBT_1_3, Network.TESTNET);
+        Psbt combined = Psbt.combine(psbt02, psbt13);
+        assertEquals(SIGNED_PSBT, combined.getDescription());
+        assertEquals(SIGNED_PSBT_0_2, psbt02.getDescription());
+
+        assertThrows("Test combine different transactions failed",
+                     PsbtException.class,
+                     () -> Psbt.combine(psbt02, new Psbt(VALID_PSBT, Network.TESTNET)));
+        assertThrows("Test combine different networks failed",
+                     PsbtException.class,
+                     () -> Psbt.combine(psbt02, new Psbt(SIGNED_PSBT_1_3, Network.MAINNET)));
+    }
+
     @Test
     public void testInputs() {
         Psbt psbt = new Psbt(UNSIGNED_PSBT, Network.TESTNET);
@@ -558,6 +665,23 @@ public class PsbtTest {
         assertEquals(expectedOrigin5, outOrigin1.get(PUB_KEY_5));
     }
 
+    @Test
+    public void testKeyPathsShareFingerprints() {
+        Psbt psbt = new Psbt(UNSIGNED_PSBT, Network.TESTNET);
+        KeyOrigin inOrigin = psbt.getInputs()[0].getOriginMap().get(PUB_KEY_0);
+        KeyOrigin outOrigin = psbt.getOutputs()[1].getOriginMap().get(PUB_KEY_5);
+        assertArrayEquals(FINGERPRINT, inOrigin.getFingerprint());
+
+        // origins share the decoded fingerprint, so callers only ever see copies of it
+        byte[] fingerprint = inOrigin.getFingerprint();
+        fingerprint[0] ^= 0xff;
+        assertArrayEquals(FINGERPRINT, inOrigin.getFingerprint());
+        assertArrayEquals(FINGERPRINT, outOrigin.getFingerprint());
+        assertThrows("Test modify origin map failed",
+                     UnsupportedOperationException.class,
+                     () -> psbt.getInputs()[0].getOriginMap().remove(PUB_KEY_0));
+    }
+
     @Test
     public void testCanSign() {
         HDKey hdKey = new HDKey(MASTER_KEY_XPRIV);
@@ -625,6 +749,79 @@ public class PsbtTest {
                      psbtWithChangeFinalized.getOutputs()[1].getTxOutput().getAddress());
     }
 
+    @Test
+    public void testProcessor() {
+        HDKey keySigner1 = new HDKey(MASTER_1);
+        HDKey keySigner2 = new HDKey(MASTER_2);
+        Psbt psbt = new Psbt(MULTI_UNSIGNED_PSBT_WITH_CHANGE, Network.MAINNET);
+
+        PsbtProcessor.Report report = new PsbtProcessor(keySigner1,
+                                                        new HDKey[]{keySigner2},
+                                                        2).process(psbt);
+        assertTrue(report.isValid());
+        assertEquals(181L, (long) report.getFee());
+        assertArrayEquals(new int[]{0}, report.getChangeOutputs());
+        assertEquals(1, report.getChangedInputCount());
+        assertFalse(report.isFinalized());
+
+        report = new PsbtProcessor(keySigner2,
+                                   new HDKey[]{keySigner1},
+                                   2).process(report.getPsbt());
+        assertTrue(report.isFinalized());
+        assertEquals(MULTI_PSBT_WITH_CHANGE_HEX,
+                     report.getPsbt().finalizedTransaction().getDescription());
+
+        report = new PsbtProcessor(keySigner1,
+                                   new HDKey[]{keySigner2},
+                                   2,
+                                   0.1f,
+                                   true).process(psbt);
+        assertFalse(report.isValid());
+        assertEquals(1, report.getProblems().size());
+        assertSame(psbt, report.getPsbt());
+    }
+
+    @Test
+    public void testProcessorUnknownFee() {
+        HDKey masterKey = new HDKey(MASTER_KEY_XPRIV);
+        byte[] data = base642Bytes(UNSIGNED_PSBT);
+        // the non witness utxo of the first input no longer matches its prevout
+        data[286]++;
+        Psbt psbt = new Psbt(data, Network.TESTNET);
+
+        // without a cap the unknown rate is not a problem
+        PsbtProcessor.Report report = new PsbtProcessor(masterKey,
+                                                        new HDKey[0],
+                                                        1).process(psbt);
+        assertTrue(report.isValid());
+        assertNull(report.getFee());
+        assertEquals(2, report.getChangedInputCount());
+
+        report = new PsbtProcessor(masterKey,
+                                   new HDKey[0],
+                                   1,
+                                   100f,
+                                   true).process(psbt);
+        assertEquals(Collections.singletonList("Unknown fee rate"), report.getProblems());
+        assertSame(psbt, report.getPsbt());
+    }
+
+    @Test
+    public void testProcessorInvalidTotalIn() {
+        HDKey masterKey = new HDKey(MASTER_KEY_XPRIV);
+        byte[] data = base642Bytes(UNSIGNED_PSBT);
+        // the witness utxo of the second input drops below the amount spent
+        data[545] = 0;
+        Psbt psbt = new Psbt(data, Network.TESTNET);
+
+        PsbtProcessor.Report report = new PsbtProcessor(masterKey,
+                                                        new HDKey[0],
+                                                        1).process(psbt);
+        assertEquals(Collections.singletonList("Invalid total in"), report.getProblems());
+        assertNull(report.getFee());
+        assertSame(psbt, report.getPsbt());
+    }
+
     @Test
     public void testIsChange() {
         HDKey us = new HDKey(MASTER_1);
@@ -644,6 +841,16 @@ public class PsbtTest {
         assertFalse(psbt.getOutputs()[1].isChange(us, psbt.getInputs(), cosigner, 2));
     }
 
+    @Test
+    public void testIsChangeWithSwappedOrMissingCosigner() {
+        HDKey us = new HDKey(MASTER_1);
+        HDKey cosigner = new HDKey(MASTER_2);
+        Psbt psbt = new Psbt(MULTI_UNSIGNED_PSBT_WITH_CHANGE, Network.MAINNET);
+        assertTrue(psbt.getOutputs()[0].isChange(cosigner, psbt.getInputs(), us, 2));
+        assertFalse(psbt.getOutputs()[0].isChange(us, psbt.getInputs(), new HDKey[0], 2));
+        assertFalse(psbt.getOutputs()[0].isChange(us, new PsbtInput[0], cosigner, 2));
+    }
+
     @Test
     public void testIsChangeWithNeuteredCosignerKey() {
         HDKey us = new HDKey(MASTER_1);
@@ -678,5 +885,28 @@ public class PsbtTest {
         assertEquals(181L, (long) psbt.getFee());
     }
 
+    @Test
+    public void testFeeAndEstimatedVsize() {
+        // first input only has a non witness utxo
+        Psbt unsigned = new Psbt(UNSIGNED_PSBT, Network.TESTNET);
+        assertEquals(10000L, (long) unsigned.getFee());
+
+        // worst case signatures are a few bytes larger than the actual ones
+        assertEquals(467, (int) unsigned.getEstimatedVsize());
+        assertEquals(463, (int) new Psbt(FINALIZED_PSBT, Network.TESTNET).getEstimatedVsize());
+        assertEquals(10000f / 467, unsigned.getEstimatedFeeRate(), 0.0001f);
+    }
+
+    @Test
+    public void testTamperedNonWitnessUtxo() {
+        // raise the amount of the spent output inside the first input's non witness utxo, which
+        // no longer hashes to the txid the unsigned tx spends
+        byte[] data = base642Bytes(UNSIGNED_PSBT);
+        data[286]++;
+        Psbt psbt = new Psbt(data, Network.TESTNET);
+        assertNull(psbt.getInputs()[0].getAmount());
+        assertNull(psbt.getFee());
+    }
+
 
 }
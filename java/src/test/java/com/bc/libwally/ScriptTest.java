@@ -2,6 +2,10 @@ package com.bc.libwally;
 
 import com.bc.libwally.address.Address;
 import com.bc.libwally.address.PubKey;
+import com.bc.libwally.bip32.Bip32Path;
+import com.bc.libwally.bip32.HDKey;
+import com.bc.libwally.script.MultisigScriptGenerator;
+import com.bc.libwally.script.ScriptException;
 import com.bc.libwally.script.ScriptPubKey;
 import com.bc.libwally.script.ScriptSig;
 import com.bc.libwally.script.ScriptSigType;
@@ -24,6 +28,7 @@ import static com.bc.libwally.script.ScriptPubKey.ScriptType.PAY_TO_PUBKEY_HASH;
 import static com.bc.libwally.script.ScriptPubKey.ScriptType.PAY_TO_SCRIPT_HASH;
 import static com.bc.libwally.script.ScriptPubKey.ScriptType.PAY_TO_WITNESS_PUBKEY_HASH;
 import static com.bc.libwally.script.ScriptPubKey.ScriptType.PAY_TO_WITNESS_SCRIPT_HASH;
+import static com.bc.libwally.util.TestUtils.assertThrows;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
@@ -82,6 +87,18 @@ public class ScriptTest {
                           append(signaturePush, pubKeyPush));
     }
 
+    @Test
+    public void testScriptSigP2SHP2WPKH() {
+        PubKey pubKey = new PubKey(
+                "03501e454bf00751f24b1b489aa925215d66af2234e3891c3b21a52bedb3cd711c",
+                MAINNET);
+        ScriptSig scriptSig = new ScriptSig(
+                ScriptSigType.payToScriptHashPayToWitnessPubKeyHash(pubKey));
+        byte[] expected = hex2Bytes("160014bef5a2f9a56a94aab12459f72ad9cf8cf19c7bbe");
+        assertArrayEquals(expected, scriptSig.render(ScriptSig.Purpose.SIGNED));
+        assertArrayEquals(expected, scriptSig.render(ScriptSig.Purpose.FEE_WORST_CASE));
+    }
+
     @Test
     public void testWitnessP2WPKH() {
         PubKey pubKey = new PubKey(
@@ -154,4 +171,30 @@ public class ScriptTest {
                      new Address(scriptP2WSH, MAINNET).getAddress());
     }
 
+
+    @Test
+    public void testMultisigScriptGenerator() {
+        HDKey[] cosigners = new HDKey[]{new HDKey(
+                "xpub6E64WfdQwBGz85XhbZryr9gUGUPBgoSu5WV6tJWpzAvgAmpVpdPHkT3XYm9R5J6MeWzvLQoz4q845taC9Q28XutbptxAmg7q8QPkjvTL4oi"),
+                                        new HDKey(
+                "xpub6DwQ4gBCmJZM3TaKogP41tpjuEwnMH2nWEi3PFev37LfsWPvjZrh1GfAG8xvoDYMPWGKG1oBPMCfKpkVbJtUHRaqRdCb6X6o1e9PQTVK88a")};
+        MultisigScriptGenerator generator = new MultisigScriptGenerator(cosigners, 2, MAINNET);
+        MultisigScriptGenerator.Range range = generator.generate(10, 5);
+        assertEquals(5, range.getCount());
+
+        for (int i = 0; i < range.getCount(); i++) {
+            PubKey[] pubKeys = new PubKey[cosigners.length];
+            for (int j = 0; j < cosigners.length; j++) {
+                pubKeys[j] = cosigners[j].derive(new Bip32Path(10 + i, true)).getPubKey();
+            }
+            ScriptPubKey multiSig = new ScriptPubKey(pubKeys, 2);
+            assertEquals(multiSig, range.getWitnessScript(i));
+            assertArrayEquals(multiSig.getWitnessProgram(), range.getWitnessProgram(i));
+            assertEquals(new Address(multiSig, MAINNET).getAddress(), range.getAddress(i));
+        }
+
+        assertThrows("Test invalid threshold failed",
+                     ScriptException.class,
+                     () -> new MultisigScriptGenerator(cosigners, 3, MAINNET));
+    }
 }
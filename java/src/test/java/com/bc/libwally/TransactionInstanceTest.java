@@ -7,6 +7,7 @@ import com.bc.libwally.script.ScriptSig;
 import com.bc.libwally.script.ScriptSigType;
 import com.bc.libwally.script.Witness;
 import com.bc.libwally.script.WitnessType;
+import com.bc.libwally.tx.SigningPolicy;
 import com.bc.libwally.tx.Transaction;
 import com.bc.libwally.tx.TxInput;
 import com.bc.libwally.tx.TxOutput;
@@ -151,4 +152,14 @@ public class TransactionInstanceTest {
 
         assertEquals(WRAPPED_SEGWIT_INPUT_BYTES, signedTx.getVBytes().intValue());
     }
+
+    @Test
+    public void testSignWithPolicy() {
+        HDKey[] keys = new HDKey[]{HD_KEY};
+        for (Transaction tx : new Transaction[]{TX1, TX2, TX3}) {
+            String expected = tx.signed(keys).getDescription();
+            assertEquals(expected, tx.signed(keys, SigningPolicy.VERIFY_BATCH).getDescription());
+            assertEquals(expected, tx.signed(keys, SigningPolicy.TRUST).getDescription());
+        }
+    }
 }
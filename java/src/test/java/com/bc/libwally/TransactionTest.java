@@ -4,21 +4,36 @@ import com.bc.libwally.address.PubKey;
 import com.bc.libwally.script.ScriptPubKey;
 import com.bc.libwally.script.ScriptSig;
 import com.bc.libwally.script.ScriptSigType;
+import com.bc.libwally.tx.OutPoint;
 import com.bc.libwally.tx.Transaction;
+import com.bc.libwally.tx.TransactionDecoder;
 import com.bc.libwally.tx.TxException;
 import com.bc.libwally.tx.TxInput;
 import com.bc.libwally.tx.TxOutput;
+import com.bc.libwally.tx.raw.WallyTxInput;
+import com.bc.libwally.tx.raw.WallyTxOutput;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import static com.bc.libwally.core.Core.bytes2Hex;
+import static com.bc.libwally.core.Core.hex2Bytes;
 import static com.bc.libwally.util.TestUtils.assertThrows;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 @RunWith(JUnit4.class)
 public class TransactionTest {
@@ -47,6 +62,37 @@ public class TransactionTest {
         assertArrayEquals(scriptPubKey.getData(), output.getScriptPubKey().getData());
     }
 
+    @Test
+    public void testOutPoint() {
+        String txid = "75ddabb27b8845f5247975c8a5ba7c6f336c4570708ebe230caf6db5217ae858";
+        OutPoint outPoint = OutPoint.fromTxid(txid, 1);
+        assertEquals(txid, outPoint.getTxid());
+        assertEquals(1, outPoint.getVout());
+        assertEquals(txid + ":1", outPoint.toString());
+
+        byte[] data = outPoint.toBytes();
+        assertEquals(OutPoint.SERIALIZED_LEN, data.length);
+        assertEquals("58e87a21b56daf0c23be8e7070456c336f7cbaa5c8757924f545887bb2abdd7501000000",
+                     bytes2Hex(data));
+        assertEquals(outPoint, OutPoint.fromBytes(data, 0));
+        assertEquals(outPoint.hashCode(), OutPoint.fromBytes(data, 0).hashCode());
+
+        OutPoint last = new OutPoint(outPoint.getTxHash(), 0xffffffffL);
+        assertEquals(0xffffffffL, last.getVout());
+        assertTrue(outPoint.compareTo(last) < 0);
+        String lowerTxid = "75ddabb27b8845f5247975c8a5ba7c6f336c4570708ebe230caf6db5217ae857";
+        assertTrue(outPoint.compareTo(OutPoint.fromTxid(lowerTxid, 9)) > 0);
+
+        ScriptSig scriptSig = new ScriptSig(ScriptSigType.payToPubKeyHash(pubKey));
+        TxInput input = new TxInput(outPoint, 0, 1000, scriptSig, scriptPubKey);
+        assertEquals(outPoint, input.getOutPoint());
+        assertArrayEquals(outPoint.getTxHash(), input.getTxHash());
+
+        assertThrows("Test invalid vout failed",
+                     TxException.class,
+                     () -> new OutPoint(outPoint.getTxHash(), 0x100000000L));
+    }
+
     @Test
     public void testInput() {
         Transaction prevTx = new Transaction(
@@ -91,10 +137,121 @@ public class TransactionTest {
         assertEquals(1, tx.getRawTx().getOutputs().length);
     }
 
+    @Test
+    public void testComposeTransactionPacksInputsAndOutputs() {
+        byte[] txHash = new Transaction(
+                "0101010101010101010101010101010101010101010101010101010101010101").getHash();
+        ScriptSig scriptSig = new ScriptSig(ScriptSigType.payToPubKeyHash(pubKey));
+        ScriptPubKey otherScriptPubKey = new ScriptPubKey(
+                "0014bef5a2f9a56a94aab12459f72ad9cf8cf19c7bbe");
+        TxInput input0 = new TxInput(txHash, 1, 1000, scriptSig, scriptPubKey);
+        TxInput input1 = new TxInput(txHash, 2, 0xfffffffe, 2000, scriptSig, scriptPubKey);
+        TxOutput output0 = new TxOutput(scriptPubKey, 1500, Network.MAINNET);
+        TxOutput output1 = new TxOutput(otherScriptPubKey, 500, Network.MAINNET);
+
+        Transaction tx = new Transaction(new TxInput[]{input0, input1},
+                                         new TxOutput[]{output0, output1});
+        WallyTxInput[] inputs = tx.getRawTx().getInputs();
+        WallyTxOutput[] outputs = tx.getRawTx().getOutputs();
+        assertEquals(2, inputs.length);
+        assertArrayEquals(txHash, inputs[1].getTxHash());
+        assertEquals(1, inputs[0].getIndex());
+        assertEquals(2, inputs[1].getIndex());
+        assertEquals(0xfffffffeL, inputs[1].getSequence());
+        assertEquals(2, outputs.length);
+        assertEquals(1500, outputs[0].getSatoshi());
+        assertArrayEquals(otherScriptPubKey.getData(), outputs[1].getScript());
+
+        assertThrows("Test invalid tx hash failed",
+                     TxException.class,
+                     () -> new Transaction(new TxInput[]{new TxInput(new byte[31],
+                                                                     0,
+                                                                     1000,
+                                                                     scriptSig,
+                                                                     scriptPubKey)},
+                                           new TxOutput[]{output0}));
+    }
+
     @Test
     public void testDeserialize() {
         String hex = "01000000010000000000000000000000000000000000000000000000000000000000000000000000006a47304402203d274300310c06582d0186fc197106120c4838fa5d686fe3aa0478033c35b97802205379758b11b869ede2f5ab13a738493a93571268d66b2a875ae148625bd20578012103501e454bf00751f24b1b489aa925215d66af2234e3891c3b21a52bedb3cd711cffffffff01e8030000000000001976a914bef5a2f9a56a94aab12459f72ad9cf8cf19c7bbe88ac00000000";
         Transaction tx = new Transaction(hex);
         assertEquals(hex, tx.getDescription());
     }
+
+    @Test
+    public void testSerialize() throws IOException {
+        String hex = "01000000010000000000000000000000000000000000000000000000000000000000000000000000006a47304402203d274300310c06582d0186fc197106120c4838fa5d686fe3aa0478033c35b97802205379758b11b869ede2f5ab13a738493a93571268d66b2a875ae148625bd20578012103501e454bf00751f24b1b489aa925215d66af2234e3891c3b21a52bedb3cd711cffffffff01e8030000000000001976a914bef5a2f9a56a94aab12459f72ad9cf8cf19c7bbe88ac00000000";
+        byte[] bytes = hex2Bytes(hex);
+        Transaction tx = new Transaction(hex);
+        assertArrayEquals(bytes, tx.getBytes());
+        assertArrayEquals(bytes, tx.getBytes(false));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 2);
+        direct.position(1);
+        assertEquals(bytes.length, tx.writeTo(direct));
+        assertEquals(bytes.length + 1, direct.position());
+        byte[] written = new byte[bytes.length];
+        direct.position(1);
+        direct.get(written);
+        assertArrayEquals(bytes, written);
+
+        ByteBuffer heap = ByteBuffer.allocate(bytes.length);
+        assertEquals(bytes.length, tx.writeTo(heap));
+        assertArrayEquals(bytes, heap.array());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(bytes.length, tx.writeTo(out));
+        assertArrayEquals(bytes, out.toByteArray());
+
+        ByteBuffer small = ByteBuffer.allocateDirect(bytes.length - 1);
+        assertThrows("Test buffer overflow failed",
+                     BufferOverflowException.class,
+                     () -> tx.writeTo(small));
+        assertEquals(0, small.position());
+
+        // an incomplete tx has no bytes, writing it fails
+        Transaction unknown = new Transaction(bytes2Hex(new byte[32]));
+        assertNull(unknown.getBytes());
+        assertThrows("Test write incomplete tx failed",
+                     TxException.class,
+                     () -> unknown.writeTo(ByteBuffer.allocate(bytes.length)));
+        ByteArrayOutputStream unknownOut = new ByteArrayOutputStream();
+        try {
+            unknown.writeTo(unknownOut);
+            fail("Test write incomplete tx to stream failed");
+        } catch (TxException ignored) {
+        }
+        assertEquals(0, unknownOut.size());
+    }
+
+    @Test
+    public void testDecodeBatch() throws Exception {
+        String hex = "01000000010000000000000000000000000000000000000000000000000000000000000000000000006a47304402203d274300310c06582d0186fc197106120c4838fa5d686fe3aa0478033c35b97802205379758b11b869ede2f5ab13a738493a93571268d66b2a875ae148625bd20578012103501e454bf00751f24b1b489aa925215d66af2234e3891c3b21a52bedb3cd711cffffffff01e8030000000000001976a914bef5a2f9a56a94aab12459f72ad9cf8cf19c7bbe88ac00000000";
+        String[] hexes = new String[5];
+        Arrays.fill(hexes, hex);
+
+        Transaction[] txs = TransactionDecoder.decode(hexes);
+        assertEquals(5, txs.length);
+        for (Transaction tx : txs) {
+            assertEquals(hex, tx.getDescription());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            txs = TransactionDecoder.decode(hexes, executor, 2);
+            assertEquals(5, txs.length);
+            assertEquals(hex, txs[4].getDescription());
+        } finally {
+            executor.shutdown();
+        }
+
+        byte[] bytes = hex2Bytes(hex);
+        assertThrows("Test invalid tx failed",
+                     TxException.class,
+                     () -> TransactionDecoder.decode(bytes, new int[]{0}, new int[]{10}));
+        assertThrows("Test invalid hex failed",
+                     TxException.class,
+                     () -> TransactionDecoder.decode(new String[]{hex, "zz"}));
+    }
 }